@@ -0,0 +1,2 @@
+@echo off
+jolie %JOLIE_HOME%\tools\joliedoc.ol %*
\ No newline at end of file
@@ -0,0 +1,3 @@
+@echo off
+jolie %JOLIE_HOME%\tools\wsdl2jolie.ol %*
+		
\ No newline at end of file
@@ -88,7 +88,11 @@ public class BTL2CapCommChannel extends StreamingCommChannel implements Pollable
 	protected void closeImpl()
 		throws IOException
 	{
-		connection.close();
+		try {
+			connection.close();
+		} finally {
+			protocol().close();
+		}
 	}
 	
 	@Override
@@ -1323,7 +1323,15 @@ public class HttpProtocol extends CommProtocol implements HttpUtils.HttpProtocol
 	public CommMessage recv_internal( InputStream istream, OutputStream ostream )
 		throws IOException
 	{
-		HttpMessage message = new HttpParser( istream ).parse();
+		final HttpParser parser = new HttpParser( istream );
+		HttpMessage message = parser.parseHead();
+		/* https://tools.ietf.org/html/rfc7231#section-4.3 */
+		if ( (message.isGet() || message.isHead()) && !checkBooleanParameter( Parameters.DEBUG ) ) {
+			// The body of these requests is never used, so we do not buffer it
+			parser.skipContent( message );
+		} else {
+			parser.readContent( message );
+		}
 		String charset = HttpUtils.getCharset( null, message );
 		CommMessage retVal = null;
 		DecodedMessage decodedMessage = new DecodedMessage();
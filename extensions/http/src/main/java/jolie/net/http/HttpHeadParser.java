@@ -0,0 +1,365 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.net.http;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+/**
+ * An incremental parser for the head of HTTP messages (start line and header fields),
+ * or for the trailer of chunked messages.
+ *
+ * The parser is a state machine fed with buffers of raw bytes through {@link #feed(ByteBuffer)},
+ * which scans each buffer in place: data can be fed as it arrives, in buffers of any size,
+ * and the parser never consumes bytes beyond the end of the head.
+ */
+final class HttpHeadParser
+{
+	private static final int MAX_LINE_LENGTH = 1 << 20; // 1 MB
+
+	private static final Pattern cookiesSplitPattern = Pattern.compile( ";" );
+	private static final Pattern cookieNameValueSplitPattern = Pattern.compile( "=" );
+
+	private enum State {
+		START_LINE, HEADER_FIELDS, DONE
+	}
+
+	private State state;
+	private HttpMessage message;
+	private byte[] line = new byte[ 128 ];
+	private int lineLength = 0;
+	private boolean started = false;
+
+	// The last header field is processed only when we know that it is not continued on the next line
+	private String fieldName = null;
+	private String fieldValue = null;
+
+	private HttpHeadParser( State state, HttpMessage message )
+	{
+		this.state = state;
+		this.message = message;
+	}
+
+	/**
+	 * Creates a parser for the head of a new message.
+	 */
+	static HttpHeadParser forHead()
+	{
+		return new HttpHeadParser( State.START_LINE, null );
+	}
+
+	/**
+	 * Creates a parser for the trailer of a chunked message, whose header fields
+	 * are added to the passed message.
+	 */
+	static HttpHeadParser forTrailer( HttpMessage message )
+	{
+		return new HttpHeadParser( State.HEADER_FIELDS, message );
+	}
+
+	/**
+	 * Returns the parsed message. The message is complete only after {@link #feed(ByteBuffer)}
+	 * has returned {@code true}.
+	 */
+	HttpMessage message()
+	{
+		return message;
+	}
+
+	/**
+	 * Returns {@code true} if some bytes of the head have been received.
+	 */
+	boolean isStarted()
+	{
+		return started;
+	}
+
+	/**
+	 * Parses the bytes between the position and the limit of a buffer.
+	 * When the end of the head is reached, parsing stops and the position of the buffer
+	 * is left at the first byte after the head.
+	 * @param data the bytes to parse, backed by an array
+	 * @return {@code true} if the end of the head has been reached
+	 * @throws IOException if the head is malformed
+	 */
+	boolean feed( ByteBuffer data )
+		throws IOException
+	{
+		final byte[] array = data.array();
+		final int end = data.arrayOffset() + data.limit();
+		int i = data.arrayOffset() + data.position();
+		while( i < end && state != State.DONE ) {
+			// Look for the end of the current line
+			int lineEnd = i;
+			while( lineEnd < end && array[ lineEnd ] != '\n' ) {
+				lineEnd++;
+			}
+			append( array, i, lineEnd - i );
+			if ( lineEnd < end ) {
+				if ( lineLength > 0 && line[ lineLength - 1 ] == '\r' ) {
+					lineLength--;
+				}
+				onLine();
+				lineLength = 0;
+				i = lineEnd + 1;
+			} else {
+				i = end;
+			}
+		}
+		data.position( i - data.arrayOffset() );
+		return state == State.DONE;
+	}
+
+	private void append( byte[] array, int offset, int length )
+		throws IOException
+	{
+		if ( length == 0 ) {
+			return;
+		}
+		started = true;
+		final int newLength = lineLength + length;
+		if ( newLength > MAX_LINE_LENGTH ) {
+			throw new IOException( "HTTP header line exceeds maximum allowed length (" + MAX_LINE_LENGTH + " bytes)" );
+		}
+		if ( newLength > line.length ) {
+			final byte[] newLine = new byte[ Math.max( newLength, line.length * 2 ) ];
+			System.arraycopy( line, 0, newLine, 0, lineLength );
+			line = newLine;
+		}
+		System.arraycopy( array, offset, line, lineLength, length );
+		lineLength = newLength;
+	}
+
+	private String lineString( int begin, int end )
+	{
+		return new String( line, begin, end - begin, StandardCharsets.ISO_8859_1 );
+	}
+
+	private static boolean isWhitespace( byte b )
+	{
+		return b == ' ' || b == '\t';
+	}
+
+	private int skipWhitespace( int i )
+	{
+		while( i < lineLength && isWhitespace( line[ i ] ) ) {
+			i++;
+		}
+		return i;
+	}
+
+	private int nextWhitespace( int i )
+	{
+		while( i < lineLength && !isWhitespace( line[ i ] ) ) {
+			i++;
+		}
+		return i;
+	}
+
+	private void onLine()
+		throws IOException
+	{
+		if ( state == State.START_LINE ) {
+			if ( lineLength > 0 ) { // Empty lines before the start line are ignored
+				parseStartLine();
+				state = State.HEADER_FIELDS;
+			}
+		} else if ( lineLength == 0 ) {
+			flushField();
+			state = State.DONE;
+		} else if ( isWhitespace( line[ 0 ] ) ) {
+			// Obsolete line folding: the line continues the value of the previous field
+			if ( fieldName == null ) {
+				throw new IOException( "Malformed HTTP header" );
+			}
+			fieldValue = fieldValue + ' ' + lineString( skipWhitespace( 0 ), lineLength ).trim();
+		} else {
+			flushField();
+			int colon = 0;
+			while( colon < lineLength && line[ colon ] != ':' ) {
+				colon++;
+			}
+			if ( colon == 0 || colon == lineLength ) {
+				throw new IOException( "Malformed HTTP header" );
+			}
+			fieldName = lineString( 0, colon ).trim().toLowerCase();
+			fieldValue = lineString( colon + 1, lineLength ).trim();
+		}
+	}
+
+	private void parseStartLine()
+		throws IOException
+	{
+		final int firstEnd = nextWhitespace( 0 );
+		final String first = lineString( 0, firstEnd );
+		if ( first.regionMatches( true, 0, "HTTP/", 0, 5 ) ) {
+			parseStatusLine( first, firstEnd );
+		} else {
+			parseRequestLine( first, firstEnd );
+		}
+	}
+
+	private void parseStatusLine( String version, int versionEnd )
+		throws IOException
+	{
+		message = new HttpMessage( HttpMessage.Type.RESPONSE );
+		final String number = version.substring( 5 );
+		if ( "1.1".equals( number ) ) {
+			message.setVersion( HttpMessage.Version.HTTP_1_1 );
+		} else if ( "1.0".equals( number ) ) {
+			message.setVersion( HttpMessage.Version.HTTP_1_0 );
+		} else {
+			throw new IOException( "Unsupported HTTP version specified: " + number );
+		}
+
+		final int codeBegin = skipWhitespace( versionEnd );
+		final int codeEnd = nextWhitespace( codeBegin );
+		try {
+			message.setStatusCode( Integer.parseInt( lineString( codeBegin, codeEnd ) ) );
+		} catch( NumberFormatException e ) {
+			throw new IOException( "Malformed HTTP header" );
+		}
+		message.setReason( lineString( Math.min( codeEnd + 1, lineLength ), lineLength ) );
+	}
+
+	private void parseRequestLine( String method, int methodEnd )
+		throws IOException
+	{
+		switch( method ) {
+		case "GET":
+			message = new HttpMessage( HttpMessage.Type.GET );
+			break;
+		case "POST":
+			message = new HttpMessage( HttpMessage.Type.POST );
+			break;
+		case "HEAD":
+			message = new HttpMessage( HttpMessage.Type.HEAD );
+			break;
+		case "DELETE":
+			message = new HttpMessage( HttpMessage.Type.DELETE );
+			break;
+		case "PUT":
+			message = new HttpMessage( HttpMessage.Type.PUT );
+			break;
+		case "OPTIONS":
+			message = new HttpMessage( HttpMessage.Type.OPTIONS );
+			break;
+		default:
+			throw new UnsupportedMethodException( "Unknown/Unsupported HTTP request type: " + method );
+		}
+
+		final int pathBegin = skipWhitespace( methodEnd );
+		final int pathEnd = nextWhitespace( pathBegin );
+		message.setRequestPath( URLDecoder.decode( lineString( pathBegin, pathEnd ), HttpUtils.URL_DECODER_ENC ) );
+
+		final int versionBegin = skipWhitespace( pathEnd );
+		final String version = lineString( versionBegin, nextWhitespace( versionBegin ) );
+		if ( !version.regionMatches( true, 0, "HTTP/", 0, 5 ) ) {
+			throw new UnsupportedHttpVersionException( "Invalid HTTP header: expected HTTP version" );
+		}
+		final String number = version.substring( 5 );
+		if ( "1.0".equals( number ) ) {
+			message.setVersion( HttpMessage.Version.HTTP_1_0 );
+		} else if ( "1.1".equals( number ) ) {
+			message.setVersion( HttpMessage.Version.HTTP_1_1 );
+		} else {
+			throw new UnsupportedHttpVersionException( "Unsupported HTTP version specified: " + number );
+		}
+	}
+
+	private void flushField()
+	{
+		if ( fieldName == null ) {
+			return;
+		}
+		final String name = fieldName;
+		final String value = fieldValue;
+		fieldName = null;
+		fieldValue = null;
+
+		if ( "set-cookie".equals( name ) ) {
+			final HttpMessage.Cookie cookie = parseSetCookie( value );
+			if ( cookie != null ) {
+				message.addSetCookie( cookie );
+			}
+		} else if ( "cookie".equals( name ) ) {
+			for( String s : cookiesSplitPattern.split( value ) ) {
+				String nv[] = cookieNameValueSplitPattern.split( s.trim(), 2 );
+				if ( nv.length > 1 ) {
+					message.addCookie( nv[0], nv[1] );
+				}
+			}
+		} else if ( "user-agent".equals( name ) ) {
+			message.setUserAgent( value );
+			message.setProperty( name, value );
+		} else {
+			message.setProperty( name, value );
+		}
+	}
+
+	private static HttpMessage.Cookie parseSetCookie( String cookieString )
+	{
+		String ss[] = cookiesSplitPattern.split( cookieString );
+		if ( cookieString.isEmpty() == false && ss.length > 0 ) {
+			boolean secure = false;
+			String domain = "";
+			String path = "";
+			String expires = "";
+			String nameValue[] = cookieNameValueSplitPattern.split( ss[ 0 ], 2 );
+			if ( nameValue.length < 2 ) {
+				return null;
+			}
+			if ( ss.length > 1 ) {
+				String kv[];
+				for( int i = 1; i < ss.length; i++ ) {
+					if ( "secure".equals( ss[ i ] ) ) {
+						secure = true;
+					} else {
+						kv = cookieNameValueSplitPattern.split( ss[ i ], 2 );
+						if ( kv.length > 1 ) {
+							kv[ 0 ] = kv[ 0 ].trim();
+							if ( "expires".equalsIgnoreCase( kv[ 0 ] ) ) {
+								expires = kv[ 1 ];
+							} else if ( "path".equalsIgnoreCase( kv[ 0 ] ) ) {
+								path = kv[ 1 ];
+							} else if ( "domain".equalsIgnoreCase( kv[ 0 ] ) ) {
+								domain = kv[ 1 ];
+							}
+						}
+					}
+				}
+			}
+			return new HttpMessage.Cookie(
+					nameValue[0],
+					nameValue[1],
+					domain,
+					path,
+					expires,
+					secure
+				);
+		}
+		return null;
+	}
+}
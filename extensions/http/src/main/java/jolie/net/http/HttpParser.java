@@ -22,347 +22,564 @@
 
 package jolie.net.http;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
-import java.net.URI;
-import java.net.URLDecoder;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Arrays;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.InflaterInputStream;
-import jolie.lang.parse.Scanner;
 import jolie.net.ChannelClosingException;
-
+import jolie.net.PreBufferedInputStream;
+
+/**
+ * Parses HTTP messages from an input stream.
+ *
+ * The head of a message is parsed incrementally by a {@link HttpHeadParser}.
+ * When the stream is a {@link PreBufferedInputStream} (as for socket channels), the parser
+ * scans the buffer of the stream in place; otherwise, it reads the stream byte by byte.
+ * After {@link #parseHead()}, the body can be read as a stream through {@link #contentStream(HttpMessage)},
+ * which removes the chunked transfer coding and decodes the content coding on the fly,
+ * read entirely through {@link #readContent(HttpMessage)}, or skipped through {@link #skipContent(HttpMessage)}.
+ * {@link #parse()} parses a whole message at once.
+ */
 public class HttpParser
 {
-	private static final String HTTP = "HTTP";
-	private static final String GET = "GET";
-	private static final String POST = "POST";
-	private static final String PUT = "PUT";
-	private static final String HEAD = "HEAD";
-	private static final String DELETE = "DELETE";
-	private static final String TRACE = "TRACE";
-	private static final String CONNECT = "CONNECT";
-	private static final String OPTIONS = "OPTIONS";
-	private static final String PATCH = "PATCH";
-
-	private static final Pattern cookiesSplitPattern = Pattern.compile( ";" );
-	private static final Pattern cookieNameValueSplitPattern = Pattern.compile( "=" );
-
-	private final HttpScanner scanner;
-	private Scanner.Token token;
-
-	private void getToken()
-		throws IOException
+	private static final int BLOCK_SIZE = 0x1000; // 4K
+
+	/*
+	 * A source of raw bytes, which lets the parser look at buffered data without
+	 * consuming more than what it needs.
+	 */
+	private static abstract class Input
 	{
-		token = scanner.getToken();
+		/**
+		 * Returns a buffer of data to be consumed by advancing its position,
+		 * or {@code null} at the end of the stream.
+		 * {@link #consume(ByteBuffer)} must be called afterwards.
+		 */
+		protected abstract ByteBuffer data() throws IOException;
+
+		protected abstract void consume( ByteBuffer data );
+
+		protected abstract int read( byte[] b, int off, int len ) throws IOException;
+
+		/**
+		 * Consumes the line separators that have already been received, without blocking.
+		 */
+		protected abstract void skipReceivedNewLines() throws IOException;
 	}
 
-	public HttpParser( InputStream istream )
-		throws IOException
+	private static class BufferedInput extends Input
 	{
-		scanner = new HttpScanner( istream, URI.create( "urn:network" ) );
+		private final PreBufferedInputStream stream;
+
+		private BufferedInput( PreBufferedInputStream stream )
+		{
+			this.stream = stream;
+		}
+
+		@Override
+		protected ByteBuffer data()
+			throws IOException
+		{
+			return stream.bufferedData();
+		}
+
+		@Override
+		protected void consume( ByteBuffer data )
+		{
+			stream.consume( data );
+		}
+
+		@Override
+		protected int read( byte[] b, int off, int len )
+			throws IOException
+		{
+			return stream.read( b, off, len );
+		}
+
+		@Override
+		protected void skipReceivedNewLines()
+			throws IOException
+		{
+			while( stream.hasCachedData() ) {
+				final ByteBuffer data = stream.bufferedData();
+				while( data.hasRemaining() && isNewLine( data.get( data.position() ) ) ) {
+					data.get();
+				}
+				final boolean more = !data.hasRemaining();
+				stream.consume( data );
+				if ( !more ) {
+					return;
+				}
+			}
+		}
 	}
 
-	private void tokenAssert( Scanner.TokenType type )
-		throws IOException
+	private static class StreamInput extends Input
 	{
-		if ( token.isNot( type ) )
-			throwException();
+		private final InputStream stream;
+		private final ByteBuffer single = ByteBuffer.allocate( 1 );
+
+		private StreamInput( InputStream stream )
+		{
+			this.stream = stream;
+			single.limit( 0 );
+		}
+
+		@Override
+		protected ByteBuffer data()
+			throws IOException
+		{
+			if ( !single.hasRemaining() ) {
+				final int b = stream.read();
+				if ( b == -1 ) {
+					return null;
+				}
+				single.clear();
+				single.put( 0, (byte) b );
+				single.limit( 1 );
+			}
+			return single;
+		}
+
+		@Override
+		protected void consume( ByteBuffer data )
+		{}
+
+		@Override
+		protected int read( byte[] b, int off, int len )
+			throws IOException
+		{
+			if ( len == 0 ) {
+				return 0;
+			}
+			if ( single.hasRemaining() ) {
+				b[ off ] = single.get();
+				return 1;
+			}
+			return stream.read( b, off, len );
+		}
+
+		@Override
+		protected void skipReceivedNewLines()
+			throws IOException
+		{
+			while( single.hasRemaining() && isNewLine( single.get( single.position() ) ) ) {
+				single.get();
+			}
+			while( !single.hasRemaining() && stream.available() > 0 ) {
+				final ByteBuffer data = data();
+				if ( data == null || !isNewLine( data.get( data.position() ) ) ) {
+					return;
+				}
+				data.get();
+			}
+		}
 	}
 
-	private void throwException()
-		throws IOException
+	private static boolean isNewLine( byte b )
 	{
-		throw new IOException( "Malformed HTTP header" );
+		return b == '\r' || b == '\n';
 	}
 
-	private void parseHeaderProperties( HttpMessage message )
-		throws IOException
+	/*
+	 * The body of a message with a Content-Length.
+	 */
+	private static class FixedLengthInputStream extends InputStream
 	{
-		String name, value;
-		getToken();
-		HttpMessage.Cookie cookie;
-		while( token.is( Scanner.TokenType.ID ) ) {
-			name = token.content().toLowerCase();
-			getToken();
-			tokenAssert( Scanner.TokenType.COLON );
-			value = scanner.readLine();
-			if ( "set-cookie".equals( name ) ) {
-				//cookie = parseSetCookie( value );
-				if ( (cookie=parseSetCookie( value )) != null ) {
-					message.addSetCookie( cookie );
-				}
-			} else if ( "cookie".equals( name ) ) {
-				String ss[] = value.split(  ";" );
-				for( String s : ss ) {
-					String nv[] = s.trim().split( "=", 2 );
-					if ( nv.length > 1 ) {
-						message.addCookie( nv[0], nv[1] );
-					}
-				}
-			} else if ( "user-agent".equals( name ) ) {
-				message.setUserAgent( value );
-				message.setProperty( name, value );
-			} else {
-				message.setProperty( name, value );
+		private final Input input;
+		private long remaining;
+
+		private FixedLengthInputStream( Input input, long length )
+		{
+			this.input = input;
+			this.remaining = length;
+		}
+
+		@Override
+		public int read()
+			throws IOException
+		{
+			final byte[] b = new byte[ 1 ];
+			return ( read( b, 0, 1 ) == -1 ) ? -1 : ( b[ 0 ] & 0xFF );
+		}
+
+		@Override
+		public int read( byte[] b, int off, int len )
+			throws IOException
+		{
+			if ( remaining == 0 ) {
+				return -1;
 			}
-			getToken();
+			final int r = input.read( b, off, (int) Math.min( len, remaining ) );
+			if ( r == -1 ) {
+				throw new EOFException();
+			}
+			remaining -= r;
+			return r;
 		}
 	}
 
-	private HttpMessage.Cookie parseSetCookie( String cookieString )
+	/*
+	 * The body of a message delimited by the closing of the connection.
+	 */
+	private static class UntilCloseInputStream extends InputStream
 	{
-		String ss[] = cookiesSplitPattern.split( cookieString );
-		if ( cookieString.isEmpty() == false && ss.length > 0 ) {
-			boolean secure = false;
-			String domain = "";
-			String path = "";
-			String expires = "";
-			String nameValue[] = cookieNameValueSplitPattern.split( ss[ 0 ], 2 );
-			if ( ss.length > 1 ) {
-				String kv[];
-				for( int i = 1; i < ss.length; i++ ) {
-					if ( "secure".equals( ss[ i ] ) ) {
-						secure = true;
-					} else {
-						kv = cookieNameValueSplitPattern.split( ss[ i ], 2 );
-						if ( kv.length > 1 ) {
-							kv[ 0 ] = kv[ 0 ].trim();
-							if ( "expires".equalsIgnoreCase( kv[ 0 ] ) ) {
-								expires = kv[ 1 ];
-							} else if ( "path".equalsIgnoreCase( kv[ 0 ] ) ) {
-								path = kv[ 1 ];
-							} else if ( "domain".equalsIgnoreCase( kv[ 0 ] ) ) {
-								domain = kv[ 1 ];
-							}
-						}
-					}
-				}
-			}
-			return new HttpMessage.Cookie(
-					nameValue[0],
-					nameValue[1],
-					domain,
-					path,
-					expires,
-					secure
-				);
+		private final Input input;
+
+		private UntilCloseInputStream( Input input )
+		{
+			this.input = input;
+		}
+
+		@Override
+		public int read()
+			throws IOException
+		{
+			final byte[] b = new byte[ 1 ];
+			return ( read( b, 0, 1 ) == -1 ) ? -1 : ( b[ 0 ] & 0xFF );
+		}
+
+		@Override
+		public int read( byte[] b, int off, int len )
+			throws IOException
+		{
+			return input.read( b, off, len );
 		}
-		return null;
 	}
 
-	private HttpMessage parseRequest()
-		throws IOException
+	/*
+	 * The body of a message with the chunked transfer coding.
+	 * Link: http://tools.ietf.org/html/rfc2616#section-3.6.1
+	 */
+	private static class ChunkedInputStream extends InputStream
 	{
-		HttpMessage message = null;
-		if ( token.isKeyword( GET ) ) {
-			message = new HttpMessage( HttpMessage.Type.GET );
-		} else if ( token.isKeyword( POST ) ) {
-			message = new HttpMessage( HttpMessage.Type.POST );
-		} else if ( token.isKeyword( HEAD ) ) {
-			message = new HttpMessage( HttpMessage.Type.HEAD );
-		} else if ( token.isKeyword( DELETE ) ) {
-			message = new HttpMessage( HttpMessage.Type.DELETE );
-		} else if ( token.isKeyword( PUT ) ) {
-			message = new HttpMessage( HttpMessage.Type.PUT );
-		} else if ( token.isKeyword( OPTIONS ) ) {
-			message = new HttpMessage( HttpMessage.Type.OPTIONS );
-		} else if ( token.is( Scanner.TokenType.EOF ) ) {
-			throw new ChannelClosingException( "[http] Remote host closed connection." ); // It's not a real message, the client is just closing a connection.
-		} else {
-			throw new UnsupportedMethodException( "Unknown/Unsupported HTTP request type: "
-				+ token.content() + "(" + token.type() + ")" );
+		private enum State {
+			SIZE, DATA, DATA_END, TRAILER, DONE
 		}
 
-		message.setRequestPath( URLDecoder.decode( scanner.readWord(), HttpUtils.URL_DECODER_ENC ) );
+		private final Input input;
+		private final HttpMessage message;
+		private final StringBuilder sizeLine = new StringBuilder( 16 );
+		private HttpHeadParser trailerParser = null;
+		private State state = State.SIZE;
+		private long remaining = 0;
+
+		private ChunkedInputStream( Input input, HttpMessage message )
+		{
+			this.input = input;
+			this.message = message;
+		}
 
-		getToken();
-		if ( !token.isKeywordIgnoreCase( HTTP ) )
-			throw new UnsupportedHttpVersionException( "Invalid HTTP header: expected HTTP version" );
+		@Override
+		public int read()
+			throws IOException
+		{
+			final byte[] b = new byte[ 1 ];
+			return ( read( b, 0, 1 ) == -1 ) ? -1 : ( b[ 0 ] & 0xFF );
+		}
 
-		if ( scanner.currentCharacter() != '/' )
-			throw new UnsupportedHttpVersionException( "Expected HTTP version" );
+		@Override
+		public int read( byte[] b, int off, int len )
+			throws IOException
+		{
+			while( state != State.DATA ) {
+				if ( state == State.DONE ) {
+					return -1;
+				}
+				final ByteBuffer data = input.data();
+				if ( data == null ) {
+					throw new EOFException();
+				}
+				try {
+					parseFraming( data );
+				} finally {
+					input.consume( data );
+				}
+			}
+			final int r = input.read( b, off, (int) Math.min( len, remaining ) );
+			if ( r == -1 ) {
+				throw new EOFException();
+			}
+			remaining -= r;
+			if ( remaining == 0 ) {
+				state = State.DATA_END;
+			}
+			return r;
+		}
 
-		String version = scanner.readWord();
-		if ( "1.0".equals( version ) )
-			message.setVersion( HttpMessage.Version.HTTP_1_0 );
-		else if ( "1.1".equals( version ) )
-			message.setVersion( HttpMessage.Version.HTTP_1_1 );
-		else
-			throw new UnsupportedHttpVersionException( "Unsupported HTTP version specified: " + version );
+		private void parseFraming( ByteBuffer data )
+			throws IOException
+		{
+			while( data.hasRemaining() && state != State.DATA && state != State.DONE ) {
+				switch( state ) {
+				case SIZE:
+					final byte c = data.get();
+					if ( c == '\n' ) {
+						onSizeLine();
+					} else if ( c != '\r' ) {
+						if ( sizeLine.length() > 1024 ) {
+							throw new IOException( "Illegal chunk size line" );
+						}
+						sizeLine.append( (char) c );
+					}
+					break;
+				case DATA_END:
+					// The CR-LF after the data of a chunk
+					if ( data.get() == '\n' ) {
+						state = State.SIZE;
+					}
+					break;
+				case TRAILER:
+					// Optional trailer (additional HTTP headers)
+					if ( trailerParser.feed( data ) ) {
+						state = State.DONE;
+					}
+					break;
+				default:
+					break;
+				}
+			}
+		}
 
-		return message;
+		private void onSizeLine()
+			throws IOException
+		{
+			// the chunk header contains the size in hex format
+			// and could contain additional parameters which we ignore atm
+			final String chunkSize = sizeLine.toString().split( ";", 2 )[0].trim();
+			sizeLine.setLength( 0 );
+			try {
+				remaining = Long.parseLong( chunkSize, 16 );
+			} catch( NumberFormatException e ) {
+				throw new IOException( "Illegal chunk size " + chunkSize );
+			}
+			if ( remaining < 0 ) {
+				throw new IOException( "Illegal chunk size " + chunkSize );
+			} else if ( remaining == 0 ) {
+				trailerParser = HttpHeadParser.forTrailer( message );
+				state = State.TRAILER;
+			} else {
+				state = State.DATA;
+			}
+		}
 	}
 
-	private HttpMessage parseMessageType()
+	private final Input input;
+
+	public HttpParser( InputStream istream )
 		throws IOException
 	{
-		if ( token.isKeywordIgnoreCase( HTTP ) ) {
-			return parseResponse();
+		if ( istream instanceof PreBufferedInputStream ) {
+			input = new BufferedInput( (PreBufferedInputStream) istream );
 		} else {
-			return parseRequest();
+			input = new StreamInput( istream );
 		}
 	}
 
-	private HttpMessage parseResponse()
+	/**
+	 * Parses the head of the next message (start line and header fields).
+	 * The body of the message, if any, must then be read through {@link #contentStream(HttpMessage)}.
+	 * @return the parsed message, without content
+	 * @throws IOException if the message is malformed or the stream can not be read
+	 */
+	public HttpMessage parseHead()
 		throws IOException
 	{
-		HttpMessage message = new HttpMessage( HttpMessage.Type.RESPONSE );
-		if ( scanner.currentCharacter() != '/' )
-			throw new IOException( "Expected HTTP version" );
+		final HttpHeadParser parser = HttpHeadParser.forHead();
+		boolean done = false;
+		while( !done ) {
+			final ByteBuffer data = input.data();
+			if ( data == null ) {
+				if ( parser.isStarted() ) {
+					throw new EOFException( "Malformed HTTP header" );
+				}
+				// It's not a real message, the client is just closing a connection.
+				throw new ChannelClosingException( "[http] Remote host closed connection." );
+			}
+			try {
+				done = parser.feed( data );
+			} finally {
+				input.consume( data );
+			}
+		}
+		return parser.message();
+	}
 
-		String version = scanner.readWord();
-		if ( !( "1.1".equals( version ) || "1.0".equals( version ) ) )
-			throw new IOException( "Unsupported HTTP version specified: " + version );
+	/**
+	 * Returns the body of a message parsed by {@link #parseHead()} as a stream,
+	 * decoded according to its transfer coding and content coding.
+	 * The stream must be read until its end before parsing the next message.
+	 * @param message the message whose body is to be read
+	 * @return the body of the message, or {@code null} if the message has no body
+	 * @throws IOException if the message uses an unsupported coding
+	 */
+	public InputStream contentStream( HttpMessage message )
+		throws IOException
+	{
+		final InputStream stream = rawContentStream( message );
+		return ( stream == null ) ? null : decode( message, stream );
+	}
+
+	private InputStream rawContentStream( HttpMessage message )
+		throws IOException
+	{
+		String p = message.getProperty( "transfer-encoding" );
+		if ( p != null && p.startsWith( "chunked" ) ) {
+			// Transfer-encoding has the precedence over Content-Length
+			return new ChunkedInputStream( input, message );
+		}
 
-		getToken();
-		tokenAssert( Scanner.TokenType.INT );
-		message.setStatusCode( Integer.parseInt( token.content() ) );
-		message.setReason( scanner.readLine() );
+		p = message.getProperty( "content-length" );
+		if ( p != null && !p.isEmpty() ) {
+			final long contentLength;
+			try {
+				contentLength = Long.parseLong( p );
+			} catch( NumberFormatException e ) {
+				throw new IOException( "Illegal Content-Length value " + p );
+			}
+			if ( contentLength < 0 ) {
+				throw new IOException( "Illegal Content-Length value " + p );
+			}
+			return new FixedLengthInputStream( input, contentLength );
+		}
 
-		return message;
+		HttpMessage.Version version =
+			( message.version() == null ? HttpMessage.Version.HTTP_1_1 : message.version() );
+
+		if ( // Will the connection be closed?
+			// HTTP 1.1
+			(version.equals( HttpMessage.Version.HTTP_1_1 )
+			&&
+			message.getPropertyOrEmptyString( "connection" ).equalsIgnoreCase( "close" ))
+			||
+			// HTTP 1.0
+			(version.equals( HttpMessage.Version.HTTP_1_0 )
+			&&
+			!message.getPropertyOrEmptyString( "connection" ).equalsIgnoreCase( "keep-alive" )
+			)
+		) {
+			return new UntilCloseInputStream( input );
+		}
+		return null;
 	}
 
-	private static void blockingRead( InputStream stream, byte[] buffer, int offset, int length )
+	private static InputStream decode( HttpMessage message, InputStream stream )
 		throws IOException
 	{
-		int s = 0;
-		do {
-			int r = stream.read( buffer, offset+s, length-s );
-			if ( r == -1 ) {
-				throw new EOFException();
+		final String p = message.getProperty( "content-encoding" );
+		if ( p != null ) {
+			if ( p.contains( "deflate" ) ) {
+				return new InflaterInputStream( stream );
+			} else if ( p.contains( "gzip" ) ) {
+				return new GZIPInputStream( stream );
+			} else if ( !p.equals( "identity" ) ) {
+				throw new UnsupportedEncodingException( "Unrecognized Content-Encoding: " + p );
 			}
-			s += r;
-		} while ( s < length );
+		}
+		return stream;
 	}
 
-	private static final int BLOCK_SIZE = 0x1000; // 4K
-
-	private static byte[] readAll( InputStream stream )
+	private static byte[] readAll( InputStream stream, int sizeHint )
 		throws IOException
 	{
+		byte[] buffer = new byte[ sizeHint > 0 ? sizeHint : BLOCK_SIZE ];
+		int count = 0;
 		int r;
-		ByteArrayOutputStream c = new ByteArrayOutputStream();
-		byte[] tmp = new byte[ BLOCK_SIZE ];
-		while( (r=stream.read( tmp, 0, BLOCK_SIZE )) != -1 ) {
-			c.write( tmp, 0, r );
-			tmp = new byte[ BLOCK_SIZE ];
+		while( true ) {
+			if ( count == buffer.length ) {
+				// Check for the end of the stream before growing the buffer
+				final int b = stream.read();
+				if ( b == -1 ) {
+					break;
+				}
+				buffer = Arrays.copyOf( buffer, Math.max( buffer.length * 2, BLOCK_SIZE ) );
+				buffer[ count++ ] = (byte) b;
+			}
+			r = stream.read( buffer, count, buffer.length - count );
+			if ( r == -1 ) {
+				break;
+			}
+			count += r;
 		}
-		return c.toByteArray();
+		return ( count == buffer.length ) ? buffer : Arrays.copyOf( buffer, count );
 	}
 
-	private void readContent( HttpMessage message )
+	private static void drain( InputStream stream )
 		throws IOException
 	{
-		boolean chunked = false;
-		int contentLength = -1;
-
-		String p = message.getProperty( "transfer-encoding" );
+		final byte[] tmp = new byte[ BLOCK_SIZE ];
+		while( stream.read( tmp, 0, tmp.length ) != -1 ) {}
+	}
 
-		if ( p != null && p.startsWith( "chunked" ) ) {
-			// Transfer-encoding has the precedence over Content-Length
-			chunked = true;
-		} else {
-			p = message.getProperty( "content-length" );
-			if ( p != null && !p.isEmpty() ) {
-				try {
-					contentLength = Integer.parseInt( p );
-					if ( contentLength == 0 ) {
-						message.setContent( new byte[0] );
-						return;
-					}
-				} catch( NumberFormatException e ) {
-					throw new IOException( "Illegal Content-Length value " + p );
-				}
-			}
+	private void readBody( HttpMessage message )
+		throws IOException
+	{
+		final InputStream raw = rawContentStream( message );
+		if ( raw == null ) {
+			return;
 		}
 
-		byte buffer[] = null;
-		InputStream stream = scanner.inputStream();
-		if ( chunked ) {
-			// Link: http://tools.ietf.org/html/rfc2616#section-3.6.1
-			List< byte[] > chunks = new ArrayList<> ();
-			int l = -1, totalLen = 0;
-			scanner.readChar();
-			do {
-				// the chunk header contains the size in hex format
-				// and could contain additional parameters which we ignore atm
-				String chunkHeader = scanner.readLine( false );
-				String chunkSize = chunkHeader.split( ";", 2 )[0];
-				try {
-					l = Integer.parseInt( chunkSize, 16 );
-				} catch ( NumberFormatException e ) {
-					throw new IOException( "Illegal chunk size " + chunkSize );
-				}
-				// parses the real chunk with the specified size, follwed by CR-LF
-				if ( l > 0 ) {
-					totalLen += l;
-					byte[] chunk = new byte[ l ];
-					blockingRead( stream, chunk, 0, l );
-					chunks.add( chunk );
-					scanner.readChar();
-					scanner.eatSeparators();
-				}
-			} while ( l > 0 );
-			// parse optional trailer (additional HTTP headers)
-			parseHeaderProperties( message );
-			ByteBuffer b = ByteBuffer.allocate( totalLen );
-			chunks.forEach( b::put );
-			buffer = b.array();
-		} else if ( contentLength > 0 ) {
-			buffer = new byte[ contentLength ];
-			blockingRead( stream, buffer, 0, contentLength );
-		} else {
-			HttpMessage.Version version =
-				( message.version() == null ? HttpMessage.Version.HTTP_1_1 : message.version() );
-
-			if ( // Will the connection be closed?
-				// HTTP 1.1
-				(version.equals( HttpMessage.Version.HTTP_1_1 )
-				&&
-				message.getPropertyOrEmptyString( "connection" ).equalsIgnoreCase( "close" ))
-				||
-				// HTTP 1.0
-				(version.equals( HttpMessage.Version.HTTP_1_0 )
-				&&
-				!message.getPropertyOrEmptyString( "connection" ).equalsIgnoreCase( "keep-alive" )
-				)
-			) {
-				buffer = readAll( scanner.inputStream() );
+		int sizeHint = 0;
+		if ( raw instanceof FixedLengthInputStream && message.getProperty( "content-encoding" ) == null ) {
+			final long length = ((FixedLengthInputStream) raw).remaining;
+			if ( length > Integer.MAX_VALUE - 8 ) {
+				throw new IOException( "Content-Length too large: " + length );
+			}
+			sizeHint = (int) length;
+			if ( sizeHint == 0 ) {
+				message.setContent( new byte[0] );
+				return;
 			}
 		}
 
-		if ( buffer != null ) {
-			p = message.getProperty( "content-encoding" );
-			if ( p != null ) {
-				if ( p.contains( "deflate" ) ) {
-					buffer = readAll( new InflaterInputStream( new ByteArrayInputStream( buffer ) ) );
-				} else if ( p.contains( "gzip" ) ) {
-					buffer = readAll( new GZIPInputStream( new ByteArrayInputStream( buffer ) ) );
-				} else if ( !p.equals( "identity" ) ) {
-					throw new UnsupportedEncodingException( "Unrecognized Content-Encoding: " + p );
-				}
-			}
+		message.setContent( readAll( decode( message, raw ), sizeHint ) );
+		// The content coding may end before the transfer coding does
+		drain( raw );
+	}
 
-			message.setContent( buffer );
+	/**
+	 * Reads the whole body of a message parsed by {@link #parseHead()}, decoded according
+	 * to its transfer coding and content coding, and sets it as the content of the message.
+	 * @param message the message whose body is to be read
+	 * @throws IOException if the body is malformed or the stream can not be read
+	 */
+	public void readContent( HttpMessage message )
+		throws IOException
+	{
+		readBody( message );
+		input.skipReceivedNewLines();
+	}
+
+	/**
+	 * Reads and discards the body of a message parsed by {@link #parseHead()},
+	 * without buffering it.
+	 * @param message the message whose body is to be skipped
+	 * @throws IOException if the body is malformed or the stream can not be read
+	 */
+	public void skipContent( HttpMessage message )
+		throws IOException
+	{
+		final InputStream raw = rawContentStream( message );
+		if ( raw != null ) {
+			drain( raw );
 		}
+		input.skipReceivedNewLines();
 	}
 
+	/**
+	 * Parses the next message, including its whole body.
+	 * @return the parsed message
+	 * @throws IOException if the message is malformed or the stream can not be read
+	 */
 	public HttpMessage parse()
 		throws IOException
 	{
-		getToken();
-		HttpMessage message = parseMessageType();
-		parseHeaderProperties( message );
+		final HttpMessage message = parseHead();
 		readContent( message );
-		scanner.eatSeparatorsUntilEOF();
 		return message;
 	}
 }
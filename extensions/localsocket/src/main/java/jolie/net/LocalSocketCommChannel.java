@@ -65,7 +65,11 @@ public class LocalSocketCommChannel extends StreamingCommChannel implements Poll
 	protected void closeImpl()
 		throws IOException
 	{
-		socket.close();
+		try {
+			socket.close();
+		} finally {
+			protocol().close();
+		}
 	}
 
 	public synchronized boolean isReady()
@@ -0,0 +1,101 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.net;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A JVM-wide pool of heap byte buffers used for encoding and decoding SODEP messages.
+ * Buffers that grew too large are not returned to the pool, so that a few big
+ * messages can not pin a lot of memory.
+ */
+final class SodepBufferPool
+{
+	private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+	private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+	private static final int MAX_POOLED_BUFFERS = 256;
+
+	private static final ConcurrentLinkedQueue< ByteBuffer > buffers = new ConcurrentLinkedQueue<>();
+	private static final AtomicInteger pooledBuffers = new AtomicInteger( 0 );
+
+	private SodepBufferPool() {}
+
+	/**
+	 * Takes a cleared buffer from the pool, or allocates a new one if the pool is empty.
+	 * @return a cleared buffer
+	 */
+	static ByteBuffer acquire()
+	{
+		final ByteBuffer buffer = buffers.poll();
+		if ( buffer == null ) {
+			return ByteBuffer.allocate( INITIAL_BUFFER_SIZE );
+		}
+		pooledBuffers.decrementAndGet();
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * Returns a buffer to the pool.
+	 * @param buffer the buffer to return
+	 */
+	static void release( ByteBuffer buffer )
+	{
+		if ( buffer.capacity() > MAX_POOLED_BUFFER_SIZE ) {
+			return;
+		}
+		if ( pooledBuffers.incrementAndGet() <= MAX_POOLED_BUFFERS ) {
+			buffers.offer( buffer );
+		} else {
+			pooledBuffers.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Returns a buffer that contains the data of the passed one and
+	 * has room for at least the specified number of additional bytes.
+	 * The passed buffer is released if a new one needs to be allocated.
+	 * @param buffer the buffer to grow
+	 * @param needed the number of bytes that must fit in the returned buffer
+	 * @return a buffer with enough remaining space
+	 */
+	static ByteBuffer ensureRemaining( ByteBuffer buffer, int needed )
+	{
+		if ( buffer.remaining() >= needed ) {
+			return buffer;
+		}
+		int capacity = buffer.capacity() * 2;
+		while( capacity - buffer.position() < needed ) {
+			capacity *= 2;
+			if ( capacity < 0 ) {
+				throw new OutOfMemoryError( "Required buffer size too large" );
+			}
+		}
+		final ByteBuffer ret = ByteBuffer.allocate( capacity );
+		buffer.flip();
+		ret.put( buffer );
+		release( buffer );
+		return ret;
+	}
+}
@@ -0,0 +1,287 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.net;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import jolie.runtime.ByteArray;
+import jolie.runtime.FaultException;
+import jolie.runtime.Value;
+import jolie.runtime.ValueVector;
+
+/**
+ * Decodes SODEP messages from a stream, using a pooled scratch buffer.
+ *
+ * Child names are looked up in a JVM-wide table of recently decoded names,
+ * so that repeated names do not allocate a new string each time.
+ */
+final class SodepDecoder
+{
+	private static class CachedKey
+	{
+		private final byte[] bytes;
+		private final String key;
+
+		private CachedKey( byte[] bytes, String key )
+		{
+			this.bytes = bytes;
+			this.key = key;
+		}
+
+		private boolean matches( byte[] array, int length )
+		{
+			if ( bytes.length != length ) {
+				return false;
+			}
+			for( int i = 0; i < length; i++ ) {
+				if ( bytes[ i ] != array[ i ] ) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private static final int KEY_CACHE_SIZE = 1024; // Must be a power of two
+	private static final int MAX_CACHED_KEY_LENGTH = 64;
+	private static final CachedKey[] keyCache = new CachedKey[ KEY_CACHE_SIZE ];
+
+	private final InputStream istream;
+	private final Charset charset;
+	private final boolean isUTF8;
+	private final int maxLength;
+	private ByteBuffer scratch;
+
+	/**
+	 * Constructor.
+	 * @param istream the stream to read from
+	 * @param charset the charset of the strings
+	 * @param maxLength the maximum length of a string or byte array
+	 */
+	SodepDecoder( InputStream istream, Charset charset, int maxLength )
+	{
+		this.istream = istream;
+		this.charset = charset;
+		this.isUTF8 = StandardCharsets.UTF_8.equals( charset );
+		this.maxLength = maxLength;
+		this.scratch = SodepBufferPool.acquire();
+	}
+
+	/**
+	 * Returns the scratch buffer of this decoder to the pool.
+	 */
+	void release()
+	{
+		if ( scratch != null ) {
+			SodepBufferPool.release( scratch );
+			scratch = null;
+		}
+	}
+
+	CommMessage readMessage()
+		throws IOException
+	{
+		return readMessage( readLong() );
+	}
+
+	/**
+	 * Reads the rest of a message whose identifier has already been read.
+	 * @param id the identifier of the message
+	 * @return the read message
+	 * @throws IOException if reading from the stream fails
+	 */
+	CommMessage readMessage( long id )
+		throws IOException
+	{
+		final String resourcePath = readString();
+		final String operationName = readString();
+		FaultException fault = null;
+		if ( readBoolean() ) {
+			final String faultName = readString();
+			fault = new FaultException( faultName, readValue() );
+		}
+		final Value value = readValue();
+		return new CommMessage( id, operationName, resourcePath, value, fault );
+	}
+
+	private Value readValue()
+		throws IOException
+	{
+		final Value value;
+		final byte b = readByte();
+		switch( b ) {
+			case SodepProtocol.DataTypeHeaderId.STRING:
+				value = Value.create( readString() );
+				break;
+			case SodepProtocol.DataTypeHeaderId.INT:
+				value = Value.create( readInt() );
+				break;
+			case SodepProtocol.DataTypeHeaderId.LONG:
+				value = Value.create( readLong() );
+				break;
+			case SodepProtocol.DataTypeHeaderId.DOUBLE:
+				value = Value.create( Double.longBitsToDouble( readLong() ) );
+				break;
+			case SodepProtocol.DataTypeHeaderId.BYTE_ARRAY:
+				value = Value.create( readByteArray() );
+				break;
+			case SodepProtocol.DataTypeHeaderId.BOOL:
+				value = Value.create( readBoolean() );
+				break;
+			case SodepProtocol.DataTypeHeaderId.NULL:
+			default:
+				value = Value.create();
+				break;
+		}
+
+		final int n = readInt(); // How many children?
+		for( int i = 0; i < n; i++ ) {
+			final String key = readKey();
+			final int size = readInt();
+			final ValueVector vec = ValueVector.create();
+			for( int k = 0; k < size; k++ ) {
+				vec.add( readValue() );
+			}
+			value.children().put( key, vec );
+		}
+		return value;
+	}
+
+	private ByteArray readByteArray()
+		throws IOException
+	{
+		final int size = checkLength( readInt() );
+		final byte[] bytes = new byte[ Math.max( size, 0 ) ];
+		readFully( bytes, 0, bytes.length );
+		return new ByteArray( bytes );
+	}
+
+	private String readString()
+		throws IOException
+	{
+		final int length = readInt();
+		if ( length <= 0 ) {
+			return "";
+		}
+		final byte[] array = fill( length );
+		return new String( array, 0, length, charset );
+	}
+
+	private String readKey()
+		throws IOException
+	{
+		final int length = readInt();
+		if ( length <= 0 ) {
+			return "";
+		}
+		final byte[] array = fill( length );
+		if ( !isUTF8 || length > MAX_CACHED_KEY_LENGTH ) {
+			return new String( array, 0, length, charset );
+		}
+
+		int hash = length;
+		for( int i = 0; i < length; i++ ) {
+			hash = 31 * hash + array[ i ];
+		}
+		final int slot = (hash ^ (hash >>> 16)) & (KEY_CACHE_SIZE - 1);
+		final CachedKey cached = keyCache[ slot ];
+		if ( cached != null && cached.matches( array, length ) ) {
+			return cached.key;
+		}
+		final String key = new String( array, 0, length, StandardCharsets.UTF_8 );
+		keyCache[ slot ] = new CachedKey( Arrays.copyOf( array, length ), key );
+		return key;
+	}
+
+	byte readByte()
+		throws IOException
+	{
+		final int b = istream.read();
+		if ( b < 0 ) {
+			throw new EOFException();
+		}
+		return (byte)b;
+	}
+
+	private boolean readBoolean()
+		throws IOException
+	{
+		return readByte() != 0;
+	}
+
+	int readInt()
+		throws IOException
+	{
+		fill( 4 );
+		return scratch.getInt( 0 );
+	}
+
+	long readLong()
+		throws IOException
+	{
+		fill( 8 );
+		return scratch.getLong( 0 );
+	}
+
+	private int checkLength( int length )
+		throws IOException
+	{
+		if ( length > maxLength ) {
+			throw new IOException( "Invalid length in sodep message: " + length );
+		}
+		return length;
+	}
+
+	/*
+	 * Reads the specified number of bytes at the beginning of the scratch buffer,
+	 * and returns its backing array.
+	 */
+	private byte[] fill( int length )
+		throws IOException
+	{
+		checkLength( length );
+		if ( scratch.capacity() < length ) {
+			scratch.clear();
+			scratch = SodepBufferPool.ensureRemaining( scratch, length );
+		}
+		readFully( scratch.array(), 0, length );
+		return scratch.array();
+	}
+
+	private void readFully( byte[] b, int offset, int length )
+		throws IOException
+	{
+		int n = 0;
+		while( n < length ) {
+			final int read = istream.read( b, offset + n, length - n );
+			if ( read < 0 ) {
+				throw new EOFException();
+			}
+			n += read;
+		}
+	}
+}
@@ -0,0 +1,251 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.net;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import jolie.runtime.ByteArray;
+import jolie.runtime.FaultException;
+import jolie.runtime.Value;
+import jolie.runtime.ValueVector;
+
+/**
+ * Encodes SODEP messages into a pooled buffer, which can then be written
+ * to a stream with a single call.
+ *
+ * UTF-8 strings are encoded directly into the buffer, and the encodings of
+ * child names are cached in a JVM-wide table, since the same few names are
+ * sent over and over.
+ */
+final class SodepEncoder
+{
+	private static final int MAX_INTERNED_KEYS = 4096;
+	private static final int MAX_INTERNED_KEY_LENGTH = 64;
+	private static final Map< String, byte[] > internedKeys = new ConcurrentHashMap<>();
+
+	private final Charset charset;
+	private final boolean isUTF8;
+	private ByteBuffer buffer;
+
+	SodepEncoder( Charset charset )
+	{
+		this.charset = charset;
+		this.isUTF8 = StandardCharsets.UTF_8.equals( charset );
+		this.buffer = SodepBufferPool.acquire();
+	}
+
+	/**
+	 * Writes the encoded data to the passed stream.
+	 * @param ostream the stream to write to
+	 * @throws IOException if writing to the stream fails
+	 */
+	void writeTo( OutputStream ostream )
+		throws IOException
+	{
+		ostream.write( buffer.array(), buffer.arrayOffset(), buffer.position() );
+	}
+
+	/**
+	 * Returns the encoded data, from the beginning of the buffer to the current position.
+	 * The returned buffer is valid until {@link #release()} is called.
+	 * @return the encoded data
+	 */
+	ByteBuffer encoded()
+	{
+		return buffer;
+	}
+
+	/**
+	 * Returns the buffer of this encoder to the pool.
+	 */
+	void release()
+	{
+		if ( buffer != null ) {
+			SodepBufferPool.release( buffer );
+			buffer = null;
+		}
+	}
+
+	void writeMessage( CommMessage message )
+	{
+		ensureRemaining( 8 );
+		buffer.putLong( message.id() );
+		writeString( message.resourcePath() );
+		writeString( message.operationName() );
+		final FaultException fault = message.fault();
+		if ( fault == null ) {
+			writeBoolean( false );
+		} else {
+			writeBoolean( true );
+			writeString( fault.faultName() );
+			writeValue( fault.value() );
+		}
+		writeValue( message.value() );
+	}
+
+	private void writeValue( Value value )
+	{
+		final Object valueObject = value.valueObject();
+		ensureRemaining( 9 );
+		if ( valueObject == null ) {
+			buffer.put( SodepProtocol.DataTypeHeaderId.NULL );
+		} else if ( valueObject instanceof String ) {
+			buffer.put( SodepProtocol.DataTypeHeaderId.STRING );
+			writeString( (String)valueObject );
+		} else if ( valueObject instanceof Integer ) {
+			buffer.put( SodepProtocol.DataTypeHeaderId.INT );
+			buffer.putInt( (Integer)valueObject );
+		} else if ( valueObject instanceof Double ) {
+			buffer.put( SodepProtocol.DataTypeHeaderId.DOUBLE );
+			buffer.putDouble( (Double)valueObject );
+		} else if ( valueObject instanceof ByteArray ) {
+			buffer.put( SodepProtocol.DataTypeHeaderId.BYTE_ARRAY );
+			writeBytes( ((ByteArray)valueObject).getBytes() );
+		} else if ( valueObject instanceof Boolean ) {
+			buffer.put( SodepProtocol.DataTypeHeaderId.BOOL );
+			buffer.put( (Boolean)valueObject ? (byte)1 : (byte)0 );
+		} else if ( valueObject instanceof Long ) {
+			buffer.put( SodepProtocol.DataTypeHeaderId.LONG );
+			buffer.putLong( (Long)valueObject );
+		} else {
+			buffer.put( SodepProtocol.DataTypeHeaderId.NULL );
+		}
+
+		if ( !value.hasChildren() ) {
+			ensureRemaining( 4 );
+			buffer.putInt( 0 );
+			return;
+		}
+
+		// Children may change while we encode them, so we patch the counters afterwards.
+		ensureRemaining( 4 );
+		final int childrenCountPosition = buffer.position();
+		buffer.putInt( 0 );
+		int childrenCount = 0;
+		for( Entry< String, ValueVector > entry : value.children().entrySet() ) {
+			writeKey( entry.getKey() );
+			ensureRemaining( 4 );
+			final int sizePosition = buffer.position();
+			buffer.putInt( 0 );
+			int size = 0;
+			for( Value v : entry.getValue() ) {
+				writeValue( v );
+				size++;
+			}
+			buffer.putInt( sizePosition, size );
+			childrenCount++;
+		}
+		buffer.putInt( childrenCountPosition, childrenCount );
+	}
+
+	private void writeBoolean( boolean b )
+	{
+		ensureRemaining( 1 );
+		buffer.put( b ? (byte)1 : (byte)0 );
+	}
+
+	private void writeBytes( byte[] bytes )
+	{
+		ensureRemaining( 4 + bytes.length );
+		buffer.putInt( bytes.length );
+		buffer.put( bytes );
+	}
+
+	private void writeKey( String key )
+	{
+		if ( !isUTF8 || key.length() > MAX_INTERNED_KEY_LENGTH ) {
+			writeString( key );
+			return;
+		}
+
+		byte[] bytes = internedKeys.get( key );
+		if ( bytes == null ) {
+			bytes = key.getBytes( StandardCharsets.UTF_8 );
+			if ( internedKeys.size() < MAX_INTERNED_KEYS ) {
+				internedKeys.putIfAbsent( key, bytes );
+			}
+		}
+		writeBytes( bytes );
+	}
+
+	private void writeString( String str )
+	{
+		if ( str.isEmpty() ) {
+			ensureRemaining( 4 );
+			buffer.putInt( 0 );
+		} else if ( isUTF8 ) {
+			writeUTF8( str );
+		} else {
+			writeBytes( str.getBytes( charset ) );
+		}
+	}
+
+	/*
+	 * Encodes a string in UTF-8 directly into the buffer.
+	 * Unpaired surrogates are replaced by '?', as String.getBytes does.
+	 */
+	private void writeUTF8( String str )
+	{
+		final int length = str.length();
+		ensureRemaining( 4 + length * 3 );
+		final int lengthPosition = buffer.position();
+		final byte[] array = buffer.array();
+		final int start = buffer.arrayOffset() + lengthPosition + 4;
+		int p = start;
+		for( int i = 0; i < length; i++ ) {
+			final char c = str.charAt( i );
+			if ( c < 0x80 ) {
+				array[ p++ ] = (byte)c;
+			} else if ( c < 0x800 ) {
+				array[ p++ ] = (byte)(0xC0 | (c >> 6));
+				array[ p++ ] = (byte)(0x80 | (c & 0x3F));
+			} else if ( Character.isSurrogate( c ) ) {
+				if ( Character.isHighSurrogate( c ) && i + 1 < length && Character.isLowSurrogate( str.charAt( i + 1 ) ) ) {
+					final int codePoint = Character.toCodePoint( c, str.charAt( ++i ) );
+					array[ p++ ] = (byte)(0xF0 | (codePoint >> 18));
+					array[ p++ ] = (byte)(0x80 | ((codePoint >> 12) & 0x3F));
+					array[ p++ ] = (byte)(0x80 | ((codePoint >> 6) & 0x3F));
+					array[ p++ ] = (byte)(0x80 | (codePoint & 0x3F));
+				} else {
+					array[ p++ ] = (byte)'?';
+				}
+			} else {
+				array[ p++ ] = (byte)(0xE0 | (c >> 12));
+				array[ p++ ] = (byte)(0x80 | ((c >> 6) & 0x3F));
+				array[ p++ ] = (byte)(0x80 | (c & 0x3F));
+			}
+		}
+		buffer.putInt( lengthPosition, p - start );
+		buffer.position( lengthPosition + 4 + (p - start) );
+	}
+
+	private void ensureRemaining( int needed )
+	{
+		buffer = SodepBufferPool.ensureRemaining( buffer, needed );
+	}
+}
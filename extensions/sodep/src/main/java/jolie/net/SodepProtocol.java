@@ -21,272 +21,448 @@
 
 package jolie.net;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataInput;
-import java.io.DataInputStream;
-import java.io.DataOutput;
-import java.io.DataOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.nio.charset.Charset;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 import jolie.net.protocols.ConcurrentCommProtocol;
-import jolie.runtime.ByteArray;
-import jolie.runtime.FaultException;
-import jolie.runtime.Value;
-import jolie.runtime.ValueVector;
 import jolie.runtime.VariablePath;
 
+/**
+ * The SODEP protocol.
+ *
+ * If the {@code compression} parameter is set to {@code "deflate"}, every message
+ * is sent inside a frame that starts with {@link #FRAME_MAGIC} (which can never be a message id,
+ * since these are positive), followed by a flag byte telling whether the payload is compressed
+ * and the length of the payload. Payloads of at least {@code compressionThreshold} bytes
+ * (default: {@value #DEFAULT_COMPRESSION_THRESHOLD}) are compressed.
+ * Receivers always accept both plain messages and frames, and once they receive a frame they
+ * use frames for their replies on the same channel, so that only the caller needs to be configured.
+ * Compressed frames are read completely before being inflated, so that the inflater of a
+ * channel is never held while waiting for data from the network.
+ * Frames whose payload is larger than {@code maxFrameSize} bytes (default: {@value #DEFAULT_MAX_FRAME_SIZE}),
+ * either on the wire or once inflated, are refused with an {@link IOException}, and so are
+ * strings and byte arrays of that size in messages sent without frames.
+ */
 public class SodepProtocol extends ConcurrentCommProtocol
 {
-	private static class DataTypeHeaderId {
-		private static final int NULL = 0;
-		private static final int STRING = 1;
-		private static final int INT = 2;
-		private static final int DOUBLE = 3;
-		private static final int BYTE_ARRAY = 4;
-		private static final int BOOL = 5;
-		private static final int LONG = 6;
+	static class DataTypeHeaderId {
+		static final byte NULL = 0;
+		static final byte STRING = 1;
+		static final byte INT = 2;
+		static final byte DOUBLE = 3;
+		static final byte BYTE_ARRAY = 4;
+		static final byte BOOL = 5;
+		static final byte LONG = 6;
 	}
-	
+
+	private static class Parameters {
+		private static final String CHARSET = "charset";
+		private static final String KEEP_ALIVE = "keepAlive";
+		private static final String COMPRESSION = "compression";
+		private static final String COMPRESSION_THRESHOLD = "compressionThreshold";
+		private static final String MAX_FRAME_SIZE = "maxFrameSize";
+	}
+
+	private static class FrameFlags {
+		private static final byte STORED = 0;
+		private static final byte DEFLATE = 1;
+	}
+
+	/**
+	 * A stream that reads at most a given number of bytes from another stream.
+	 */
+	private static class BoundedInputStream extends FilterInputStream
+	{
+		private int remaining;
+
+		private BoundedInputStream( InputStream in, int length )
+		{
+			super( in );
+			this.remaining = length;
+		}
+
+		@Override
+		public int read()
+			throws IOException
+		{
+			if ( remaining <= 0 ) {
+				return -1;
+			}
+			final int b = in.read();
+			if ( b >= 0 ) {
+				remaining--;
+			}
+			return b;
+		}
+
+		@Override
+		public int read( byte[] b, int off, int len )
+			throws IOException
+		{
+			if ( remaining <= 0 ) {
+				return -1;
+			}
+			final int read = in.read( b, off, Math.min( len, remaining ) );
+			if ( read > 0 ) {
+				remaining -= read;
+			}
+			return read;
+		}
+
+		@Override
+		public int available()
+			throws IOException
+		{
+			return Math.min( in.available(), remaining );
+		}
+
+		@Override
+		public void close()
+		{}
+
+		private void skipRemaining()
+			throws IOException
+		{
+			while( remaining > 0 ) {
+				if ( read() < 0 ) {
+					return;
+				}
+			}
+		}
+	}
+
+	private static final long FRAME_MAGIC = 0xFF534F4445505A00L;
+	private static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+	private static final int DEFAULT_MAX_FRAME_SIZE = 64 * 1024 * 1024;
+	private static final String DEFLATE = "deflate";
+
+	private static final LongAdder uncompressedBytesSent = new LongAdder();
+	private static final LongAdder compressedBytesSent = new LongAdder();
+	private static final LongAdder compressedBytesReceived = new LongAdder();
+	private static final LongAdder uncompressedBytesReceived = new LongAdder();
+
+	/**
+	 * Returns the total size of the message frames sent by SODEP channels before compression.
+	 * @return the total size of the sent message frames before compression
+	 */
+	public static long uncompressedBytesSent()
+	{
+		return uncompressedBytesSent.sum();
+	}
+
+	/**
+	 * Returns the total size of the message frames sent by SODEP channels after compression.
+	 * @return the total size of the sent message frames after compression
+	 */
+	public static long compressedBytesSent()
+	{
+		return compressedBytesSent.sum();
+	}
+
+	/**
+	 * Returns the total size of the message frames received by SODEP channels, as read from the wire.
+	 * @return the total size of the received message frames before decompression
+	 */
+	public static long compressedBytesReceived()
+	{
+		return compressedBytesReceived.sum();
+	}
+
+	/**
+	 * Returns the total size of the message frames received by SODEP channels after decompression.
+	 * @return the total size of the received message frames after decompression
+	 */
+	public static long uncompressedBytesReceived()
+	{
+		return uncompressedBytesReceived.sum();
+	}
+
 	public String name()
 	{
 		return "sodep";
 	}
 
-	private Charset stringCharset = Charset.forName( "UTF8" );
+	private Charset stringCharset = StandardCharsets.UTF_8;
+	private volatile boolean peerUsesFrames = false;
+	private final Lock deflaterLock = new ReentrantLock();
+	private final Lock inflaterLock = new ReentrantLock();
+	private Deflater deflater = null; // guarded by deflaterLock
+	private Inflater inflater = null; // guarded by inflaterLock
+	private boolean closed = false; // guarded by both deflaterLock and inflaterLock
 	
-	private String readString( DataInput in )
-		throws IOException
+	public SodepProtocol( VariablePath configurationPath )
 	{
-		int len = in.readInt();
-		if ( len > 0 ) {
-			byte[] bb = new byte[ len ];
-			in.readFully( bb );
-			return new String( bb, stringCharset );
-		}
-		return "";
+		super( configurationPath );
 	}
-	
-	private void writeString( DataOutput out, String str )
-		throws IOException
+
+	private void updateCharset()
 	{
-		if ( str.isEmpty() ) {
-			out.writeInt( 0 );
-		} else {
-			ByteArrayOutputStream bos = new ByteArrayOutputStream();
-			Writer writer = new OutputStreamWriter( bos, stringCharset );
-			writer.write( str );
-			writer.close();
-			byte[] bb = bos.toByteArray();
-			out.writeInt( bb.length );
-			out.write( bb );
+		String charset = getStringParameter( Parameters.CHARSET );
+		if ( !charset.isEmpty() ) {
+			stringCharset = Charset.forName( charset );
 		}
 	}
-	
-	private ByteArray readByteArray( DataInput in )
+
+	private boolean useFrames()
 		throws IOException
 	{
-		int size = in.readInt();
-		ByteArray ret;
-		if ( size > 0 ) {
-			byte[] bytes = new byte[ size ];
-			in.readFully( bytes, 0, size );
-			ret = new ByteArray( bytes );
+		final String compression = getStringParameter( Parameters.COMPRESSION );
+		if ( compression.isEmpty() ) {
+			return peerUsesFrames;
+		} else if ( DEFLATE.equals( compression ) ) {
+			return true;
 		} else {
-			ret = new ByteArray( new byte[0] );
+			throw new IOException( "Unsupported sodep compression: " + compression );
 		}
-		return ret;
 	}
 
-	private void writeByteArray( DataOutput out, ByteArray byteArray )
+	public void send( OutputStream ostream, CommMessage message, InputStream istream )
 		throws IOException
 	{
-		int size = byteArray.size();
-		out.writeInt( size );
-		if ( size > 0 ) {
-			out.write( byteArray.getBytes() );
+		channel().setToBeClosed( !checkBooleanParameter( Parameters.KEEP_ALIVE, true ) );
+		updateCharset();
+		
+		final SodepEncoder encoder = new SodepEncoder( stringCharset );
+		try {
+			encoder.writeMessage( message );
+			if ( useFrames() ) {
+				writeFrame( ostream, encoder.encoded() );
+			} else {
+				encoder.writeTo( ostream );
+			}
+		} finally {
+			encoder.release();
 		}
 	}
-	
-	private void writeFault( DataOutput out, FaultException fault )
-		throws IOException
-	{
-		writeString( out, fault.faultName() );
-		writeValue( out, fault.value() );
-	}
-	
-	private void writeValue( DataOutput out, Value value )
+
+	private void writeFrame( OutputStream ostream, ByteBuffer payload )
 		throws IOException
 	{
-		Object valueObject = value.valueObject();
-		if ( valueObject == null ) {
-			out.writeByte( DataTypeHeaderId.NULL );
-		} else if ( valueObject instanceof String ) {
-			out.writeByte( DataTypeHeaderId.STRING );
-			writeString( out, (String)valueObject );
-		} else if ( valueObject instanceof Integer ) {
-			out.writeByte( DataTypeHeaderId.INT );
-			out.writeInt( (Integer)valueObject );
-		} else if ( valueObject instanceof Double ) {
-			out.writeByte( DataTypeHeaderId.DOUBLE );
-			out.writeDouble( (Double)valueObject );
-		} else if ( valueObject instanceof ByteArray ) {
-			out.writeByte( DataTypeHeaderId.BYTE_ARRAY );
-			writeByteArray( out, (ByteArray)valueObject );
-		} else if ( valueObject instanceof Boolean ) {
-			out.writeByte( DataTypeHeaderId.BOOL );
-			out.writeBoolean( (Boolean)valueObject );
-		} else if ( valueObject instanceof Long ) {
-			out.writeByte( DataTypeHeaderId.LONG );
-			out.writeLong( (Long)valueObject );
-		} else {
-			out.writeByte( DataTypeHeaderId.NULL );
-		}
+		final int threshold = hasParameter( Parameters.COMPRESSION_THRESHOLD )
+			? getIntParameter( Parameters.COMPRESSION_THRESHOLD )
+			: DEFAULT_COMPRESSION_THRESHOLD;
+		final int length = payload.position();
+		final ByteBuffer header = ByteBuffer.allocate( 13 );
+		header.putLong( FRAME_MAGIC );
 
-		Map< String, ValueVector > children = value.children();
-		List< Entry< String, ValueVector > > entries =
-					new LinkedList< Entry< String, ValueVector > >();
-		for( Entry< String, ValueVector > entry : children.entrySet() ) {
-			// if ( !entry.getKey().startsWith( "@" ) ) {
-				entries.add( entry );
-			// }
-		}
-
-		out.writeInt( entries.size() );
-		for( Entry< String, ValueVector > entry : entries ) {
-			writeString( out, entry.getKey() );
-			out.writeInt( entry.getValue().size() );
-			for( Value v : entry.getValue() ) {
-				writeValue( out, v );
+		if ( length >= threshold ) {
+			final ByteBuffer compressed = deflate( payload.array(), length );
+			try {
+				// Incompressible data is sent as it is
+				if ( compressed.position() < length ) {
+					header.put( FrameFlags.DEFLATE ).putInt( compressed.position() );
+					ostream.write( header.array() );
+					ostream.write( compressed.array(), 0, compressed.position() );
+					uncompressedBytesSent.add( length );
+					compressedBytesSent.add( compressed.position() );
+					return;
+				}
+			} finally {
+				SodepBufferPool.release( compressed );
 			}
 		}
+
+		header.put( FrameFlags.STORED ).putInt( length );
+		ostream.write( header.array() );
+		ostream.write( payload.array(), 0, length );
+		uncompressedBytesSent.add( length );
+		compressedBytesSent.add( length );
 	}
-	
-	private void writeMessage( DataOutput out, CommMessage message )
+
+	private ByteBuffer deflate( byte[] data, int length )
 		throws IOException
 	{
-		out.writeLong( message.id() );
-		writeString( out, message.resourcePath() );
-		writeString( out, message.operationName() );
-		FaultException fault = message.fault();
-		if ( fault == null ) {
-			out.writeBoolean( false );
-		} else {
-			out.writeBoolean( true );
-			writeFault( out, fault );
+		deflaterLock.lock();
+		try {
+			if ( closed ) {
+				throw new ClosedChannelException();
+			}
+			if ( deflater == null ) {
+				deflater = new Deflater( Deflater.DEFAULT_COMPRESSION );
+			}
+			deflater.reset();
+			deflater.setInput( data, 0, length );
+			deflater.finish();
+			ByteBuffer out = SodepBufferPool.acquire();
+			while( !deflater.finished() ) {
+				out = SodepBufferPool.ensureRemaining( out, 4096 );
+				final int n = deflater.deflate( out.array(), out.position(), out.remaining() );
+				out.position( out.position() + n );
+			}
+			return out;
+		} finally {
+			deflaterLock.unlock();
 		}
-		writeValue( out, message.value() );
 	}
-	
-	private Value readValue( DataInput in )
+
+	public CommMessage recv( InputStream istream, OutputStream ostream )
 		throws IOException
 	{
-		Value value = Value.create();
-		Object valueObject = null;
-		byte b = in.readByte();
-		switch( b ) {
-			case DataTypeHeaderId.STRING:
-				valueObject = readString( in );
-				break;
-			case DataTypeHeaderId.INT:
-				valueObject = in.readInt();
-				break;
-			case DataTypeHeaderId.LONG:
-				valueObject = in.readLong();
-				break;
-			case DataTypeHeaderId.DOUBLE:
-				valueObject = in.readDouble();
-				break;
-			case DataTypeHeaderId.BYTE_ARRAY:
-				valueObject = readByteArray( in );
-				break;
-			case DataTypeHeaderId.BOOL:
-				valueObject = in.readBoolean();
-				break;
-			case DataTypeHeaderId.NULL:
-			default:
-				break;
-		}
-
-		value.setValue( valueObject );
-				
-		Map< String, ValueVector > children = value.children();
-		String s;
-		int n, i, size, k;
-		n = in.readInt(); // How many children?
-		ValueVector vec;
+		channel().setToBeClosed( !checkBooleanParameter( Parameters.KEEP_ALIVE, true ) );
+		updateCharset();
 		
-		for( i = 0; i < n; i++ ) {
-			s = readString( in );
-			vec = ValueVector.create();
-			size = in.readInt();
-			for( k = 0; k < size; k++ ) {
-				vec.add( readValue( in ) );
+		final int maxFrameSize = maxFrameSize();
+		// Messages sent without frames cannot carry strings or byte arrays larger than a frame either
+		final SodepDecoder decoder = new SodepDecoder( istream, stringCharset, maxFrameSize );
+		try {
+			final long id = decoder.readLong();
+			if ( id == FRAME_MAGIC ) {
+				peerUsesFrames = true;
+				final byte flags = decoder.readByte();
+				final int length = decoder.readInt();
+				return readFrame( istream, flags, length, maxFrameSize );
+			} else {
+				return decoder.readMessage( id );
 			}
-			children.put( s, vec );
+		} finally {
+			decoder.release();
 		}
-		return value;
 	}
-	
-	private FaultException readFault( DataInput in )
-		throws IOException
+
+	private int maxFrameSize()
 	{
-		String faultName = readString( in );
-		Value value = readValue( in );
-		return new FaultException( faultName, value );
+		return hasParameter( Parameters.MAX_FRAME_SIZE )
+			? getIntParameter( Parameters.MAX_FRAME_SIZE )
+			: DEFAULT_MAX_FRAME_SIZE;
 	}
-	
-	private CommMessage readMessage( DataInput in )
+
+	private CommMessage readFrame( InputStream istream, byte flags, int length, int maxFrameSize )
 		throws IOException
 	{
-		long id = in.readLong();
-		String resourcePath = readString( in );
-		String operationName = readString( in );
-		FaultException fault = null;
-		if ( in.readBoolean() == true ) {
-			fault = readFault( in );
+		if ( length < 0 ) {
+			throw new IOException( "Invalid sodep frame length: " + length );
+		}
+		if ( length > maxFrameSize ) {
+			throw new IOException( "Sodep frame of " + length + " bytes exceeds the maximum frame size (" + maxFrameSize + " bytes)" );
 		}
-		Value value = readValue( in );
-		return new CommMessage( id, operationName, resourcePath, value, fault );
+		final CommMessage message;
+		if ( flags == FrameFlags.DEFLATE ) {
+			final ByteBuffer compressed = readFully( istream, length );
+			try {
+				final ByteBuffer inflated = inflate( compressed.array(), length, maxFrameSize );
+				try {
+					uncompressedBytesReceived.add( inflated.position() );
+					message = readPayload( new ByteArrayInputStream( inflated.array(), 0, inflated.position() ), inflated.position() );
+				} finally {
+					SodepBufferPool.release( inflated );
+				}
+			} finally {
+				SodepBufferPool.release( compressed );
+			}
+		} else if ( flags == FrameFlags.STORED ) {
+			final BoundedInputStream payload = new BoundedInputStream( istream, length );
+			message = readPayload( payload, length );
+			payload.skipRemaining();
+			uncompressedBytesReceived.add( length );
+		} else {
+			throw new IOException( "Unsupported sodep frame flags: " + flags );
+		}
+		compressedBytesReceived.add( length );
+		return message;
 	}
-	
-	public SodepProtocol( VariablePath configurationPath )
+
+	private static ByteBuffer readFully( InputStream istream, int length )
+		throws IOException
 	{
-		super( configurationPath );
+		ByteBuffer buffer = SodepBufferPool.ensureRemaining( SodepBufferPool.acquire(), length );
+		try {
+			while( buffer.position() < length ) {
+				final int n = istream.read( buffer.array(), buffer.position(), length - buffer.position() );
+				if ( n < 0 ) {
+					throw new EOFException( "Truncated sodep frame" );
+				}
+				buffer.position( buffer.position() + n );
+			}
+		} catch( IOException e ) {
+			SodepBufferPool.release( buffer );
+			throw e;
+		}
+		return buffer;
 	}
 
-	public void send( OutputStream ostream, CommMessage message, InputStream istream )
+	private ByteBuffer inflate( byte[] data, int length, int maxFrameSize )
 		throws IOException
 	{
-		channel().setToBeClosed( !checkBooleanParameter( "keepAlive", true ) );
-
-		String charset = getStringParameter( "charset" );
-		if ( !charset.isEmpty() ) {
-			stringCharset = Charset.forName( charset );
+		inflaterLock.lock();
+		try {
+			if ( closed ) {
+				throw new ClosedChannelException();
+			}
+			if ( inflater == null ) {
+				inflater = new Inflater();
+			}
+			inflater.reset();
+			inflater.setInput( data, 0, length );
+			ByteBuffer out = SodepBufferPool.acquire();
+			try {
+				while( !inflater.finished() ) {
+					// One byte more than allowed is enough to tell that the frame is too large
+					final int room = (int) Math.min( 4096L, (long) maxFrameSize - out.position() + 1 );
+					out = SodepBufferPool.ensureRemaining( out, room );
+					final int n = inflater.inflate( out.array(), out.position(), room );
+					if ( n == 0 && (inflater.needsInput() || inflater.needsDictionary()) ) {
+						throw new EOFException( "Truncated sodep frame" );
+					}
+					out.position( out.position() + n );
+					if ( out.position() > maxFrameSize ) {
+						throw new IOException( "Inflated sodep frame exceeds the maximum frame size (" + maxFrameSize + " bytes)" );
+					}
+				}
+			} catch( DataFormatException e ) {
+				SodepBufferPool.release( out );
+				throw new IOException( e );
+			} catch( IOException e ) {
+				SodepBufferPool.release( out );
+				throw e;
+			}
+			return out;
+		} finally {
+			inflaterLock.unlock();
 		}
-		
-		final DataOutputStream oos = new DataOutputStream( ostream );
-		writeMessage( oos, message );
 	}
 
-	public CommMessage recv( InputStream istream, OutputStream ostream )
+	private CommMessage readPayload( InputStream payload, int length )
 		throws IOException
 	{
-		channel().setToBeClosed( !checkBooleanParameter( "keepAlive", true ) );
+		final SodepDecoder decoder = new SodepDecoder( payload, stringCharset, length );
+		try {
+			return decoder.readMessage();
+		} finally {
+			decoder.release();
+		}
+	}
 
-		String charset = getStringParameter( "charset" );
-		if ( !charset.isEmpty() ) {
-			stringCharset = Charset.forName( charset );
+	@Override
+	public void close()
+	{
+		deflaterLock.lock();
+		inflaterLock.lock();
+		try {
+			closed = true;
+			if ( deflater != null ) {
+				deflater.end();
+				deflater = null;
+			}
+			if ( inflater != null ) {
+				inflater.end();
+				inflater = null;
+			}
+		} finally {
+			inflaterLock.unlock();
+			deflaterLock.unlock();
 		}
-		
-		final DataInputStream ios = new DataInputStream( istream );
-		return readMessage( ios );
 	}
-}
\ No newline at end of file
+}
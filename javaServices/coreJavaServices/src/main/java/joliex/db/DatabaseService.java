@@ -31,9 +31,16 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import jolie.runtime.ByteArray;
 import jolie.runtime.CanUseJars;
 import jolie.runtime.FaultException;
@@ -41,7 +48,10 @@ import jolie.runtime.JavaService;
 import jolie.runtime.Value;
 import jolie.runtime.ValueVector;
 import jolie.runtime.embedding.RequestResponse;
+import joliex.db.impl.ConnectionPool;
+import joliex.db.impl.LRUCache;
 import joliex.db.impl.NamedStatementParser;
+import joliex.db.impl.PooledConnection;
 
 /**
  * @author Fabrizio Montesi 2008
@@ -62,28 +72,100 @@ import joliex.db.impl.NamedStatementParser;
 } )
 public class DatabaseService extends JavaService
 {
-	private Connection connection = null;
-	private String connectionString = null;
-	private String username = null;
-	private String password = null;
+	private static final int DEFAULT_CONNECTION_POOL_SIZE = 8;
+	private static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+	private static final int PARSED_STATEMENT_CACHE_SIZE = 256;
+	private static final int DEFAULT_BATCH_SIZE = 1000;
+	private static final int DEFAULT_CURSOR_FETCH_SIZE = 100;
+	private static final int DEFAULT_CURSOR_IDLE_TIMEOUT = 60000; // msecs
+	private static final int DEFAULT_CONNECTION_ACQUIRE_TIMEOUT = 30000; // msecs
+	private static final int DEFAULT_MAX_CURSORS = 4;
+
+	private volatile ConnectionPool connectionPool = null;
+	// Cursors hold their connections for long, so they do not take them from connectionPool
+	private volatile ConnectionPool cursorConnectionPool = null;
 	private String driver = null;
 	private static boolean toLowerCase = false;
 	private static boolean toUpperCase = false;
-	private boolean mustCheckConnection = false;
-	private final Object transactionMutex = new Object();
+	private final Map< String, NamedStatementParser > parsedStatements =
+		Collections.synchronizedMap( new LRUCache<>( PARSED_STATEMENT_CACHE_SIZE, null ) );
 	private final static String templateField = "_template";
+	private final static String fetchSizeField = "_fetchSize";
+	private final static String batchSizeField = "_batchSize";
+
+	private final Map< String, Cursor > cursors = new ConcurrentHashMap<>();
+	private volatile long cursorIdleTimeout = DEFAULT_CURSOR_IDLE_TIMEOUT;
+	private ScheduledExecutorService cursorReaper = null;
+
+	/**
+	 * An open result set, which is read a page at a time by {@link #fetch(jolie.runtime.Value)}.
+	 * A cursor holds its connection, taken from the pool of the cursors, until it is closed,
+	 * and must be used while holding its monitor.
+	 */
+	private static class Cursor
+	{
+		private final PooledConnection connection;
+		private final String sql;
+		private final PreparedStatement statement;
+		private final ResultSet result;
+		private final String[] columnLabels;
+		private final int[] columnTypes;
+		// true if the result set is positioned on a row that has not been fetched yet
+		private boolean onRow = false;
+		private boolean closed = false;
+		private long lastAccess = System.currentTimeMillis();
+
+		private Cursor( PooledConnection connection, String sql, PreparedStatement statement, ResultSet result )
+			throws SQLException
+		{
+			this.connection = connection;
+			this.sql = sql;
+			this.statement = statement;
+			this.result = result;
+			final ResultSetMetaData metadata = result.getMetaData();
+			this.columnLabels = columnLabels( metadata );
+			this.columnTypes = columnTypes( metadata );
+		}
+
+		/**
+		 * Reads at most the passed number of rows into the passed vector.
+		 * @return {@code true} if there are more rows to read
+		 */
+		private boolean fetch( int rows, ValueVector vector )
+			throws SQLException
+		{
+			onRow = onRow || result.next();
+			for( int i = 0; i < rows && onRow; i++ ) {
+				rowToValue( result, columnLabels, columnTypes, vector.get( i ) );
+				onRow = result.next();
+			}
+			lastAccess = System.currentTimeMillis();
+			return onRow;
+		}
+
+		private void close( boolean failed )
+		{
+			if ( closed ) {
+				return;
+			}
+			closed = true;
+			try {
+				result.close();
+				statement.setFetchSize( 0 );
+			} catch( SQLException e ) {
+				failed = true;
+			}
+			connection.releaseStatement( sql, statement, failed );
+			releaseCursorConnection( connection, failed );
+		}
+	}
 
 	@Override
 	protected void finalize()
 		throws Throwable
 	{
 		try {
-			if ( connection != null ) {
-				try {
-					connection.close();
-				} catch( SQLException e ) {
-				}
-			}
+			close();
 		} finally {
 			super.finalize();
 		}
@@ -92,14 +174,19 @@ public class DatabaseService extends JavaService
 	@RequestResponse
 	public void close()
 	{
-		if ( connection != null ) {
-			try {
-				connectionString = null;
-				username = null;
-				password = null;
-				connection.close();
-			} catch( SQLException e ) {
-			}
+		stopCursorReaper();
+		for( String id : cursors.keySet() ) {
+			closeCursor( id );
+		}
+		final ConnectionPool pool = connectionPool;
+		if ( pool != null ) {
+			connectionPool = null;
+			pool.close();
+		}
+		final ConnectionPool cursorPool = cursorConnectionPool;
+		if ( cursorPool != null ) {
+			cursorConnectionPool = null;
+			cursorPool.close();
 		}
 	}
 	
@@ -109,7 +196,7 @@ public class DatabaseService extends JavaService
 	{
 		close();
 
-		mustCheckConnection = request.getFirstChild( "checkConnection" ).intValue() > 0;
+		final boolean mustCheckConnection = request.getFirstChild( "checkConnection" ).intValue() > 0;
 
 		toLowerCase = request.getFirstChild( "toLowerCase" ).isDefined() && request.getFirstChild( "toLowerCase" ).boolValue();
 
@@ -119,8 +206,8 @@ public class DatabaseService extends JavaService
 		String host = request.getChildren( "host" ).first().strValue();
 		String port = request.getChildren( "port" ).first().strValue();
 		String databaseName = request.getChildren( "database" ).first().strValue();
-		username = request.getChildren( "username" ).first().strValue();
-		password = request.getChildren( "password" ).first().strValue();
+		final String username = request.getChildren( "username" ).first().strValue();
+		final String password = request.getChildren( "password" ).first().strValue();
 		String attributes = request.getFirstChild( "attributes" ).strValue();
 		String separator = "/";
 		boolean isEmbedded = false;
@@ -160,34 +247,75 @@ public class DatabaseService extends JavaService
 				throw new FaultException( "InvalidDriver", "Unknown type of driver: " + driver );
 			}
 
+			final int poolSize;
+			if ( request.hasChildren( "connectionPoolSize" ) ) {
+				poolSize = Math.max( 1, request.getFirstChild( "connectionPoolSize" ).intValue() );
+			} else {
+				// Concurrent connections to an SQLite database would contend for its file lock
+				poolSize = "sqlite".equals( driver ) ? 1 : DEFAULT_CONNECTION_POOL_SIZE;
+			}
+			final int statementCacheSize = request.hasChildren( "statementCacheSize" )
+				? request.getFirstChild( "statementCacheSize" ).intValue()
+				: DEFAULT_STATEMENT_CACHE_SIZE;
+			final long acquireTimeout = request.hasChildren( "connectionAcquireTimeout" )
+				? Math.max( 0, request.getFirstChild( "connectionAcquireTimeout" ).intValue() )
+				: DEFAULT_CONNECTION_ACQUIRE_TIMEOUT;
+			final int maxCursors = request.hasChildren( "maxCursors" )
+				? Math.max( 1, request.getFirstChild( "maxCursors" ).intValue() )
+				: DEFAULT_MAX_CURSORS;
+			cursorIdleTimeout = request.hasChildren( "cursorIdleTimeout" )
+				? Math.max( 1, request.getFirstChild( "cursorIdleTimeout" ).intValue() )
+				: DEFAULT_CURSOR_IDLE_TIMEOUT;
+
+			final ConnectionPool.ConnectionFactory connectionFactory;
 			if ( isEmbedded ) {
-				connectionString = "jdbc:" + driver + ":" + databaseName;
+				String embeddedConnectionString = "jdbc:" + driver + ":" + databaseName;
 				if ( !attributes.isEmpty() ) {
-					connectionString += ";" + attributes;
+					embeddedConnectionString += ";" + attributes;
 				}
+				final String connectionString = embeddedConnectionString;
 				if ( "hsqldb".equals( driver ) ) {
-					connection = DriverManager.getConnection(
+					connectionFactory = () -> DriverManager.getConnection(
 						connectionString,
 						username,
 						password );
 				} else {
-					connection = DriverManager.getConnection( connectionString );
+					connectionFactory = () -> DriverManager.getConnection( connectionString );
 				}
 			} else {
+				final String connectionString;
 				if ( driver.startsWith( "hsqldb" ) ) {
 					connectionString = "jdbc:" + driver + ":" + driver.substring( driver.indexOf( '_' ) + 1 ) + "//" + host + (port.isEmpty() ? "" : ":" + port) + separator + databaseName;
 				} else {
 					connectionString = "jdbc:" + driver + "://" + host + (port.isEmpty() ? "" : ":" + port) + separator + databaseName;
 				}
-				connection = DriverManager.getConnection(
+				connectionFactory = () -> DriverManager.getConnection(
 					connectionString,
 					username,
 					password );
 			}
 
-			if ( connection == null ) {
-				throw new FaultException( "ConnectionError" );
-			}
+			final String validatedDriver = driver;
+			final ConnectionPool.ConnectionValidator validator =
+				mustCheckConnection ? connection -> isValid( validatedDriver, connection ) : null;
+			final ConnectionPool pool = new ConnectionPool(
+				connectionFactory,
+				validator,
+				poolSize,
+				statementCacheSize,
+				acquireTimeout
+			);
+			// Open the first connection now, to report connection errors to the caller
+			pool.acquire().release();
+			// Connections for cursors are opened when needed
+			cursorConnectionPool = new ConnectionPool(
+				connectionFactory,
+				validator,
+				maxCursors,
+				statementCacheSize,
+				acquireTimeout
+			);
+			connectionPool = pool;
 		} catch( ClassNotFoundException e ) {
 			throw new FaultException( "DriverClassNotFound", e );
 		} catch( SQLException e ) {
@@ -195,60 +323,70 @@ public class DatabaseService extends JavaService
 		}
 	}
 
-	private void _checkConnection()
+	private static boolean isValid( String driver, Connection connection )
+		throws SQLException
+	{
+		if ( "postgresql".equals( driver ) ) {
+			/* The JDBC4 driver for postgresql does not implemented isValid().
+			 * We fallback to isClosed().
+			 */
+			return !connection.isClosed();
+		} else {
+			return connection.isValid( 0 );
+		}
+	}
+
+	private PooledConnection acquireConnection()
+		throws FaultException
+	{
+		return acquireConnection( connectionPool );
+	}
+
+	private static PooledConnection acquireConnection( ConnectionPool pool )
 		throws FaultException
 	{
-		if ( connection == null ) {
+		if ( pool == null ) {
 			throw new FaultException( "ConnectionError" );
 		}
-		if ( mustCheckConnection ) {
-			try {
-				if ( "postgresql".equals( driver ) ) {
-					/* The JDBC4 driver for postgresql does not implemented isValid().
-					 * We fallback to isClosed().
-					 */
-
-					if ( connection.isClosed() ) {
-						connection = DriverManager.getConnection(
-							connectionString,
-							username,
-							password );
-					}
-				} else {
-					if ( !connection.isValid( 0 ) ) {
-						connection = DriverManager.getConnection(
-							connectionString,
-							username,
-							password );
-					}
-				}
-			} catch( SQLException e ) {
-				throw new FaultException( "ConnectionError", e );
-			}
+		try {
+			return pool.acquire();
+		} catch( SQLTimeoutException e ) {
+			// All the connections are busy: the database is reachable, but overloaded
+			throw createFaultException( e );
+		} catch( SQLException e ) {
+			throw new FaultException( "ConnectionError", e );
 		}
 	}
 
+	private NamedStatementParser parseStatement( String sql )
+	{
+		NamedStatementParser parsed = parsedStatements.get( sql );
+		if ( parsed == null ) {
+			parsed = new NamedStatementParser( sql );
+			parsedStatements.put( sql, parsed );
+		}
+		return parsed;
+	}
+
 	@RequestResponse
 	public void checkConnection()
 		throws FaultException
 	{
+		final PooledConnection connection = acquireConnection();
+		boolean valid = false;
 		try {
-			if ( "postgresql".equals( driver ) ) {
-				/* The JDBC4 driver for postgresql does not implemented isValid().
-				 * We fallback to isClosed().
-				 */
-
-				if ( connection == null || connection.isClosed() ) {
-					throw new FaultException( "ConnectionError" );
-				}
-			} else {
-
-				if ( connection == null || !connection.isValid( 0 ) ) {
-					throw new FaultException( "ConnectionError" );
-				}
-			}
+			valid = isValid( driver, connection.connection() );
 		} catch( SQLException e ) {
 			throw new FaultException( "ConnectionError", e );
+		} finally {
+			if ( valid ) {
+				connection.release();
+			} else {
+				connection.discard();
+			}
+		}
+		if ( !valid ) {
+			throw new FaultException( "ConnectionError" );
 		}
 	}
 
@@ -256,27 +394,88 @@ public class DatabaseService extends JavaService
 	public Value update( Value request )
 		throws FaultException
 	{
-		_checkConnection();
 		Value resultValue = Value.create();
+		final NamedStatementParser parsed = parseStatement( request.strValue() );
+		final PooledConnection connection = acquireConnection();
 		PreparedStatement stm = null;
+		boolean failed = true;
 		try {
-			synchronized( transactionMutex ) {
-				stm = new NamedStatementParser( connection, request.strValue(), request ).getPreparedStatement();
-				resultValue.setValue( stm.executeUpdate() );
-			}
+			stm = connection.prepareStatement( parsed.jdbcSql() );
+			parsed.setParameters( stm, request );
+			resultValue.setValue( stm.executeUpdate() );
+			failed = false;
 		} catch( SQLException e ) {
 			throw createFaultException( e );
 		} finally {
-			if ( stm != null ) {
-				try {
-					stm.close();
-				} catch( SQLException e ) {
+			connection.releaseStatement( parsed.jdbcSql(), stm, failed );
+			connection.release();
+		}
+		return resultValue;
+	}
+
+	@RequestResponse
+	public Value updateBatch( Value request )
+		throws FaultException
+	{
+		Value resultValue = Value.create();
+		ValueVector updateCounts = resultValue.getChildren( "updateCount" );
+		final NamedStatementParser parsed = parseStatement( request.strValue() );
+		final int batchSize = request.hasChildren( batchSizeField )
+			? Math.max( 1, request.getFirstChild( batchSizeField ).intValue() )
+			: DEFAULT_BATCH_SIZE;
+		final PooledConnection pooledConnection = acquireConnection();
+		final Connection connection = pooledConnection.connection();
+		PreparedStatement stm = null;
+		boolean failed = true;
+		boolean discard = true;
+		try {
+			connection.setAutoCommit( false );
+			stm = pooledConnection.prepareStatement( parsed.jdbcSql() );
+			int pending = 0;
+			for( Value parameters : request.getChildren( "parameters" ) ) {
+				parsed.setParameters( stm, parameters );
+				stm.addBatch();
+				if ( ++pending == batchSize ) {
+					addUpdateCounts( updateCounts, stm.executeBatch() );
+					pending = 0;
 				}
 			}
+			if ( pending > 0 ) {
+				addUpdateCounts( updateCounts, stm.executeBatch() );
+			}
+			connection.commit();
+			failed = false;
+			discard = false;
+		} catch( SQLException e ) {
+			try {
+				connection.rollback();
+				discard = false;
+			} catch( SQLException e1 ) {
+			}
+			throw createFaultException( e );
+		} finally {
+			pooledConnection.releaseStatement( parsed.jdbcSql(), stm, failed );
+			try {
+				connection.setAutoCommit( true );
+			} catch( SQLException e ) {
+				discard = true;
+			}
+			if ( discard ) {
+				pooledConnection.discard();
+			} else {
+				pooledConnection.release();
+			}
 		}
 		return resultValue;
 	}
 
+	private static void addUpdateCounts( ValueVector vector, int[] updateCounts )
+	{
+		for( int updateCount : updateCounts ) {
+			vector.add( Value.create( updateCount ) );
+		}
+	}
+
 	private static void setValue( Value fieldValue, ResultSet result, int columnType, int index )
 		throws SQLException
 	{
@@ -366,41 +565,49 @@ public class DatabaseService extends JavaService
 		}
 	}
 
+	private static String[] columnLabels( ResultSetMetaData metadata )
+		throws SQLException
+	{
+		final String[] labels = new String[ metadata.getColumnCount() ];
+		for( int i = 0; i < labels.length; i++ ) {
+			labels[ i ] = metadata.getColumnLabel( i + 1 );
+			if ( toLowerCase ) {
+				labels[ i ] = labels[ i ].toLowerCase();
+			} else if ( toUpperCase ) {
+				labels[ i ] = labels[ i ].toUpperCase();
+			}
+		}
+		return labels;
+	}
+
+	private static int[] columnTypes( ResultSetMetaData metadata )
+		throws SQLException
+	{
+		final int[] types = new int[ metadata.getColumnCount() ];
+		for( int i = 0; i < types.length; i++ ) {
+			types[ i ] = metadata.getColumnType( i + 1 );
+		}
+		return types;
+	}
+
+	private static void rowToValue( ResultSet result, String[] columnLabels, int[] columnTypes, Value rowValue )
+		throws SQLException
+	{
+		for( int i = 0; i < columnLabels.length; i++ ) {
+			setValue( rowValue.getFirstChild( columnLabels[ i ] ), result, columnTypes[ i ], i + 1 );
+		}
+	}
+
 	private static void resultSetToValueVector( ResultSet result, ValueVector vector )
 		throws SQLException
 	{
-		Value rowValue, fieldValue;
-		ResultSetMetaData metadata = result.getMetaData();
-		int cols = metadata.getColumnCount();
-		int i;
+		final ResultSetMetaData metadata = result.getMetaData();
+		final String[] labels = columnLabels( metadata );
+		final int[] types = columnTypes( metadata );
 		int rowIndex = 0;
-		if ( toLowerCase ) {
-			while( result.next() ) {
-				rowValue = vector.get( rowIndex );
-				for( i = 1; i <= cols; i++ ) {
-					fieldValue = rowValue.getFirstChild( metadata.getColumnLabel( i ).toLowerCase() );
-					setValue( fieldValue, result, metadata.getColumnType( i ), i );
-				}
-				rowIndex++;
-			}
-		} else if ( toUpperCase ) {
-			while( result.next() ) {
-				rowValue = vector.get( rowIndex );
-				for( i = 1; i <= cols; i++ ) {
-					fieldValue = rowValue.getFirstChild( metadata.getColumnLabel( i ).toUpperCase() );
-					setValue( fieldValue, result, metadata.getColumnType( i ), i );
-				}
-				rowIndex++;
-			}
-		} else {
-			while( result.next() ) {
-				rowValue = vector.get( rowIndex );
-				for( i = 1; i <= cols; i++ ) {
-					fieldValue = rowValue.getFirstChild( metadata.getColumnLabel( i ) );
-					setValue( fieldValue, result, metadata.getColumnType( i ), i );
-				}
-				rowIndex++;
-			}
+		while( result.next() ) {
+			rowToValue( result, labels, types, vector.get( rowIndex ) );
+			rowIndex++;
 		}
 	}
 
@@ -449,10 +656,12 @@ public class DatabaseService extends JavaService
 	public Value executeTransaction( Value request )
 		throws FaultException
 	{
-		_checkConnection();
 		Value resultValue = Value.create();
 		ValueVector resultVector = resultValue.getChildren( "result" );
-		synchronized( transactionMutex ) {
+		final PooledConnection pooledConnection = acquireConnection();
+		final Connection connection = pooledConnection.connection();
+		boolean discard = true;
+		try {
 			try {
 				connection.setAutoCommit( false );
 			} catch( SQLException e ) {
@@ -461,14 +670,19 @@ public class DatabaseService extends JavaService
 
 			Value currResultValue;
 			PreparedStatement stm;
+			NamedStatementParser parsed;
 			int updateCount;
+			boolean failed;
 
 			for( Value statementValue : request.getChildren( "statement" ) ) {
 				currResultValue = Value.create();
 				stm = null;
+				parsed = parseStatement( statementValue.strValue() );
+				failed = true;
 				try {
 					updateCount = -1;
-					stm = new NamedStatementParser( connection, statementValue.strValue(), statementValue ).getPreparedStatement();
+					stm = pooledConnection.prepareStatement( parsed.jdbcSql() );
+					parsed.setParameters( stm, statementValue );
 					if ( stm.execute() == true ) {
 						updateCount = stm.getUpdateCount();
 						if ( updateCount == -1 ) {
@@ -482,21 +696,17 @@ public class DatabaseService extends JavaService
 					}
 					currResultValue.setValue( updateCount );
 					resultVector.add( currResultValue );
+					failed = false;
 				} catch( SQLException e ) {
 					try {
 						connection.rollback();
 					} catch( SQLException e1 ) {
-						connection = null;
+						throw createFaultException( e );
 					}
+					discard = false;
 					throw createFaultException( e );
 				} finally {
-					if ( stm != null ) {
-						try {
-							stm.close();
-						} catch( SQLException e ) {
-							throw createFaultException( e );
-						}
-					}
+					pooledConnection.releaseStatement( parsed.jdbcSql(), stm, failed );
 				}
 			}
 
@@ -504,12 +714,18 @@ public class DatabaseService extends JavaService
 				connection.commit();
 			} catch( SQLException e ) {
 				throw createFaultException( e );
-			} finally {
-				try {
-					connection.setAutoCommit( true );
-				} catch( SQLException e ) {
-					throw createFaultException( e );
-				}
+			}
+			discard = false;
+		} finally {
+			try {
+				connection.setAutoCommit( true );
+			} catch( SQLException e ) {
+				discard = true;
+			}
+			if ( discard ) {
+				pooledConnection.discard();
+			} else {
+				pooledConnection.release();
 			}
 		}
 		return resultValue;
@@ -531,32 +747,163 @@ public class DatabaseService extends JavaService
 	public Value query( Value request )
 		throws FaultException
 	{
-		_checkConnection();
 		Value resultValue = Value.create();
+		final NamedStatementParser parsed = parseStatement( request.strValue() );
+		final PooledConnection connection = acquireConnection();
 		PreparedStatement stm = null;
-
+		boolean failed = true;
 		try {
-			synchronized( transactionMutex ) {
-				stm = new NamedStatementParser( connection, request.strValue(), request ).getPreparedStatement();
-				ResultSet result = stm.executeQuery();
+			stm = connection.prepareStatement( parsed.jdbcSql() );
+			parsed.setParameters( stm, request );
+			try( ResultSet result = stm.executeQuery() ) {
 				if ( request.hasChildren( templateField ) ) {
 					resultSetToValueVectorWithTemplate( result, resultValue.getChildren( "row" ), request.getFirstChild( templateField ) );
 				} else {
 					resultSetToValueVector( result, resultValue.getChildren( "row" ) );
 				}
-				result.close();
 			}
+			failed = false;
 		} catch( SQLException e ) {
 			throw createFaultException( e );
 		} finally {
-			if ( stm != null ) {
+			connection.releaseStatement( parsed.jdbcSql(), stm, failed );
+			connection.release();
+		}
+
+		return resultValue;
+	}
+
+	@RequestResponse
+	public String openCursor( Value request )
+		throws FaultException
+	{
+		final NamedStatementParser parsed = parseStatement( request.strValue() );
+		final int fetchSize = request.hasChildren( fetchSizeField )
+			? request.getFirstChild( fetchSizeField ).intValue()
+			: DEFAULT_CURSOR_FETCH_SIZE;
+		final PooledConnection connection = acquireConnection( cursorConnectionPool );
+		PreparedStatement stm = null;
+		ResultSet result = null;
+		final Cursor cursor;
+		try {
+			// Some drivers, e.g., PostgreSQL, read results in pages only inside a transaction
+			connection.connection().setAutoCommit( false );
+			stm = connection.prepareStatement( parsed.jdbcSql() );
+			parsed.setParameters( stm, request );
+			stm.setFetchSize( fetchSize );
+			result = stm.executeQuery();
+			cursor = new Cursor( connection, parsed.jdbcSql(), stm, result );
+		} catch( SQLException e ) {
+			if ( result != null ) {
 				try {
-					stm.close();
-				} catch( SQLException e ) {
+					result.close();
+				} catch( SQLException e1 ) {
 				}
 			}
+			connection.releaseStatement( parsed.jdbcSql(), stm, true );
+			releaseCursorConnection( connection, false );
+			throw createFaultException( e );
+		}
+
+		final String id = UUID.randomUUID().toString();
+		cursors.put( id, cursor );
+		startCursorReaper();
+		return id;
+	}
+
+	@RequestResponse
+	public Value fetch( Value request )
+		throws FaultException
+	{
+		final String id = request.getFirstChild( "cursor" ).strValue();
+		final int rows = request.hasChildren( "rows" )
+			? request.getFirstChild( "rows" ).intValue()
+			: DEFAULT_CURSOR_FETCH_SIZE;
+		final Cursor cursor = cursors.get( id );
+		if ( cursor == null ) {
+			throw new FaultException( "CursorNotFound", id );
 		}
 
+		Value resultValue = Value.create();
+		synchronized( cursor ) {
+			if ( cursor.closed ) {
+				throw new FaultException( "CursorNotFound", id );
+			}
+			try {
+				final boolean hasMore = cursor.fetch( rows, resultValue.getChildren( "row" ) );
+				resultValue.getFirstChild( "hasMore" ).setValue( hasMore );
+				if ( !hasMore ) {
+					cursors.remove( id, cursor );
+					cursor.close( false );
+				}
+			} catch( SQLException e ) {
+				cursors.remove( id, cursor );
+				cursor.close( true );
+				throw createFaultException( e );
+			}
+		}
 		return resultValue;
 	}
+
+	@RequestResponse
+	public void closeCursor( String id )
+	{
+		final Cursor cursor = cursors.remove( id );
+		if ( cursor != null ) {
+			synchronized( cursor ) {
+				cursor.close( false );
+			}
+		}
+	}
+
+	private static void releaseCursorConnection( PooledConnection connection, boolean failed )
+	{
+		if ( !failed ) {
+			try {
+				connection.connection().setAutoCommit( true );
+			} catch( SQLException e ) {
+				failed = true;
+			}
+		}
+		if ( failed ) {
+			connection.discard();
+		} else {
+			connection.release();
+		}
+	}
+
+	private synchronized void startCursorReaper()
+	{
+		if ( cursorReaper == null ) {
+			cursorReaper = Executors.newSingleThreadScheduledExecutor( runnable -> {
+				final Thread thread = new Thread( runnable, "DatabaseService cursor reaper" );
+				thread.setDaemon( true );
+				return thread;
+			} );
+			final long period = Math.max( 10, cursorIdleTimeout / 2 );
+			cursorReaper.scheduleWithFixedDelay( this::closeIdleCursors, period, period, TimeUnit.MILLISECONDS );
+		}
+	}
+
+	private synchronized void stopCursorReaper()
+	{
+		if ( cursorReaper != null ) {
+			cursorReaper.shutdownNow();
+			cursorReaper = null;
+		}
+	}
+
+	private void closeIdleCursors()
+	{
+		final long now = System.currentTimeMillis();
+		for( Entry< String, Cursor > entry : cursors.entrySet() ) {
+			final Cursor cursor = entry.getValue();
+			synchronized( cursor ) {
+				if ( now - cursor.lastAccess > cursorIdleTimeout ) {
+					cursors.remove( entry.getKey(), cursor );
+					cursor.close( false );
+				}
+			}
+		}
+	}
 }
@@ -0,0 +1,209 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package joliex.db.impl;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded pool of database connections.
+ *
+ * Connections are opened lazily, up to the maximum size of the pool: when all of them
+ * are in use, {@link #acquire()} waits for one to be released, for at most the acquire timeout of the pool.
+ * Idle connections are reused starting from the most recently released one.
+ * If a validator is given, connections are validated before being handed out
+ * and replaced if they are not valid anymore.
+ */
+public class ConnectionPool
+{
+	public static interface ConnectionFactory
+	{
+		public Connection createConnection()
+			throws SQLException;
+	}
+
+	public static interface ConnectionValidator
+	{
+		public boolean isValid( Connection connection )
+			throws SQLException;
+	}
+
+	private final ConnectionFactory factory;
+	private final ConnectionValidator validator; // may be null
+	private final int maxSize;
+	private final int statementCacheSize;
+	private final long acquireTimeout; // msecs
+	// A lock instead of a monitor, so that waiting for a connection does not pin virtual threads
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition released = lock.newCondition();
+	// Guarded by lock
+	private final Deque< PooledConnection > idleConnections = new ArrayDeque<>();
+	private int size = 0; // Number of open connections, both idle and in use
+	private boolean closed = false;
+
+	/**
+	 * @param factory the factory of the connections of this pool
+	 * @param validator the validator for connections taken from the pool, {@code null} for no validation
+	 * @param maxSize the maximum number of open connections
+	 * @param statementCacheSize the number of prepared statements cached by each connection
+	 * @param acquireTimeout the maximum time (in milliseconds) to wait for a connection to be released
+	 */
+	public ConnectionPool( ConnectionFactory factory, ConnectionValidator validator, int maxSize, int statementCacheSize, long acquireTimeout )
+	{
+		if ( maxSize < 1 ) {
+			throw new IllegalArgumentException( "The size of a connection pool must be at least 1" );
+		}
+		this.factory = factory;
+		this.validator = validator;
+		this.maxSize = maxSize;
+		this.statementCacheSize = statementCacheSize;
+		this.acquireTimeout = Math.max( 0L, acquireTimeout );
+	}
+
+	/**
+	 * Takes a connection from this pool, opening a new one or waiting for one to
+	 * be released if none is idle.
+	 * The connection must be given back with {@link PooledConnection#release()}
+	 * or {@link PooledConnection#discard()}.
+	 * @return a connection
+	 * @throws SQLTimeoutException if no connection is released within the acquire timeout of this pool
+	 * @throws SQLException if a new connection cannot be opened, the pool is closed
+	 * or the current thread is interrupted while waiting
+	 */
+	public PooledConnection acquire()
+		throws SQLException
+	{
+		PooledConnection connection;
+		lock.lock();
+		try {
+			long nanos = TimeUnit.MILLISECONDS.toNanos( acquireTimeout );
+			while( true ) {
+				if ( closed ) {
+					throw new SQLException( "The connection pool is closed" );
+				}
+				connection = idleConnections.pollFirst();
+				if ( connection != null ) {
+					break;
+				}
+				if ( size < maxSize ) {
+					size++;
+					break;
+				}
+				if ( nanos <= 0L ) {
+					throw new SQLTimeoutException( "No database connection became available within " + acquireTimeout + " ms" );
+				}
+				try {
+					nanos = released.awaitNanos( nanos );
+				} catch( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+					throw new SQLException( "Interrupted while waiting for a connection", e );
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		if ( connection != null ) {
+			if ( isValid( connection ) ) {
+				return connection;
+			}
+			connection.close();
+		}
+
+		try {
+			return new PooledConnection( this, factory.createConnection(), statementCacheSize );
+		} catch( SQLException | RuntimeException e ) {
+			freeSlot();
+			throw e;
+		}
+	}
+
+	private boolean isValid( PooledConnection connection )
+	{
+		try {
+			return validator == null || validator.isValid( connection.connection() );
+		} catch( SQLException e ) {
+			return false;
+		}
+	}
+
+	void release( PooledConnection connection )
+	{
+		lock.lock();
+		try {
+			if ( !closed ) {
+				idleConnections.addFirst( connection );
+				released.signal();
+				return;
+			}
+			size--;
+		} finally {
+			lock.unlock();
+		}
+		connection.close();
+	}
+
+	void discard( PooledConnection connection )
+	{
+		connection.close();
+		freeSlot();
+	}
+
+	private void freeSlot()
+	{
+		lock.lock();
+		try {
+			size--;
+			released.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Closes this pool and its idle connections.
+	 * Connections in use are closed when they are released.
+	 */
+	public void close()
+	{
+		final PooledConnection[] connections;
+		lock.lock();
+		try {
+			closed = true;
+			connections = idleConnections.toArray( new PooledConnection[ 0 ] );
+			idleConnections.clear();
+			size -= connections.length;
+			released.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		for( PooledConnection connection : connections ) {
+			connection.close();
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package joliex.db.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A map that keeps at most a fixed number of entries, evicting the least recently used ones.
+ * This map is not thread-safe.
+ */
+public class LRUCache< K, V > extends LinkedHashMap< K, V >
+{
+	private static final long serialVersionUID = 1L;
+
+	private final int capacity;
+	private final Consumer< V > evictionListener; // may be null
+
+	/**
+	 * @param capacity the maximum number of entries
+	 * @param evictionListener called with the values that are evicted from the cache, may be {@code null}
+	 */
+	public LRUCache( int capacity, Consumer< V > evictionListener )
+	{
+		super( 16, 0.75f, true );
+		this.capacity = capacity;
+		this.evictionListener = evictionListener;
+	}
+
+	@Override
+	protected boolean removeEldestEntry( Map.Entry< K, V > eldest )
+	{
+		if ( size() > capacity ) {
+			if ( evictionListener != null ) {
+				evictionListener.accept( eldest.getValue() );
+			}
+			return true;
+		}
+		return false;
+	}
+}
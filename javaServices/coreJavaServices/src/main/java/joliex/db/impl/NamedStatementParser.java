@@ -21,14 +21,12 @@
 
 package joliex.db.impl;
 
-import java.sql.Connection;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.ArrayList;
-import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -40,6 +38,10 @@ import jolie.runtime.Value;
  * Commodity class for converting a parametrized
  * query in a valid JDBC {@link PreparedStatement}.
  *
+ * Parsing is separated from the binding of parameters, so that a parsed
+ * statement can be cached and reused by concurrent requests, and its
+ * parameters bound to {@link PreparedStatement}s that are reused as well.
+ *
  * @author Fabrizio Montesi
  * @see PreparedStatement
  */
@@ -52,15 +54,31 @@ public class NamedStatementParser
 	}
 
 	private final Map< String, List< Integer > > parameterPositions = new HashMap< String, List< Integer > >();
-	private final PreparedStatement statement;
-	private final GregorianCalendar cal = new GregorianCalendar();
+	private final String jdbcSql;
 
-	public NamedStatementParser( Connection connection, String sql, Value parameters )
-		throws SQLException
+	public NamedStatementParser( String sql )
+	{
+		jdbcSql = parse( sql );
+	}
+
+	/**
+	 * Returns the JDBC form of the parsed statement, where named parameters are replaced by question marks.
+	 * @return the JDBC form of the parsed statement
+	 */
+	public String jdbcSql()
 	{
-		String jdbcSql = parse( sql );
+		return jdbcSql;
+	}
 
-		statement = connection.prepareStatement( jdbcSql );
+	/**
+	 * Binds the named parameters of the parsed statement to the children of the passed value.
+	 * @param statement a statement prepared from {@link #jdbcSql()}
+	 * @param parameters the value whose children are the parameters of the statement
+	 * @throws SQLException if a parameter cannot be bound
+	 */
+	public void setParameters( PreparedStatement statement, Value parameters )
+		throws SQLException
+	{
 		Value v;
 		for( Entry< String, List< Integer > > entry : parameterPositions.entrySet() ) {
 			v = parameters.getFirstChild( entry.getKey() );
@@ -192,9 +210,4 @@ public class NamedStatementParser
 		}
 		return ret;
 	}
-
-	public PreparedStatement getPreparedStatement()
-	{
-		return statement;
-	}
 }
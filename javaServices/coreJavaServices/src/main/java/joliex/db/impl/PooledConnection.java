@@ -0,0 +1,133 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package joliex.db.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * A connection managed by a {@link ConnectionPool}.
+ *
+ * A pooled connection is used by one thread at a time, and keeps the statements
+ * prepared on it in a cache, so that executing the same SQL again does not
+ * prepare it again.
+ */
+public class PooledConnection
+{
+	private final ConnectionPool pool;
+	private final Connection connection;
+	private final Map< String, PreparedStatement > statements; // null if caching is disabled
+
+	PooledConnection( ConnectionPool pool, Connection connection, int statementCacheSize )
+	{
+		this.pool = pool;
+		this.connection = connection;
+		this.statements =
+			( statementCacheSize > 0 ) ? new LRUCache<>( statementCacheSize, PooledConnection::closeQuietly ) : null;
+	}
+
+	public Connection connection()
+	{
+		return connection;
+	}
+
+	/**
+	 * Returns a statement for the passed SQL, reusing a cached one if possible.
+	 * The parameters of a reused statement are cleared.
+	 * The returned statement must be given back with {@link #releaseStatement(String, PreparedStatement, boolean)}.
+	 * @param sql the JDBC SQL of the statement
+	 * @return a statement for the passed SQL
+	 * @throws SQLException if the statement cannot be prepared
+	 */
+	public PreparedStatement prepareStatement( String sql )
+		throws SQLException
+	{
+		if ( statements != null ) {
+			final PreparedStatement statement = statements.remove( sql );
+			if ( statement != null ) {
+				statement.clearParameters();
+				return statement;
+			}
+		}
+		return connection.prepareStatement( sql );
+	}
+
+	/**
+	 * Gives back a statement obtained with {@link #prepareStatement(String)}.
+	 * @param sql the JDBC SQL of the statement
+	 * @param statement the statement, may be {@code null}
+	 * @param failed {@code true} if using the statement caused an error, in which case it is not reused
+	 */
+	public void releaseStatement( String sql, PreparedStatement statement, boolean failed )
+	{
+		if ( statement == null ) {
+			return;
+		}
+		if ( statements == null || failed ) {
+			closeQuietly( statement );
+		} else {
+			final PreparedStatement old = statements.put( sql, statement );
+			if ( old != null ) {
+				closeQuietly( old );
+			}
+		}
+	}
+
+	/**
+	 * Gives this connection back to the pool it was taken from.
+	 */
+	public void release()
+	{
+		pool.release( this );
+	}
+
+	/**
+	 * Closes this connection instead of giving it back to its pool,
+	 * e.g., because it is in an inconsistent state.
+	 */
+	public void discard()
+	{
+		pool.discard( this );
+	}
+
+	void close()
+	{
+		if ( statements != null ) {
+			statements.values().forEach( PooledConnection::closeQuietly );
+			statements.clear();
+		}
+		try {
+			connection.close();
+		} catch( SQLException e ) {
+		}
+	}
+
+	private static void closeQuietly( PreparedStatement statement )
+	{
+		try {
+			statement.close();
+		} catch( SQLException e ) {
+		}
+	}
+}
@@ -27,10 +27,16 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.management.ManagementFactory;
 import java.lang.management.OperatingSystemMXBean;
+import java.util.Collection;
 import jolie.ExecutionThread;
 import jolie.Interpreter;
 import jolie.lang.Constants;
 import jolie.lang.Constants.EmbeddedServiceType;
+import jolie.monitoring.MonitorDispatcher;
+import jolie.monitoring.metrics.LatencyHistogram;
+import jolie.monitoring.metrics.MetricsRegistry;
+import jolie.monitoring.metrics.OperationMetrics;
+import jolie.monitoring.metrics.PortMetrics;
 import jolie.net.CommListener;
 import jolie.net.LocalCommChannel;
 import jolie.net.ports.OutputPort;
@@ -39,6 +45,7 @@ import jolie.runtime.InvalidIdException;
 import jolie.runtime.JavaService;
 import jolie.runtime.Value;
 import jolie.runtime.ValuePrettyPrinter;
+import jolie.runtime.ValueVector;
 import jolie.runtime.VariablePath;
 import jolie.runtime.VariablePathBuilder;
 import jolie.runtime.embedding.EmbeddedServiceLoader;
@@ -84,7 +91,16 @@ public class RuntimeService extends JavaService
 				true );
 		port.optimizeLocation();
 
-		interpreter.setMonitor( port );
+		final MonitorDispatcher.OverflowPolicy overflowPolicy =
+			"sample".equals( request.getFirstChild( "overflow" ).strValue() )
+			? MonitorDispatcher.OverflowPolicy.SAMPLE
+			: MonitorDispatcher.OverflowPolicy.DROP;
+		interpreter.setMonitor(
+			port,
+			request.hasChildren( "bufferSize" ) ? request.getFirstChild( "bufferSize" ).intValue() : MonitorDispatcher.DEFAULT_BUFFER_SIZE,
+			request.hasChildren( "batchSize" ) ? request.getFirstChild( "batchSize" ).intValue() : MonitorDispatcher.DEFAULT_BATCH_SIZE,
+			overflowPolicy
+		);
 	}
 
 	@RequestResponse
@@ -351,4 +367,57 @@ public class RuntimeService extends JavaService
 			stats.setFirstChild( "maxCount", unixBean.getMaxFileDescriptorCount() );
 		}
 	}
+
+	public Value getMetrics()
+	{
+		final MetricsRegistry registry = interpreter.metrics();
+		final Value metrics = Value.create();
+		metrics.setFirstChild( "uptime", System.currentTimeMillis() - registry.startTime() );
+		metrics_ports( metrics.getChildren( "inputPort" ), registry.inputPorts(), true );
+		metrics_ports( metrics.getChildren( "outputPort" ), registry.outputPorts(), false );
+		return metrics;
+	}
+
+	public String getPrometheusMetrics()
+	{
+		return interpreter.prometheusExporter().scrape();
+	}
+
+	private void metrics_ports( ValueVector vector, Collection< PortMetrics > ports, boolean input )
+	{
+		for( PortMetrics port : ports ) {
+			final Value portValue = Value.create();
+			portValue.setFirstChild( "name", port.name() );
+			portValue.setFirstChild( "bytesReceived", port.bytesReceived() );
+			portValue.setFirstChild( "bytesSent", port.bytesSent() );
+			if ( input ) {
+				portValue.setFirstChild( "rejectedMessages", port.rejectedMessages() );
+			}
+			for( OperationMetrics operation : port.operations() ) {
+				portValue.getChildren( "operation" ).add( metrics_operation( operation ) );
+			}
+			vector.add( portValue );
+		}
+	}
+
+	private Value metrics_operation( OperationMetrics operation )
+	{
+		final Value value = Value.create();
+		value.setFirstChild( "name", operation.name() );
+		value.setFirstChild( "calls", operation.calls() );
+		value.setFirstChild( "faults", operation.faults() );
+		value.setFirstChild( "inFlight", operation.inFlight() );
+		final LatencyHistogram.Snapshot snapshot = operation.latency().snapshot();
+		if ( snapshot.count() > 0L ) {
+			final Value latency = value.getFirstChild( "latency" );
+			latency.setFirstChild( "count", snapshot.count() );
+			latency.setFirstChild( "mean", snapshot.mean() );
+			latency.setFirstChild( "p50", snapshot.valueAtQuantile( 0.5 ) );
+			latency.setFirstChild( "p90", snapshot.valueAtQuantile( 0.9 ) );
+			latency.setFirstChild( "p99", snapshot.valueAtQuantile( 0.99 ) );
+			latency.setFirstChild( "p999", snapshot.valueAtQuantile( 0.999 ) );
+			latency.setFirstChild( "max", snapshot.max() );
+		}
+		return value;
+	}
 }
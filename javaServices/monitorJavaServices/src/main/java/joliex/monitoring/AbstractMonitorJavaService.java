@@ -23,6 +23,7 @@ package joliex.monitoring;
 
 import jolie.monitoring.MonitoringEvent;
 import jolie.runtime.JavaService;
+import jolie.runtime.Value;
 
 /**
  * Abstract class for implementing a {@link JavaService} supporting monitoring.
@@ -31,4 +32,17 @@ import jolie.runtime.JavaService;
 public abstract class AbstractMonitorJavaService extends JavaService
 {
 	public abstract void pushEvent( MonitoringEvent e );
+
+	/**
+	 * Receives a batch of events, as sent by {@link jolie.monitoring.MonitorDispatcher}.
+	 * The default implementation pushes the events one by one.
+	 * @param request the events, in <code>events</code>, and the number of events that the
+	 * sender dropped since the previous batch, in <code>dropped</code>
+	 */
+	public void pushEvents( Value request )
+	{
+		for( Value event : request.getChildren( "events" ) ) {
+			pushEvent( MonitoringEvent.fromValue( event ) );
+		}
+	}
 }
@@ -41,6 +41,7 @@ public class StandardMonitor extends AbstractMonitorJavaService
 	private int queueMax;
 	private int triggerThreshold;
 	private boolean alert;
+	private long dropped = 0L;	// events dropped by the monitored service
 
 	public StandardMonitor()
 	{
@@ -57,15 +58,31 @@ public class StandardMonitor extends AbstractMonitorJavaService
 	{
 		
 		synchronized( this ) {
-			if ( q.size() >= queueMax ) {
-				q.removeFirst();
+			enqueue( e );
+		}
+	}
+
+	@Override
+	public void pushEvents( Value request )
+	{
+		synchronized( this ) {
+			for( Value event : request.getChildren( "events" ) ) {
+				enqueue( MonitoringEvent.fromValue( event ) );
 			}
-			q.addLast( e );
-			if ( triggerEnabled && !alert ) {
-				if ( q.size() >= triggerThreshold ) {
-					sendMessage( CommMessage.createRequest( "monitorAlert", "/", Value.create( ) ) );
-					alert = true;
-				}
+			dropped += request.getFirstChild( "dropped" ).longValue();
+		}
+	}
+
+	private void enqueue( MonitoringEvent e )
+	{
+		if ( q.size() >= queueMax ) {
+			q.removeFirst();
+		}
+		q.addLast( e );
+		if ( triggerEnabled && !alert ) {
+			if ( q.size() >= triggerThreshold ) {
+				sendMessage( CommMessage.createRequest( "monitorAlert", "/", Value.create( ) ) );
+				alert = true;
 			}
 		}
 	}
@@ -84,7 +101,11 @@ public class StandardMonitor extends AbstractMonitorJavaService
 				response.getChildren( "events" ).get( index ).getFirstChild( "type" ).setValue( e.type() );
 				index++;
 			}
+			if ( dropped > 0L ) {
+				response.getFirstChild( "dropped" ).setValue( dropped );
+			}
 			q.clear();
+			dropped = 0L;
 			alert = false;
 			return response;
 		}
@@ -73,10 +73,15 @@ public class CommandLineParser implements Closeable
 	private final JolieClassLoader jolieClassLoader;
 	private final boolean isProgramCompiled;
 	private final boolean typeCheck;
+	private final boolean compileClosures;
 	private final boolean tracer;
 	private final boolean check;
 	private final long responseTimeout;
 	private final boolean printStackTraces;
+	private final boolean virtualThreads;
+	private final int metricsPort;
+	private final String metricsHost;
+	private final File programCacheDirectory;
 	private final Level logLevel;
 	private File programDirectory = null;
 	
@@ -208,6 +213,46 @@ public class CommandLineParser implements Closeable
 		return responseTimeout;
 	}
 
+	/**
+	 * Returns {@code true} if the --virtualThreads option has been specified,
+	 * {@code false} otherwise.
+	 * @return {@code true} if the interpreter should run its threads on virtual threads
+	 */
+	public boolean virtualThreads()
+	{
+		return virtualThreads;
+	}
+
+	/**
+	 * Returns the port of the metrics endpoint
+	 * passed by command line with the --metricsPort option.
+	 * @return the port of the metrics endpoint, or -1 if the endpoint is disabled
+	 */
+	public int metricsPort()
+	{
+		return metricsPort;
+	}
+
+	/**
+	 * Returns the address of the metrics endpoint
+	 * passed by command line with the --metricsHost option.
+	 * @return the address of the metrics endpoint, or {@code null} for the loopback address
+	 */
+	public String metricsHost()
+	{
+		return metricsHost;
+	}
+
+	/**
+	 * Returns the directory of the program image cache
+	 * passed by command line with the --programCache option.
+	 * @return the directory of the program image cache, or {@code null} if the cache is disabled
+	 */
+	public File programCacheDirectory()
+	{
+		return programCacheDirectory;
+	}
+
 	/**
 	 * Returns the connection cache parameter
 	 * passed by command line with the --conncache option.
@@ -261,16 +306,26 @@ public class CommandLineParser implements Closeable
 			getOptionString( "--responseTimeout [number]", "Set the timeout for request-response invocations (in milliseconds)" ) );
 		helpBuilder.append(
 			getOptionString( "--correlationAlgorithm [simple|hash]", "Set the algorithm to use for message correlation" ) );
+		helpBuilder.append(
+			getOptionString( "--virtualThreads", "Run sessions and communication handlers on virtual threads (requires Java 21)" ) );
+		helpBuilder.append(
+			getOptionString( "--metricsPort [number]", "Serve the metrics of the service in the Prometheus format at http://localhost:[number]/metrics" ) );
+		helpBuilder.append(
+			getOptionString( "--metricsHost [address]", "Serve the metrics on the given address instead of the loopback one (e.g., 0.0.0.0 for all the interfaces)" ) );
 		helpBuilder.append(
 			getOptionString( "--log [severe|warning|info|fine]", "Set the logging level (default: info)" ) );
 		helpBuilder.append(
 			getOptionString( "--stackTraces", "Activate the printing of Java stack traces (default: false)" ) );
 		helpBuilder.append(
 			getOptionString( "--typecheck [true|false]", "Check for correlation and other data related typing errors (default: false)" ) );
+		helpBuilder.append(
+			getOptionString( "--compile [true|false]", "Compile integer arithmetic, comparisons and assignments to closures (default: true)" ) );
 		helpBuilder.append(
 			getOptionString( "--check", "Check for syntactic and semantic errors." ) );
 		helpBuilder.append(
 			getOptionString( "--trace", "Activate tracer" ) );
+		helpBuilder.append(
+			getOptionString( "--programCache [directory|none]", "Cache parsed and verified programs in the given directory, or disable the cache (default: none)" ) );
 		helpBuilder.append(
 			getOptionString( "--charset [character encoding, e.g., UTF-8]", "Character encoding of the source *.ol/*.iol (default: system-dependent, on GNU/Linux UTF-8)" ) );
 		helpBuilder.append(
@@ -383,8 +438,13 @@ public class CommandLineParser implements Closeable
 		List< String > optionsList = new ArrayList<>();
 		boolean bTracer = false;
 		boolean bStackTraces = false;
+		boolean bVirtualThreads = false;
+		int mPort = -1;
+		String mHost = null;
+		String pCacheDir = null;
 		boolean bCheck = false;
 		boolean bTypeCheck = false; // Default for typecheck
+		boolean bCompileClosures = true;
 		Level lLogLevel = Level.INFO;
 		List< String > programArgumentsList = new ArrayList<>();
 		Deque< String > includeList = new LinkedList<>();
@@ -461,9 +521,34 @@ public class CommandLineParser implements Closeable
 				} else if ( "true".equals( typeCheckStr ) ) {
 					bTypeCheck = true;
 				}
+			} else if ( "--compile".equals( argsList.get( i ) ) ) {
+				optionsList.add( argsList.get( i ) );
+				i++;
+				String compileStr = argsList.get( i );
+				optionsList.add( argsList.get( i ) );
+				if ( "false".equals( compileStr ) ) {
+					bCompileClosures = false;
+				} else if ( "true".equals( compileStr ) ) {
+					bCompileClosures = true;
+				}
 			} else if ( "--stackTraces".equals( argsList.get( i ) ) ) {
 				optionsList.add( argsList.get( i ) );
 				bStackTraces = true;
+			} else if ( "--virtualThreads".equals( argsList.get( i ) ) ) {
+				optionsList.add( argsList.get( i ) );
+				bVirtualThreads = true;
+			} else if ( "--metricsPort".equals( argsList.get( i ) ) ) {
+				// Not passed on to embedded services, which would compete for the port
+				i++;
+				mPort = Integer.parseInt( argsList.get( i ) );
+			} else if ( "--metricsHost".equals( argsList.get( i ) ) ) {
+				i++;
+				mHost = argsList.get( i );
+			} else if ( "--programCache".equals( argsList.get( i ) ) ) {
+				optionsList.add( argsList.get( i ) );
+				i++;
+				pCacheDir = "none".equals( argsList.get( i ) ) ? null : argsList.get( i );
+				optionsList.add( argsList.get( i ) );
 			} else if ( "--check".equals( argsList.get( i ) ) ) {
 				optionsList.add( argsList.get( i ) );
 				bCheck = true;
@@ -543,8 +628,16 @@ public class CommandLineParser implements Closeable
 		}
 
 		typeCheck = bTypeCheck;
+		compileClosures = bCompileClosures;
 		logLevel = lLogLevel;
 		printStackTraces = bStackTraces;
+		virtualThreads = bVirtualThreads;
+		metricsPort = mPort;
+		metricsHost = mHost;
+		programCacheDirectory = pCacheDir == null ? null : new File( pCacheDir );
+		if ( virtualThreads && !JolieVirtualThreads.isSupported() ) {
+			throw new CommandLineException( "Virtual threads are not supported by this Java runtime (Java 21 or later is required)" );
+		}
 
 		correlationAlgorithmType = CorrelationEngine.Type.fromString( csetAlgorithmName );
 		if ( correlationAlgorithmType == null ) {
@@ -664,6 +757,16 @@ public class CommandLineParser implements Closeable
 		return typeCheck;
 	}
 
+	/**
+	 * Returns the value of the --compile option.
+	 * @return the value of the --compile option.
+	 * @see jolie.compiler.ClosureCompiler
+	 */
+	public boolean compileClosures()
+	{
+		return compileClosures;
+	}
+
 	/**
 	 * Returns the classloader to use for the program.
 	 * @return the classloader to use for the program.
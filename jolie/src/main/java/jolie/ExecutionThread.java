@@ -30,6 +30,8 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import jolie.lang.Constants;
 import jolie.net.CommChannelHandler;
@@ -157,15 +159,36 @@ public abstract class ExecutionThread extends JolieThread
 		{
 			compMap.putAll( otherScope.compMap );
 		}
+
+		/**
+		 * Returns <code>true</code> if this scope has any fault or termination/compensation handler
+		 * installed by the program. The default fault handlers, which only log their faults, are not counted.
+		 * @return <code>true</code> if this scope has any handler, <code>false</code> otherwise
+		 */
+		public boolean hasHandlers()
+		{
+			if ( !compMap.isEmpty() ) {
+				return true;
+			}
+			for( Process handler : faultMap.values() ) {
+				if ( !(handler instanceof SessionThread.DefaultFaultHandler) ) {
+					return true;
+				}
+			}
+			return false;
+		}
 	}
 
-	protected final Process process;
+	// Not final, since recycled session threads execute a new process each time
+	protected Process process;
 	protected final Deque< Scope > scopeStack = new ArrayDeque<>();
 	protected final ExecutionThread parent;
 	private final Deque< WeakReference< Future< ? > > > futureToCancel = new ArrayDeque<>();
+	// A lock instead of a monitor, so that contention does not pin virtual threads
+	private final Lock lock = new ReentrantLock();
 	private boolean canBeInterrupted = false;
 	private FaultException killerFault = null;
-	private Future<?> taskFuture;
+	private volatile Future<?> taskFuture;
 	
 	private void setTaskFuture( Future<?> taskFuture )
 	{
@@ -204,23 +227,43 @@ public abstract class ExecutionThread extends JolieThread
 		this.parent = null;
 	}
 
+	/**
+	 * Prepares this thread for executing another process, clearing what is left of its
+	 * previous execution. The thread must not be running.
+	 * The new process must then be set with {@link #setProcess(jolie.process.Process)}.
+	 */
+	protected void recycle()
+	{
+		process = null;
+		scopeStack.clear();
+		futureToCancel.clear();
+		canBeInterrupted = false;
+		killerFault = null;
+		taskFuture = null;
+	}
+
 	/**
 	 * Kills this ExecutionThread, interrupting its activity as soon as possible.
 	 * @param fault the fault causing the interruption.
 	 */
-	public synchronized void kill( FaultException fault )
+	public void kill( FaultException fault )
 	{
-		killerFault = fault;
+		lock.lock();
+		try {
+			killerFault = fault;
 
-		while( !futureToCancel.isEmpty() ) {
-			final WeakReference< Future< ? > > ref = futureToCancel.poll();
-			if ( ref.get() != null ) {
-				ref.get().cancel( true );
+			while( !futureToCancel.isEmpty() ) {
+				final WeakReference< Future< ? > > ref = futureToCancel.poll();
+				if ( ref.get() != null ) {
+					ref.get().cancel( true );
+				}
 			}
-		}
 		
-		if( canBeInterrupted ) {
-			taskFuture.cancel( canBeInterrupted );
+			if( canBeInterrupted ) {
+				taskFuture.cancel( canBeInterrupted );
+			}
+		} finally {
+			lock.unlock();
 		}
 	}
 	
@@ -254,13 +297,18 @@ public abstract class ExecutionThread extends JolieThread
 	 * Returns the compensator of the current executing scope.
 	 * @return the compensator of the current executing scope.
 	 */
-	public synchronized Process getCurrentScopeCompensation()
+	public Process getCurrentScopeCompensation()
 	{
-		if( scopeStack.isEmpty() && parent != null ) {
-			return parent.getCurrentScopeCompensation();
-		}
+		lock.lock();
+		try {
+			if( scopeStack.isEmpty() && parent != null ) {
+				return parent.getCurrentScopeCompensation();
+			}
 		
-		return scopeStack.peek().getSelfCompensation();
+			return scopeStack.peek().getSelfCompensation();
+		} finally {
+			lock.unlock();
+		}
 	}
 	
 	/**
@@ -268,13 +316,18 @@ public abstract class ExecutionThread extends JolieThread
 	 * @param id the scope name owning the compensator to retrieve
 	 * @return the compensator for scope name id.
 	 */
-	public synchronized Process getCompensation( String id )
+	public Process getCompensation( String id )
 	{
-		if ( scopeStack.isEmpty() && parent != null ) {
-			return parent.getCompensation( id );
-		}
+		lock.lock();
+		try {
+			if ( scopeStack.isEmpty() && parent != null ) {
+				return parent.getCompensation( id );
+			}
 		
-		return scopeStack.peek().getCompensation( id );
+			return scopeStack.peek().getCompensation( id );
+		} finally {
+			lock.unlock();
+		}
 	}
 	
 	/**
@@ -284,35 +337,50 @@ public abstract class ExecutionThread extends JolieThread
 	 * @see #popScope(boolean)
 	 * @return true if this thread is executing inside a scope.
 	 */
-	public synchronized boolean hasScope()
+	public boolean hasScope()
 	{
-		return !scopeStack.isEmpty();
+		lock.lock();
+		try {
+			return !scopeStack.isEmpty();
+		} finally {
+			lock.unlock();
+		}
 	}
 	
 	/**
 	 * Returns the id of the current executing scope.
 	 * @return the id of the current executing scope.
 	 */
-	public synchronized String currentScopeId()
+	public String currentScopeId()
 	{
-		if( scopeStack.isEmpty() && parent != null ) {
-			return parent.currentScopeId();
-		}
+		lock.lock();
+		try {
+			if( scopeStack.isEmpty() && parent != null ) {
+				return parent.currentScopeId();
+			}
 		
-		return scopeStack.peek().id();
+			return scopeStack.peek().id();
+		} finally {
+			lock.unlock();
+		}
 	}
 	
 	/**
 	 * Registers a future to be cancelled when this thread is killed.
 	 * @param f the future to cancel
 	 */
-	public synchronized void cancelIfKilled( Future< ? > f )
+	public void cancelIfKilled( Future< ? > f )
 	{
-		cleanFuturesToKill();
-		if ( isKilled() ) {
-			f.cancel( true );
+		lock.lock();
+		try {
+			cleanFuturesToKill();
+			if ( isKilled() ) {
+				f.cancel( true );
+			}
+			futureToCancel.add( new WeakReference<>( f ) );
+		} finally {
+			lock.unlock();
 		}
-		futureToCancel.add( new WeakReference<>( f ) );
 	}
 	
 	private void cleanFuturesToKill()
@@ -335,22 +403,51 @@ public abstract class ExecutionThread extends JolieThread
 	 *		removed before returning it.
 	 * @return the current fault handler for fault id.
 	 */
-	public synchronized Process getFaultHandler( String id, boolean erase )
+	public Process getFaultHandler( String id, boolean erase )
 	{
-		if ( scopeStack.isEmpty() && parent != null ) {
-			return parent.getFaultHandler( id, erase );
-		}
+		lock.lock();
+		try {
+			if ( scopeStack.isEmpty() && parent != null ) {
+				return parent.getFaultHandler( id, erase );
+			}
 		
-		return scopeStack.peek().getFaultHandler( id, erase );
+			return scopeStack.peek().getFaultHandler( id, erase );
+		} finally {
+			lock.unlock();
+		}
 	}
 	
+	/**
+	 * Returns <code>true</code> if the current scope has any fault or termination/compensation handler
+	 * installed by the program, i.e., if some handler may still run after the current process.
+	 * @return <code>true</code> if the current scope has any handler
+	 */
+	public boolean hasHandlers()
+	{
+		lock.lock();
+		try {
+			if ( scopeStack.isEmpty() && parent != null ) {
+				return parent.hasHandlers();
+			}
+
+			return !scopeStack.isEmpty() && scopeStack.peek().hasHandlers();
+		} finally {
+			lock.unlock();
+		}
+	}
+
 	/**
 	 * Pushes scope id as the new current executing scope in the scope stack of this thread.
 	 * @param id the id of the scope to push.
 	 */
-	public synchronized void pushScope( String id )
+	public void pushScope( String id )
 	{
-		scopeStack.push( new Scope( id ) );
+		lock.lock();
+		try {
+			scopeStack.push( new Scope( id ) );
+		} finally {
+			lock.unlock();
+		}
 	}
 	
 	/**
@@ -358,11 +455,16 @@ public abstract class ExecutionThread extends JolieThread
 	 * @param merge <code>true</code> if the popped scope compensators
 	 *		should be propagated upstream to the parent scope.
 	 */
-	public synchronized void popScope( boolean merge )
+	public void popScope( boolean merge )
 	{
-		final Scope s = scopeStack.pop();
-		if ( merge ) {
-			mergeCompensations( s );
+		lock.lock();
+		try {
+			final Scope s = scopeStack.pop();
+			if ( merge ) {
+				mergeCompensations( s );
+			}
+		} finally {
+			lock.unlock();
 		}
 	}
 	
@@ -370,19 +472,29 @@ public abstract class ExecutionThread extends JolieThread
 	 * Pops the current executing scope from the scope stack of this thread.
 	 * This method is a shortcut for <code>popScope(true)</code>.
 	 */
-	public synchronized void popScope()
+	public void popScope()
 	{
-		popScope( true );
+		lock.lock();
+		try {
+			popScope( true );
+		} finally {
+			lock.unlock();
+		}
 	}
 	
-	private synchronized void mergeCompensations( Scope s )
+	private void mergeCompensations( Scope s )
 	{
-		if ( scopeStack.isEmpty() ) {
-			if ( parent != null ) {
-				parent.mergeCompensations( s );
+		lock.lock();
+		try {
+			if ( scopeStack.isEmpty() ) {
+				if ( parent != null ) {
+					parent.mergeCompensations( s );
+				}
+			} else {
+				scopeStack.peek().mergeCompensations( s );
 			}
-		} else {
-			scopeStack.peek().mergeCompensations( s );
+		} finally {
+			lock.unlock();
 		}
 	}
 	
@@ -390,12 +502,17 @@ public abstract class ExecutionThread extends JolieThread
 	 * Installs process as the compensator for the current scope.
 	 * @param process the process to install as compensator for the current scope
 	 */
-	public synchronized void installCompensation( Process process )
+	public void installCompensation( Process process )
 	{
-		if ( scopeStack.isEmpty() && parent != null ) {
-			parent.installCompensation( process );
-		} else {
-			scopeStack.peek().installCompensation( process );
+		lock.lock();
+		try {
+			if ( scopeStack.isEmpty() && parent != null ) {
+				parent.installCompensation( process );
+			} else {
+				scopeStack.peek().installCompensation( process );
+			}
+		} finally {
+			lock.unlock();
 		}
 	}
 	
@@ -404,12 +521,17 @@ public abstract class ExecutionThread extends JolieThread
 	 * @param id the fault to be handled by process
 	 * @param process the Process to be called for handling fault id
 	 */
-	public synchronized void installFaultHandler( String id, Process process )
+	public void installFaultHandler( String id, Process process )
 	{
-		if ( scopeStack.isEmpty() && parent != null ) {
-			parent.installFaultHandler( id, process );
-		} else {
-			scopeStack.peek().installFaultHandler( id, process );
+		lock.lock();
+		try {
+			if ( scopeStack.isEmpty() && parent != null ) {
+				parent.installFaultHandler( id, process );
+			} else {
+				scopeStack.peek().installFaultHandler( id, process );
+			}
+		} finally {
+			lock.unlock();
 		}
 	}
 	
@@ -428,7 +550,7 @@ public abstract class ExecutionThread extends JolieThread
 			return ((CommChannelHandler)currThread).executionThread();
 		}
 
-		return null;
+		return JolieVirtualThreads.currentExecutionThread();
 	}
 
 	/**
@@ -457,6 +579,15 @@ public abstract class ExecutionThread extends JolieThread
 		return process;
 	}
 
+	/**
+	 * Sets the Process to be executed by a recycled thread.
+	 * @param process the Process to be executed by this thread
+	 */
+	protected void setProcess( Process process )
+	{
+		this.process = process;
+	}
+
 	public abstract String getSessionId();
 	
 	public abstract void runProcess();
@@ -465,8 +596,12 @@ public abstract class ExecutionThread extends JolieThread
 	public final void run()
 	{
 		JolieExecutorThread t = JolieExecutorThread.currentThread();
-		t.setExecutionThread( this );
-		t.setContextClassLoader( interpreter().getClassLoader() );
+		if ( t == null ) {
+			JolieVirtualThreads.setCurrentExecutionThread( this );
+		} else {
+			t.setExecutionThread( this );
+		}
+		Thread.currentThread().setContextClassLoader( interpreter().getClassLoader() );
 		runProcess();
 	}
 	
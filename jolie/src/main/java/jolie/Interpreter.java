@@ -19,15 +19,17 @@
 
 package jolie;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.PrintStream;
 import java.io.StringWriter;
 import java.lang.ref.WeakReference;
-import java.net.URISyntaxException;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -41,11 +43,12 @@ import java.util.Queue;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -65,11 +68,15 @@ import jolie.lang.parse.SemanticException;
 import jolie.lang.parse.SemanticVerifier;
 import jolie.lang.parse.TypeChecker;
 import jolie.lang.parse.ast.Program;
+import jolie.lang.parse.util.ProgramImage;
+import jolie.monitoring.MonitorDispatcher;
 import jolie.monitoring.MonitoringEvent;
 import jolie.monitoring.events.MonitorAttachedEvent;
 import jolie.monitoring.events.OperationStartedEvent;
 import jolie.monitoring.events.SessionEndedEvent;
 import jolie.monitoring.events.SessionStartedEvent;
+import jolie.monitoring.metrics.MetricsRegistry;
+import jolie.monitoring.metrics.PrometheusExporter;
 import jolie.net.CommChannel;
 import jolie.net.CommCore;
 import jolie.net.CommMessage;
@@ -84,6 +91,7 @@ import jolie.runtime.InvalidIdException;
 import jolie.runtime.OneWayOperation;
 import jolie.runtime.RequestResponseOperation;
 import jolie.runtime.TimeoutHandler;
+import jolie.runtime.TimerWheel;
 import jolie.runtime.Value;
 import jolie.runtime.ValuePrettyPrinter;
 import jolie.runtime.ValueVector;
@@ -265,9 +273,12 @@ public class Interpreter
 	private final List< CorrelationSet > correlationSets = new ArrayList<>();
 	private final Map< String, CorrelationSet > operationCorrelationSetMap = new HashMap<>();
 	private Constants.ExecutionMode executionMode = Constants.ExecutionMode.SINGLE;
+	// Not null if the sessions of this service can be recycled
+	private SessionThreadPool sessionPool = null;
 	private final Value globalValue = Value.createRootValue();
 	private final String[] arguments;
 	private final Collection< EmbeddedServiceLoader > embeddedServiceLoaders = new ArrayList<>();
+	private CompletableFuture< ProgramImage > preparedProgram = null;
 	
 	private final Map< String, DefinitionProcess > definitions = new HashMap<>();
 	private final Map< String, OutputPort > outputPorts = new HashMap<>();
@@ -293,17 +304,36 @@ public class Interpreter
 	// 11 is the default initial capacity for PriorityQueue
 	private final Queue< WeakReference< TimeoutHandler > > timeoutHandlerQueue =
 		new PriorityQueue<>( 11, new TimeoutHandler.Comparator() );
+	// Guarded by timeoutHandlerQueue, the time of the next scheduled check of the queue
+	private long nextTimeoutCheck = Long.MAX_VALUE;
 	
 	private final ExecutorService timeoutHandlerExecutor =
 		Executors.newSingleThreadExecutor( new NativeJolieThreadFactory( this ) );
 
 	private final String programFilename;
 	private final File programDirectory;
-	private OutputPort monitor = null;
+	private volatile MonitorDispatcher monitor = null;
+	private final MetricsRegistry metrics = new MetricsRegistry();
+	private final PrometheusExporter prometheusExporter = new PrometheusExporter( this );
+	private final int metricsPort;
+	private final String metricsHost;
 
 	public void setMonitor( OutputPort monitor )
 	{
-		this.monitor = monitor;
+		setMonitor( monitor, MonitorDispatcher.DEFAULT_BUFFER_SIZE, MonitorDispatcher.DEFAULT_BATCH_SIZE, MonitorDispatcher.OverflowPolicy.DROP );
+	}
+
+	/**
+	 * Sets the monitor of this interpreter. Monitoring events are sent to the monitor asynchronously.
+	 * @param monitor the output port of the monitor
+	 * @param bufferSize the maximum number of events waiting to be sent
+	 * @param batchSize the maximum number of events sent to the monitor with a single message
+	 * @param overflowPolicy what to do with new events when the buffer is full
+	 * @see MonitorDispatcher
+	 */
+	public void setMonitor( OutputPort monitor, int bufferSize, int batchSize, MonitorDispatcher.OverflowPolicy overflowPolicy )
+	{
+		this.monitor = new MonitorDispatcher( this, monitor, bufferSize, batchSize, overflowPolicy );
 		fireMonitorEvent( new MonitorAttachedEvent() );
 	}
 	
@@ -311,6 +341,24 @@ public class Interpreter
 	{
 		return monitor != null;
 	}
+
+	/**
+	 * Returns the registry of the metrics of the ports of this interpreter.
+	 * @return the registry of the metrics of this interpreter
+	 */
+	public MetricsRegistry metrics()
+	{
+		return metrics;
+	}
+
+	/**
+	 * Returns the exporter of the metrics of this interpreter in the Prometheus format.
+	 * @return the exporter of the metrics of this interpreter
+	 */
+	public PrometheusExporter prometheusExporter()
+	{
+		return prometheusExporter;
+	}
 	
 	/*public long inputMessageTimeout()
 	{
@@ -329,27 +377,9 @@ public class Interpreter
 	
 	public void fireMonitorEvent( MonitoringEvent event )
 	{
-		if ( monitor != null ) {
-			CommMessage m = CommMessage.createRequest( "pushEvent", "/", MonitoringEvent.toValue( event ) );
-			CommChannel channel = null;
-			try {
-				channel = monitor.getCommChannel();
-				channel.send( m );
-				CommMessage response;
-				do {
-					response = channel.recvResponseFor( m ).get();
-				} while( response == null );
-			} catch( URISyntaxException | InterruptedException | ExecutionException | IOException e ) {
-				logWarning( e );
-			} finally {
-				if ( channel != null ) {
-					try {
-						channel.release();
-					} catch( IOException e ) {
-						logWarning( e );
-					}
-				}
-			}
+		final MonitorDispatcher dispatcher = monitor;
+		if ( dispatcher != null ) {
+			dispatcher.push( event );
 		}
 	}
 
@@ -376,6 +406,28 @@ public class Interpreter
 		return timer;
 	}
 
+	private volatile TimerWheel timerWheel = null;
+
+	/**
+	 * Returns the timer wheel of this interpreter, used for short-lived timeouts
+	 * such as those of request-response invocations.
+	 * @return the timer wheel of this interpreter
+	 */
+	public TimerWheel timerWheel()
+	{
+		TimerWheel wheel = timerWheel;
+		if ( wheel == null ) {
+			synchronized( this ) {
+				wheel = timerWheel;
+				if ( wheel == null ) {
+					wheel = new TimerWheel( new NativeJolieThreadFactory( this ) );
+					timerWheel = wheel;
+				}
+			}
+		}
+		return wheel;
+	}
+
 	public void schedule( TimerTask task, long delay )
 	{
 		if ( exiting == false ) {
@@ -387,19 +439,33 @@ public class Interpreter
 	{
 		synchronized( timeoutHandlerQueue ) {
 			timeoutHandlerQueue.add( new WeakReference<>( handler ) );
-			if ( timeoutHandlerQueue.size() == 1 ) {
-				schedule( new TimerTask() {
-					@Override
-					public void run()
-					{
-						synchronized( timeoutHandlerQueue ) {
-							checkForExpiredTimeoutHandlers();
-						}
+			checkForExpiredTimeoutHandlers();
+			scheduleTimeoutCheck();
+		}
+	}
+
+	/*
+	 * Makes sure that a check is scheduled for when the earliest handler expires,
+	 * also when it has been added after handlers that expire later.
+	 * Must be called while holding the lock of timeoutHandlerQueue.
+	 */
+	private void scheduleTimeoutCheck()
+	{
+		final WeakReference< TimeoutHandler > whandler = timeoutHandlerQueue.peek();
+		final TimeoutHandler handler = ( whandler == null ) ? null : whandler.get();
+		if ( handler != null && handler.time() < nextTimeoutCheck ) {
+			nextTimeoutCheck = handler.time();
+			schedule( new TimerTask() {
+				@Override
+				public void run()
+				{
+					synchronized( timeoutHandlerQueue ) {
+						nextTimeoutCheck = Long.MAX_VALUE;
+						checkForExpiredTimeoutHandlers();
+						scheduleTimeoutCheck();
 					}
-				}, handler.time() - System.currentTimeMillis() + 1 );
-			} else {
-				checkForExpiredTimeoutHandlers();
-			}
+				}
+			}, Math.max( 0L, handler.time() - System.currentTimeMillis() + 1 ) );
 		}
 	}
 
@@ -656,7 +722,18 @@ public class Interpreter
 		if ( timer != null ) {
 			timer.cancel();
 		}
+		synchronized( this ) {
+			if ( timerWheel != null ) {
+				timerWheel.stop();
+			}
+		}
 		checkForExpiredTimeoutHandlers();
+		final MonitorDispatcher dispatcher = monitor;
+		if ( dispatcher != null ) {
+			// Give the monitor the last events
+			dispatcher.flush( Math.min( terminationTimeout, responseTimeout ) );
+		}
+		prometheusExporter.stop();
 		processExecutorService.shutdown();
 		nativeExecutorService.shutdown();
 		timeoutHandlerExecutor.shutdown();
@@ -846,7 +923,7 @@ public class Interpreter
 		if ( t instanceof InterpreterThread ) {
 			return ((InterpreterThread)t).interpreter();
 		}
-		return null;
+		return JolieVirtualThreads.currentInterpreter();
 	}
 	
 	/**
@@ -893,8 +970,20 @@ public class Interpreter
 		programFilename = cmdParser.programFilepath().getName();
 		arguments = cmdParser.arguments();
 		printStackTraces = cmdParser.printStackTraces();
+
+		compileClosures = cmdParser.compileClosures();
+		virtualThreads = cmdParser.virtualThreads();
+		if ( virtualThreads ) {
+			nativeExecutorService = JolieVirtualThreads.newExecutor( this, programFilename + "-NativeThread" );
+			processExecutorService = JolieVirtualThreads.newExecutor( this, programFilename + "-JolieThread" );
+		} else {
+			nativeExecutorService = new JolieThreadPoolExecutor( new NativeJolieThreadFactory( this ) );
+			processExecutorService = new JolieThreadPoolExecutor( new JolieExecutionThreadFactory( this ) );
+		}
 		
 		responseTimeout = cmdParser.responseTimeout();
+		metricsPort = cmdParser.metricsPort();
+		metricsHost = cmdParser.metricsHost();
         
 		this.correlationEngine = cmdParser.correlationAlgorithmType().createInstance( this );
 		
@@ -1058,6 +1147,9 @@ public class Interpreter
                     initExecutionThread = new InitSessionThread( this, getDefinition( "init" ) );
 
                     commCore.init();
+                    if ( metricsPort > 0 ) {
+                        prometheusExporter.start( metricsHost, metricsPort );
+                    }
 
                     // Initialize program arguments in the args variabile.
                     ValueVector jArgs = ValueVector.create();
@@ -1137,13 +1229,32 @@ public class Interpreter
 		runCode();
 	}
 
-	private final ExecutorService nativeExecutorService =
-		new JolieThreadPoolExecutor( new NativeJolieThreadFactory( this ) );
+	private final boolean compileClosures;
+	private final boolean virtualThreads;
+	private final ExecutorService nativeExecutorService;
 		// Executors.newCachedThreadPool( new NativeJolieThreadFactory( this ) );
-	private final ExecutorService processExecutorService =
-		new JolieThreadPoolExecutor( new JolieExecutionThreadFactory( this ) );
+	private final ExecutorService processExecutorService;
 		// Executors.newCachedThreadPool( new JolieExecutionThreadFactory( this ) );
 
+	/**
+	 * Returns {@code true} if this interpreter runs its threads on virtual threads.
+	 * @see JolieVirtualThreads
+	 */
+	public boolean usesVirtualThreads()
+	{
+		return virtualThreads;
+	}
+
+	/**
+	 * Returns {@code true} if the processes of this interpreter are built with
+	 * their integer arithmetic compiled to closures.
+	 * @see jolie.compiler.ClosureCompiler
+	 */
+	public boolean compilesClosures()
+	{
+		return compileClosures;
+	}
+
 	/**
 	 * Runs an asynchronous task in this Interpreter internal thread pool.
 	 * @param r the Runnable object to execute
@@ -1224,11 +1335,55 @@ public class Interpreter
 		return commCore;
 	}
 	
+	/**
+	 * Starts parsing and verifying the program of this interpreter in the
+	 * common fork-join pool, so that it is ready when the interpreter is
+	 * started. Must be called before {@link #start()}.
+	 */
+	public void prepare()
+	{
+		if ( preparedProgram == null ) {
+			preparedProgram = CompletableFuture.supplyAsync( () -> {
+				try {
+					return loadProgram();
+				} catch( InterpreterException e ) {
+					throw new CompletionException( e );
+				}
+			}, ForkJoinPool.commonPool() );
+		}
+	}
+
 	private boolean buildOOIT()
 		throws InterpreterException
-	{        
+	{
+		final ProgramImage image;
+		if ( preparedProgram == null ) {
+			image = loadProgram();
+		} else {
+			try {
+				image = preparedProgram.join();
+			} catch( CompletionException e ) {
+				if ( e.getCause() instanceof InterpreterException ) {
+					throw (InterpreterException) e.getCause();
+				}
+				throw new InterpreterException( e.getCause() );
+			} finally {
+				preparedProgram = null;
+			}
+		}
+		return image != null && buildOOIT( image );
+	}
+
+	/*
+	 * Returns the verified program, or null if the program has only to be checked.
+	 */
+	private ProgramImage loadProgram()
+		throws InterpreterException
+	{
 		try {
 			Program program;
+			ProgramImageCache imageCache = null;
+			List< URI > includedFiles = null;
 			if ( cmdParser.isProgramCompiled() ) {
 				try ( final ObjectInputStream istream = new ObjectInputStream( cmdParser.programStream() ) ) {
 					final Object o = istream.readObject();
@@ -1242,10 +1397,34 @@ public class Interpreter
 				if ( this.internalServiceProgram != null ) {
 					program = this.internalServiceProgram;
 				} else {
-					final OLParser olParser = new OLParser( new Scanner( cmdParser.programStream(), cmdParser.programFilepath().toURI(), cmdParser.charset() ), includePaths, classLoader );
+					InputStream programStream = cmdParser.programStream();
+					if ( cmdParser.programCacheDirectory() != null && !cmdParser.check() ) {
+						final byte[] programSource = ProgramImageCache.readAll( programStream );
+						imageCache = new ProgramImageCache(
+							cmdParser.programCacheDirectory(),
+							cmdParser.programFilepath().toURI(),
+							programSource,
+							cmdParser.definedConstants(),
+							includePaths,
+							cmdParser.charset(),
+							cmdParser.typeCheck()
+						);
+						final ProgramImage image = imageCache.load();
+						if ( image != null ) {
+							cmdParser.close();
+							// The image has already been verified (and type checked) when it was stored
+							for( String warning : image.warnings() ) {
+								logger.warning( warning );
+							}
+							return image;
+						}
+						programStream = new ByteArrayInputStream( programSource );
+					}
+					final OLParser olParser = new OLParser( new Scanner( programStream, cmdParser.programFilepath().toURI(), cmdParser.charset() ), includePaths, classLoader );
 
 					olParser.putConstants( cmdParser.definedConstants() );
 					program = olParser.parse();
+					includedFiles = olParser.includedFiles();
 				}
 				program = OLParseTreeOptimizer.optimize( program );
 			}
@@ -1283,14 +1462,13 @@ public class Interpreter
 			}
 
 			if ( check ) {
-				return false;
+				return null;
 			} else {
-				return (new OOITBuilder(
-					this,
-					program,
-					semanticVerifier.isConstantMap(),
-					semanticVerifier.correlationFunctionInfo() ))
-					.build();
+				final ProgramImage image = new ProgramImage( program, semanticVerifier );
+				if ( imageCache != null ) {
+					imageCache.store( image, includedFiles );
+				}
+				return image;
 			}
 
 		} catch( IOException | ParserException | ClassNotFoundException e ) {
@@ -1300,6 +1478,19 @@ public class Interpreter
 		}
 	}
 	
+	private boolean buildOOIT( ProgramImage image )
+	{
+		if ( image.sessionsCanBeRecycled() ) {
+			sessionPool = new SessionThreadPool();
+		}
+		return (new OOITBuilder(
+			this,
+			image.program(),
+			image.isConstantMap(),
+			image.correlationFunctionInfo() ))
+			.build();
+	}
+
 	/**
 	 * Starts a service session.
 	 * @param message the message triggering the session start
@@ -1307,6 +1498,18 @@ public class Interpreter
 	 * @return {@code true} if the service session is started, {@code false} otherwise
 	 */
 	public boolean startServiceSession( final CommMessage message, CommChannel channel )
+	{
+		return startServiceSession( message, channel, null );
+	}
+
+	/**
+	 * Starts a service session.
+	 * @param message the message triggering the session start
+	 * @param channel the channel of the message triggering the session start
+	 * @param sessionListener if not {@code null}, a listener to add to the session before it is started
+	 * @return {@code true} if the service session is started, {@code false} otherwise
+	 */
+	public boolean startServiceSession( final CommMessage message, CommChannel channel, SessionListener sessionListener )
 	{
 		if ( executionMode == Constants.ExecutionMode.SINGLE ) {
 			return false;
@@ -1326,14 +1529,29 @@ public class Interpreter
 		final SessionThread spawnedSession;
 
 		if ( executionMode == Constants.ExecutionMode.CONCURRENT ) {
-			State state = initExecutionThread.state().clone();
+			final SessionThread recycledSession = ( sessionPool == null ) ? null : sessionPool.acquire();
+			final State state;
+			if ( recycledSession == null ) {
+				state = initExecutionThread.state().clone();
+			} else {
+				recycledSession.recycle( initExecutionThread );
+				state = recycledSession.state();
+			}
 			jolie.process.Process sequence = new SequentialProcess( new jolie.process.Process[] {
 				starter.guard.receiveMessage( new SessionMessage( message, channel ), state ),
 				starter.body
 			} );
-			spawnedSession = new SessionThread(
-				sequence, state, initExecutionThread
-			);
+			if ( recycledSession == null ) {
+				spawnedSession = new SessionThread(
+					sequence, state, initExecutionThread
+				);
+				if ( sessionPool != null ) {
+					spawnedSession.setPool( sessionPool );
+				}
+			} else {
+				recycledSession.setProcess( sequence );
+				spawnedSession = recycledSession;
+			}
 			correlationEngine.onSessionStart( spawnedSession, starter, message );
 			spawnedSession.addSessionListener( correlationEngine );
 			logSessionStart( message.operationName(), spawnedSession.getSessionId(), 
@@ -1349,6 +1567,9 @@ public class Interpreter
 					logSessionEnd( message.operationName(), session.getSessionId() );
 				}
 			} );
+			if ( sessionListener != null ) {
+				spawnedSession.addSessionListener( sessionListener );
+			}
 			spawnedSession.start();
 		} else if ( executionMode == Constants.ExecutionMode.SEQUENTIAL ) {
 			/*
@@ -1391,6 +1612,9 @@ public class Interpreter
 					logSessionEnd( message.operationName(), session.getSessionId() );
 				}
 			} );
+			if ( sessionListener != null ) {
+				spawnedSession.addSessionListener( sessionListener );
+			}
 			synchronized ( waitingSessionThreads ) {
 				if ( waitingSessionThreads.isEmpty() ) {
 					waitingSessionThreads.add( spawnedSession );
@@ -0,0 +1,130 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Support for running the threads of an {@link Interpreter} on virtual threads.
+ *
+ * Virtual threads are available only from Java 21, so they are accessed by reflection.
+ * Since virtual threads cannot be subclassed, the references that
+ * {@link JolieExecutorThread}, {@link NativeJolieThread} and {@link jolie.net.CommChannelHandler}
+ * keep to their {@link ExecutionThread} and {@link Interpreter} are stored in thread-locals
+ * when running on a virtual thread.
+ */
+public final class JolieVirtualThreads
+{
+	private static final ThreadLocal< ExecutionThread > currentExecutionThread = new ThreadLocal<>();
+	private static final ThreadLocal< Interpreter > currentInterpreter = new ThreadLocal<>();
+
+	private static final Method ofVirtualMethod;
+	private static final Method nameMethod;
+	private static final Method factoryMethod;
+	private static final Method newThreadPerTaskExecutorMethod;
+
+	static {
+		Method ofVirtual = null, name = null, factory = null, newThreadPerTaskExecutor = null;
+		try {
+			final Class< ? > builderClass = Class.forName( "java.lang.Thread$Builder" );
+			ofVirtual = Thread.class.getMethod( "ofVirtual" );
+			name = builderClass.getMethod( "name", String.class, long.class );
+			factory = builderClass.getMethod( "factory" );
+			newThreadPerTaskExecutor = Executors.class.getMethod( "newThreadPerTaskExecutor", ThreadFactory.class );
+		} catch( ClassNotFoundException | NoSuchMethodException e ) {
+			ofVirtual = null;
+		}
+		ofVirtualMethod = ofVirtual;
+		nameMethod = name;
+		factoryMethod = factory;
+		newThreadPerTaskExecutorMethod = newThreadPerTaskExecutor;
+	}
+
+	private JolieVirtualThreads() {}
+
+	/**
+	 * Returns {@code true} if the running JVM supports virtual threads.
+	 */
+	public static boolean isSupported()
+	{
+		return ofVirtualMethod != null;
+	}
+
+	/**
+	 * Creates an executor that runs each task on a new virtual thread.
+	 * Tasks refer to the given interpreter when calling {@link Interpreter#getInstance()}.
+	 * @param interpreter the interpreter the tasks refer to
+	 * @param name the prefix of the names of the created threads
+	 * @throws UnsupportedOperationException if virtual threads are not supported
+	 */
+	public static ExecutorService newExecutor( Interpreter interpreter, String name )
+	{
+		if ( !isSupported() ) {
+			throw new UnsupportedOperationException( "Virtual threads require Java 21 or later" );
+		}
+		try {
+			Object builder = ofVirtualMethod.invoke( null );
+			builder = nameMethod.invoke( builder, name + "-", 0L );
+			final ThreadFactory virtualFactory = (ThreadFactory) factoryMethod.invoke( builder );
+			final ThreadFactory factory = r -> virtualFactory.newThread( () -> {
+				currentInterpreter.set( interpreter );
+				r.run();
+			} );
+			return (ExecutorService) newThreadPerTaskExecutorMethod.invoke( null, factory );
+		} catch( IllegalAccessException | InvocationTargetException e ) {
+			throw new UnsupportedOperationException( e );
+		}
+	}
+
+	/**
+	 * Returns the {@link ExecutionThread} the current virtual thread refers to, or {@code null}.
+	 */
+	public static ExecutionThread currentExecutionThread()
+	{
+		return currentExecutionThread.get();
+	}
+
+	/**
+	 * Sets the {@link ExecutionThread} the current virtual thread refers to.
+	 */
+	public static void setCurrentExecutionThread( ExecutionThread thread )
+	{
+		if ( thread == null ) {
+			currentExecutionThread.remove();
+		} else {
+			currentExecutionThread.set( thread );
+		}
+	}
+
+	/**
+	 * Returns the {@link Interpreter} the current virtual thread refers to, or {@code null}.
+	 */
+	public static Interpreter currentInterpreter()
+	{
+		final ExecutionThread thread = currentExecutionThread.get();
+		return ( thread == null ) ? currentInterpreter.get() : thread.interpreter();
+	}
+}
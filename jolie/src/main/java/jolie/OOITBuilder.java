@@ -34,6 +34,7 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
 import java.util.function.BiPredicate;
+import jolie.compiler.ClosureCompiler;
 import jolie.lang.Constants;
 import jolie.lang.Constants.ExecutionMode;
 import jolie.lang.Constants.OperandType;
@@ -133,6 +134,7 @@ import jolie.net.ports.Interface;
 import jolie.net.ports.InterfaceExtender;
 import jolie.net.ports.OutputPort;
 import jolie.process.AddAssignmentProcess;
+import jolie.process.ArithmeticAssignmentProcess;
 import jolie.process.AssignmentProcess;
 import jolie.process.CallProcess;
 import jolie.process.CompensateProcess;
@@ -192,6 +194,7 @@ import jolie.runtime.embedding.EmbeddedServiceLoader;
 import jolie.runtime.embedding.EmbeddedServiceLoader.EmbeddedServiceConfiguration;
 import jolie.runtime.embedding.EmbeddedServiceLoaderCreationException;
 import jolie.runtime.expression.AndCondition;
+import jolie.runtime.expression.ArithmeticExpression;
 import jolie.runtime.expression.CastBoolExpression;
 import jolie.runtime.expression.CastDoubleExpression;
 import jolie.runtime.expression.CastIntExpression;
@@ -860,9 +863,33 @@ public class OOITBuilder implements OLVisitor
 	private void registerSessionStarter( InputOperationProcess guard, Process body )
 	{
 		guard.setSessionStarter( true );
+		markSessionEnd( guard, body );
 		interpreter.registerSessionStarter( guard, body );
 	}
 
+	/*
+	 * Finds the process that ends the sessions started by guard, so that
+	 * it can move the value it sends to its message instead of copying it.
+	 * The process still copies the value if the session has installed handlers,
+	 * since they could observe it if sending fails.
+	 */
+	private static void markSessionEnd( InputOperationProcess guard, Process body )
+	{
+		if ( body instanceof NullProcess ) {
+			if ( guard instanceof RequestResponseProcess ) {
+				((RequestResponseProcess) guard).setEndsSession( true );
+			}
+			return;
+		}
+		Process last = body;
+		while( last instanceof SequentialProcess ) {
+			last = ((SequentialProcess) last).lastChild();
+		}
+		if ( last instanceof NotificationProcess ) {
+			((NotificationProcess) last).setEndsSession( true );
+		}
+	}
+
 	@SuppressWarnings("unchecked")
 	public void visit( NDChoiceStatement n )
 	{
@@ -1033,9 +1060,25 @@ public class OOITBuilder implements OLVisitor
 	public void visit( AssignStatement n )
 	{
 		n.expression().accept( this );
-			
+
+		final Expression expression = ClosureCompiler.source( currExpression );
+		if ( expression instanceof ArithmeticExpression && readsFirst( n.expression(), n.variablePath() ) ) {
+			ArithmeticAssignmentProcess p = interpreter.compilesClosures()
+				? ClosureCompiler.compileArithmeticAssignment(
+					buildVariablePath( n.variablePath() ),
+					(ArithmeticExpression) expression
+					)
+				: new ArithmeticAssignmentProcess(
+					buildVariablePath( n.variablePath() ),
+					(ArithmeticExpression) expression
+					);
+			currProcess = p;
+			currExpression = p;
+			return;
+		}
+
 		AssignmentProcess p = 
-			new AssignmentProcess(
+			ClosureCompiler.compileAssignment(
 				buildVariablePath( n.variablePath() ),
 				currExpression
 				);
@@ -1043,6 +1086,84 @@ public class OOITBuilder implements OLVisitor
 		currExpression = p;
 	}
 
+	/*
+	 * Returns true if the first operand of the passed sum or product
+	 * is a read of the passed variable path, as in x = x + 1.
+	 */
+	private static boolean readsFirst( OLSyntaxNode expression, VariablePathNode path )
+	{
+		final List< Pair< OperandType, OLSyntaxNode > > operands =
+			expression instanceof SumExpressionNode ? ((SumExpressionNode) expression).operands()
+			: expression instanceof ProductExpressionNode ? ((ProductExpressionNode) expression).operands()
+			: null;
+		return operands != null
+			&& operands.get( 0 ).value() instanceof VariableExpressionNode
+			&& isSamePath( ((VariableExpressionNode) operands.get( 0 ).value()).variablePath(), path );
+	}
+
+	private static boolean isSamePath( VariablePathNode left, VariablePathNode right )
+	{
+		if ( left.type() != right.type() || left.path().size() != right.path().size() ) {
+			return false;
+		}
+		for( int i = 0; i < left.path().size(); i++ ) {
+			final Pair< OLSyntaxNode, OLSyntaxNode > l = left.path().get( i );
+			final Pair< OLSyntaxNode, OLSyntaxNode > r = right.path().get( i );
+			if ( !isSameExpression( l.key(), r.key() ) ) {
+				return false;
+			}
+			// A missing index is the same as index 0
+			if ( l.value() == null || r.value() == null ) {
+				final OLSyntaxNode index = ( l.value() == null ) ? r.value() : l.value();
+				if ( index != null
+					&& !(index instanceof ConstantIntegerExpression && ((ConstantIntegerExpression) index).value() == 0) ) {
+					return false;
+				}
+			} else if ( !isSameExpression( l.value(), r.value() ) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Structural equality of side-effect free expressions:
+	 * constants, variables, sums and products.
+	 */
+	private static boolean isSameExpression( OLSyntaxNode left, OLSyntaxNode right )
+	{
+		if ( left instanceof ConstantStringExpression && right instanceof ConstantStringExpression ) {
+			return ((ConstantStringExpression) left).value().equals( ((ConstantStringExpression) right).value() );
+		} else if ( left instanceof ConstantIntegerExpression && right instanceof ConstantIntegerExpression ) {
+			return ((ConstantIntegerExpression) left).value() == ((ConstantIntegerExpression) right).value();
+		} else if ( left instanceof ConstantLongExpression && right instanceof ConstantLongExpression ) {
+			return ((ConstantLongExpression) left).value() == ((ConstantLongExpression) right).value();
+		} else if ( left instanceof VariableExpressionNode && right instanceof VariableExpressionNode ) {
+			return isSamePath( ((VariableExpressionNode) left).variablePath(), ((VariableExpressionNode) right).variablePath() );
+		} else if ( left instanceof SumExpressionNode && right instanceof SumExpressionNode ) {
+			return isSameOperands( ((SumExpressionNode) left).operands(), ((SumExpressionNode) right).operands() );
+		} else if ( left instanceof ProductExpressionNode && right instanceof ProductExpressionNode ) {
+			return isSameOperands( ((ProductExpressionNode) left).operands(), ((ProductExpressionNode) right).operands() );
+		}
+		return false;
+	}
+
+	private static boolean isSameOperands(
+		List< Pair< OperandType, OLSyntaxNode > > left,
+		List< Pair< OperandType, OLSyntaxNode > > right
+	) {
+		if ( left.size() != right.size() ) {
+			return false;
+		}
+		for( int i = 0; i < left.size(); i++ ) {
+			if ( left.get( i ).key() != right.get( i ).key()
+				|| !isSameExpression( left.get( i ).value(), right.get( i ).value() ) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	public void visit( AddAssignStatement n )
 	{
 		n.expression().accept( this );
@@ -1205,7 +1326,7 @@ public class OOITBuilder implements OLVisitor
 			node.accept( this );
 			children[ i++ ] = currExpression;
 		}
-		currExpression = new OrCondition( children );
+		currExpression = foldConstants( new OrCondition( children ), children );
 	}
 	
 	public void visit( AndConditionNode n )
@@ -1216,13 +1337,13 @@ public class OOITBuilder implements OLVisitor
 			node.accept( this );
 			children[ i++ ] = currExpression;
 		}
-		currExpression = new AndCondition( children );
+		currExpression = foldConstants( new AndCondition( children ), children );
 	}
 	
 	public void visit( NotExpressionNode n )
 	{
 		n.expression().accept( this );
-		currExpression = new NotExpression( currExpression );
+		currExpression = foldConstants( new NotExpression( currExpression ), currExpression );
 	}
 	
 	public void visit( CompareConditionNode n )
@@ -1241,7 +1362,42 @@ public class OOITBuilder implements OLVisitor
 			: opType == Scanner.TokenType.MAJOR_OR_EQUAL ? CompareOperators.MAJOR_OR_EQUAL
 			: null;
 		Objects.requireNonNull( operator );
-		currExpression = new CompareCondition( left, currExpression, operator );
+		currExpression = compile( foldConstants( new CompareCondition( left, currExpression, operator ), left, currExpression ) );
+	}
+
+	/*
+	 * Compiles sums, products and comparisons to closures, unless disabled with --compile false.
+	 */
+	private Expression compile( Expression expression )
+	{
+		return interpreter.compilesClosures() ? ClosureCompiler.compile( expression ) : expression;
+	}
+
+	/*
+	 * Replaces an expression whose operands are all constants with the constant it evaluates to.
+	 * Expressions that fail, e.g., divisions by zero, are kept, so that they fail at runtime.
+	 */
+	private static Expression foldConstants( Expression expression, Expression... operands )
+	{
+		for( Expression operand : operands ) {
+			if ( !(operand instanceof Value) ) {
+				return expression;
+			}
+		}
+		try {
+			return expression.evaluate();
+		} catch( RuntimeException e ) {
+			return expression;
+		}
+	}
+
+	private static Expression foldConstants( Expression expression, Operand[] operands )
+	{
+		final Expression[] expressions = new Expression[ operands.length ];
+		for( int i = 0; i < operands.length; i++ ) {
+			expressions[ i ] = operands[ i ].expression();
+		}
+		return foldConstants( expression, expressions );
 	}
 
 	public void visit( FreshValueExpressionNode n )
@@ -1283,7 +1439,7 @@ public class OOITBuilder implements OLVisitor
 			operands[i++] = new Operand( pair.key(), currExpression );
 		}
 
-		currExpression = new ProductExpression( operands );
+		currExpression = compile( foldConstants( new ProductExpression( operands ), operands ) );
 	}
 	
 	public void visit( SumExpressionNode n )
@@ -1295,7 +1451,7 @@ public class OOITBuilder implements OLVisitor
 			operands[i++] = new Operand( pair.key(), currExpression );
 		}
 
-		currExpression = new SumExpression( operands );
+		currExpression = compile( foldConstants( new SumExpression( operands ), operands ) );
 	}
 
 	public void visit( VariableExpressionNode n )
@@ -0,0 +1,306 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import jolie.lang.Constants;
+import jolie.lang.parse.Scanner;
+import jolie.lang.parse.util.ProgramImage;
+import jolie.lang.parse.util.impl.ProgramImageWriter;
+
+/**
+ * On-disk cache of the parsed and verified images of Jolie programs.
+ *
+ * An entry is keyed by a hash of the main source file and of everything
+ * that may change how it is parsed (constants, include paths, charset,
+ * interpreter version). The entry records the sources of all the included
+ * files together with a hash of their contents, which are checked again
+ * before the entry is used.
+ *
+ * Entries are not invalidated by files that would now be resolved in
+ * place of an included one, e.g. a file created in an include path that
+ * comes first, which is why the cache must be enabled explicitly.
+ * The directory keeps at most {@link #MAX_ENTRIES} entries: the ones
+ * that were used least recently are deleted whenever an entry is stored.
+ *
+ * Failures in accessing the cache are never reported: they simply make
+ * the interpreter parse the program as usual.
+ */
+class ProgramImageCache
+{
+	private static final String HASH_ALGORITHM = "SHA-256";
+	private static final int HASH_LENGTH = 32;
+	private static final String ENTRY_SUFFIX = ".image";
+	private static final int MAX_ENTRIES = 256;
+
+	private final File entryFile;
+
+	/**
+	 * Constructor.
+	 * @param directory the directory holding the cache entries
+	 * @param programURI the source of the main program
+	 * @param programSource the contents of the main program
+	 * @param constants the constants defined by command line
+	 * @param includePaths the include paths of the interpreter
+	 * @param charset the charset of the main program, or {@code null} for the default one
+	 * @param typeCheck whether the program is type checked
+	 */
+	public ProgramImageCache(
+		File directory,
+		URI programURI,
+		byte[] programSource,
+		Map< String, Scanner.Token > constants,
+		String[] includePaths,
+		String charset,
+		boolean typeCheck
+	) {
+		final MessageDigest digest = newDigest();
+		update( digest, String.valueOf( ProgramImageWriter.FORMAT_VERSION ) );
+		update( digest, Constants.VERSION );
+		update( digest, libraryIdentity() );
+		update( digest, programURI.toString() );
+		digest.update( programSource );
+		for( Map.Entry< String, Scanner.Token > entry : new TreeMap<>( constants ).entrySet() ) {
+			update( digest, entry.getKey() + '=' + entry.getValue().type() + ':' + entry.getValue().content() );
+		}
+		for( String path : includePaths ) {
+			update( digest, path );
+		}
+		update( digest, String.valueOf( charset ) );
+		update( digest, String.valueOf( typeCheck ) );
+		entryFile = new File( directory, toHex( digest.digest() ) + ENTRY_SUFFIX );
+	}
+
+	/**
+	 * Returns the cached image of the program, if there is an entry
+	 * for it and none of its included files has changed.
+	 * @return the cached image of the program, or {@code null}
+	 */
+	public ProgramImage load()
+	{
+		if ( !entryFile.isFile() ) {
+			return null;
+		}
+		try( DataInputStream istream = new DataInputStream( Files.newInputStream( entryFile.toPath() ) ) ) {
+			final int dependencies = istream.readInt();
+			final byte[] hash = new byte[ HASH_LENGTH ];
+			for( int i = 0; i < dependencies; i++ ) {
+				final URI source = new URI( istream.readUTF() );
+				istream.readFully( hash );
+				if ( !Arrays.equals( hash, hash( source ) ) ) {
+					return null;
+				}
+			}
+			final int length = istream.readInt();
+			// A corrupt entry must not make us allocate more than the file holds
+			if ( length < 0 || length > Files.size( entryFile.toPath() ) ) {
+				return null;
+			}
+			final byte[] image = new byte[ length ];
+			istream.readFully( image );
+			if ( istream.read() != -1 ) {
+				return null;
+			}
+			final ProgramImage result = ProgramImage.read( image );
+			// Marks the entry as recently used, see evict()
+			Files.setLastModifiedTime( entryFile.toPath(), FileTime.fromMillis( System.currentTimeMillis() ) );
+			return result;
+		} catch( IOException | URISyntaxException | RuntimeException e ) {
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the image of the program in the cache.
+	 * @param image the image of the program
+	 * @param includedFiles the sources of the files included by the program
+	 */
+	public void store( ProgramImage image, List< URI > includedFiles )
+	{
+		Path tmpFile = null;
+		try {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final DataOutputStream ostream = new DataOutputStream( bytes );
+			ostream.writeInt( includedFiles.size() );
+			for( URI source : includedFiles ) {
+				ostream.writeUTF( source.toString() );
+				ostream.write( hash( source ) );
+			}
+			final byte[] imageBytes = image.toByteArray();
+			ostream.writeInt( imageBytes.length );
+			ostream.write( imageBytes );
+			ostream.flush();
+
+			final Path directory = entryFile.getParentFile().toPath();
+			Files.createDirectories( directory );
+			tmpFile = Files.createTempFile( directory, "image", ".tmp" );
+			try( OutputStream fileStream = Files.newOutputStream( tmpFile ) ) {
+				bytes.writeTo( fileStream );
+			}
+			Files.move( tmpFile, entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+			tmpFile = null;
+			evict( directory );
+		} catch( IOException | RuntimeException e ) {
+			// The cache is only an optimisation
+		} finally {
+			if ( tmpFile != null ) {
+				try {
+					Files.deleteIfExists( tmpFile );
+				} catch( IOException e ) {}
+			}
+		}
+	}
+
+	/*
+	 * Deletes the entries that were used least recently, so that
+	 * the directory keeps at most MAX_ENTRIES of them.
+	 */
+	private static void evict( Path directory )
+		throws IOException
+	{
+		final List< Path > entries = new ArrayList<>();
+		try( DirectoryStream< Path > stream = Files.newDirectoryStream( directory, "*" + ENTRY_SUFFIX ) ) {
+			for( Path entry : stream ) {
+				entries.add( entry );
+			}
+		}
+		if ( entries.size() <= MAX_ENTRIES ) {
+			return;
+		}
+		final Map< Path, FileTime > times = new HashMap<>();
+		for( Path entry : entries ) {
+			try {
+				times.put( entry, Files.getLastModifiedTime( entry ) );
+			} catch( IOException e ) {
+				// Deleted concurrently by another interpreter
+				times.put( entry, FileTime.fromMillis( 0L ) );
+			}
+		}
+		entries.sort( Comparator.comparing( times::get ) );
+		for( Path entry : entries.subList( 0, entries.size() - MAX_ENTRIES ) ) {
+			Files.deleteIfExists( entry );
+		}
+	}
+
+	/**
+	 * Reads all the bytes of a stream and closes it.
+	 * @param istream the stream to read
+	 * @return the bytes read from the stream
+	 * @throws IOException if the stream could not be read
+	 */
+	public static byte[] readAll( InputStream istream )
+		throws IOException
+	{
+		try( InputStream in = istream ) {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[ 8192 ];
+			int read;
+			while( (read = in.read( buffer )) != -1 ) {
+				bytes.write( buffer, 0, read );
+			}
+			return bytes.toByteArray();
+		}
+	}
+
+	private static byte[] hash( URI source )
+		throws IOException
+	{
+		final byte[] contents;
+		if ( "file".equals( source.getScheme() ) ) {
+			contents = Files.readAllBytes( Paths.get( source ) );
+		} else {
+			contents = readAll( source.toURL().openStream() );
+		}
+		return newDigest().digest( contents );
+	}
+
+	/*
+	 * Identifies the build of the parser and verifier, so that entries
+	 * written by a different build of libjolie are not reused.
+	 */
+	private static String libraryIdentity()
+	{
+		try {
+			final CodeSource codeSource = ProgramImage.class.getProtectionDomain().getCodeSource();
+			if ( codeSource != null ) {
+				final File library = new File( codeSource.getLocation().toURI() );
+				return library.getPath() + ':' + library.length() + ':' + library.lastModified();
+			}
+		} catch( URISyntaxException | IllegalArgumentException | SecurityException e ) {}
+		return "";
+	}
+
+	private static void update( MessageDigest digest, String s )
+	{
+		final byte[] bytes = s.getBytes( StandardCharsets.UTF_8 );
+		digest.update( (byte) (bytes.length >>> 24) );
+		digest.update( (byte) (bytes.length >>> 16) );
+		digest.update( (byte) (bytes.length >>> 8) );
+		digest.update( (byte) bytes.length );
+		digest.update( bytes );
+	}
+
+	private static MessageDigest newDigest()
+	{
+		try {
+			return MessageDigest.getInstance( HASH_ALGORITHM );
+		} catch( NoSuchAlgorithmException e ) {
+			// Every Java platform is required to support SHA-256
+			throw new IllegalStateException( e );
+		}
+	}
+
+	private static String toHex( byte[] bytes )
+	{
+		final StringBuilder builder = new StringBuilder( bytes.length * 2 );
+		for( byte b : bytes ) {
+			builder.append( Character.forDigit( (b >> 4) & 0xF, 16 ) );
+			builder.append( Character.forDigit( b & 0xF, 16 ) );
+		}
+		return builder.toString();
+	}
+}
@@ -29,6 +29,7 @@ import java.util.Map;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
@@ -90,12 +91,14 @@ public class SessionThread extends ExecutionThread
 		public SessionMessage get( long timeout, TimeUnit unit )
 			throws InterruptedException, TimeoutException
 		{
+			lock.lock();
 			try {
-				lock.lock();
-				if ( !isDone ) {
-					if ( !condition.await( timeout, unit ) ) {
+				long nanos = unit.toNanos( timeout );
+				while( !isDone ) {
+					if ( nanos <= 0L ) {
 						throw new TimeoutException();
 					}
+					nanos = condition.awaitNanos( nanos );
 				}
 			} finally {
 				lock.unlock();
@@ -107,9 +110,10 @@ public class SessionThread extends ExecutionThread
 		public SessionMessage get()
 			throws InterruptedException
 		{
+			lock.lock();
 			try {
-				lock.lock();
-				if ( !isDone ) {
+				// Loop to guard against spurious wakeups
+				while( !isDone ) {
 					condition.await();
 				}
 			} finally {
@@ -172,12 +176,19 @@ public class SessionThread extends ExecutionThread
 
 	private static final AtomicLong idCounter = new AtomicLong( 1L );
 	
-	private final long id = idCounter.getAndIncrement();
+	private long id = idCounter.getAndIncrement();
 	private final jolie.State state;
 	private final List< SessionListener > listeners = new ArrayList<>();
 	protected final Map< CorrelationSet, Deque< SessionMessage > > messageQueues = new HashMap<>();
 	protected final Deque< SessionMessage > uncorrelatedMessageQueue = new ArrayDeque<>();
 	private final Map< String, Deque< SessionMessageFuture > > messageWaiters =	new HashMap<>();
+	private SessionThreadPool pool = null;
+	/*
+	 * A pooled session can be recycled only after its process has terminated and
+	 * start() has published its task future, which can happen in any order:
+	 * each of the two counts this down, and the last one returns the session to the pool.
+	 */
+	private final AtomicInteger pendingBeforeRelease = new AtomicInteger();
 
 	private final static VariablePath typeMismatchPath;
 	private final static VariablePath ioExceptionPath;
@@ -196,6 +207,39 @@ public class SessionThread extends ExecutionThread
 			.toVariablePath();
 	}
 
+	/**
+	 * A default fault handler, which only logs the fault it handles.
+	 */
+	static class DefaultFaultHandler implements Process
+	{
+		private final Interpreter interpreter;
+		private final VariablePath faultPath;
+
+		private DefaultFaultHandler( Interpreter interpreter, VariablePath faultPath )
+		{
+			this.interpreter = interpreter;
+			this.faultPath = faultPath;
+		}
+
+		@Override
+		public void run() throws FaultException, ExitingException
+		{
+			interpreter.logInfo( faultPath.getValue().strValue() );
+		}
+
+		@Override
+		public Process copy( TransformationReason reason )
+		{
+			return this;
+		}
+
+		@Override
+		public boolean isKillable()
+		{
+			return true;
+		}
+	}
+
 	/**
 	 * Creates and returns a default list of handlers, initialized
 	 * with default fault handlers for built-in faults like, e.g., TypeMismatch.
@@ -207,47 +251,11 @@ public class SessionThread extends ExecutionThread
 		final List< Pair< String, Process > > instList = new ArrayList<>();
 		instList.add( new Pair<>(
 			Constants.TYPE_MISMATCH_FAULT_NAME,
-			new Process() {
-				@Override
-				public void run() throws FaultException, ExitingException
-				{
-					interpreter.logInfo( typeMismatchPath.getValue().strValue() );
-				}
-
-				@Override
-				public Process copy( TransformationReason reason )
-				{
-					return this;
-				}
-
-				@Override
-				public boolean isKillable()
-				{
-					return true;
-				}
-			}
+			new DefaultFaultHandler( interpreter, typeMismatchPath )
 		) );
 		instList.add( new Pair<>(
 			Constants.IO_EXCEPTION_FAULT_NAME,
-			new Process() {
-				@Override
-				public void run() throws FaultException, ExitingException
-				{
-					interpreter.logInfo( ioExceptionPath.getValue().strValue() );
-				}
-
-				@Override
-				public Process copy( TransformationReason reason )
-				{
-					return this;
-				}
-
-				@Override
-				public boolean isKillable()
-				{
-					return true;
-				}
-			}
+			new DefaultFaultHandler( interpreter, ioExceptionPath )
 		) );
 		return instList;
 	}
@@ -260,6 +268,53 @@ public class SessionThread extends ExecutionThread
 		initMessageQueues();
 	}
 	
+	/**
+	 * Makes this session return to the passed pool when it terminates,
+	 * so that it can be recycled for a new session.
+	 */
+	void setPool( SessionThreadPool pool )
+	{
+		this.pool = pool;
+	}
+
+	@Override
+	public void start()
+	{
+		if ( pool == null ) {
+			super.start();
+		} else {
+			pendingBeforeRelease.set( 2 );
+			super.start();
+			releaseToPool();
+		}
+	}
+
+	private void releaseToPool()
+	{
+		if ( pendingBeforeRelease.decrementAndGet() == 0 ) {
+			pool.release( this );
+		}
+	}
+
+	/**
+	 * Prepares a terminated session for executing a new session of the service,
+	 * as if it had just been created by {@link #SessionThread(Process, State, ExecutionThread)}
+	 * with a clone of the state of parent.
+	 * The process of the new session must then be set with {@link #setProcess(Process)}.
+	 * @param parent the ExecutionThread whose state and scopes are to be copied
+	 */
+	void recycle( ExecutionThread parent )
+	{
+		super.recycle();
+		id = idCounter.getAndIncrement();
+		state.reset( parent.state() );
+		parent.scopeStack.forEach( s -> scopeStack.push( s.clone() ) );
+		listeners.clear();
+		messageQueues.values().forEach( Deque::clear );
+		uncorrelatedMessageQueue.clear();
+		messageWaiters.clear();
+	}
+
 	public boolean isInitialisingThread()
 	{
 		return false;
@@ -501,6 +556,11 @@ public class SessionThread extends ExecutionThread
 			}
 			listeners.forEach( listener -> listener.onSessionExecuted( this ) );
 		}
+
+		// Only after all listeners have been notified, since the pool may hand this session out again
+		if ( pool != null ) {
+			releaseToPool();
+		}
 	}
 
 	@Override
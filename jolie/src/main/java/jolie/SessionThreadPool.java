@@ -0,0 +1,60 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A pool of terminated sessions, which can be recycled for starting new ones
+ * instead of allocating a fresh {@link SessionThread} and {@link State} each time.
+ *
+ * Recycling is safe only for services whose sessions are independent of each other and
+ * leave no activity behind them when they terminate
+ * (see {@link jolie.lang.parse.SemanticVerifier#sessionsCanBeRecycled()}).
+ */
+final class SessionThreadPool
+{
+	private static final int MAX_POOLED_SESSIONS = Runtime.getRuntime().availableProcessors() * 16;
+
+	// Guarded by this
+	private final Deque< SessionThread > sessions = new ArrayDeque<>();
+
+	/**
+	 * Returns a terminated session to be recycled, or {@code null} if the pool is empty.
+	 * The returned session must be prepared with {@link SessionThread#recycle} before starting it.
+	 */
+	synchronized SessionThread acquire()
+	{
+		return sessions.pollFirst();
+	}
+
+	/**
+	 * Gives back a terminated session to this pool.
+	 */
+	synchronized void release( SessionThread session )
+	{
+		if ( sessions.size() < MAX_POOLED_SESSIONS ) {
+			sessions.addFirst( session );
+		}
+	}
+}
@@ -38,7 +38,7 @@ import jolie.runtime.VariablePath;
  */
 public final class State implements Cloneable
 {
-	private final Value root;
+	private Value root;
 	private final ConcurrentHashMap< String, InternalLink > linksMap = new ConcurrentHashMap<>();
 	private final LoopDetectionMap< Value > valueLoopDetectionMap = new LoopDetectionMap<>();
 	private final LoopDetectionMap< ValueVector > valueVectorLoopDetectionMap = new LoopDetectionMap<>();
@@ -72,6 +72,17 @@ public final class State implements Cloneable
 		return new State( Value.createClone( root ) );
 	}
 	
+	/**
+	 * Makes this State a clone of another one, as if it had just been created by {@link #clone()}.
+	 * Used for recycling the State of terminated sessions.
+	 * @param other the State to clone
+	 */
+	void reset( State other )
+	{
+		root = Value.createClone( other.root );
+		linksMap.clear();
+	}
+
 	/**
 	 * Returns the root Value of this State.
 	 * @return the root Value of this State
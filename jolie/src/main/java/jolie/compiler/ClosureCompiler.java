@@ -0,0 +1,317 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.compiler;
+
+import java.util.function.BiPredicate;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
+import java.util.function.IntUnaryOperator;
+import jolie.lang.Constants;
+import jolie.process.ArithmeticAssignmentProcess;
+import jolie.process.AssignmentProcess;
+import jolie.runtime.CompareOperators;
+import jolie.runtime.FaultException;
+import jolie.runtime.Value;
+import jolie.runtime.ValueVector;
+import jolie.runtime.VariablePath;
+import jolie.runtime.expression.ArithmeticExpression;
+import jolie.runtime.expression.CompareCondition;
+import jolie.runtime.expression.Expression;
+import jolie.runtime.expression.Expression.Operand;
+import jolie.runtime.expression.ProductExpression;
+import jolie.runtime.expression.SumExpression;
+import jolie.runtime.expression.ValueVectorSizeExpression;
+import jolie.util.Pair;
+
+/**
+ * Compiles the integer arithmetic of process bodies to trees of closures.
+ * <p>
+ * Sums, products, comparisons and assignments whose operands are variables, constants,
+ * vector sizes or other compiled expressions become trees of closures that compute on
+ * primitive integers, without creating a {@link Value} for each intermediate result
+ * and without dispatching on the type of each operand.
+ * <p>
+ * Each closure is specialised for integer operands and guards that assumption:
+ * when an operand read at runtime is not an integer (e.g., a string that turns a sum into
+ * a concatenation, or an undefined variable), the closure throws {@link GuardFailedException}
+ * and the compiled node evaluates its original expression tree instead.
+ * Results, faults and type conversions are therefore those of the interpreted tree.
+ * Only expressions without side effects are compiled, so that evaluating the tree
+ * again after a failed guard is safe.
+ * A compiled node whose guards keep failing stops trying its closure.
+ *
+ * @see jolie.CommandLineParser
+ */
+public final class ClosureCompiler
+{
+	/*
+	 * Guard failures after which a compiled node only evaluates its original tree,
+	 * as its operands are evidently not integers.
+	 */
+	static final int MAX_GUARD_FAILURES = 10000;
+
+	private ClosureCompiler()
+	{}
+
+	/**
+	 * Compiles a sum, a product or a comparison.
+	 * @param expression the expression to compile
+	 * @return the compiled expression, or the passed expression if it can not be compiled
+	 */
+	public static Expression compile( Expression expression )
+	{
+		if ( expression instanceof SumExpression || expression instanceof ProductExpression ) {
+			final IntSupplier closure = compileInt( expression );
+			if ( closure != null ) {
+				return new CompiledIntExpression( (ArithmeticExpression) expression, closure );
+			}
+		} else if ( expression instanceof CompareCondition ) {
+			final BooleanSupplier closure = compileCondition( (CompareCondition) expression );
+			if ( closure != null ) {
+				return new CompiledCondition( (CompareCondition) expression, closure );
+			}
+		}
+		return expression;
+	}
+
+	/**
+	 * Returns the expression that a compiled expression has been compiled from.
+	 * @param expression an expression, compiled or not
+	 * @return the original expression of a compiled expression, or the passed expression otherwise
+	 */
+	public static Expression source( Expression expression )
+	{
+		return ( expression instanceof CompiledIntExpression ) ? ((CompiledIntExpression) expression).source()
+			: ( expression instanceof CompiledCondition ) ? ((CompiledCondition) expression).source()
+			: expression;
+	}
+
+	/**
+	 * Returns an assignment of the passed expression to the passed variable,
+	 * which stores integers directly if the expression has been compiled.
+	 * @param varPath the variable which will receive the value
+	 * @param expression the expression to assign, possibly returned by {@link #compile(Expression)}
+	 * @return the assignment process
+	 */
+	public static AssignmentProcess compileAssignment( VariablePath varPath, Expression expression )
+	{
+		if ( expression instanceof CompiledIntExpression ) {
+			return new IntAssignmentProcess( varPath, (CompiledIntExpression) expression );
+		}
+		return new AssignmentProcess( varPath, expression );
+	}
+
+	/**
+	 * Returns an assignment like <code>x = x + 1</code>, compiled to a closure that applies
+	 * the operands of the expression to the integer stored in the variable, if possible.
+	 * @param varPath the variable which will receive the value
+	 * @param expression the expression whose first operand reads varPath
+	 * @return the assignment process
+	 */
+	public static ArithmeticAssignmentProcess compileArithmeticAssignment( VariablePath varPath, ArithmeticExpression expression )
+	{
+		final IntUnaryOperator operations = compileOperations( expression );
+		if ( operations != null ) {
+			return new IntArithmeticAssignmentProcess( varPath, expression, operations );
+		}
+		return new ArithmeticAssignmentProcess( varPath, expression );
+	}
+
+	/*
+	 * Compiles an expression whose value must be an integer: the returned closure throws
+	 * GuardFailedException otherwise. Returns null if the expression can not be compiled.
+	 */
+	private static IntSupplier compileInt( Expression expression )
+	{
+		if ( expression instanceof CompiledIntExpression ) {
+			return ((CompiledIntExpression) expression).closure();
+		} else if ( expression instanceof Value ) {
+			final Value value = (Value) expression;
+			if ( value.isInt() ) {
+				final int constant = value.intValue();
+				return () -> constant;
+			}
+		} else if ( expression instanceof SumExpression || expression instanceof ProductExpression ) {
+			final IntSupplier first = compileInt( ((ArithmeticExpression) expression).firstOperand() );
+			final IntUnaryOperator operations = compileOperations( expression );
+			if ( first != null && operations != null ) {
+				return () -> operations.applyAsInt( first.getAsInt() );
+			}
+		} else if ( expression instanceof ValueVectorSizeExpression ) {
+			final VariablePath path = ((ValueVectorSizeExpression) expression).path();
+			if ( isPure( path ) ) {
+				return () -> {
+					final ValueVector vector = path.getValueVectorOrNull();
+					return ( vector == null ) ? 0 : vector.size();
+				};
+			}
+		} else if ( expression instanceof VariablePath && isPure( expression ) ) {
+			return () -> {
+				final Value value = expression.evaluate();
+				if ( value.isInt() ) {
+					return value.intValue();
+				}
+				throw GuardFailedException.INSTANCE;
+			};
+		}
+		return null;
+	}
+
+	/*
+	 * Compiles the operands of a sum or a product after the first one,
+	 * to a closure that applies them to the value of the first operand.
+	 */
+	private static IntUnaryOperator compileOperations( Expression expression )
+	{
+		final Operand[] operands = ( expression instanceof SumExpression ) ? ((SumExpression) expression).operands()
+			: ( expression instanceof ProductExpression ) ? ((ProductExpression) expression).operands()
+			: null;
+		if ( operands == null ) {
+			return null;
+		}
+		IntUnaryOperator operations = IntUnaryOperator.identity();
+		for( int i = 1; i < operands.length; i++ ) {
+			final IntUnaryOperator operation = compileOperation( operands[ i ] );
+			if ( operation == null ) {
+				return null;
+			}
+			operations = ( i == 1 ) ? operation : operations.andThen( operation );
+		}
+		return operations;
+	}
+
+	/*
+	 * Compiles an operation with the same conversions of the integer paths of
+	 * SumExpression and ProductExpression.
+	 */
+	private static IntUnaryOperator compileOperation( Operand operand )
+	{
+		// Adding a string turns a sum into a concatenation
+		final IntSupplier value = compileOperand( operand.expression(), operand.type() == Constants.OperandType.ADD );
+		if ( value == null ) {
+			return null;
+		}
+		switch( operand.type() ) {
+		case ADD:
+			return x -> x + value.getAsInt();
+		case SUBTRACT:
+			return x -> x - value.getAsInt();
+		case MULTIPLY:
+			return x -> x * value.getAsInt();
+		case DIVIDE:
+			return x -> divide( x, value.getAsInt() );
+		case MODULUS:
+			return x -> x % value.getAsInt();
+		default:
+			return null;
+		}
+	}
+
+	private static int divide( int x, int y )
+	{
+		try {
+			return x / y;
+		} catch( ArithmeticException ae ) {
+			throw new FaultException( "ArithmeticException", ae.getLocalizedMessage() ).toRuntimeFaultException();
+		}
+	}
+
+	/*
+	 * Compiles an operand that is converted to an integer, except for strings if guardsStrings is true.
+	 * Compiled sub-expressions must still evaluate to integers.
+	 */
+	private static IntSupplier compileOperand( Expression expression, boolean guardsStrings )
+	{
+		if ( expression instanceof Value ) {
+			final Value value = (Value) expression;
+			if ( guardsStrings && value.isString() ) {
+				return null;
+			}
+			final int constant = value.intValue();
+			return () -> constant;
+		} else if ( expression instanceof VariablePath && isPure( expression ) ) {
+			if ( guardsStrings ) {
+				return () -> {
+					final Value value = expression.evaluate();
+					if ( value.isString() ) {
+						throw GuardFailedException.INSTANCE;
+					}
+					return value.intValue();
+				};
+			}
+			return () -> expression.evaluate().intValue();
+		}
+		return compileInt( expression );
+	}
+
+	private static BooleanSupplier compileCondition( CompareCondition condition )
+	{
+		final IntSupplier left = compileInt( condition.leftExpression() );
+		final IntSupplier right = compileInt( condition.rightExpression() );
+		if ( left == null || right == null ) {
+			return null;
+		}
+		final BiPredicate< Value, Value > operator = condition.compareOperator();
+		if ( operator == CompareOperators.EQUAL ) {
+			return () -> left.getAsInt() == right.getAsInt();
+		} else if ( operator == CompareOperators.NOT_EQUAL ) {
+			return () -> left.getAsInt() != right.getAsInt();
+		} else if ( operator == CompareOperators.MINOR ) {
+			return () -> left.getAsInt() < right.getAsInt();
+		} else if ( operator == CompareOperators.MAJOR ) {
+			return () -> left.getAsInt() > right.getAsInt();
+		} else if ( operator == CompareOperators.MINOR_OR_EQUAL ) {
+			return () -> left.getAsInt() <= right.getAsInt();
+		} else if ( operator == CompareOperators.MAJOR_OR_EQUAL ) {
+			return () -> left.getAsInt() >= right.getAsInt();
+		}
+		return null;
+	}
+
+	/*
+	 * Returns true if evaluating the passed expression has no side effects,
+	 * so that it can be evaluated again by the original tree when a guard fails.
+	 */
+	private static boolean isPure( Expression expression )
+	{
+		if ( expression instanceof Value || expression instanceof CompiledIntExpression ) {
+			return true;
+		} else if ( expression instanceof VariablePath ) {
+			for( Pair< Expression, Expression > node : ((VariablePath) expression).path() ) {
+				if ( !isPure( node.key() ) || ( node.value() != null && !isPure( node.value() ) ) ) {
+					return false;
+				}
+			}
+			return true;
+		} else if ( expression instanceof SumExpression || expression instanceof ProductExpression ) {
+			final Operand[] operands = ( expression instanceof SumExpression ) ? ((SumExpression) expression).operands()
+				: ((ProductExpression) expression).operands();
+			for( Operand operand : operands ) {
+				if ( !isPure( operand.expression() ) ) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+}
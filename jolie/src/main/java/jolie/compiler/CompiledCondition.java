@@ -0,0 +1,76 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.compiler;
+
+import java.util.function.BooleanSupplier;
+import jolie.process.TransformationReason;
+import jolie.runtime.Value;
+import jolie.runtime.expression.CompareCondition;
+import jolie.runtime.expression.Expression;
+
+/**
+ * A comparison of integers compiled to a closure.
+ * If a guard of the closure fails, the original condition is evaluated instead.
+ * @see ClosureCompiler
+ */
+final class CompiledCondition implements Expression
+{
+	private final CompareCondition source;
+	private final BooleanSupplier closure;
+	private int guardFailures = 0; // Not synchronised, as it is only a heuristic
+
+	CompiledCondition( CompareCondition source, BooleanSupplier closure )
+	{
+		this.source = source;
+		this.closure = closure;
+	}
+
+	CompareCondition source()
+	{
+		return source;
+	}
+
+	@Override
+	public Expression cloneExpression( TransformationReason reason )
+	{
+		return ClosureCompiler.compile( source.cloneExpression( reason ) );
+	}
+
+	@Override
+	public Value evaluate()
+	{
+		return Value.create( evaluateCondition() );
+	}
+
+	@Override
+	public boolean evaluateCondition()
+	{
+		if ( guardFailures < ClosureCompiler.MAX_GUARD_FAILURES ) {
+			try {
+				return closure.getAsBoolean();
+			} catch( GuardFailedException e ) {
+				guardFailures++;
+			}
+		}
+		return source.evaluateCondition();
+	}
+}
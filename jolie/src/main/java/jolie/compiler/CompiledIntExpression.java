@@ -0,0 +1,75 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.compiler;
+
+import java.util.function.IntSupplier;
+import jolie.process.TransformationReason;
+import jolie.runtime.Value;
+import jolie.runtime.expression.ArithmeticExpression;
+import jolie.runtime.expression.Expression;
+
+/**
+ * A sum or a product compiled to a closure that computes on integers.
+ * If a guard of the closure fails, the original expression is evaluated instead.
+ * @see ClosureCompiler
+ */
+final class CompiledIntExpression implements Expression
+{
+	private final ArithmeticExpression source;
+	private final IntSupplier closure;
+	private int guardFailures = 0; // Not synchronised, as it is only a heuristic
+
+	CompiledIntExpression( ArithmeticExpression source, IntSupplier closure )
+	{
+		this.source = source;
+		this.closure = closure;
+	}
+
+	ArithmeticExpression source()
+	{
+		return source;
+	}
+
+	IntSupplier closure()
+	{
+		return closure;
+	}
+
+	@Override
+	public Expression cloneExpression( TransformationReason reason )
+	{
+		return ClosureCompiler.compile( source.cloneExpression( reason ) );
+	}
+
+	@Override
+	public Value evaluate()
+	{
+		if ( guardFailures < ClosureCompiler.MAX_GUARD_FAILURES ) {
+			try {
+				return Value.create( closure.getAsInt() );
+			} catch( GuardFailedException e ) {
+				guardFailures++;
+			}
+		}
+		return source.evaluate();
+	}
+}
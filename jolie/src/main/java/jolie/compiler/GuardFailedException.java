@@ -0,0 +1,43 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.compiler;
+
+import jolie.lang.Constants;
+
+/**
+ * Thrown by a compiled closure when one of its operands does not have the type
+ * that the closure has been specialised for.
+ * The compiled node that catches it evaluates its original expression tree instead.
+ * A single instance without a stack trace is shared, so that failing a guard costs
+ * about as much as a branch.
+ */
+final class GuardFailedException extends RuntimeException
+{
+	private static final long serialVersionUID = Constants.serialVersionUID();
+
+	static final GuardFailedException INSTANCE = new GuardFailedException();
+
+	private GuardFailedException()
+	{
+		super( null, null, false, false );
+	}
+}
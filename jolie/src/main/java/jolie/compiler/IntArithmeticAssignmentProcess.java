@@ -0,0 +1,96 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.compiler;
+
+import java.util.function.IntUnaryOperator;
+import jolie.ExecutionThread;
+import jolie.process.ArithmeticAssignmentProcess;
+import jolie.process.Process;
+import jolie.process.TransformationReason;
+import jolie.runtime.Value;
+import jolie.runtime.VariablePath;
+import jolie.runtime.expression.ArithmeticExpression;
+import jolie.runtime.expression.Expression;
+
+/**
+ * Assigns to an integer variable the result of applying a compiled sequence of
+ * operations to it, e.g., <code>x = x * 2 + 1</code>.
+ * @see ClosureCompiler#compileArithmeticAssignment(VariablePath, ArithmeticExpression)
+ */
+final class IntArithmeticAssignmentProcess extends ArithmeticAssignmentProcess
+{
+	private final VariablePath varPath;
+	private final ArithmeticExpression expression;
+	private final IntUnaryOperator operations;
+	private int guardFailures = 0; // Not synchronised, as it is only a heuristic
+
+	IntArithmeticAssignmentProcess( VariablePath varPath, ArithmeticExpression expression, IntUnaryOperator operations )
+	{
+		super( varPath, expression );
+		this.varPath = varPath;
+		this.expression = expression;
+		this.operations = operations;
+	}
+
+	@Override
+	public Process copy( TransformationReason reason )
+	{
+		return ClosureCompiler.compileArithmeticAssignment(
+					(VariablePath)varPath.cloneExpression( reason ),
+					(ArithmeticExpression)expression.cloneExpression( reason )
+				);
+	}
+
+	@Override
+	public Expression cloneExpression( TransformationReason reason )
+	{
+		return ClosureCompiler.compileArithmeticAssignment(
+					(VariablePath)varPath.cloneExpression( reason ),
+					(ArithmeticExpression)expression.cloneExpression( reason )
+				);
+	}
+
+	@Override
+	public void run()
+	{
+		if ( ExecutionThread.currentThread().isKilled() )
+			return;
+		evaluate();
+	}
+
+	@Override
+	public Value evaluate()
+	{
+		final Value val = varPath.getValue();
+		// Like the expression, only integer variables take the integer path
+		if ( val.isInt() && guardFailures < ClosureCompiler.MAX_GUARD_FAILURES ) {
+			try {
+				val.setValue( operations.applyAsInt( val.intValue() ) );
+				return val;
+			} catch( GuardFailedException e ) {
+				guardFailures++;
+			}
+		}
+		val.assignValue( expression.evaluate( val ) );
+		return val;
+	}
+}
@@ -0,0 +1,94 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.compiler;
+
+import java.util.function.IntSupplier;
+import jolie.ExecutionThread;
+import jolie.process.AssignmentProcess;
+import jolie.process.Process;
+import jolie.process.TransformationReason;
+import jolie.runtime.Value;
+import jolie.runtime.VariablePath;
+import jolie.runtime.expression.Expression;
+
+/**
+ * Assigns a compiled sum or product to a variable, storing the integer computed
+ * by its closure without creating an intermediate value.
+ * @see ClosureCompiler#compileAssignment(VariablePath, Expression)
+ */
+final class IntAssignmentProcess extends AssignmentProcess
+{
+	private final VariablePath varPath;
+	private final Expression source;
+	private final IntSupplier closure;
+	private int guardFailures = 0; // Not synchronised, as it is only a heuristic
+
+	IntAssignmentProcess( VariablePath varPath, CompiledIntExpression expression )
+	{
+		super( varPath, expression );
+		this.varPath = varPath;
+		this.source = expression.source();
+		this.closure = expression.closure();
+	}
+
+	@Override
+	public Process copy( TransformationReason reason )
+	{
+		return ClosureCompiler.compileAssignment(
+					(VariablePath)varPath.cloneExpression( reason ),
+					ClosureCompiler.compile( source.cloneExpression( reason ) )
+				);
+	}
+
+	@Override
+	public Expression cloneExpression( TransformationReason reason )
+	{
+		return ClosureCompiler.compileAssignment(
+					(VariablePath)varPath.cloneExpression( reason ),
+					ClosureCompiler.compile( source.cloneExpression( reason ) )
+				);
+	}
+
+	@Override
+	public void run()
+	{
+		if ( ExecutionThread.currentThread().isKilled() )
+			return;
+		evaluate();
+	}
+
+	@Override
+	public Value evaluate()
+	{
+		final Value val = varPath.getValue();
+		if ( guardFailures < ClosureCompiler.MAX_GUARD_FAILURES ) {
+			try {
+				val.setValue( closure.getAsInt() );
+				return val;
+			} catch( GuardFailedException e ) {
+				guardFailures++;
+			}
+		}
+		val.assignValue( source.evaluate() );
+		return val;
+	}
+}
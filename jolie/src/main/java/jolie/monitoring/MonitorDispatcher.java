@@ -0,0 +1,367 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.monitoring;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import jolie.ExecutionThread;
+import jolie.Interpreter;
+import jolie.lang.Constants;
+import jolie.net.CommChannel;
+import jolie.net.CommChannelHandler;
+import jolie.net.CommMessage;
+import jolie.net.ports.OutputPort;
+import jolie.runtime.InvalidIdException;
+import jolie.runtime.Value;
+import jolie.runtime.ValueVector;
+
+/**
+ * Delivers monitoring events to a monitor asynchronously.
+ *
+ * Firing an event only puts it in a bounded, lock-free ring buffer. A drainer task, which is
+ * started on the executor of the {@link jolie.net.CommCore} when there are events to send and
+ * stops as soon as the buffer is empty, sends the events to the monitor in batches through its
+ * <code>pushEvents</code> operation. Monitors that do not support batches receive one
+ * <code>pushEvent</code> per event instead.
+ *
+ * When the buffer is full, new events are dropped. With the {@link OverflowPolicy#SAMPLE} policy,
+ * only one event out of {@value #SAMPLE_RATE} is kept once the buffer is three quarters full, so
+ * that events keep covering all the activity of the service instead of the oldest part of it.
+ * The number of dropped events is reported to the monitor in the <code>dropped</code> field
+ * of the next batch.
+ */
+public class MonitorDispatcher
+{
+	/**
+	 * What to do with the events fired when the buffer is (almost) full.
+	 */
+	public enum OverflowPolicy
+	{
+		DROP, SAMPLE
+	}
+
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+	public static final int DEFAULT_BATCH_SIZE = 64;
+
+	private static final int SAMPLE_RATE = 8;
+	private static final long LINGER_NANOS = TimeUnit.MILLISECONDS.toNanos( 2 );
+	private static final String PUSH_EVENT = "pushEvent";
+	private static final String PUSH_EVENTS = "pushEvents";
+
+	/**
+	 * A bounded multi-producer, single-consumer queue.
+	 * Each slot carries a sequence number telling whether it is ready to be
+	 * written (it equals the position of the writer) or read (it equals the position
+	 * of the reader plus one), so that producers only contend on the tail counter.
+	 */
+	private static class RingBuffer< T >
+	{
+		private final AtomicReferenceArray< T > items;
+		private final AtomicLongArray sequences;
+		private final int mask;
+		private final AtomicLong tail = new AtomicLong( 0L );
+		// Only updated by the consumer
+		private volatile long head = 0L;
+
+		private RingBuffer( int capacity )
+		{
+			items = new AtomicReferenceArray<>( capacity );
+			sequences = new AtomicLongArray( capacity );
+			for( int i = 0; i < capacity; i++ ) {
+				sequences.set( i, i );
+			}
+			mask = capacity - 1;
+		}
+
+		private int capacity()
+		{
+			return mask + 1;
+		}
+
+		private int size()
+		{
+			return (int) Math.max( 0L, tail.get() - head );
+		}
+
+		private boolean offer( T item )
+		{
+			long position = tail.get();
+			while( true ) {
+				final int index = (int) (position & mask);
+				final long difference = sequences.get( index ) - position;
+				if ( difference == 0L ) {
+					if ( tail.compareAndSet( position, position + 1 ) ) {
+						items.set( index, item );
+						sequences.set( index, position + 1 );
+						return true;
+					}
+					position = tail.get();
+				} else if ( difference < 0L ) {
+					return false; // Full
+				} else {
+					position = tail.get();
+				}
+			}
+		}
+
+		// Must be called by one consumer at a time
+		private T poll()
+		{
+			final long position = head;
+			final int index = (int) (position & mask);
+			if ( sequences.get( index ) != position + 1 ) {
+				return null; // Empty, or the producer has not finished writing yet
+			}
+			final T item = items.get( index );
+			items.set( index, null );
+			sequences.set( index, position + mask + 1 );
+			head = position + 1;
+			return item;
+		}
+	}
+
+	private final Interpreter interpreter;
+	private final OutputPort port;
+	private final int batchSize;
+	private final OverflowPolicy overflowPolicy;
+	private final RingBuffer< MonitoringEvent > buffer;
+	private final AtomicBoolean draining = new AtomicBoolean( false );
+	private final AtomicLong dropped = new AtomicLong( 0L );
+	private final AtomicLong sampleCounter = new AtomicLong( 0L );
+	private volatile boolean batching = true;
+	// The context of the drainer, which only needs to resolve the location and protocol of the monitor
+	private ExecutionThread executionThread = null;
+
+	/**
+	 * @param bufferSize the capacity of the buffer, rounded up to a power of two
+	 * @param batchSize the maximum number of events sent with a single message
+	 */
+	public MonitorDispatcher( Interpreter interpreter, OutputPort port, int bufferSize, int batchSize, OverflowPolicy overflowPolicy )
+	{
+		this.interpreter = interpreter;
+		this.port = port;
+		this.batchSize = Math.max( 1, batchSize );
+		this.overflowPolicy = overflowPolicy;
+		final int capacity = Math.max( 2, Math.min( bufferSize, 1 << 30 ) );
+		this.buffer = new RingBuffer<>( Integer.highestOneBit( capacity - 1 ) << 1 );
+	}
+
+	public OutputPort port()
+	{
+		return port;
+	}
+
+	/**
+	 * Queues an event for the monitor, without waiting for it to be sent.
+	 */
+	public void push( MonitoringEvent event )
+	{
+		if (
+			overflowPolicy == OverflowPolicy.SAMPLE
+			&& buffer.size() >= buffer.capacity() / 4 * 3
+			&& sampleCounter.getAndIncrement() % SAMPLE_RATE != 0
+		) {
+			dropped.incrementAndGet();
+			return;
+		}
+		if ( !buffer.offer( event ) ) {
+			dropped.incrementAndGet();
+			return;
+		}
+		startDrainer();
+	}
+
+	private void startDrainer()
+	{
+		if ( draining.compareAndSet( false, true ) ) {
+			try {
+				interpreter.commCore().executor().execute( this::drain );
+			} catch( RejectedExecutionException e ) {
+				// The interpreter is shutting down
+				draining.set( false );
+			}
+		}
+	}
+
+	/**
+	 * Waits for the events in the buffer to be sent, for at most the specified time.
+	 * @param timeout the timeout, in milliseconds
+	 */
+	public void flush( long timeout )
+	{
+		final long deadline = System.currentTimeMillis() + timeout;
+		while( (buffer.size() > 0 || draining.get()) && System.currentTimeMillis() < deadline ) {
+			try {
+				Thread.sleep( 10 );
+			} catch( InterruptedException e ) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of events that have been dropped and not reported to the monitor yet.
+	 */
+	public long droppedEvents()
+	{
+		return dropped.get();
+	}
+
+	private void drain()
+	{
+		if ( executionThread == null ) {
+			executionThread = interpreter.initThread().getNewSessionThread();
+		}
+		CommChannelHandler.setCurrentExecutionThread( executionThread );
+		try {
+			final List< MonitoringEvent > batch = new ArrayList<>( batchSize );
+			boolean lingered = false;
+			while( true ) {
+				MonitoringEvent event;
+				while( batch.size() < batchSize && (event = buffer.poll()) != null ) {
+					batch.add( event );
+				}
+				if ( batch.size() < batchSize && !lingered ) {
+					// Give sessions some time to fire more events, so that batches do not end up with just a few of them
+					LockSupport.parkNanos( LINGER_NANOS );
+					lingered = true;
+					continue;
+				}
+				lingered = false;
+				if ( batch.isEmpty() ) {
+					draining.set( false );
+					// Events pushed after the last poll may have found the drainer still running
+					if ( buffer.size() == 0 || !draining.compareAndSet( false, true ) ) {
+						return;
+					}
+				} else {
+					send( batch );
+					batch.clear();
+				}
+			}
+		} finally {
+			CommChannelHandler.setCurrentExecutionThread( null );
+		}
+	}
+
+	private void send( List< MonitoringEvent > batch )
+	{
+		final Runtime runtime = Runtime.getRuntime();
+		final long memory = runtime.totalMemory() - runtime.freeMemory();
+
+		if ( batching ) {
+			final Value request = Value.create();
+			final ValueVector events = request.getChildren( "events" );
+			for( MonitoringEvent event : batch ) {
+				events.add( MonitoringEvent.toValue( event, memory ) );
+			}
+			final long droppedEvents = dropped.getAndSet( 0L );
+			if ( droppedEvents > 0L ) {
+				request.getFirstChild( "dropped" ).setValue( droppedEvents );
+			}
+			boolean unsupported = true;
+			try {
+				final CommMessage response = call( PUSH_EVENTS, request );
+				if ( !response.isFault() ) {
+					return;
+				} else if ( Constants.TYPE_MISMATCH_FAULT_NAME.equals( response.fault().faultName() ) ) {
+					// The monitor rejected this batch: send its events one by one, but keep batching the next ones
+					interpreter.logFine( "The monitor rejected a batch of events: " + response.fault().value().strValue() );
+					unsupported = false;
+				} else if ( !isUndefinedOperation( response ) ) {
+					return;
+				}
+			} catch( InvalidIdException e ) {
+				// Unsupported by an embedded monitor
+			} catch( IOException e ) {
+				logFailure( e );
+				return;
+			}
+			if ( unsupported ) {
+				interpreter.logInfo( "The monitor does not support " + PUSH_EVENTS + ", sending its events one by one" );
+				batching = false;
+			}
+		}
+
+		for( MonitoringEvent event : batch ) {
+			try {
+				call( PUSH_EVENT, MonitoringEvent.toValue( event, memory ) );
+			} catch( InvalidIdException | IOException e ) {
+				logFailure( e );
+			}
+		}
+	}
+
+	private void logFailure( Exception e )
+	{
+		if ( interpreter.exiting() ) {
+			// The monitor may well be gone already
+			interpreter.logFine( e );
+		} else {
+			interpreter.logWarning( e );
+		}
+	}
+
+	// The fault sent by CommCore for messages to operations that the receiver does not define
+	private static boolean isUndefinedOperation( CommMessage response )
+	{
+		return Constants.IO_EXCEPTION_FAULT_NAME.equals( response.fault().faultName() )
+			&& response.fault().value().strValue().startsWith( "Invalid operation" );
+	}
+
+	private CommMessage call( String operationName, Value value )
+		throws IOException, InvalidIdException
+	{
+		final CommMessage message = CommMessage.createRequest( operationName, "/", value );
+		CommChannel channel = null;
+		try {
+			channel = port.getCommChannel();
+			channel.send( message );
+			return channel.recvResponseFor( message, interpreter.responseTimeout() ).get();
+		} catch( URISyntaxException | InterruptedException | RejectedExecutionException e ) {
+			throw new IOException( e );
+		} catch( ExecutionException e ) {
+			Throwable cause = e.getCause();
+			while( cause != null && !(cause instanceof InvalidIdException) ) {
+				cause = cause.getCause();
+			}
+			if ( cause != null ) {
+				throw (InvalidIdException) cause;
+			}
+			throw new IOException( e.getCause() );
+		} finally {
+			if ( channel != null ) {
+				channel.release();
+			}
+		}
+	}
+}
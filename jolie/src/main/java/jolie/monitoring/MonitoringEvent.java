@@ -27,6 +27,10 @@ import jolie.runtime.Value;
 /**
  * A monitoring event, supporting the {@link ValueConverter} interface for automatic
  * transformation between Jolie messages and Java objects.
+ *
+ * Reading the memory in use is expensive, so it is not done when an event is created:
+ * the {@link MonitorDispatcher} samples it once for each batch of events it sends,
+ * and passes it to {@link #toValue(MonitoringEvent, long)}.
  * @author Fabrizio Montesi
  */
 public class MonitoringEvent implements ValueConverter
@@ -38,12 +42,7 @@ public class MonitoringEvent implements ValueConverter
 	
 	public MonitoringEvent( String type, Value data )
 	{
-		this(
-			type,
-			System.currentTimeMillis(),
-			Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory(),
-			data
-		);
+		this( type, System.currentTimeMillis(), 0L, data );
 	}
 	
 	private MonitoringEvent( String type, long timestamp, long memory, Value data )
@@ -68,7 +67,7 @@ public class MonitoringEvent implements ValueConverter
 	{
 		return memory;
 	}
-	
+
 	public Value data()
 	{
 		return data;
@@ -85,11 +84,20 @@ public class MonitoringEvent implements ValueConverter
 	}
 	
 	public static Value toValue( MonitoringEvent e )
+	{
+		return toValue( e, e.memory );
+	}
+
+	/**
+	 * Converts an event to a Jolie value, reporting the passed memory usage
+	 * instead of the one of the event.
+	 */
+	static Value toValue( MonitoringEvent e, long memory )
 	{
 		Value ret = Value.create();
 		ret.getFirstChild( "type" ).setValue( e.type );
 		ret.getFirstChild( "timestamp" ).setValue( e.timestamp );
-		ret.getFirstChild( "memory" ).setValue( e.memory );
+		ret.getFirstChild( "memory" ).setValue( memory );
 		ret.getChildren( "data" ).add( e.data );
 		return ret;
 	}
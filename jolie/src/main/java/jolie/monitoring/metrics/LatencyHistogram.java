@@ -0,0 +1,219 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.monitoring.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A concurrent histogram of latencies with logarithmic buckets, in the style of HdrHistogram.
+ *
+ * Latencies are recorded in microseconds. Each power of two is split into
+ * {@value #SUB_BUCKETS} linear buckets, so that every recorded value is known with a relative
+ * error of at most 1/{@value #SUB_BUCKETS}, from one microsecond up to about twelve days.
+ * Buckets include their upper bound and exclude their lower one, like the buckets of
+ * Prometheus: a latency of exactly 16 microseconds is counted as at most 16 microseconds.
+ *
+ * Recording does not allocate nor lock: the buckets are striped over a few slices of an
+ * {@link AtomicLongArray}, chosen by the identifier of the recording thread, so that concurrent
+ * sessions rarely update the same counters. Slices are merged when a {@link Snapshot} is taken.
+ */
+public class LatencyHistogram
+{
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_EXPONENT = 40; // 2^40 microseconds, about 12 days
+	private static final int BUCKETS = ( MAX_EXPONENT - SUB_BUCKET_BITS + 1 ) * SUB_BUCKETS;
+	// The last cell of a stripe holds the sum of the recorded nanoseconds,
+	// the padding keeps the stripes on different cache lines
+	private static final int SUM_CELL = BUCKETS;
+	private static final int STRIPE_SIZE = BUCKETS + 16;
+	private static final int STRIPES = Integer.highestOneBit( Math.min( Runtime.getRuntime().availableProcessors(), 8 ) * 2 - 1 );
+
+	private final AtomicLongArray cells = new AtomicLongArray( STRIPES * STRIPE_SIZE );
+
+	private static int bucketIndex( long micros )
+	{
+		if ( micros < SUB_BUCKETS ) {
+			return (int) micros;
+		}
+		final int exponent = 63 - Long.numberOfLeadingZeros( micros );
+		if ( exponent >= MAX_EXPONENT ) {
+			return BUCKETS - 1;
+		}
+		final int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return ( exponent - SUB_BUCKET_BITS + 1 ) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Returns the lower bound, in microseconds, of the bucket with the given index.
+	 * The bucket counts the latencies greater than its lower bound, up to the lower bound of the next bucket.
+	 */
+	private static long lowerBound( int index )
+	{
+		if ( index < SUB_BUCKETS ) {
+			return index;
+		}
+		final int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		return (long) ( SUB_BUCKETS + index % SUB_BUCKETS ) << ( exponent - SUB_BUCKET_BITS );
+	}
+
+	/**
+	 * Records a latency.
+	 * @param nanos the latency to record, in nanoseconds
+	 */
+	public void record( long nanos )
+	{
+		if ( nanos < 0L ) {
+			nanos = 0L;
+		}
+		final int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+		final int offset = stripe * STRIPE_SIZE;
+		// Bucket i is indexed by the microseconds in [lowerBound( i ), upperBound( i )), so counting
+		// the latency in (micros, micros + 1] as micros places it in (lowerBound( i ), upperBound( i )]
+		final long micros = ( nanos == 0L ) ? 0L : (nanos - 1L) / 1000L;
+		cells.incrementAndGet( offset + bucketIndex( micros ) );
+		cells.addAndGet( offset + SUM_CELL, nanos );
+	}
+
+	/**
+	 * Returns a copy of the current content of this histogram.
+	 * The copy is not atomic: latencies recorded while it is being taken may or may not be included.
+	 * @return a copy of the current content of this histogram
+	 */
+	public Snapshot snapshot()
+	{
+		final long[] counts = new long[ BUCKETS ];
+		long sum = 0L;
+		for( int stripe = 0; stripe < STRIPES; stripe++ ) {
+			final int offset = stripe * STRIPE_SIZE;
+			for( int i = 0; i < BUCKETS; i++ ) {
+				counts[ i ] += cells.get( offset + i );
+			}
+			sum += cells.get( offset + SUM_CELL );
+		}
+		return new Snapshot( counts, sum );
+	}
+
+	/**
+	 * An immutable copy of the content of a {@link LatencyHistogram}.
+	 */
+	public static class Snapshot
+	{
+		private final long[] counts;
+		private final long count;
+		private final long sumNanos;
+
+		private Snapshot( long[] counts, long sumNanos )
+		{
+			this.counts = counts;
+			this.sumNanos = sumNanos;
+			long c = 0L;
+			for( long n : counts ) {
+				c += n;
+			}
+			this.count = c;
+		}
+
+		/**
+		 * Returns the number of recorded latencies.
+		 * @return the number of recorded latencies
+		 */
+		public long count()
+		{
+			return count;
+		}
+
+		/**
+		 * Returns the sum of the recorded latencies, in nanoseconds.
+		 * @return the sum of the recorded latencies, in nanoseconds
+		 */
+		public long sumNanos()
+		{
+			return sumNanos;
+		}
+
+		/**
+		 * Returns the mean of the recorded latencies, in microseconds.
+		 * @return the mean of the recorded latencies, in microseconds
+		 */
+		public double mean()
+		{
+			return ( count == 0L ) ? 0.0 : sumNanos / 1000.0 / count;
+		}
+
+		/**
+		 * Returns the latency at or below which the given fraction of the recorded latencies falls,
+		 * in microseconds. The result is the upper bound of the bucket containing that latency.
+		 * @param quantile a number between 0 and 1
+		 * @return the latency at the given quantile, in microseconds, or 0 if the histogram is empty
+		 */
+		public long valueAtQuantile( double quantile )
+		{
+			if ( count == 0L ) {
+				return 0L;
+			}
+			final long rank = Math.max( 1L, (long) Math.ceil( quantile * count ) );
+			long seen = 0L;
+			for( int i = 0; i < counts.length; i++ ) {
+				seen += counts[ i ];
+				if ( seen >= rank ) {
+					return upperBound( i );
+				}
+			}
+			return upperBound( counts.length - 1 );
+		}
+
+		/**
+		 * Returns the upper bound of the bucket of the highest recorded latency, in microseconds.
+		 * @return the highest recorded latency, in microseconds, or 0 if the histogram is empty
+		 */
+		public long max()
+		{
+			for( int i = counts.length - 1; i >= 0; i-- ) {
+				if ( counts[ i ] > 0L ) {
+					return upperBound( i );
+				}
+			}
+			return 0L;
+		}
+
+		/**
+		 * Returns the number of recorded latencies that are smaller than or equal to the given bound.
+		 * The result is exact when the bound is a power of two.
+		 * @param micros the bound, in microseconds
+		 * @return the number of recorded latencies smaller than or equal to the bound
+		 */
+		public long countAtMost( long micros )
+		{
+			long result = 0L;
+			for( int i = 0; i < counts.length && upperBound( i ) <= micros; i++ ) {
+				result += counts[ i ];
+			}
+			return result;
+		}
+
+		private static long upperBound( int index )
+		{
+			return ( index + 1 < BUCKETS ) ? lowerBound( index + 1 ) : Long.MAX_VALUE;
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.monitoring.metrics;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import jolie.lang.Constants;
+import jolie.net.CommChannel;
+import jolie.net.ports.InputPort;
+import jolie.net.ports.OutputPort;
+import jolie.net.ports.Port;
+
+/**
+ * Collects the metrics of the ports of an interpreter.
+ *
+ * The registry is always active: looking up the metrics of a port or an operation that has already
+ * been used costs two hash lookups, and updating them never allocates nor blocks.
+ * The metrics can be read through the <code>getMetrics</code> operation of the Runtime service,
+ * or scraped in the Prometheus text format (see {@link PrometheusExporter}).
+ */
+public class MetricsRegistry
+{
+	private final long startTime = System.currentTimeMillis();
+	private final Map< String, PortMetrics > inputPorts = new ConcurrentHashMap<>();
+	private final Map< String, PortMetrics > outputPorts = new ConcurrentHashMap<>();
+
+	private static PortMetrics portMetrics( Map< String, PortMetrics > ports, String name )
+	{
+		final PortMetrics metrics = ports.get( name );
+		return ( metrics == null ) ? ports.computeIfAbsent( name, PortMetrics::new ) : metrics;
+	}
+
+	/**
+	 * Returns the metrics of an input port, creating them if needed.
+	 * @param name the name of the input port
+	 * @return the metrics of the input port
+	 */
+	public PortMetrics inputPort( String name )
+	{
+		return portMetrics( inputPorts, name );
+	}
+
+	/**
+	 * Returns the metrics of an output port, creating them if needed.
+	 * @param name the name of the output port
+	 * @return the metrics of the output port
+	 */
+	public PortMetrics outputPort( String name )
+	{
+		return portMetrics( outputPorts, name );
+	}
+
+	/**
+	 * Returns the metrics of a port, creating them if needed.
+	 * @param port the port
+	 * @return the metrics of the port, or {@code null} if the port is neither an input nor an output port
+	 */
+	public PortMetrics port( Port port )
+	{
+		if ( port instanceof InputPort ) {
+			return inputPort( ((InputPort) port).name() );
+		} else if ( port instanceof OutputPort ) {
+			return outputPort( ((OutputPort) port).id() );
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the metrics of an input operation, as seen from the input port that received
+	 * a message through the given channel.
+	 * @param channel the channel that received the message for the operation
+	 * @param operationName the name of the operation
+	 * @return the metrics of the input operation
+	 */
+	public OperationMetrics inputOperation( CommChannel channel, String operationName )
+	{
+		final InputPort port = channel.parentInputPort();
+		return inputPort( ( port == null ) ? Constants.LOCAL_INPUT_PORT_NAME : port.name() ).operation( operationName );
+	}
+
+	/**
+	 * Returns the metrics of an operation invoked through an output port.
+	 * @param port the output port
+	 * @param operationName the name of the operation
+	 * @return the metrics of the output operation
+	 */
+	public OperationMetrics outputOperation( OutputPort port, String operationName )
+	{
+		return outputPort( port.id() ).operation( operationName );
+	}
+
+	public Collection< PortMetrics > inputPorts()
+	{
+		return Collections.unmodifiableCollection( inputPorts.values() );
+	}
+
+	public Collection< PortMetrics > outputPorts()
+	{
+		return Collections.unmodifiableCollection( outputPorts.values() );
+	}
+
+	/**
+	 * Returns the time at which this registry started collecting metrics,
+	 * in milliseconds since the epoch.
+	 * @return the time at which this registry was created
+	 */
+	public long startTime()
+	{
+		return startTime;
+	}
+}
@@ -0,0 +1,124 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.monitoring.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of an operation, as seen from a port.
+ *
+ * For input operations, a call lasts from the delivery of the request to its session
+ * until the response has been sent (one-way operations only count calls).
+ * For output operations, a call lasts from the acquisition of a channel until the
+ * response (or the acknowledgement, for notifications) has been received.
+ */
+public class OperationMetrics
+{
+	private final String name;
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder faults = new LongAdder();
+	private final LongAdder inFlight = new LongAdder();
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	OperationMetrics( String name )
+	{
+		this.name = name;
+	}
+
+	/**
+	 * Returns the name of the operation.
+	 * @return the name of the operation
+	 */
+	public String name()
+	{
+		return name;
+	}
+
+	/**
+	 * Records the start of a call.
+	 * @return the start time of the call, to be passed to {@link #end(long, boolean)}
+	 */
+	public long begin()
+	{
+		calls.increment();
+		inFlight.increment();
+		return System.nanoTime();
+	}
+
+	/**
+	 * Records the end of a call.
+	 * @param startTime the value returned by {@link #begin()} for the call
+	 * @param faulted {@code true} if the call ended with a fault
+	 */
+	public void end( long startTime, boolean faulted )
+	{
+		latency.record( System.nanoTime() - startTime );
+		inFlight.decrement();
+		if ( faulted ) {
+			faults.increment();
+		}
+	}
+
+	/**
+	 * Records a call that has no duration, like the reception of a one-way message.
+	 */
+	public void received()
+	{
+		calls.increment();
+	}
+
+	/**
+	 * Returns the number of calls started so far.
+	 * @return the number of calls started so far
+	 */
+	public long calls()
+	{
+		return calls.sum();
+	}
+
+	/**
+	 * Returns the number of calls that ended with a fault.
+	 * @return the number of calls that ended with a fault
+	 */
+	public long faults()
+	{
+		return faults.sum();
+	}
+
+	/**
+	 * Returns the number of calls that have started but not ended yet.
+	 * @return the number of calls in progress
+	 */
+	public long inFlight()
+	{
+		return inFlight.sum();
+	}
+
+	/**
+	 * Returns the histogram of the durations of the calls.
+	 * @return the histogram of the durations of the calls
+	 */
+	public LatencyHistogram latency()
+	{
+		return latency;
+	}
+}
@@ -0,0 +1,114 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.monitoring.metrics;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of an input or output port: the traffic on its channels,
+ * and the metrics of each of its operations.
+ */
+public class PortMetrics
+{
+	private final String name;
+	private final LongAdder bytesReceived = new LongAdder();
+	private final LongAdder bytesSent = new LongAdder();
+	private final LongAdder rejectedMessages = new LongAdder();
+	private final Map< String, OperationMetrics > operations = new ConcurrentHashMap<>();
+
+	PortMetrics( String name )
+	{
+		this.name = name;
+	}
+
+	/**
+	 * Returns the name of the port.
+	 * @return the name of the port
+	 */
+	public String name()
+	{
+		return name;
+	}
+
+	/**
+	 * Returns the metrics of the given operation, creating them if needed.
+	 * @param operationName the name of the operation
+	 * @return the metrics of the operation
+	 */
+	public OperationMetrics operation( String operationName )
+	{
+		final OperationMetrics metrics = operations.get( operationName );
+		return ( metrics == null ) ? operations.computeIfAbsent( operationName, OperationMetrics::new ) : metrics;
+	}
+
+	/**
+	 * Returns the metrics of the operations that have been used through this port.
+	 * @return the metrics of the operations of this port
+	 */
+	public Collection< OperationMetrics > operations()
+	{
+		return Collections.unmodifiableCollection( operations.values() );
+	}
+
+	/**
+	 * Records bytes transferred by a channel of this port.
+	 * @param received the number of received bytes
+	 * @param sent the number of sent bytes
+	 */
+	public void addTraffic( long received, long sent )
+	{
+		if ( received > 0L ) {
+			bytesReceived.add( received );
+		}
+		if ( sent > 0L ) {
+			bytesSent.add( sent );
+		}
+	}
+
+	/**
+	 * Records a message that has been refused by the port, because it was for an undefined
+	 * operation, its type was not correct or it did not correlate with any session.
+	 */
+	public void rejected()
+	{
+		rejectedMessages.increment();
+	}
+
+	public long bytesReceived()
+	{
+		return bytesReceived.sum();
+	}
+
+	public long bytesSent()
+	{
+		return bytesSent.sum();
+	}
+
+	public long rejectedMessages()
+	{
+		return rejectedMessages.sum();
+	}
+}
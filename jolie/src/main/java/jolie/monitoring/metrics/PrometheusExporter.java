@@ -0,0 +1,285 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.monitoring.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+import jolie.Interpreter;
+import jolie.net.AdmissionController;
+import jolie.net.ChannelPool;
+
+/**
+ * Renders the metrics of an interpreter in the Prometheus text exposition format, and
+ * optionally serves them over HTTP at <code>/metrics</code>.
+ *
+ * Besides the content of the {@link MetricsRegistry}, the output includes the statistics
+ * of the channel pools and of the admission controllers of the interpreter.
+ * The buckets of the latency histograms are the powers of two from 16 microseconds to
+ * about 16 seconds, which are exact bucket boundaries of {@link LatencyHistogram}.
+ */
+public class PrometheusExporter
+{
+	private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+	private static final long[] LATENCY_BUCKETS = new long[ 21 ];
+	static {
+		for( int i = 0; i < LATENCY_BUCKETS.length; i++ ) {
+			LATENCY_BUCKETS[ i ] = 16L << i;
+		}
+	}
+
+	private final Interpreter interpreter;
+	private HttpServer server = null;
+
+	public PrometheusExporter( Interpreter interpreter )
+	{
+		this.interpreter = interpreter;
+	}
+
+	/**
+	 * Starts serving the metrics over HTTP.
+	 * The metrics describe the internals of the service, so by default they are only served
+	 * to clients on the same machine.
+	 * @param host the address to listen on, or {@code null} for the loopback address
+	 * @param port the TCP port to listen on
+	 * @throws IOException if the address cannot be bound
+	 */
+	public synchronized void start( String host, int port )
+		throws IOException
+	{
+		if ( server != null ) {
+			return;
+		}
+		final InetAddress address = ( host == null ) ? InetAddress.getLoopbackAddress() : InetAddress.getByName( host );
+		server = HttpServer.create( new InetSocketAddress( address, port ), 0 );
+		server.createContext( "/metrics", this::handle );
+		server.start();
+	}
+
+	/**
+	 * Stops serving the metrics over HTTP, if they were being served.
+	 */
+	public synchronized void stop()
+	{
+		if ( server != null ) {
+			server.stop( 0 );
+			server = null;
+		}
+	}
+
+	private void handle( HttpExchange exchange )
+		throws IOException
+	{
+		try {
+			if ( "GET".equals( exchange.getRequestMethod() ) ) {
+				final byte[] body = scrape().getBytes( StandardCharsets.UTF_8 );
+				exchange.getResponseHeaders().set( "Content-Type", CONTENT_TYPE );
+				exchange.sendResponseHeaders( 200, body.length );
+				try( OutputStream ostream = exchange.getResponseBody() ) {
+					ostream.write( body );
+				}
+			} else {
+				exchange.sendResponseHeaders( 405, -1 );
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Returns the current metrics in the Prometheus text exposition format.
+	 * @return the current metrics in the Prometheus text exposition format
+	 */
+	public String scrape()
+	{
+		final MetricsRegistry registry = interpreter.metrics();
+		final StringBuilder builder = new StringBuilder( 4096 );
+
+		family( builder, "jolie_uptime_seconds", "gauge", "Time since the start of the interpreter." );
+		builder.append( "jolie_uptime_seconds " )
+			.append( (System.currentTimeMillis() - registry.startTime()) / 1000.0 ).append( '\n' );
+
+		family( builder, "jolie_operation_calls_total", "counter", "Calls of operations." );
+		operationSamples( builder, "jolie_operation_calls_total", registry, OperationMetrics::calls );
+		family( builder, "jolie_operation_faults_total", "counter", "Calls of operations that ended with a fault." );
+		operationSamples( builder, "jolie_operation_faults_total", registry, OperationMetrics::faults );
+		family( builder, "jolie_operation_in_flight", "gauge", "Calls of operations in progress." );
+		operationSamples( builder, "jolie_operation_in_flight", registry, OperationMetrics::inFlight );
+		family( builder, "jolie_operation_duration_seconds", "histogram", "Duration of the calls of operations." );
+		histograms( builder, "in", registry.inputPorts() );
+		histograms( builder, "out", registry.outputPorts() );
+
+		family( builder, "jolie_port_received_bytes_total", "counter", "Bytes received by the channels of ports." );
+		portSamples( builder, "jolie_port_received_bytes_total", "in", registry.inputPorts(), PortMetrics::bytesReceived );
+		portSamples( builder, "jolie_port_received_bytes_total", "out", registry.outputPorts(), PortMetrics::bytesReceived );
+		family( builder, "jolie_port_sent_bytes_total", "counter", "Bytes sent by the channels of ports." );
+		portSamples( builder, "jolie_port_sent_bytes_total", "in", registry.inputPorts(), PortMetrics::bytesSent );
+		portSamples( builder, "jolie_port_sent_bytes_total", "out", registry.outputPorts(), PortMetrics::bytesSent );
+		family( builder, "jolie_port_rejected_messages_total", "counter", "Messages refused by input ports." );
+		portSamples( builder, "jolie_port_rejected_messages_total", "in", registry.inputPorts(), PortMetrics::rejectedMessages );
+
+		channelPools( builder, interpreter.commCore().channelPools() );
+		admissionControllers( builder, interpreter.commCore().admissionControllers() );
+		return builder.toString();
+	}
+
+	private static void family( StringBuilder builder, String name, String type, String help )
+	{
+		builder.append( "# HELP " ).append( name ).append( ' ' ).append( help ).append( '\n' );
+		builder.append( "# TYPE " ).append( name ).append( ' ' ).append( type ).append( '\n' );
+	}
+
+	private static void operationSamples( StringBuilder builder, String name, MetricsRegistry registry, ToLongFunction< OperationMetrics > getter )
+	{
+		operationSamples( builder, name, "in", registry.inputPorts(), getter );
+		operationSamples( builder, name, "out", registry.outputPorts(), getter );
+	}
+
+	private static void operationSamples( StringBuilder builder, String name, String direction, Collection< PortMetrics > ports, ToLongFunction< OperationMetrics > getter )
+	{
+		for( PortMetrics port : ports ) {
+			for( OperationMetrics operation : port.operations() ) {
+				builder.append( name );
+				operationLabels( builder, direction, port, operation, null );
+				builder.append( ' ' ).append( getter.applyAsLong( operation ) ).append( '\n' );
+			}
+		}
+	}
+
+	private static void histograms( StringBuilder builder, String direction, Collection< PortMetrics > ports )
+	{
+		for( PortMetrics port : ports ) {
+			for( OperationMetrics operation : port.operations() ) {
+				final LatencyHistogram.Snapshot snapshot = operation.latency().snapshot();
+				if ( snapshot.count() == 0L ) {
+					continue; // e.g., one-way input operations
+				}
+				for( long bound : LATENCY_BUCKETS ) {
+					builder.append( "jolie_operation_duration_seconds_bucket" );
+					operationLabels( builder, direction, port, operation, Double.toString( bound / 1e6 ) );
+					builder.append( ' ' ).append( snapshot.countAtMost( bound ) ).append( '\n' );
+				}
+				builder.append( "jolie_operation_duration_seconds_bucket" );
+				operationLabels( builder, direction, port, operation, "+Inf" );
+				builder.append( ' ' ).append( snapshot.count() ).append( '\n' );
+				builder.append( "jolie_operation_duration_seconds_sum" );
+				operationLabels( builder, direction, port, operation, null );
+				builder.append( ' ' ).append( snapshot.sumNanos() / 1e9 ).append( '\n' );
+				builder.append( "jolie_operation_duration_seconds_count" );
+				operationLabels( builder, direction, port, operation, null );
+				builder.append( ' ' ).append( snapshot.count() ).append( '\n' );
+			}
+		}
+	}
+
+	private static void operationLabels( StringBuilder builder, String direction, PortMetrics port, OperationMetrics operation, String le )
+	{
+		builder.append( "{direction=\"" ).append( direction ).append( "\",port=\"" );
+		escape( builder, port.name() );
+		builder.append( "\",operation=\"" );
+		escape( builder, operation.name() );
+		if ( le != null ) {
+			builder.append( "\",le=\"" ).append( le );
+		}
+		builder.append( "\"}" );
+	}
+
+	private static void portSamples( StringBuilder builder, String name, String direction, Collection< PortMetrics > ports, ToLongFunction< PortMetrics > getter )
+	{
+		for( PortMetrics port : ports ) {
+			builder.append( name ).append( "{direction=\"" ).append( direction ).append( "\",port=\"" );
+			escape( builder, port.name() );
+			builder.append( "\"} " ).append( getter.applyAsLong( port ) ).append( '\n' );
+		}
+	}
+
+	private static void channelPools( StringBuilder builder, Collection< ChannelPool > pools )
+	{
+		channelPoolSamples( builder, "jolie_channel_pool_leased_channels", "gauge", "Channels leased by the pool.", pools, ChannelPool::leasedChannels );
+		channelPoolSamples( builder, "jolie_channel_pool_idle_channels", "gauge", "Idle channels in the pool.", pools, ChannelPool::idleChannels );
+		channelPoolSamples( builder, "jolie_channel_pool_shared_channels", "gauge", "Channels shared by multiplexed requests.", pools, ChannelPool::sharedChannels );
+		channelPoolSamples( builder, "jolie_channel_pool_hits_total", "counter", "Leases served with an existing channel.", pools, ChannelPool::hits );
+		channelPoolSamples( builder, "jolie_channel_pool_misses_total", "counter", "Leases that required opening a channel.", pools, ChannelPool::misses );
+		channelPoolSamples( builder, "jolie_channel_pool_creations_total", "counter", "Channels opened by the pool.", pools, ChannelPool::creations );
+		channelPoolSamples( builder, "jolie_channel_pool_evictions_total", "counter", "Channels discarded by the pool.", pools, ChannelPool::evictions );
+	}
+
+	private static void channelPoolSamples( StringBuilder builder, String name, String type, String help, Collection< ChannelPool > pools, ToLongFunction< ChannelPool > getter )
+	{
+		family( builder, name, type, help );
+		for( ChannelPool pool : pools ) {
+			builder.append( name ).append( "{location=\"" );
+			escape( builder, pool.location().toString() );
+			builder.append( "\",protocol=\"" );
+			escape( builder, pool.protocol() );
+			builder.append( "\"} " ).append( getter.applyAsLong( pool ) ).append( '\n' );
+		}
+	}
+
+	private static void admissionControllers( StringBuilder builder, Map< String, AdmissionController > controllers )
+	{
+		admissionSamples( builder, "jolie_admission_in_flight_sessions", "gauge", "Sessions admitted and still running.", controllers, AdmissionController::inFlightSessions );
+		admissionSamples( builder, "jolie_admission_queue_depth", "gauge", "Messages waiting for admission.", controllers, AdmissionController::queueDepth );
+		admissionSamples( builder, "jolie_admission_paused_connections", "gauge", "Connections paused by admission control.", controllers, AdmissionController::pausedConnections );
+		admissionSamples( builder, "jolie_admission_rejected_messages_total", "counter", "Messages rejected by admission control.", controllers, AdmissionController::rejectedMessages );
+		admissionSamples( builder, "jolie_admission_paused_messages_total", "counter", "Messages that paused their connection.", controllers, AdmissionController::pausedMessages );
+		admissionSamples( builder, "jolie_admission_caller_runs_messages_total", "counter", "Messages admitted over the limit, whose connection is not read again until their session ends.", controllers, AdmissionController::callerRunsMessages );
+	}
+
+	private static void admissionSamples( StringBuilder builder, String name, String type, String help, Map< String, AdmissionController > controllers, ToLongFunction< AdmissionController > getter )
+	{
+		family( builder, name, type, help );
+		for( Map.Entry< String, AdmissionController > entry : controllers.entrySet() ) {
+			builder.append( name ).append( "{port=\"" );
+			escape( builder, entry.getKey() );
+			builder.append( "\"} " ).append( getter.applyAsLong( entry.getValue() ) ).append( '\n' );
+		}
+	}
+
+	private static void escape( StringBuilder builder, String labelValue )
+	{
+		for( int i = 0; i < labelValue.length(); i++ ) {
+			final char c = labelValue.charAt( i );
+			switch( c ) {
+			case '\\':
+				builder.append( "\\\\" );
+				break;
+			case '"':
+				builder.append( "\\\"" );
+				break;
+			case '\n':
+				builder.append( "\\n" );
+				break;
+			default:
+				builder.append( c );
+				break;
+			}
+		}
+	}
+}
@@ -23,196 +23,164 @@ package jolie.net;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
 import jolie.ExecutionThread;
 import jolie.Interpreter;
 import jolie.lang.Constants;
 import jolie.runtime.FaultException;
-import jolie.runtime.TimeoutHandler;
+import jolie.runtime.TimerWheel;
 import jolie.runtime.Value;
 
+/**
+ * A channel whose responses are received by a {@link ResponseReceiver}, which
+ * delivers them to the futures of the requests they are for.
+ *
+ * The receiver runs only while there are requests waiting for a response, so waiting
+ * for responses does not keep any thread busy besides the receiver itself.
+ */
 public abstract class AbstractCommChannel extends CommChannel
 {
-	private static final long RECEIVER_KEEP_ALIVE = 20000; // msecs
+	// The maximum number of timed out requests whose late responses are remembered
+	private static final int MAX_ABANDONED_REQUESTS = 1024;
 
+	// Guarded by responseRecvMutex
 	private final Map< Long, CommMessage > pendingResponses = new HashMap<>();
-	private final Map< Long, ResponseContainer > waiters = new HashMap<>();
+	private final Map< Long, CompletableFuture< CommMessage > > waiters = new HashMap<>();
 	private final List< CommMessage > pendingGenericResponses = new LinkedList<>();
+	// Requests that timed out, whose late responses are discarded, oldest first
+	private final Set< Long > abandonedRequests = new LinkedHashSet<>();
 	private ResponseReceiver responseReceiver = null;
 	private final Object responseRecvMutex = new Object();
 
-	private static class ResponseContainer
+	@Override
+	public Future< CommMessage > recvResponseFor( CommMessage request )
+		throws IOException
 	{
-		private ResponseContainer() {}
-		private CommMessage response = null;
+		return registerWaiter( request );
 	}
 
 	@Override
-	public Future< CommMessage > recvResponseFor( CommMessage request )
+	public Future< CommMessage > recvResponseFor( CommMessage request, long timeout )
 		throws IOException
 	{
-		final ExecutionThread ethread = ExecutionThread.currentThread();
-		return CompletableFuture.supplyAsync( () -> {
-			CommMessage response;
-			ResponseContainer monitor = null;
-			synchronized( responseRecvMutex ) {
-				response = pendingResponses.remove( request.id() );
-				if ( response == null ) {
-					if ( pendingGenericResponses.isEmpty() ) {
-						assert( waiters.containsKey( request.id() ) == false );
-						monitor = new ResponseContainer();
-						waiters.put( request.id(), monitor );
-						//responseRecvMutex.notify();
-					} else {
-						response = pendingGenericResponses.remove( 0 );
-					}
-				}
-			}
-			if ( response == null ) {
+		final CompletableFuture< CommMessage > future = registerWaiter( request );
+		if ( !future.isDone() ) {
+			final TimerWheel.Timeout t = Interpreter.getInstance().timerWheel().schedule( () -> {
 				synchronized( responseRecvMutex ) {
-					if ( responseReceiver == null ) {
-						responseReceiver = new ResponseReceiver( this, ethread );
-						ethread.interpreter().commCore().startCommChannelHandler( responseReceiver );
-					} else {
-						responseReceiver.wakeUp();
-					}
-				}
-				
-				if ( monitor != null ) {
-					synchronized( monitor ) {
-						if ( monitor.response == null ) {
-							try {
-								monitor.wait();
-							} catch( InterruptedException e ) {
-								ethread.interpreter().logSevere( e );
-							}
-						}
-						response = monitor.response;
+					if ( waiters.remove( request.id(), future ) ) {
+						abandon( request.id() );
 					}
 				}
-			}
-			return response;
-		}, Interpreter.getInstance().commCore().executor() );
+				future.completeExceptionally( new TimeoutException() );
+			}, timeout );
+			future.whenComplete( ( response, e ) -> t.cancel() );
+		}
+		return future;
 	}
 
-	private static class ResponseReceiver implements Runnable
+	/*
+	 * Remembers a timed out request, forgetting the oldest one if there are too many:
+	 * responses that never arrive must not make the set grow for the whole life of the channel.
+	 * Must be called while holding responseRecvMutex.
+	 */
+	private void abandon( long requestId )
 	{
-		private final AbstractCommChannel parent;
-		private final ExecutionThread ethread;
-		private boolean keepRun;
-		private TimeoutHandler timeoutHandler;
-
-		private void timeout()
-		{
-			synchronized( parent.responseRecvMutex ) {
-				if ( keepRun == false ) {
-					if ( parent.waiters.isEmpty() ) {
-						timeoutHandler = null;
-						parent.responseReceiver = null;
-					} else {
-						keepRun = true;
-					}
-					parent.responseRecvMutex.notify();
-				}
-			}
+		if ( abandonedRequests.size() >= MAX_ABANDONED_REQUESTS ) {
+			final Iterator< Long > it = abandonedRequests.iterator();
+			it.next();
+			it.remove();
 		}
+		abandonedRequests.add( requestId );
+	}
 
-		private void wakeUp()
-		{
-			// TODO: check race conditions on timeoutHandler, should we sync it?
-			if ( timeoutHandler != null ) {
-				timeoutHandler.cancel();
+	private CompletableFuture< CommMessage > registerWaiter( CommMessage request )
+	{
+		synchronized( responseRecvMutex ) {
+			CommMessage response = pendingResponses.remove( request.id() );
+			if ( response == null && !pendingGenericResponses.isEmpty() ) {
+				response = pendingGenericResponses.remove( 0 );
+			}
+			if ( response != null ) {
+				return CompletableFuture.completedFuture( response );
 			}
-			keepRun = true;
-			parent.responseRecvMutex.notify();
-		}
 
-		private void sleep()
-		{
-			final ResponseReceiver receiver = this;
-			timeoutHandler = new TimeoutHandler( RECEIVER_KEEP_ALIVE ) {
-				@Override
-				public void onTimeout() {
-					receiver.timeout();
-				}
-			};
-			ethread.interpreter().addTimeoutHandler( timeoutHandler );
-			try {
-				keepRun = false;
-				parent.responseRecvMutex.wait();
-			} catch( InterruptedException e ) {
-				Interpreter.getInstance().logSevere( e );
+			assert( waiters.containsKey( request.id() ) == false );
+			final CompletableFuture< CommMessage > future = new CompletableFuture<>();
+			waiters.put( request.id(), future );
+			if ( responseReceiver == null ) {
+				final ExecutionThread ethread = ExecutionThread.currentThread();
+				responseReceiver = new ResponseReceiver( this, ethread );
+				ethread.interpreter().commCore().startCommChannelHandler( responseReceiver );
 			}
+			return future;
 		}
+	}
+
+	private static class ResponseReceiver implements Runnable
+	{
+		private final AbstractCommChannel parent;
+		private final ExecutionThread ethread;
 
 		private ResponseReceiver( AbstractCommChannel parent, ExecutionThread ethread )
 		{
 			this.ethread = ethread;
 			this.parent = parent;
-			this.keepRun = true;
-			this.timeoutHandler = null;
 		}
 
+		// Must be called while holding parent.responseRecvMutex
 		private void handleGenericMessage( CommMessage response )
 		{
-			ResponseContainer monitor;
 			if ( parent.waiters.isEmpty() ) {
 				parent.pendingGenericResponses.add( response );
-			} else {
-				Entry< Long, ResponseContainer > entry =
-					parent.waiters.entrySet().iterator().next();
-				monitor = entry.getValue();
-				parent.waiters.remove( entry.getKey() );
-				synchronized( monitor ) {
-					monitor.response = new CommMessage(
-						entry.getKey(),
-						response.operationName(),
-						response.resourcePath(),
-						response.value(),
-						response.fault()
-					);
-					monitor.notify();
-				}
+				return;
 			}
+			final Iterator< Entry< Long, CompletableFuture< CommMessage > > > it = parent.waiters.entrySet().iterator();
+			final Entry< Long, CompletableFuture< CommMessage > > entry = it.next();
+			it.remove();
+			entry.getValue().complete( new CommMessage(
+				entry.getKey(),
+				response.operationName(),
+				response.resourcePath(),
+				response.value(),
+				response.fault()
+			) );
 		}
 
+		// Must be called while holding parent.responseRecvMutex
 		private void handleMessage( CommMessage response )
 		{
-			ResponseContainer monitor;
-			if ( (monitor=parent.waiters.remove( response.id() )) == null ) {
-				parent.pendingResponses.put( response.id(), response );
-			} else {
-				synchronized( monitor ) {
-					monitor.response = response;
-					monitor.notify();
+			final CompletableFuture< CommMessage > future = parent.waiters.remove( response.id() );
+			if ( future == null ) {
+				if ( !parent.abandonedRequests.remove( response.id() ) ) {
+					parent.pendingResponses.put( response.id(), response );
 				}
+			} else {
+				future.complete( response );
 			}
 		}
 
+		// Must be called while holding parent.responseRecvMutex
 		private void throwIOExceptionFault( IOException e )
 		{
-			if ( parent.waiters.isEmpty() == false ) {
-				ResponseContainer monitor;
-				for( Entry< Long, ResponseContainer > entry : parent.waiters.entrySet() ) {
-					monitor = entry.getValue();
-					synchronized( monitor ) {
-						monitor.response = new CommMessage(
-							entry.getKey(),
-							"",
-							Constants.ROOT_RESOURCE_PATH,
-							Value.create(),
-							new FaultException( "IOException", e )
-						);
-						monitor.notify();
-					}
-				}
-				parent.waiters.clear();
+			for( Entry< Long, CompletableFuture< CommMessage > > entry : parent.waiters.entrySet() ) {
+				entry.getValue().complete( new CommMessage(
+					entry.getKey(),
+					"",
+					Constants.ROOT_RESOURCE_PATH,
+					Value.create(),
+					new FaultException( "IOException", e )
+				) );
 			}
+			parent.waiters.clear();
 		}
 
 		@Override
@@ -223,28 +191,36 @@ public abstract class AbstractCommChannel extends CommChannel
 			 * whole thing is safe iff the CommChannel is used only for outputs,
 			 * otherwise we are messing with correlation set checking.
 			 */
-			CommChannelHandler.currentThread().setExecutionThread( ethread ); // TODO: this is hacky..
+			CommChannelHandler.setCurrentExecutionThread( ethread ); // TODO: this is hacky..
 
 			CommMessage response;
-			while( keepRun ) {
+			while( true ) {
 				synchronized( parent.responseRecvMutex ) {
-					try {
-						response = parent.recv();
-						if ( response != null ) {
-							if ( response.hasGenericId() ) {
-								handleGenericMessage( response );
-							} else {
-								handleMessage( response );
-							}
-						}
-						if ( parent.waiters.isEmpty() ) {
-							sleep();
-						}
-					} catch( IOException e ) {
+					if ( parent.waiters.isEmpty() ) {
+						// Nobody is waiting, a new receiver will be started when needed
+						parent.responseReceiver = null;
+						return;
+					}
+				}
+				try {
+					response = parent.recv();
+				} catch( IOException e ) {
+					// The channel is broken, make sure that it is not reused
+					parent.setToBeClosed( true );
+					synchronized( parent.responseRecvMutex ) {
 						throwIOExceptionFault( e );
-						keepRun = false;
 						parent.responseReceiver = null;
 					}
+					return;
+				}
+				if ( response != null ) {
+					synchronized( parent.responseRecvMutex ) {
+						if ( response.hasGenericId() ) {
+							handleGenericMessage( response );
+						} else {
+							handleMessage( response );
+						}
+					}
 				}
 			}
 		}
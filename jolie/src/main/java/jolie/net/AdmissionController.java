@@ -0,0 +1,380 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.net;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import jolie.Interpreter;
+import jolie.SessionListener;
+import jolie.SessionThread;
+import jolie.lang.Constants;
+import jolie.runtime.FaultException;
+import jolie.runtime.InputOperation;
+import jolie.runtime.Value;
+
+/**
+ * Bounds the number of sessions that an input port can have in flight.
+ *
+ * Messages that would start a new session are admitted as long as fewer than
+ * {@link #maxSessions()} sessions started through the port are running.
+ * Beyond that, up to {@link #queueSize()} messages are kept in a wait queue,
+ * without slowing down the connections they come from. When the queue is full,
+ * messages are handled according to the {@link SheddingPolicy} of the port.
+ *
+ * Admission control is configured through the <code>admission</code> parameter
+ * of the protocol of the input port, e.g.:
+ * <pre>
+ * Protocol: sodep {
+ *	.admission.maxSessions = 100;
+ *	.admission.queueSize = 1000;
+ *	.admission.policy = "backpressure"
+ * }
+ * </pre>
+ *
+ * Messages for operations that can not start a session are never held back,
+ * since running sessions may need them in order to terminate.
+ */
+public class AdmissionController
+{
+	public enum SheddingPolicy
+	{
+		/**
+		 * Replies immediately with a {@link Constants#SERVICE_OVERLOADED_FAULT_NAME} fault.
+		 */
+		FAULT( "fault" ),
+		/**
+		 * Stops reading from the connection of the message until the message is admitted,
+		 * so that the transport pushes back on the caller.
+		 */
+		BACKPRESSURE( "backpressure" ),
+		/**
+		 * Admits the message beyond the limit, but stops reading from its connection
+		 * until the session it starts terminates: the caller pays for its own overload.
+		 */
+		CALLER_RUNS( "callerRuns" );
+
+		private final String id;
+
+		private SheddingPolicy( String id )
+		{
+			this.id = id;
+		}
+
+		public String id()
+		{
+			return id;
+		}
+
+		public static SheddingPolicy fromString( String id )
+		{
+			for( SheddingPolicy policy : values() ) {
+				if ( policy.id.equals( id ) ) {
+					return policy;
+				}
+			}
+			return null;
+		}
+	}
+
+	public static final String ADMISSION_PARAMETER_NAME = "admission";
+
+	private class Ticket implements SessionListener
+	{
+		private final CommMessage message;
+		private final CommChannel channel;
+		private final InputOperation operation;
+		private final AtomicBoolean released = new AtomicBoolean( false );
+		// Set when the connection of the message is not read until its session terminates
+		private boolean holdsChannel = false;
+		// Set while the connection of the message is not read because the message is waiting for admission
+		private boolean paused = false;
+
+		private Ticket( CommMessage message, CommChannel channel, InputOperation operation )
+		{
+			this.message = message;
+			this.channel = channel;
+			this.operation = operation;
+		}
+
+		@Override
+		public void onSessionExecuted( SessionThread session )
+		{
+			release( this );
+		}
+
+		@Override
+		public void onSessionError( SessionThread session, FaultException fault )
+		{
+			release( this );
+		}
+	}
+
+	private final CommCore commCore;
+	private final String portName;
+	private final int maxSessions;
+	private final int queueSize;
+	private final SheddingPolicy policy;
+
+	// Guarded by this
+	private final Deque< Ticket > queue = new ArrayDeque<>();
+	private final Deque< Ticket > paused = new ArrayDeque<>();
+	private int inFlight = 0;
+	private long rejected = 0;
+	private long pausedTotal = 0;
+	private long callerRunsTotal = 0;
+
+	AdmissionController( CommCore commCore, String portName, int maxSessions, int queueSize, SheddingPolicy policy )
+	{
+		this.commCore = commCore;
+		this.portName = portName;
+		this.maxSessions = maxSessions;
+		this.queueSize = queueSize;
+		this.policy = policy;
+	}
+
+	/**
+	 * Creates the admission controller of an input port from its protocol configuration.
+	 * @return the admission controller, or {@code null} if the port does not use admission control
+	 */
+	static AdmissionController create( CommCore commCore, String portName, Value protocolConfiguration )
+	{
+		if ( !protocolConfiguration.hasChildren( ADMISSION_PARAMETER_NAME ) ) {
+			return null;
+		}
+		final Value admission = protocolConfiguration.getFirstChild( ADMISSION_PARAMETER_NAME );
+		final int maxSessions = admission.getFirstChild( "maxSessions" ).intValue();
+		if ( maxSessions <= 0 ) {
+			return null;
+		}
+		final int queueSize = Math.max( 0, admission.getFirstChild( "queueSize" ).intValue() );
+		SheddingPolicy policy = SheddingPolicy.FAULT;
+		if ( admission.hasChildren( "policy" ) ) {
+			final String policyId = admission.getFirstChild( "policy" ).strValue();
+			policy = SheddingPolicy.fromString( policyId );
+			if ( policy == null ) {
+				commCore.interpreter().logWarning( "Unknown admission policy " + policyId + " for input port " + portName + ", using " + SheddingPolicy.FAULT.id() );
+				policy = SheddingPolicy.FAULT;
+			}
+		}
+		return new AdmissionController( commCore, portName, maxSessions, queueSize, policy );
+	}
+
+	/**
+	 * Dispatches a message that may start a new session, subject to admission control.
+	 * @return {@code true} if the caller must dispose the channel for input as usual,
+	 * {@code false} if this controller took care of it
+	 */
+	boolean dispatch( CommMessage message, CommChannel channel, InputOperation operation )
+		throws IOException
+	{
+		final Ticket ticket = new Ticket( message, channel, operation );
+		boolean reject = false;
+		synchronized( this ) {
+			if ( inFlight < maxSessions ) {
+				inFlight++;
+			} else if ( queue.size() < queueSize ) {
+				queue.add( ticket );
+				return true;
+			} else {
+				switch( policy ) {
+				case BACKPRESSURE:
+					ticket.paused = true;
+					paused.add( ticket );
+					pausedTotal++;
+					return false;
+				case CALLER_RUNS:
+					inFlight++;
+					callerRunsTotal++;
+					ticket.holdsChannel = true;
+					break;
+				default:
+					rejected++;
+					reject = true;
+					break;
+				}
+			}
+		}
+		if ( reject ) {
+			// Sent outside of the monitor, so that a slow caller can not hold back the release of other sessions
+			commCore.interpreter().logFine( "Input port " + portName + " is overloaded, rejecting a message for operation " + message.operationName() );
+			channel.send( CommMessage.createFaultResponse( message, new FaultException( Constants.SERVICE_OVERLOADED_FAULT_NAME, "Input port " + portName + " is overloaded, try again later" ) ) );
+			return true;
+		}
+		start( ticket );
+		return !ticket.holdsChannel;
+	}
+
+	private void start( Ticket ticket )
+		throws IOException
+	{
+		boolean started = false;
+		try {
+			started = commCore.dispatchDirectMessage( ticket.message, ticket.channel, ticket.operation, ticket );
+		} finally {
+			if ( !started ) {
+				// The message did not start a session, so nothing will release its slot
+				release( ticket );
+			}
+		}
+	}
+
+	private void release( Ticket ticket )
+	{
+		if ( !ticket.released.compareAndSet( false, true ) ) {
+			return;
+		}
+		if ( ticket.holdsChannel ) {
+			disposeForInput( ticket.channel );
+		}
+
+		final Ticket next;
+		Ticket resumed = null;
+		synchronized( this ) {
+			if ( !queue.isEmpty() ) {
+				next = queue.poll();
+				resumed = paused.poll();
+				if ( resumed != null ) {
+					resumed.paused = false;
+					queue.add( resumed );
+				}
+			} else {
+				next = paused.poll();
+				if ( next == null ) {
+					inFlight--;
+				}
+			}
+		}
+
+		if ( resumed != null ) {
+			// The paused message has entered the queue, we can read from its connection again
+			disposeForInput( resumed.channel );
+		}
+		if ( next != null ) {
+			commCore.startCommChannelHandler( () -> {
+				CommChannelHandler.setCurrentExecutionThread( commCore.interpreter().initThread().getNewSessionThread() );
+				try {
+					start( next );
+				} catch( ClosedChannelException e ) {
+					// The client has gone away while its message was waiting
+				} catch( IOException e ) {
+					commCore.interpreter().logWarning( e );
+				} finally {
+					if ( next.paused ) {
+						disposeForInput( next.channel );
+					}
+					CommChannelHandler.setCurrentExecutionThread( null );
+				}
+			} );
+		}
+	}
+
+	private void disposeForInput( CommChannel channel )
+	{
+		try {
+			channel.disposeForInput();
+		} catch( ClosedChannelException e ) {
+			// The client has disconnected, which is common under load: there is nothing to resume
+		} catch( IOException e ) {
+			commCore.interpreter().logWarning( e );
+		}
+	}
+
+	/**
+	 * Returns the maximum number of sessions that can be in flight for the input port.
+	 * @return the maximum number of sessions that can be in flight for the input port
+	 */
+	public int maxSessions()
+	{
+		return maxSessions;
+	}
+
+	/**
+	 * Returns the maximum number of messages that can wait for admission in the queue.
+	 * @return the maximum number of messages that can wait for admission in the queue
+	 */
+	public int queueSize()
+	{
+		return queueSize;
+	}
+
+	public SheddingPolicy policy()
+	{
+		return policy;
+	}
+
+	/**
+	 * Returns the number of sessions currently in flight for the input port.
+	 * @return the number of sessions currently in flight for the input port
+	 */
+	public synchronized int inFlightSessions()
+	{
+		return inFlight;
+	}
+
+	/**
+	 * Returns the number of messages currently waiting in the queue.
+	 * @return the number of messages currently waiting in the queue
+	 */
+	public synchronized int queueDepth()
+	{
+		return queue.size();
+	}
+
+	/**
+	 * Returns the number of connections currently paused by backpressure.
+	 * @return the number of connections currently paused by backpressure
+	 */
+	public synchronized int pausedConnections()
+	{
+		return paused.size();
+	}
+
+	/**
+	 * Returns the total number of messages rejected with a fault.
+	 * @return the total number of messages rejected with a fault
+	 */
+	public synchronized long rejectedMessages()
+	{
+		return rejected;
+	}
+
+	/**
+	 * Returns the total number of times a connection has been paused by backpressure.
+	 * @return the total number of times a connection has been paused by backpressure
+	 */
+	public synchronized long pausedMessages()
+	{
+		return pausedTotal;
+	}
+
+	/**
+	 * Returns the total number of messages admitted beyond the limit by the caller-runs policy.
+	 * @return the total number of messages admitted beyond the limit by the caller-runs policy
+	 */
+	public synchronized long callerRunsMessages()
+	{
+		return callerRunsTotal;
+	}
+}
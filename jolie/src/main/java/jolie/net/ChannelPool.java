@@ -0,0 +1,794 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.net;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import jolie.net.ports.OutputPort;
+import jolie.runtime.TimeoutHandler;
+import jolie.runtime.Value;
+
+/**
+ * A pool of the persistent channels towards an endpoint, i.e., a location reached with a protocol.
+ *
+ * Channels are leased by output ports through {@link #acquire(OutputPort)} and go back to the pool
+ * when they are released without being closed. Idle channels are checked before being reused,
+ * and they are closed once they have been idle for {@link #idleTimeout()} milliseconds (by default,
+ * the persistent connection timeout of the interpreter), as long as more than {@link #minIdle()}
+ * channels are idle.
+ * When {@link #maxTotal()} channels are open (leased or idle), callers wait for a channel to
+ * become available for at most {@link #acquireTimeout()} milliseconds.
+ *
+ * A pool is configured through the <code>pool</code> parameter of the protocol of the first
+ * output port that connects to its endpoint, e.g.:
+ * <pre>
+ * Protocol: sodep {
+ *	.pool.maxTotal = 16;
+ *	.pool.maxIdle = 8;
+ *	.pool.minIdle = 2;
+ *	.pool.acquireTimeout = 5000;
+ *	.pool.idleTimeout = 60000
+ * }
+ * </pre>
+ * A <code>maxTotal</code> of zero (the default) does not limit the number of channels.
+ *
+ * If <code>pool.multiplex</code> is set to a positive number and the protocol is thread-safe (e.g., sodep),
+ * channels are not leased exclusively: each channel is shared by up to that many concurrent requests,
+ * whose responses are matched to them by message id as they arrive, and a new channel is opened only
+ * when all the others are full. In this case, <code>maxTotal</code> bounds the number of shared channels
+ * and <code>minIdle</code> the number of shared channels kept open when no request is using them.
+ */
+public class ChannelPool
+{
+	public static final String POOL_PARAMETER_NAME = "pool";
+
+	private static final int DEFAULT_MAX_IDLE = 32;
+	private static final long DEFAULT_ACQUIRE_TIMEOUT = 30000;
+	private static final long CHECK_LOCK_TIMEOUT = 50;
+
+	private final CommCore commCore;
+	private final URI location;
+	private final String protocol;
+	private final int maxTotal;
+	private final int maxIdle;
+	private final int minIdle;
+	private final long acquireTimeout;
+	private final long idleTimeout;
+	private final int multiplex;
+
+	/**
+	 * The lease of a channel. A new lease is created every time a channel is acquired,
+	 * so that a late release can not end the lease of the next user of the channel.
+	 */
+	static class Lease
+	{
+		private final ChannelPool pool;
+		// Guarded by the lock of pool
+		private boolean ended = false;
+
+		private Lease( ChannelPool pool )
+		{
+			this.pool = pool;
+		}
+
+		ChannelPool pool()
+		{
+			return pool;
+		}
+
+		/**
+		 * Frees the slot of the leased channel, if the channel has not gone back to the pool.
+		 */
+		void end()
+		{
+			pool.lock.lock();
+			try {
+				pool.endLease( this );
+			} finally {
+				pool.lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * A channel shared by multiplexed requests.
+	 */
+	static class SharedChannel
+	{
+		private final CommChannel channel;
+		// Guarded by the lock of the pool
+		private int requests = 0;
+		private boolean discarded = false;
+
+		private SharedChannel( CommChannel channel )
+		{
+			this.channel = channel;
+		}
+
+		CommChannel channel()
+		{
+			return channel;
+		}
+	}
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition available = lock.newCondition();
+	// Guarded by lock, most recently released last
+	private final Deque< CommChannel > idle = new ArrayDeque<>();
+	// Guarded by lock
+	private int leased = 0;
+	// Guarded by lock, set when this pool has been removed from its CommCore
+	private boolean retired = false;
+	// Guarded by lock, set when the CommCore of this pool has been shut down
+	private boolean closed = false;
+	// Guarded by lock, the channels shared by multiplexed requests
+	private final List< SharedChannel > shared = new ArrayList<>();
+	// Guarded by lock, the number of shared channels being opened
+	private int opening = 0;
+	// Set if the protocol turns out not to support multiplexing
+	private volatile boolean multiplexUnsupported = false;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder creations = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	ChannelPool( CommCore commCore, URI location, String protocol, int maxTotal, int maxIdle, int minIdle, long acquireTimeout, long idleTimeout, int multiplex )
+	{
+		this.commCore = commCore;
+		this.location = location;
+		this.protocol = protocol;
+		this.maxTotal = maxTotal;
+		this.maxIdle = maxIdle;
+		this.minIdle = minIdle;
+		this.acquireTimeout = acquireTimeout;
+		this.idleTimeout = idleTimeout;
+		this.multiplex = multiplex;
+	}
+
+	/**
+	 * Creates a pool from the protocol configuration of an output port.
+	 * @param protocolConfiguration the protocol configuration, or {@code null} for the default settings
+	 */
+	static ChannelPool create( CommCore commCore, URI location, String protocol, Value protocolConfiguration )
+	{
+		int maxTotal = 0;
+		int maxIdle = DEFAULT_MAX_IDLE;
+		int minIdle = 0;
+		long acquireTimeout = DEFAULT_ACQUIRE_TIMEOUT;
+		long idleTimeout = commCore.interpreter().persistentConnectionTimeout();
+		int multiplex = 0;
+		if ( protocolConfiguration != null && protocolConfiguration.hasChildren( POOL_PARAMETER_NAME ) ) {
+			final Value pool = protocolConfiguration.getFirstChild( POOL_PARAMETER_NAME );
+			if ( pool.hasChildren( "maxTotal" ) ) {
+				maxTotal = Math.max( 0, pool.getFirstChild( "maxTotal" ).intValue() );
+			}
+			if ( pool.hasChildren( "maxIdle" ) ) {
+				maxIdle = Math.max( 0, pool.getFirstChild( "maxIdle" ).intValue() );
+			}
+			if ( pool.hasChildren( "minIdle" ) ) {
+				minIdle = Math.max( 0, Math.min( maxIdle, pool.getFirstChild( "minIdle" ).intValue() ) );
+			}
+			if ( pool.hasChildren( "acquireTimeout" ) ) {
+				acquireTimeout = Math.max( 0L, pool.getFirstChild( "acquireTimeout" ).longValue() );
+			}
+			if ( pool.hasChildren( "idleTimeout" ) ) {
+				idleTimeout = Math.max( 0L, pool.getFirstChild( "idleTimeout" ).longValue() );
+			}
+			if ( pool.hasChildren( "multiplex" ) ) {
+				multiplex = Math.max( 0, pool.getFirstChild( "multiplex" ).intValue() );
+			}
+		}
+		if ( maxTotal > 0 ) {
+			maxIdle = Math.min( maxIdle, maxTotal );
+			minIdle = Math.min( minIdle, maxIdle );
+		}
+		return new ChannelPool( commCore, location, protocol, maxTotal, maxIdle, minIdle, acquireTimeout, idleTimeout, multiplex );
+	}
+
+	/**
+	 * Leases a channel of this pool, reusing an idle one if possible or opening a new one otherwise.
+	 * The lease ends when the channel is released.
+	 * @return the leased channel, or {@code null} if this pool has been retired in the meantime
+	 * @throws IOException if the channel can not be opened, or if no channel becomes available in time
+	 */
+	CommChannel acquire( OutputPort port )
+		throws IOException
+	{
+		if ( multiplex > 0 && !multiplexUnsupported ) {
+			return acquireShare( port );
+		}
+		while( true ) {
+			CommChannel channel;
+			lock.lock();
+			try {
+				if ( closed ) {
+					throw new IOException( "The pool of channels to " + location + " (" + protocol + ") has been closed" );
+				} else if ( retired ) {
+					return null;
+				}
+				channel = waitForChannel();
+			} finally {
+				lock.unlock();
+			}
+
+			if ( channel == null ) {
+				misses.increment();
+				return open( port );
+			} else if ( check( channel ) ) {
+				hits.increment();
+				channel.setLease( new Lease( this ) );
+				return channel;
+			}
+		}
+	}
+
+	/*
+	 * Takes an idle channel, if any, or reserves the slot for a new one (returning null).
+	 * Must be called while holding lock.
+	 */
+	private CommChannel waitForChannel()
+		throws IOException
+	{
+		long nanos = TimeUnit.MILLISECONDS.toNanos( acquireTimeout );
+		while( idle.isEmpty() && maxTotal > 0 && leased >= maxTotal ) {
+			if ( nanos <= 0L ) {
+				throw new IOException( "No channel to " + location + " (" + protocol + ") became available within " + acquireTimeout + " ms" );
+			}
+			try {
+				nanos = available.awaitNanos( nanos );
+			} catch( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				throw new IOException( e );
+			}
+		}
+		leased++;
+		final CommChannel channel = idle.pollLast();
+		if ( channel != null ) {
+			cancelTimeoutHandler( channel );
+		}
+		return channel;
+	}
+
+	private CommChannel open( OutputPort port )
+		throws IOException
+	{
+		final CommChannel channel;
+		try {
+			channel = commCore.createCommChannel( location, port );
+		} catch( IOException | RuntimeException e ) {
+			freeSlot();
+			throw e;
+		}
+		creations.increment();
+		channel.setLease( new Lease( this ) );
+		return channel;
+	}
+
+	/*
+	 * Health check for an idle channel that is about to be reused.
+	 * Channels that fail it are discarded and their slot is freed.
+	 */
+	private boolean check( CommChannel channel )
+	{
+		boolean healthy = false;
+		boolean locked = false;
+		try {
+			// The thread that released the channel may still be holding its lock for a moment
+			locked = channel.lock.tryLock( CHECK_LOCK_TIMEOUT, TimeUnit.MILLISECONDS );
+		} catch( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+		}
+		if ( locked ) {
+			try {
+				healthy = channel.isOpen();
+				if ( !healthy ) {
+					channel.close();
+				}
+			} catch( IOException e ) {
+				commCore.interpreter().logFine( e );
+			} finally {
+				channel.lock.unlock();
+			}
+		} else {
+			// The channel is busy, e.g., receiving a late response: close it once it is free
+			commCore.startCommChannelHandler( () -> {
+				channel.lock.lock();
+				try {
+					closeChannel( channel );
+				} finally {
+					channel.lock.unlock();
+				}
+			} );
+		}
+		if ( !healthy ) {
+			evictions.increment();
+			freeSlot();
+		}
+		return healthy;
+	}
+
+	/*
+	 * Takes a request slot on a shared channel, opening a new channel if all the others are full.
+	 */
+	private CommChannel acquireShare( OutputPort port )
+		throws IOException
+	{
+		SharedChannel share;
+		lock.lock();
+		try {
+			if ( closed ) {
+				throw new IOException( "The pool of channels to " + location + " (" + protocol + ") has been closed" );
+			} else if ( retired ) {
+				return null;
+			}
+			share = waitForShare();
+		} finally {
+			lock.unlock();
+		}
+
+		if ( share == null ) {
+			misses.increment();
+			final CommChannel channel;
+			try {
+				channel = commCore.createCommChannel( location, port );
+			} catch( IOException | RuntimeException e ) {
+				endOpening( null );
+				throw e;
+			}
+			creations.increment();
+			if ( !channel.isThreadSafe() ) {
+				// Fall back to exclusive leases
+				multiplexUnsupported = true;
+				commCore.interpreter().logWarning( "Protocol " + protocol + " does not support multiplexing, channels to " + location + " will not be shared" );
+				lock.lock();
+				try {
+					opening--;
+					leased++;
+					available.signalAll();
+				} finally {
+					lock.unlock();
+				}
+				channel.setLease( new Lease( this ) );
+				return channel;
+			}
+			channel.setMultiplexed( true );
+			share = new SharedChannel( channel );
+			share.requests = 1;
+			endOpening( share );
+		} else {
+			hits.increment();
+		}
+		return new MultiplexedCommChannel( this, share );
+	}
+
+	/*
+	 * Takes a request slot on the least used shared channel that is not full,
+	 * or reserves the slot for a new channel (returning null).
+	 * Must be called while holding lock.
+	 */
+	private SharedChannel waitForShare()
+		throws IOException
+	{
+		long nanos = TimeUnit.MILLISECONDS.toNanos( acquireTimeout );
+		while( true ) {
+			SharedChannel share = null;
+			for( SharedChannel s : shared ) {
+				if ( s.requests < multiplex && (share == null || s.requests < share.requests) ) {
+					share = s;
+				}
+			}
+			if ( share != null ) {
+				if ( share.requests++ == 0 ) {
+					cancelTimeoutHandler( share.channel );
+				}
+				return share;
+			}
+			// Open one channel at a time, the others will most likely fit in it
+			if ( opening == 0 && (maxTotal == 0 || shared.size() < maxTotal) ) {
+				opening++;
+				return null;
+			}
+			if ( nanos <= 0L ) {
+				throw new IOException( "No channel to " + location + " (" + protocol + ") became available within " + acquireTimeout + " ms" );
+			}
+			try {
+				nanos = available.awaitNanos( nanos );
+			} catch( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				throw new IOException( e );
+			}
+			if ( retired ) {
+				throw new IOException( "The pool of channels to " + location + " (" + protocol + ") has been closed" );
+			}
+		}
+	}
+
+	private void endOpening( SharedChannel share )
+	{
+		lock.lock();
+		try {
+			opening--;
+			if ( share != null ) {
+				shared.add( share );
+			}
+			available.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Gives back the request slot of a share. The shared channel is discarded if it is broken.
+	 */
+	void endShare( SharedChannel share, boolean broken )
+	{
+		boolean close = false;
+		lock.lock();
+		try {
+			share.requests--;
+			if ( (broken || share.channel.toBeClosed() || retired) && !share.discarded ) {
+				share.discarded = true;
+				shared.remove( share );
+				evictions.increment();
+			}
+			if ( share.discarded ) {
+				// A broken channel fails all its requests anyway
+				close = broken || share.requests == 0;
+			} else if ( share.requests == 0 ) {
+				setTimeoutHandler( share );
+			}
+			available.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		if ( close ) {
+			closeChannel( share.channel );
+		}
+	}
+
+	private void setTimeoutHandler( final SharedChannel share )
+	{
+		final TimeoutHandler handler = new TimeoutHandler( idleTimeout ) {
+			@Override
+			public void onTimeout()
+			{
+				evict( share, this );
+			}
+		};
+		share.channel.setTimeoutHandler( handler );
+		commCore.interpreter().addTimeoutHandler( handler );
+	}
+
+	private void evict( SharedChannel share, TimeoutHandler handler )
+	{
+		boolean evicted = false;
+		lock.lock();
+		try {
+			if ( share.channel.timeoutHandler() != handler || share.discarded ) {
+				return; // The channel has been used in the meantime
+			}
+			share.channel.setTimeoutHandler( null );
+			if ( shared.size() > minIdle || retired || commCore.interpreter().exiting() ) {
+				share.discarded = true;
+				shared.remove( share );
+				evicted = true;
+				if ( shared.isEmpty() && opening == 0 && idle.isEmpty() && leased == 0 && !retired ) {
+					retired = true;
+					commCore.removeChannelPool( this );
+				}
+			} else {
+				setTimeoutHandler( share );
+			}
+		} finally {
+			lock.unlock();
+		}
+		if ( evicted ) {
+			evictions.increment();
+			closeChannel( share.channel );
+		}
+	}
+
+	private static void cancelTimeoutHandler( CommChannel channel )
+	{
+		final TimeoutHandler handler = channel.timeoutHandler();
+		if ( handler != null ) {
+			handler.cancel();
+			channel.setTimeoutHandler( null );
+		}
+	}
+
+	private void closeChannel( CommChannel channel )
+	{
+		try {
+			channel.close();
+		} catch( IOException e ) {
+			commCore.interpreter().logFine( e );
+		}
+	}
+
+	// Must be called while holding lock
+	private void endLease( Lease lease )
+	{
+		if ( !lease.ended ) {
+			lease.ended = true;
+			leased--;
+			available.signal();
+		}
+	}
+
+	// Frees a slot reserved for a channel that could not be leased
+	private void freeSlot()
+	{
+		lock.lock();
+		try {
+			leased--;
+			available.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Gives a channel that is still open back to this pool.
+	 * The channel is closed if there are already {@link #maxIdle()} idle channels.
+	 */
+	void offer( CommChannel channel )
+		throws IOException
+	{
+		boolean accepted = false;
+		lock.lock();
+		try {
+			final Lease lease = channel.lease();
+			if ( lease != null && lease.pool == this ) {
+				channel.setLease( null );
+				endLease( lease );
+			}
+			if (
+				!retired && !commCore.interpreter().exiting()
+				&& idle.size() < maxIdle && (maxTotal == 0 || leased + idle.size() < maxTotal)
+			) {
+				idle.addLast( channel );
+				setTimeoutHandler( channel );
+				accepted = true;
+			}
+			available.signal();
+		} finally {
+			lock.unlock();
+		}
+		if ( !accepted ) {
+			evictions.increment();
+			channel.close();
+		}
+	}
+
+	private void setTimeoutHandler( final CommChannel channel )
+	{
+		final TimeoutHandler handler = new TimeoutHandler( idleTimeout ) {
+			@Override
+			public void onTimeout()
+			{
+				evict( channel, this );
+			}
+		};
+		channel.setTimeoutHandler( handler );
+		commCore.interpreter().addTimeoutHandler( handler );
+	}
+
+	private void evict( CommChannel channel, TimeoutHandler handler )
+	{
+		boolean evicted = false;
+		lock.lock();
+		try {
+			if ( channel.timeoutHandler() != handler ) {
+				return; // The channel has been reused in the meantime
+			}
+			if ( idle.size() > minIdle || retired || commCore.interpreter().exiting() ) {
+				idle.remove( channel );
+				channel.setTimeoutHandler( null );
+				evicted = true;
+				if ( idle.isEmpty() && leased == 0 && !retired ) {
+					retired = true;
+					commCore.removeChannelPool( this );
+				}
+			} else {
+				// Keep the channel, health checks will tell if it is still usable
+				setTimeoutHandler( channel );
+			}
+		} finally {
+			lock.unlock();
+		}
+		if ( evicted ) {
+			evictions.increment();
+			closeChannel( channel );
+		}
+	}
+
+	/**
+	 * Closes the idle and shared channels of this pool and retires it.
+	 */
+	void close()
+	{
+		final List< CommChannel > channels = new ArrayList<>();
+		lock.lock();
+		try {
+			retired = true;
+			closed = true;
+			channels.addAll( idle );
+			idle.clear();
+			for( SharedChannel share : shared ) {
+				share.discarded = true;
+				cancelTimeoutHandler( share.channel );
+				channels.add( share.channel );
+			}
+			shared.clear();
+			available.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		channels.forEach( this::closeChannel );
+	}
+
+	public URI location()
+	{
+		return location;
+	}
+
+	public String protocol()
+	{
+		return protocol;
+	}
+
+	public int maxTotal()
+	{
+		return maxTotal;
+	}
+
+	public int maxIdle()
+	{
+		return maxIdle;
+	}
+
+	public int minIdle()
+	{
+		return minIdle;
+	}
+
+	public long acquireTimeout()
+	{
+		return acquireTimeout;
+	}
+
+	/**
+	 * Returns how long, in milliseconds, a channel can stay idle before being closed.
+	 */
+	public long idleTimeout()
+	{
+		return idleTimeout;
+	}
+
+	/**
+	 * Returns the maximum number of concurrent requests on a shared channel,
+	 * or zero if channels are not shared.
+	 */
+	public int multiplex()
+	{
+		return multiplexUnsupported ? 0 : multiplex;
+	}
+
+	/**
+	 * Returns the number of channels that are currently shared by multiplexed requests.
+	 */
+	public int sharedChannels()
+	{
+		lock.lock();
+		try {
+			return shared.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of multiplexed requests that are currently using the shared channels.
+	 */
+	public int multiplexedRequests()
+	{
+		lock.lock();
+		try {
+			int requests = 0;
+			for( SharedChannel share : shared ) {
+				requests += share.requests;
+			}
+			return requests;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of channels that are currently leased.
+	 */
+	public int leasedChannels()
+	{
+		lock.lock();
+		try {
+			return leased;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of channels that are currently idle.
+	 */
+	public int idleChannels()
+	{
+		lock.lock();
+		try {
+			return idle.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of leases served with an idle (or shared) channel.
+	 */
+	public long hits()
+	{
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of leases that required opening a new channel.
+	 */
+	public long misses()
+	{
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the number of channels opened by this pool.
+	 */
+	public long creations()
+	{
+		return creations.sum();
+	}
+
+	/**
+	 * Returns the number of channels discarded by this pool, because they failed
+	 * their health check, were idle for too long or exceeded the idle limit.
+	 */
+	public long evictions()
+	{
+		return evictions.sum();
+	}
+}
@@ -23,12 +23,18 @@
 package jolie.net;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.ReentrantLock;
+import jolie.Interpreter;
 import jolie.net.ports.InputPort;
 import jolie.net.ports.OutputPort;
 import jolie.net.ports.Port;
 import jolie.runtime.TimeoutHandler;
+import jolie.runtime.TimerWheel;
 import jolie.util.Helpers;
 
 /**
@@ -58,6 +64,53 @@ public abstract class CommChannel
 	private long redirectionMessageId = 0L;
 	
 	private TimeoutHandler timeoutHandler = null;
+
+	// The lease of this channel from a pool, if any
+	private volatile ChannelPool.Lease lease = null;
+
+	/*
+	 * Multiplexed channels are shared by many requests at once, so their responses
+	 * are received under a separate lock that does not prevent sending new requests.
+	 */
+	private final ReentrantLock recvLock = new ReentrantLock( false );
+	private volatile boolean multiplexed = false;
+
+	void setMultiplexed( boolean multiplexed )
+	{
+		this.multiplexed = multiplexed;
+	}
+
+	boolean isMultiplexed()
+	{
+		return multiplexed;
+	}
+
+	/*
+	 * Set while an incoming message on this channel is waiting to be handled by its CommCore,
+	 * which will give the channel back to the selector: in the meantime, it must not be released.
+	 * Guarded by lock.
+	 */
+	private boolean scheduledForInput = false;
+
+	void setScheduledForInput( boolean scheduledForInput )
+	{
+		this.scheduledForInput = scheduledForInput;
+	}
+
+	boolean isScheduledForInput()
+	{
+		return scheduledForInput;
+	}
+
+	void setLease( ChannelPool.Lease lease )
+	{
+		this.lease = lease;
+	}
+
+	ChannelPool.Lease lease()
+	{
+		return lease;
+	}
 	
 	protected void setTimeoutHandler( TimeoutHandler timeoutHandler )
 	{
@@ -191,7 +244,7 @@ public abstract class CommChannel
 	public CommMessage recv()
 		throws IOException
 	{
-		return Helpers.lockAndThen( lock, () -> recvImpl() );
+		return Helpers.lockAndThen( multiplexed ? recvLock : lock, () -> recvImpl() );
 	}
 
 	/**
@@ -203,6 +256,93 @@ public abstract class CommChannel
 	public abstract Future< CommMessage > recvResponseFor( CommMessage request )
 		throws IOException;
 
+	/**
+	 * Receives a response for the specified request, giving up after the specified timeout.
+	 * If the response does not arrive in time, the returned future completes exceptionally
+	 * with a {@link java.util.concurrent.TimeoutException}. This holds for the futures of
+	 * all channels: those that are not {@link CompletableFuture}s time out when waited for.
+	 * @param request the request message for which we want to receive a response
+	 * @param timeout the timeout, in milliseconds
+	 * @return the response for the specified request message
+	 * @throws java.io.IOException in case of some communication error
+	 */
+	public Future< CommMessage > recvResponseFor( CommMessage request, long timeout )
+		throws IOException
+	{
+		final Future< CommMessage > future = recvResponseFor( request );
+		if ( future == null || future.isDone() ) {
+			return future;
+		} else if ( future instanceof CompletableFuture ) {
+			final CompletableFuture< CommMessage > f = (CompletableFuture< CommMessage >) future;
+			final TimerWheel.Timeout t = Interpreter.getInstance().timerWheel().schedule(
+				() -> f.completeExceptionally( new TimeoutException() ),
+				timeout
+			);
+			f.whenComplete( ( response, e ) -> t.cancel() );
+			return future;
+		} else {
+			// Other futures can not be completed from here: their callers wait with a timed get instead
+			return new TimedFuture( future, timeout );
+		}
+	}
+
+	/*
+	 * A future that fails with a TimeoutException, like the completable futures
+	 * handled by recvResponseFor( request, timeout ), if the response of the
+	 * wrapped one is not ready within the timeout.
+	 */
+	private static class TimedFuture implements Future< CommMessage >
+	{
+		private final Future< CommMessage > future;
+		private final long deadline;
+
+		private TimedFuture( Future< CommMessage > future, long timeout )
+		{
+			this.future = future;
+			this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( timeout );
+		}
+
+		@Override
+		public boolean cancel( boolean mayInterruptIfRunning )
+		{
+			return future.cancel( mayInterruptIfRunning );
+		}
+
+		@Override
+		public boolean isCancelled()
+		{
+			return future.isCancelled();
+		}
+
+		@Override
+		public boolean isDone()
+		{
+			return future.isDone();
+		}
+
+		@Override
+		public CommMessage get()
+			throws InterruptedException, ExecutionException
+		{
+			try {
+				return future.get( deadline - System.nanoTime(), TimeUnit.NANOSECONDS );
+			} catch( TimeoutException e ) {
+				throw new ExecutionException( e );
+			}
+		}
+
+		@Override
+		public CommMessage get( long timeout, TimeUnit unit )
+			throws InterruptedException, ExecutionException, TimeoutException
+		{
+			final long remaining = deadline - System.nanoTime();
+			if ( unit.toNanos( timeout ) < remaining ) {
+				return future.get( timeout, unit );
+			}
+			return get();
+		}
+	}
+
 	/**
 	 * Sends a message through this channel.
 	 * @param message the message to send
@@ -234,13 +374,28 @@ public abstract class CommChannel
 	public final void release()
 		throws IOException
 	{
-		Helpers.lockAndThen( lock, () -> {
-			if ( toBeClosed() ) {
-				close();
-			} else {
-				releaseImpl();
+		/*
+		 * The channel may be leased again as soon as it goes back to its pool,
+		 * so we must hold on to the current lease.
+		 */
+		final ChannelPool.Lease currentLease = lease;
+		try {
+			Helpers.lockAndThen( lock, () -> {
+				if ( toBeClosed() ) {
+					close();
+				} else {
+					releaseImpl();
+				}
+			} );
+		} finally {
+			// If the channel did not go back to its pool, free its slot
+			if ( currentLease != null ) {
+				if ( lease == currentLease ) {
+					lease = null;
+				}
+				currentLease.end();
 			}
-		} );
+		}
 	}
 
 	protected void releaseImpl()
@@ -26,6 +26,7 @@ import jolie.ExecutionThread;
 import jolie.Interpreter;
 import jolie.InterpreterThread;
 import jolie.JolieThread;
+import jolie.JolieVirtualThreads;
 
 /**
  * <code>CommChannelHandler</code> is a <code>JolieThread</code> used by
@@ -44,14 +45,20 @@ public class CommChannelHandler extends Thread implements InterpreterThread
 	}
 	
 	/**
-	 * Returns the current <code>CommChannelHandler</code> thread.
-	 * This method must be called only if the caller is sure that the current
-	 * thread is a <code>CommChannelHandler</code>.
-	 * @return the current <code>CommChannelHandler</code> thread
+	 * Sets the <code>ExecutionThread</code> the current communication handler must refer to.
+	 * This method supports handlers running on virtual threads, which are not
+	 * <code>CommChannelHandler</code> instances.
+	 * @param thread the <code>ExecutionThread</code> to refer to for variable state resolution
+	 * @see JolieVirtualThreads
 	 */
-	public static CommChannelHandler currentThread()
+	public static void setCurrentExecutionThread( ExecutionThread thread )
 	{
-		return ((CommChannelHandler)Thread.currentThread());
+		final Thread t = Thread.currentThread();
+		if ( t instanceof CommChannelHandler ) {
+			((CommChannelHandler) t).setExecutionThread( thread );
+		} else {
+			JolieVirtualThreads.setCurrentExecutionThread( thread );
+		}
 	}
 
 	/**
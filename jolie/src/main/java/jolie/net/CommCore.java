@@ -30,7 +30,9 @@ import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -40,6 +42,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -50,7 +53,10 @@ import java.util.logging.Logger;
 import java.util.regex.Pattern;
 import jolie.Interpreter;
 import jolie.JolieThreadPoolExecutor;
+import jolie.JolieVirtualThreads;
 import jolie.NativeJolieThread;
+import jolie.SessionListener;
+import jolie.SessionThread;
 import jolie.lang.Constants;
 import jolie.net.ext.CommChannelFactory;
 import jolie.net.ext.CommListenerFactory;
@@ -63,7 +69,6 @@ import jolie.runtime.FaultException;
 import jolie.runtime.InputOperation;
 import jolie.runtime.InvalidIdException;
 import jolie.runtime.OneWayOperation;
-import jolie.runtime.TimeoutHandler;
 import jolie.runtime.Value;
 import jolie.runtime.VariablePath;
 import jolie.runtime.correlation.CorrelationError;
@@ -89,125 +94,90 @@ public class CommCore
 	private final ReadWriteLock channelHandlersLock = new ReentrantReadWriteLock( true );
 	private SelectorThread[] selectorThreads;
 
-	// Location URI -> Protocol name -> Persistent CommChannel object
-	private final Map< URI, Map< String, CommChannel > > persistentChannels = new HashMap<>();
+	// Location URI -> Protocol name -> Pool of persistent CommChannel objects
+	private final Map< URI, Map< String, ChannelPool > > channelPools = new ConcurrentHashMap<>();
 
-	private void removePersistentChannel( URI location, String protocol, Map< String, CommChannel > protocolChannels )
-	{		
-		protocolChannels.remove( protocol );
-		if ( protocolChannels.isEmpty() ) {
-			persistentChannels.remove( location );
-		}
-	}
-	
-	private void removePersistentChannel( URI location, String protocol, CommChannel channel )
+	private ChannelPool channelPool( URI location, String protocol, Value protocolConfiguration )
 	{
-		if ( persistentChannels.containsKey( location ) ) {
-			if ( persistentChannels.get( location ).get( protocol ) == channel ) {
-				removePersistentChannel( location, protocol, persistentChannels.get( location ) );
-			}
+		final Map< String, ChannelPool > protocolPools = channelPools.get( location );
+		ChannelPool pool = ( protocolPools == null ) ? null : protocolPools.get( protocol );
+		if ( pool == null ) {
+			// The outer map is updated atomically, so that empty maps are never left behind
+			pool = channelPools.compute( location, ( l, pools ) -> {
+				if ( pools == null ) {
+					pools = new ConcurrentHashMap<>();
+				}
+				pools.computeIfAbsent( protocol, p -> ChannelPool.create( this, location, protocol, protocolConfiguration ) );
+				return pools;
+			} ).get( protocol );
 		}
+		return pool;
 	}
 
-	public CommChannel getPersistentChannel( URI location, String protocol )
-	{
-		CommChannel ret = null;
-		synchronized( persistentChannels ) {
-			Map< String, CommChannel > protocolChannels = persistentChannels.get( location );
-			if ( protocolChannels != null ) {
-				ret = protocolChannels.get( protocol );
-				if ( ret != null ) {
-					if ( ret.lock.tryLock() ) {
-						if ( ret.isOpen() ) {
-							/*
-							 * We are going to return this channel, but first
-							 * check if it supports concurrent use.
-							 * If not, then others should not access this until
-							 * the caller is finished using it.
-							 */
-							//if ( ret.isThreadSafe() == false ) {
-							removePersistentChannel( location, protocol, protocolChannels );
-							//} else {
-							// If we return a channel, make sure it will not timeout!
-							ret.setTimeoutHandler( null );
-							//if ( ret.timeoutHandler() != null ) {
-								//interpreter.removeTimeoutHandler( ret.timeoutHandler() );
-								// ret.setTimeoutHandler( null );
-							//}
-							//}
-							ret.lock.unlock();
-						} else { // Channel is closed
-							removePersistentChannel( location, protocol, protocolChannels );
-							ret.lock.unlock();
-							ret = null;
-						}
-					} else { // Channel is busy
-						removePersistentChannel( location, protocol, protocolChannels );
-						ret = null;
-					}
-				}
-			}
-		}
+	void removeChannelPool( ChannelPool pool )
+	{
+		channelPools.computeIfPresent( pool.location(), ( l, pools ) -> {
+			pools.remove( pool.protocol(), pool );
+			return pools.isEmpty() ? null : pools;
+		} );
+	}
 
-		return ret;
+	/**
+	 * Returns the pool of the persistent channels towards an endpoint.
+	 * @param location the location of the endpoint
+	 * @param protocol the name of the protocol used to reach the endpoint
+	 * @return the pool, or {@code null} if no channel has been opened towards the endpoint
+	 * @see ChannelPool
+	 */
+	public ChannelPool getChannelPool( URI location, String protocol )
+	{
+		final Map< String, ChannelPool > protocolPools = channelPools.get( location );
+		return ( protocolPools == null ) ? null : protocolPools.get( protocol );
 	}
 
-	private void setTimeoutHandler( final CommChannel channel, final URI location, final String protocol )
+	/**
+	 * Returns the pools of persistent channels of this CommCore.
+	 */
+	public Collection< ChannelPool > channelPools()
 	{
-		/*if ( channel.timeoutHandler() != null ) {
-			interpreter.removeTimeoutHandler( channel.timeoutHandler() );
-		}*/
+		final Collection< ChannelPool > pools = new ArrayList<>();
+		channelPools.values().forEach( protocolPools -> pools.addAll( protocolPools.values() ) );
+		return pools;
+	}
 
-		final TimeoutHandler handler = new TimeoutHandler( interpreter.persistentConnectionTimeout() ) {
-			@Override
-			public void onTimeout()
-			{
-				try {
-					synchronized( persistentChannels ) {
-						if ( channel.timeoutHandler() == this ) {
-							removePersistentChannel( location, protocol, channel );
-							channel.close();
-							channel.setTimeoutHandler( null );
-						}
-					}
-				} catch( IOException e ) {
-					interpreter.logSevere( e );
-				}
-			}
-		};
-		channel.setTimeoutHandler( handler );
-		interpreter.addTimeoutHandler( handler );
+	/**
+	 * Leases a channel towards an endpoint from its pool, reusing a persistent channel if possible.
+	 * The channel goes back to the pool when it is released.
+	 * @param location the location of the endpoint
+	 * @param protocol the name of the protocol used to reach the endpoint
+	 * @param port the output port the channel is for, whose protocol configuration sets up the pool if it does not exist yet
+	 * @return the leased channel
+	 * @throws IOException if the channel can not be opened, or if the pool is exhausted for too long
+	 * @see ChannelPool
+	 */
+	public CommChannel acquireChannel( URI location, String protocol, OutputPort port )
+		throws IOException
+	{
+		CommChannel channel = null;
+		while( channel == null ) {
+			channel = channelPool( location, protocol, port.protocolConfigurationPath().getValue() ).acquire( port );
+		}
+		return channel;
 	}
 
+	/**
+	 * Gives a channel that can be reused back to the pool of its endpoint.
+	 * @param location the location of the endpoint
+	 * @param protocol the name of the protocol used to reach the endpoint
+	 * @param channel the channel
+	 * @throws IOException if the channel has to be closed and closing it fails
+	 */
 	public void putPersistentChannel( URI location, String protocol, final CommChannel channel )
+		throws IOException
 	{
-		synchronized( persistentChannels ) {
-			Map< String, CommChannel > protocolChannels = persistentChannels.get( location );
-			if ( protocolChannels == null ) {
-				protocolChannels = new HashMap<>();
-				persistentChannels.put( location, protocolChannels );
-			}
-			// Set the timeout
-			setTimeoutHandler( channel, location, protocol );
-			// Put the protocol in the cache (may overwrite another one)
-			protocolChannels.put( protocol, channel );
-			/*if ( protocolChannels.size() <= connectionCacheSize && protocolChannels.containsKey( protocol ) == false ) {
-				// Set the timeout
-				setTimeoutHandler( channel );
-				// Put the protocol in the cache
-				protocolChannels.put( protocol, channel );
-			} else {
-				try {
-					if ( protocolChannels.get( protocol ) != channel ) {
-						channel.close();
-					} else {
-						setTimeoutHandler( channel );
-					}
-				} catch( IOException e ) {
-					interpreter.logWarning( e );
-				}
-			}*/
-		}
+		final ChannelPool.Lease lease = channel.lease();
+		final ChannelPool pool = ( lease == null ) ? channelPool( location, protocol, null ) : lease.pool();
+		pool.offer( channel );
 	}
 
 	/**
@@ -238,7 +208,11 @@ public class CommCore
 			executorService = Executors.newCachedThreadPool( new CommThreadFactory() );
 		}
 		*/
-		executorService = new JolieThreadPoolExecutor( new CommThreadFactory() );
+		if ( interpreter.usesVirtualThreads() ) {
+			executorService = JolieVirtualThreads.newExecutor( interpreter, interpreter.programFilename() + "-CommChannelHandler" );
+		} else {
+			executorService = new JolieThreadPoolExecutor( new CommThreadFactory() );
+		}
 		
 		//TODO make socket an extension, too?
 		CommListenerFactory listenerFactory = new SocketListenerFactory( this );
@@ -301,6 +275,46 @@ public class CommCore
 	{
 		return listenersMap.get( serviceName );
 	}
+
+	private final Map< String, AdmissionController > admissionControllers = new ConcurrentHashMap<>();
+
+	/**
+	 * Sets up the admission control of the input ports, as specified by their protocol configurations.
+	 * This method must be called after the protocol configuration processes have been executed.
+	 * @see AdmissionController
+	 */
+	public void initAdmissionControl()
+	{
+		for( Entry< String, CommListener > entry : listenersMap.entrySet() ) {
+			if ( !(entry.getValue() instanceof LocalListener) ) {
+				final InputPort port = entry.getValue().inputPort();
+				final AdmissionController controller =
+					AdmissionController.create( this, port.name(), port.protocolConfigurationPath().getValue() );
+				if ( controller != null ) {
+					admissionControllers.put( port.name(), controller );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the admission controller of an input port.
+	 * @param inputPortName the name of the input port
+	 * @return the admission controller of the input port, or {@code null} if the port does not use admission control
+	 */
+	public AdmissionController admissionController( String inputPortName )
+	{
+		return admissionControllers.get( inputPortName );
+	}
+
+	/**
+	 * Returns the admission controllers of the input ports, indexed by the names of the input ports.
+	 * @return the admission controllers of the input ports
+	 */
+	public Map< String, AdmissionController > admissionControllers()
+	{
+		return Collections.unmodifiableMap( admissionControllers );
+	}
 	
 	private final Map< String, CommChannelFactory > channelFactories = new HashMap<>();
 
@@ -545,36 +559,57 @@ public class CommCore
 			operation.runAggregationBehaviour( message, channel );
 		}
 
+		/*
+		 * Admission controllers are set up by the init process, which may still be
+		 * running when the first messages arrive: wait for it to terminate, as
+		 * Interpreter.startServiceSession does before spawning a session.
+		 */
+		private AdmissionController awaitAdmissionController()
+		{
+			final SessionThread initThread = interpreter.initThread();
+			try {
+				if ( initThread != null ) {
+					initThread.join();
+				}
+			} catch( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+			}
+			return admissionControllers.get( port.name() );
+		}
+
 		private void handleDirectMessage( CommMessage message )
 			throws IOException
 		{
+			boolean dispose = true;
 			try {
 				InputOperation operation =
 					interpreter.getInputOperation( message.operationName() );
 				try {
 					operation.requestType().check( message.value() );
-					interpreter.correlationEngine().onMessageReceive( message, channel );
-					if ( operation instanceof OneWayOperation ) {
-						// We need to send the acknowledgement
-						channel.send( CommMessage.createEmptyResponse( message ) );
-						//channel.release();
+					final AdmissionController admission = interpreter.getSessionStarter( message.operationName() ) == null
+						? null : awaitAdmissionController();
+					if ( admission != null ) {
+						dispose = admission.dispatch( message, channel, operation );
+					} else {
+						dispatchDirectMessage( message, channel, operation, null );
 					}
 				} catch( TypeCheckingException e ) {
+					interpreter.metrics().inputPort( port.name() ).rejected();
 					interpreter.logWarning( "Received message TypeMismatch (input operation " + operation.id() + "): " + e.getMessage() );
 					try {
 						channel.send( CommMessage.createFaultResponse( message, new FaultException( jolie.lang.Constants.TYPE_MISMATCH_FAULT_NAME, e.getMessage() ) ) );
 					} catch( IOException ioe ) {
 						Interpreter.getInstance().logSevere( ioe );
 					}
-				} catch( CorrelationError e ) {
-					interpreter.logWarning( "Received a non correlating message for operation " + message.operationName() + ". Sending CorrelationError to the caller." );
-					channel.send( CommMessage.createFaultResponse( message, new FaultException( "CorrelationError", "The message you sent can not be correlated with any session and can not be used to start a new session." ) ) );
 				}
 			} catch( InvalidIdException e ) {
+				interpreter.metrics().inputPort( port.name() ).rejected();
 				interpreter.logWarning( "Received a message for undefined operation " + message.operationName() + ". Sending IOException to the caller." );
 				channel.send( CommMessage.createFaultResponse( message, new FaultException( "IOException", "Invalid operation: " + message.operationName() ) ) );
 			} finally {
-				channel.disposeForInput();
+				if ( dispose ) {
+					channel.disposeForInput();
+				}
 			}
 		}
 
@@ -591,6 +626,7 @@ public class CommCore
 					} else {
 						AggregatedOperation operation = port.getAggregatedOperation( message.operationName() );
 						if ( operation == null ) {
+							interpreter.metrics().inputPort( port.name() ).rejected();
 							interpreter.logWarning(
 								"Received a message for operation " + message.operationName() +
 									", not specified in the input port " + port.name() + " at the receiving service. Sending IOException to the caller."
@@ -613,9 +649,9 @@ public class CommCore
 		@Override
 		public void run()
 		{
-			final CommChannelHandler thread = CommChannelHandler.currentThread();
-			thread.setExecutionThread( interpreter().initThread().getNewSessionThread() );
+			CommChannelHandler.setCurrentExecutionThread( interpreter().initThread().getNewSessionThread() );
 			channel.lock.lock();
+			channel.setScheduledForInput( false );
 			channelHandlersLock.readLock().lock();
 			try {
 				if ( channel.redirectionChannel() == null ) {
@@ -654,8 +690,33 @@ public class CommCore
 				if ( channel.lock.isHeldByCurrentThread() ) {
 					channel.lock.unlock();
 				}
-				thread.setExecutionThread( null );
+				CommChannelHandler.setCurrentExecutionThread( null );
+			}
+		}
+	}
+
+	/**
+	 * Delivers a type-checked message for an input operation of this service to the correlation engine.
+	 * @return {@code true} if the message started a new session
+	 */
+	boolean dispatchDirectMessage( CommMessage message, CommChannel channel, InputOperation operation, SessionListener sessionListener )
+		throws IOException
+	{
+		try {
+			final boolean started = interpreter.correlationEngine().onMessageReceive( message, channel, sessionListener );
+			if ( operation instanceof OneWayOperation ) {
+				// We need to send the acknowledgement
+				channel.send( CommMessage.createEmptyResponse( message ) );
+				//channel.release();
+			}
+			return started;
+		} catch( CorrelationError e ) {
+			if ( channel.parentInputPort() != null ) {
+				interpreter.metrics().inputPort( channel.parentInputPort().name() ).rejected();
 			}
+			interpreter.logWarning( "Received a non correlating message for operation " + message.operationName() + ". Sending CorrelationError to the caller." );
+			channel.send( CommMessage.createFaultResponse( message, new FaultException( "CorrelationError", "The message you sent can not be correlated with any session and can not be used to start a new session." ) ) );
+			return false;
 		}
 	}
 
@@ -822,6 +883,7 @@ public class CommCore
 													/*if ( channel.selectionTimeoutHandler() != null ) {
 														interpreter.removeTimeoutHandler( channel.selectionTimeoutHandler() );
 													}*/
+													channel.setScheduledForInput( true );
 													scheduleReceive( channel, channel.parentInputPort() );
 												} else {
 													channel.closeImpl();
@@ -899,6 +961,7 @@ public class CommCore
 		{
 			try {
 				if ( channel.inputStream().available() > 0 ) {
+					channel.setScheduledForInput( true );
 					scheduleReceive( channel, channel.parentInputPort() );
 					return;
 				}
@@ -991,6 +1054,7 @@ public class CommCore
 			listenersMap.entrySet().forEach( ( entry ) -> {
 				entry.getValue().shutdown();
 			} );
+			channelPools().forEach( ChannelPool::close );
 			
 			try {
 				for( SelectorThread t : selectorThreads() ) {
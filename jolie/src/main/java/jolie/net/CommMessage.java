@@ -114,6 +114,21 @@ public class CommMessage implements Serializable
 		return new CommMessage( getNewMessageId(), operationName, resourcePath, Value.createDeepCopy( value ), null );
 	}
 
+	/**
+	 * Creates a request message that takes ownership of the passed value,
+	 * instead of equipping the message with a copy of it.
+	 * The caller must not access the value after this call.
+	 * @param operationName the name of the operation this request is meant for
+	 * @param resourcePath the resource path of this message
+	 * @param value the message data
+	 * @return a request message as per specified by the parameters
+	 * @see #createRequest(java.lang.String, java.lang.String, jolie.runtime.Value)
+	 */
+	public static CommMessage createMovedRequest( String operationName, String resourcePath, Value value )
+	{
+		return new CommMessage( getNewMessageId(), operationName, resourcePath, value, null );
+	}
+
 	/**
 	 * Creates an empty (i.e. without data) response for the passed request.
 	 * @param request the request message that caused this response
@@ -136,6 +151,20 @@ public class CommMessage implements Serializable
 		return new CommMessage( request.id, request.operationName, "/", Value.createDeepCopy( value ), null );
 	}
 
+	/**
+	 * Creates a response for the passed request that takes ownership of the passed value,
+	 * instead of equipping the response with a copy of it.
+	 * The caller must not access the value after this call.
+	 * @param request the request message that caused this response
+	 * @param value the data to equip the response with
+	 * @return a response for the passed request
+	 * @see #createResponse(jolie.net.CommMessage, jolie.runtime.Value)
+	 */
+	public static CommMessage createMovedResponse( CommMessage request, Value value )
+	{
+		return new CommMessage( request.id, request.operationName, "/", value, null );
+	}
+
 	/**
 	 * Creates a response message equipped with the passed fault.
 	 * @param request the request message that caused this response
@@ -116,7 +116,9 @@ public class LocalCommChannel extends CommChannel implements PollableCommChannel
 	{
 		CompletableFuture f = new CompletableFuture<>();
 		responseWaiters.put( message.id(), f );
-		interpreter.commCore().scheduleReceive( new CoLocalCommChannel( message, f ), listener.inputPort() );
+		final CoLocalCommChannel channel = new CoLocalCommChannel( message, f );
+		channel.setParentInputPort( listener.inputPort() );
+		interpreter.commCore().scheduleReceive( channel, listener.inputPort() );
 	}
 
 	@Override
@@ -0,0 +1,96 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.net;
+
+import java.io.IOException;
+import java.util.concurrent.Future;
+
+/**
+ * The share of a multiplexed channel of a {@link ChannelPool} that is handed to a single caller.
+ *
+ * Requests sent through a share are written to the shared channel, and their responses are
+ * told apart by message id by the receiver of the shared channel, in whatever order they arrive.
+ * Releasing a share gives its request slot back to the pool and leaves the shared channel open,
+ * whereas closing it (after a communication error) discards the shared channel.
+ */
+final class MultiplexedCommChannel extends CommChannel
+{
+	private final ChannelPool pool;
+	private final ChannelPool.SharedChannel share;
+	// Guarded by lock
+	private boolean ended = false;
+
+	MultiplexedCommChannel( ChannelPool pool, ChannelPool.SharedChannel share )
+	{
+		this.pool = pool;
+		this.share = share;
+		setToBeClosed( false );
+	}
+
+	@Override
+	public Future< CommMessage > recvResponseFor( CommMessage request )
+		throws IOException
+	{
+		return share.channel().recvResponseFor( request );
+	}
+
+	@Override
+	public Future< CommMessage > recvResponseFor( CommMessage request, long timeout )
+		throws IOException
+	{
+		return share.channel().recvResponseFor( request, timeout );
+	}
+
+	@Override
+	protected CommMessage recvImpl()
+		throws IOException
+	{
+		throw new IOException( "Multiplexed channels can only be used to receive responses" );
+	}
+
+	@Override
+	protected void sendImpl( CommMessage message )
+		throws IOException
+	{
+		share.channel().send( message );
+	}
+
+	@Override
+	protected void releaseImpl()
+	{
+		end( false );
+	}
+
+	@Override
+	protected void closeImpl()
+	{
+		end( true );
+	}
+
+	private void end( boolean broken )
+	{
+		if ( !ended ) {
+			ended = true;
+			pool.endShare( share, broken );
+		}
+	}
+}
@@ -23,18 +23,32 @@
 
 package jolie.net;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 
-public class PreBufferedInputStream extends BufferedInputStream
+/**
+ * A buffered input stream whose buffer can also be filled from the outside,
+ * through {@link #append(java.nio.ByteBuffer)}.
+ *
+ * Unlike {@link java.io.BufferedInputStream}, this stream is not synchronized, so that
+ * blocking reads do not pin virtual threads: like the other streams of a channel,
+ * it must be accessed only while holding the locks of the channel.
+ */
+public class PreBufferedInputStream extends InputStream
 {
+	private final static int DEFAULT_BUFFER_SIZE = 8192;
 	private final static int MAX_BUFFER_SIZE = Integer.MAX_VALUE - 8;
+
+	private final InputStream in;
+	private byte[] buf = new byte[ DEFAULT_BUFFER_SIZE ];
+	// The buffered data is in buf[ pos ] ... buf[ count - 1 ]
+	private int pos = 0;
+	private int count = 0;
 	
 	public PreBufferedInputStream( InputStream istream )
 	{
-		super( istream );
+		this.in = istream;
 	}
 
 	public boolean hasCachedData()
@@ -42,6 +56,114 @@ public class PreBufferedInputStream extends BufferedInputStream
 		return pos < count;
 	}
 
+	/*
+	 * Refills the buffer with a read from the underlying stream, which is done only
+	 * when all the buffered data has been consumed.
+	 * Returns false at the end of the stream.
+	 */
+	private boolean fill()
+		throws IOException
+	{
+		pos = 0;
+		count = 0;
+		final int n = in.read( buf, 0, buf.length );
+		if ( n > 0 ) {
+			count = n;
+		}
+		return n > 0;
+	}
+
+	@Override
+	public int read()
+		throws IOException
+	{
+		if ( pos >= count && !fill() ) {
+			return -1;
+		}
+		return buf[ pos++ ] & 0xFF;
+	}
+
+	@Override
+	public int read( byte[] b, int off, int len )
+		throws IOException
+	{
+		if ( len == 0 ) {
+			return 0;
+		}
+		if ( pos >= count ) {
+			if ( len >= buf.length ) {
+				// Large reads bypass the buffer
+				return in.read( b, off, len );
+			}
+			if ( !fill() ) {
+				return -1;
+			}
+		}
+		final int n = Math.min( len, count - pos );
+		System.arraycopy( buf, pos, b, off, n );
+		pos += n;
+		return n;
+	}
+
+	@Override
+	public long skip( long n )
+		throws IOException
+	{
+		if ( n <= 0 ) {
+			return 0;
+		}
+		if ( pos >= count ) {
+			return in.skip( n );
+		}
+		final int skipped = (int) Math.min( n, count - pos );
+		pos += skipped;
+		return skipped;
+	}
+
+	@Override
+	public int available()
+		throws IOException
+	{
+		final int buffered = count - pos;
+		final int available = in.available();
+		return ( buffered > MAX_BUFFER_SIZE - available ) ? MAX_BUFFER_SIZE : buffered + available;
+	}
+
+	@Override
+	public void close()
+		throws IOException
+	{
+		in.close();
+	}
+
+	/**
+	 * Returns a view of the data buffered by this stream, reading more data from the
+	 * underlying stream if the buffer is empty.
+	 * The returned buffer shares the internal buffer of this stream: callers consume data by
+	 * advancing its position, and must then call {@link #consume(java.nio.ByteBuffer)}
+	 * before any other operation on this stream.
+	 * @return the buffered data, or {@code null} if the end of the stream has been reached
+	 * @throws IOException if reading from the underlying stream fails
+	 */
+	public ByteBuffer bufferedData()
+		throws IOException
+	{
+		if ( pos >= count && !fill() ) {
+			return null;
+		}
+		return ByteBuffer.wrap( buf, pos, count - pos );
+	}
+
+	/**
+	 * Marks the data of a view returned by {@link #bufferedData()} as consumed, up to
+	 * the current position of the view.
+	 * @param data the view returned by {@link #bufferedData()}
+	 */
+	public void consume( ByteBuffer data )
+	{
+		pos = data.position();
+	}
+
 	public void append( ByteBuffer b )
 	{
 		final int bufferSize = b.remaining();
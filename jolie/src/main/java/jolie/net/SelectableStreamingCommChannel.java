@@ -106,7 +106,7 @@ public abstract class SelectableStreamingCommChannel extends StreamingCommChanne
 	{
 		Helpers.lockAndThen( lock, () -> {
 			final CommCore commCore = Interpreter.getInstance().commCore();
-			if ( commCore.isSelecting( this ) == false ) {
+			if ( commCore.isSelecting( this ) == false && isScheduledForInput() == false ) {
 				super.releaseImpl();
 			}
 		} );
@@ -28,11 +28,12 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.nio.ByteBuffer;
-import java.nio.channels.Channels;
 import java.nio.channels.IllegalBlockingModeException;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SocketChannel;
 import jolie.Interpreter;
+import jolie.monitoring.metrics.PortMetrics;
+import jolie.net.ports.Port;
 import jolie.net.protocols.CommProtocol;
 import jolie.util.Helpers;
 
@@ -43,7 +44,98 @@ import jolie.util.Helpers;
  */
 public class SocketCommChannel extends SelectableStreamingCommChannel
 {
+	/*
+	 * The streams returned by Channels hold the blocking lock of the channel
+	 * (a monitor) while reading or writing, which pins virtual threads.
+	 * These streams use the channel directly, which relies on its internal locks instead.
+	 */
+	private static class SocketChannelInputStream extends InputStream
+	{
+		private final SocketChannel channel;
+		// Only touched by the thread receiving from the channel, see recvImpl
+		private long bytesRead = 0L;
+
+		private SocketChannelInputStream( SocketChannel channel )
+		{
+			this.channel = channel;
+		}
+
+		@Override
+		public int read()
+			throws IOException
+		{
+			final byte[] b = new byte[ 1 ];
+			final int n = read( b, 0, 1 );
+			return ( n == 1 ) ? ( b[ 0 ] & 0xFF ) : -1;
+		}
+
+		@Override
+		public int read( byte[] b, int off, int len )
+			throws IOException
+		{
+			if ( len == 0 ) {
+				return 0;
+			}
+			if ( !channel.isBlocking() ) {
+				throw new IllegalBlockingModeException();
+			}
+			final int read = channel.read( ByteBuffer.wrap( b, off, len ) );
+			if ( read > 0 ) {
+				bytesRead += read;
+			}
+			return read;
+		}
+
+		@Override
+		public void close()
+			throws IOException
+		{
+			channel.close();
+		}
+	}
+
+	private static class SocketChannelOutputStream extends OutputStream
+	{
+		private final SocketChannel channel;
+		private long bytesWritten = 0L;
+
+		private SocketChannelOutputStream( SocketChannel channel )
+		{
+			this.channel = channel;
+		}
+
+		@Override
+		public void write( int b )
+			throws IOException
+		{
+			write( new byte[] { (byte) b }, 0, 1 );
+		}
+
+		@Override
+		public void write( byte[] b, int off, int len )
+			throws IOException
+		{
+			if ( !channel.isBlocking() ) {
+				throw new IllegalBlockingModeException();
+			}
+			final ByteBuffer buffer = ByteBuffer.wrap( b, off, len );
+			while( buffer.hasRemaining() ) {
+				channel.write( buffer );
+			}
+			bytesWritten += len;
+		}
+
+		@Override
+		public void close()
+			throws IOException
+		{
+			channel.close();
+		}
+	}
+
 	private final SocketChannel socketChannel;
+	private final SocketChannelInputStream socketInputStream;
+	private final SocketChannelOutputStream socketOutputStream;
 	private final PreBufferedInputStream istream;
 	private final OutputStream ostream;
 	
@@ -65,8 +157,10 @@ public class SocketCommChannel extends SelectableStreamingCommChannel
 		this.socketChannel = socketChannel;
 		socketChannel.socket().setSoLinger( true, SO_LINGER );
 		// this.istream = new PreBufferedInputStream( new BufferedInputStream( Channels.newInputStream( socketChannel ) ) );
-		this.istream = new PreBufferedInputStream( Channels.newInputStream( socketChannel ) );
-		this.ostream = new BufferedOutputStream( Channels.newOutputStream( socketChannel ) );
+		this.socketInputStream = new SocketChannelInputStream( socketChannel );
+		this.socketOutputStream = new SocketChannelOutputStream( socketChannel );
+		this.istream = new PreBufferedInputStream( socketInputStream );
+		this.ostream = new BufferedOutputStream( socketOutputStream );
 		setToBeClosed( false ); // Socket connections are kept open by default
 	}
 	
@@ -100,6 +194,9 @@ public class SocketCommChannel extends SelectableStreamingCommChannel
 			return protocol().recv( istream, ostream );
 		} catch( IllegalBlockingModeException e ) {
 			throw new IOException( e );
+		} finally {
+			recordTraffic( socketInputStream.bytesRead, 0L );
+			socketInputStream.bytesRead = 0L;
 		}
 	}
 	
@@ -118,6 +215,25 @@ public class SocketCommChannel extends SelectableStreamingCommChannel
 			ostream.flush();
 		} catch( IllegalBlockingModeException e ) {
 			throw new IOException( e );
+		} finally {
+			recordTraffic( 0L, socketOutputStream.bytesWritten );
+			socketOutputStream.bytesWritten = 0L;
+		}
+	}
+
+	/*
+	 * The byte counters of the streams are only touched while receiving (bytesRead) or sending (bytesWritten),
+	 * which are serialized by the locks of this channel. Bytes read by other code paths are recorded directly.
+	 */
+	private void recordTraffic( long received, long sent )
+	{
+		final Interpreter interpreter = Interpreter.getInstance();
+		final Port port = parentPort();
+		if ( interpreter != null && port != null && (received > 0L || sent > 0L) ) {
+			final PortMetrics metrics = interpreter.metrics().port( port );
+			if ( metrics != null ) {
+				metrics.addTraffic( received, sent );
+			}
 		}
 	}
 	
@@ -129,7 +245,11 @@ public class SocketCommChannel extends SelectableStreamingCommChannel
 		if ( interpreter != null && interpreter.commCore().isSelecting( this ) ) {
 			interpreter.commCore().unregisterForSelection( this );
 		}
-		socketChannel.close();
+		try {
+			socketChannel.close();
+		} finally {
+			protocol().close();
+		}
 	}
 	
 	private final ByteBuffer buffer = ByteBuffer.allocateDirect( 1024 );
@@ -162,6 +282,8 @@ public class SocketCommChannel extends SelectableStreamingCommChannel
 		if ( read == -1 ) {
 			return false;
 		} else if ( read > 0 ) {
+			// A multiplexed channel may be receiving under its own lock, so the bytes are not added to bytesRead
+			recordTraffic( read, 0L );
 			buffer.limit( read );
 			buffer.rewind();
 			istream.append( buffer );
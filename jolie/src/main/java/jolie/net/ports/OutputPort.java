@@ -237,10 +237,7 @@ public class OutputPort extends AbstractIdentifiableObject implements Port
 			} else {
 				// Try reusing an existing channel first
 				String protocol = protocolVariablePath.getValue().strValue();
-				ret = interpreter.commCore().getPersistentChannel( uri, protocol );
-				if ( ret == null ) {
-					ret = interpreter.commCore().createCommChannel( uri, this );
-				}
+				ret = interpreter.commCore().acquireChannel( uri, protocol, this );
 			}
 		}
 
@@ -234,4 +234,11 @@ public abstract class CommProtocol
 		throws IOException;
 
 	abstract public boolean isThreadSafe();
+
+	/**
+	 * Releases the resources held by this protocol.
+	 * Called by the channel using this protocol when it is closed.
+	 */
+	public void close()
+	{}
 }
@@ -0,0 +1,86 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.process;
+
+import jolie.ExecutionThread;
+import jolie.runtime.Value;
+import jolie.runtime.VariablePath;
+import jolie.runtime.expression.ArithmeticExpression;
+import jolie.runtime.expression.Expression;
+
+/**
+ * Assigns to a variable the value of an arithmetic expression whose first operand
+ * is the variable itself, e.g., <code>x = x * 2 + 1</code>.
+ * Equivalent to an {@link AssignmentProcess}, but the variable is looked up only once.
+ * @see ArithmeticExpression
+ */
+public class ArithmeticAssignmentProcess implements Process, Expression
+{
+	final private VariablePath varPath;
+	final private ArithmeticExpression expression;
+
+	/**
+	 * Constructor.
+	 * @param varPath the variable which will receive the value
+	 * @param expression the expression whose first operand reads varPath
+	 */
+	public ArithmeticAssignmentProcess( VariablePath varPath, ArithmeticExpression expression )
+	{
+		this.varPath = varPath;
+		this.expression = expression;
+	}
+
+	public Process copy( TransformationReason reason )
+	{
+		return new ArithmeticAssignmentProcess(
+					(VariablePath)varPath.cloneExpression( reason ),
+					(ArithmeticExpression)expression.cloneExpression( reason )
+				);
+	}
+
+	public Expression cloneExpression( TransformationReason reason )
+	{
+		return new ArithmeticAssignmentProcess(
+					(VariablePath)varPath.cloneExpression( reason ),
+					(ArithmeticExpression)expression.cloneExpression( reason )
+				);
+	}
+
+	public void run()
+	{
+		if ( ExecutionThread.currentThread().isKilled() )
+			return;
+		evaluate();
+	}
+
+	public Value evaluate()
+	{
+		final Value val = varPath.getValue();
+		val.assignValue( expression.evaluate( val ) );
+		return val;
+	}
+
+	public boolean isKillable()
+	{
+		return true;
+	}
+}
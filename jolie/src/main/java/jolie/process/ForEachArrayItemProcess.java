@@ -21,10 +21,8 @@ package jolie.process;
 
 import jolie.runtime.ExitingException;
 import jolie.runtime.FaultException;
-import jolie.runtime.Value;
 import jolie.runtime.ValueVector;
 import jolie.runtime.VariablePath;
-import jolie.util.Pair;
 
 public class ForEachArrayItemProcess implements Process
 {
@@ -56,12 +54,8 @@ public class ForEachArrayItemProcess implements Process
 		final ValueVector targetVector = targetPath.getValueVectorOrNull();
 		if ( targetVector != null ) {
 			int size = targetVector.size();
-			VariablePath target = targetPath.copy();
-			int length = target.path().length;
-
 			for( int i = 0; i < size; i++ ) {
-				target.path()[ length - 1 ] = new Pair<>( target.path()[ length - 1 ].key(), Value.create( i ) );
-				keyPath.makePointer( target );
+				keyPath.makePointer( targetPath.withLastIndex( i ) );
 				process.run();
 			}
 		}
@@ -55,6 +55,10 @@ public class InitDefinitionProcess extends DefinitionProcess
 				}
 			}
 			
+			// Embedded services are loaded in order, but can prepare in parallel
+			for( EmbeddedServiceLoader loader : interpreter.embeddedServiceLoaders() ) {
+				loader.prepare();
+			}
 			for( EmbeddedServiceLoader loader : interpreter.embeddedServiceLoaders() ) {
 				loader.load();
 			}
@@ -73,6 +77,7 @@ public class InitDefinitionProcess extends DefinitionProcess
 					assert false;
 				}
 			}
+			interpreter.commCore().initAdmissionControl();
 			
 			// If an internal service, copy over the output port locations from the parent service
 			if ( interpreter.parentInterpreter() != null ) {
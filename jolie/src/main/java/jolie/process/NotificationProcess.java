@@ -28,11 +28,13 @@ import jolie.ExecutionThread;
 import jolie.Interpreter;
 import jolie.lang.Constants;
 import jolie.monitoring.events.OperationCallEvent;
+import jolie.monitoring.metrics.OperationMetrics;
 import jolie.net.CommChannel;
 import jolie.net.CommMessage;
 import jolie.net.ports.OutputPort;
 import jolie.runtime.FaultException;
 import jolie.runtime.Value;
+import jolie.runtime.VariablePath;
 import jolie.runtime.expression.Expression;
 import jolie.runtime.typing.OneWayTypeDescription;
 import jolie.runtime.typing.TypeCheckingException;
@@ -45,6 +47,7 @@ public class NotificationProcess implements Process
 	private final OutputPort outputPort;
 	private final Expression outputExpression; // may be null
 	private final OneWayTypeDescription oneWayDescription; // may be null
+	private boolean endsSession = false;
 
 	public NotificationProcess(
 			String operationId,
@@ -69,6 +72,33 @@ public class NotificationProcess implements Process
 				);
 	}
 
+	/**
+	 * Declares whether this process is the last one executed by its session.
+	 * If so, and no handler of the session can run after it (e.g., if the notification fails),
+	 * the session cannot access the sent value anymore, which can thus
+	 * be moved to the request message instead of being copied.
+	 * @param endsSession {@code true} if this process ends its session
+	 */
+	public void setEndsSession( boolean endsSession )
+	{
+		this.endsSession = endsSession;
+	}
+
+	private CommMessage createRequest()
+		throws URISyntaxException
+	{
+		if ( outputExpression == null ) {
+			return CommMessage.createRequest( operationId, outputPort.getResourcePath(), Value.UNDEFINED_VALUE );
+		}
+		if ( endsSession && outputExpression instanceof VariablePath && !ExecutionThread.currentThread().hasHandlers() ) {
+			final Value value = ((VariablePath) outputExpression).getTransferableValueOrNull();
+			if ( value != null ) {
+				return CommMessage.createMovedRequest( operationId, outputPort.getResourcePath(), value );
+			}
+		}
+		return CommMessage.createRequest( operationId, outputPort.getResourcePath(), outputExpression.evaluate() );
+	}
+
 	private void log( String log, CommMessage message )
 	{
 		final Tracer tracer = Interpreter.getInstance().tracer();
@@ -88,11 +118,11 @@ public class NotificationProcess implements Process
 		}
 
 		CommChannel channel = null;
+		OperationMetrics metrics = null;
+		long startTime = 0L;
+		boolean faulted = true;
 		try {
-			CommMessage message =
-				( outputExpression == null ) ?
-						CommMessage.createRequest( operationId, outputPort.getResourcePath(), Value.UNDEFINED_VALUE ) :
-						CommMessage.createRequest( operationId, outputPort.getResourcePath(), outputExpression.evaluate() );
+			CommMessage message = createRequest();
 			if ( oneWayDescription != null ) {
 				try  {
 				oneWayDescription.requestType().check( message.value() );
@@ -103,6 +133,8 @@ public class NotificationProcess implements Process
 					throw( e );
 				}
 			}
+			metrics = Interpreter.getInstance().metrics().outputOperation( outputPort, operationId );
+			startTime = metrics.begin();
 			channel = outputPort.getCommChannel();
 
 			log( "SENDING", message );
@@ -124,6 +156,7 @@ public class NotificationProcess implements Process
 			} while( response == null );
 			
 			log( "RECEIVED ACK", response );
+			faulted = response.isFault();
 			
 			if ( response.isFault() ) {
 				if ( response.fault().faultName().equals( "CorrelationError" )
@@ -142,6 +175,9 @@ public class NotificationProcess implements Process
 		} catch( TypeCheckingException e ) {
 			throw new FaultException( Constants.TYPE_MISMATCH_FAULT_NAME, "TypeMismatch (" + operationId + "@" + outputPort.id() + "): " + e.getMessage() );
 		} finally {
+			if ( metrics != null ) {
+				metrics.end( startTime, faulted );
+			}
 			if ( channel != null ) {
 				try {
 					channel.release();
@@ -73,6 +73,7 @@ public class OneWayProcess implements InputOperationProcess
 			Interpreter.getInstance().fireMonitorEvent( new OperationStartedEvent( operation.id(), ExecutionThread.currentThread().getSessionId(), Long.valueOf( sessionMessage.message().id()).toString(), sessionMessage.message().value() ) );
 		}
 
+		Interpreter.getInstance().metrics().inputOperation( sessionMessage.channel(), operation.id() ).received();
 		log( "RECEIVED", sessionMessage.message() );
 		if ( varPath != null ) {
 			varPath.getValue( state.root() ).refCopy( sessionMessage.message().value() );
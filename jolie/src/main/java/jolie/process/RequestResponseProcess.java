@@ -28,6 +28,7 @@ import jolie.Interpreter;
 import jolie.lang.Constants;
 import jolie.monitoring.events.OperationEndedEvent;
 import jolie.monitoring.events.OperationStartedEvent;
+import jolie.monitoring.metrics.OperationMetrics;
 import jolie.net.CommChannel;
 import jolie.net.CommMessage;
 import jolie.net.SessionMessage;
@@ -50,6 +51,7 @@ public class RequestResponseProcess implements InputOperationProcess
 	private final Expression outputExpression; // may be null
 	private final Process process;
 	private boolean isSessionStarter = false;
+	private boolean endsSession = false;
 	
 	public RequestResponseProcess(
 			RequestResponseOperation operation,
@@ -68,6 +70,18 @@ public class RequestResponseProcess implements InputOperationProcess
 		this.isSessionStarter = isSessionStarter;
 	}
 
+	/**
+	 * Declares whether this process is the last one executed by its session.
+	 * If so, and no handler of the session can run after it (e.g., if sending the response fails),
+	 * the session cannot access the response value anymore, which can thus
+	 * be moved to the response message instead of being copied.
+	 * @param endsSession {@code true} if this process ends its session
+	 */
+	public void setEndsSession( boolean endsSession )
+	{
+		this.endsSession = endsSession;
+	}
+
 	public InputOperation inputOperation()
 	{
 		return operation;
@@ -105,6 +119,9 @@ public class RequestResponseProcess implements InputOperationProcess
 			Interpreter.getInstance().fireMonitorEvent( new OperationStartedEvent( operation.id(), ExecutionThread.currentThread().getSessionId(), Long.valueOf( sessionMessage.message().id()).toString(), sessionMessage.message().value() ) );
 		}
 
+		final OperationMetrics metrics =
+			Interpreter.getInstance().metrics().inputOperation( sessionMessage.channel(), operation.id() );
+		final long startTime = metrics.begin();
 		log( "RECEIVED", sessionMessage.message() );
 		if ( inputVarPath != null ) {
 			inputVarPath.getValue( state.root() ).refCopy( sessionMessage.message().value() );
@@ -114,7 +131,7 @@ public class RequestResponseProcess implements InputOperationProcess
 			public void run()
 				throws FaultException, ExitingException
 			{
-				runBehaviour( sessionMessage.channel(), sessionMessage.message() );
+				runBehaviour( sessionMessage.channel(), sessionMessage.message(), metrics, startTime );
 			}
 
 			public Process copy( TransformationReason reason )
@@ -161,6 +178,20 @@ public class RequestResponseProcess implements InputOperationProcess
 		return inputVarPath;
 	}
 
+	private CommMessage createResponse( CommMessage request )
+	{
+		if ( outputExpression == null ) {
+			return CommMessage.createResponse( request, Value.UNDEFINED_VALUE );
+		}
+		if ( endsSession && outputExpression instanceof VariablePath && !ExecutionThread.currentThread().hasHandlers() ) {
+			final Value value = ((VariablePath) outputExpression).getTransferableValueOrNull();
+			if ( value != null ) {
+				return CommMessage.createMovedResponse( request, value );
+			}
+		}
+		return CommMessage.createResponse( request, outputExpression.evaluate() );
+	}
+
 	private CommMessage createFaultMessage( CommMessage request, FaultException f )
 		throws TypeCheckingException
 	{
@@ -178,7 +209,7 @@ public class RequestResponseProcess implements InputOperationProcess
 		return CommMessage.createFaultResponse( request, f );
 	}
 	
-	private void runBehaviour( CommChannel channel, CommMessage message )
+	private void runBehaviour( CommChannel channel, CommMessage message, OperationMetrics metrics, long startTime )
 		throws FaultException
 	{
 		// Variables for monitor
@@ -206,11 +237,7 @@ public class RequestResponseProcess implements InputOperationProcess
 						details = typeMismatch.faultName();
 					}
 				} else {
-					response =
-						CommMessage.createResponse(
-							message,
-							( outputExpression == null ) ? Value.UNDEFINED_VALUE : outputExpression.evaluate()
-						);
+					response = createResponse( message );
 						responseStatus = OperationEndedEvent.SUCCESS;
 						details = "";
 					if ( operation.typeDescription().responseType() != null ) {
@@ -241,8 +268,10 @@ public class RequestResponseProcess implements InputOperationProcess
 			fault = f;
 		}
 
+		boolean sent = false;
 		try {
 			channel.send( response );
+			sent = true;
 			Value monitorValue;
 			if ( response.isFault() ) {
 				log( "SENT FAULT", response );					
@@ -258,6 +287,7 @@ public class RequestResponseProcess implements InputOperationProcess
 			//Interpreter.getInstance().logSevere( e );
 			throw new FaultException( Constants.IO_EXCEPTION_FAULT_NAME, e );
 		} finally {
+			metrics.end( startTime, !sent || response.isFault() );
 			try {
 				channel.release(); // TODO: what if the channel is in disposeForInput?
 			} catch( IOException e ) {
@@ -38,6 +38,11 @@ public class SequentialProcess implements Process
 		this.children = children;
 	}
 	
+	public Process lastChild()
+	{
+		return children[ children.length - 1 ];
+	}
+
 	public Process copy( TransformationReason reason )
 	{
 		Process[] p = new Process[ children.length ];
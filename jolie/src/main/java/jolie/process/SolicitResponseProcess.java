@@ -24,13 +24,13 @@ package jolie.process;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import jolie.ExecutionThread;
 import jolie.Interpreter;
 import jolie.lang.Constants;
 import jolie.monitoring.events.OperationCallEvent;
 import jolie.monitoring.events.OperationReplyEvent;
+import jolie.monitoring.metrics.OperationMetrics;
 import jolie.net.CommChannel;
 import jolie.net.CommMessage;
 import jolie.net.ports.OutputPort;
@@ -100,6 +100,9 @@ public class SolicitResponseProcess implements Process
 			return;
 		}
 		CommChannel channel = null;
+		OperationMetrics metrics = null;
+		long startTime = 0L;
+		boolean faulted = true;
 		try {
 
 			CommMessage message =
@@ -122,6 +125,8 @@ public class SolicitResponseProcess implements Process
 				}
 			}
 
+			metrics = Interpreter.getInstance().metrics().outputOperation( outputPort, operationId );
+			startTime = metrics.begin();
 			channel = outputPort.getCommChannel();
 			channel.send( message );
 			//channel.release(); TODO release channel if possible (i.e. it will not be closed)
@@ -133,11 +138,13 @@ public class SolicitResponseProcess implements Process
 			CommMessage response = null;
 			do {
 				try {
-					response = channel.recvResponseFor( message ).get( Interpreter.getInstance().responseTimeout(), TimeUnit.MILLISECONDS );
+					response = channel.recvResponseFor( message, Interpreter.getInstance().responseTimeout() ).get();
 				} catch( InterruptedException e ) {
 					throw new IOException( e );
 				} catch( ExecutionException e ) {
-					if ( e.getCause() instanceof IOException ) {
+					if ( e.getCause() instanceof TimeoutException ) {
+						throw (TimeoutException) e.getCause();
+					} else if ( e.getCause() instanceof IOException ) {
 						throw (IOException) e.getCause();
 					} else {
 						throw new IOException( e.getCause() );
@@ -190,6 +197,7 @@ public class SolicitResponseProcess implements Process
 				}
 			}
 
+			faulted = false;
 			try {
 				installProcess.run();
 			} catch( ExitingException e ) { assert false; }
@@ -202,6 +210,9 @@ public class SolicitResponseProcess implements Process
 		} catch( TypeCheckingException e ) {
 			throw new FaultException( Constants.TYPE_MISMATCH_FAULT_NAME, "Output message TypeMismatch (" + operationId + "@" + outputPort.id() + "): " + e.getMessage() );
 		} finally {
+			if ( metrics != null ) {
+				metrics.end( startTime, faulted );
+			}
 			if ( channel != null ) {
 				try {
 					channel.release();
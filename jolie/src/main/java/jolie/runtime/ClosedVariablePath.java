@@ -40,7 +40,8 @@ public class ClosedVariablePath extends VariablePath
 	
 	public ClosedVariablePath( VariablePath otherPath, Value rootValue )
 	{
-		this( otherPath.path(), rootValue );
+		super( otherPath );
+		this.rootValue = rootValue;
 	}
 
 	@Override
@@ -49,6 +50,12 @@ public class ClosedVariablePath extends VariablePath
 		return new ClosedVariablePath( path, rootValue );
 	}
 
+	@Override
+	protected VariablePath _createVariablePath( VariablePath segments )
+	{
+		return new ClosedVariablePath( segments, rootValue );
+	}
+
 	@Override
 	public Expression cloneExpression( TransformationReason reason )
 	{
@@ -29,12 +29,42 @@ import java.util.function.BiPredicate;
  */
 public final class CompareOperators
 {
+	/*
+	 * Fast path for the most common case, comparing two primitive numbers of the same type,
+	 * which can be done without locking the values or converting them.
+	 * Returns -2 if the values cannot be compared this way.
+	 */
+	private static int comparePrimitives( Value leftValue, Value rightValue )
+	{
+		final Value left = leftValue.evaluate();
+		final Value right = rightValue.evaluate();
+		final Object leftPayload = left.payload();
+		if ( leftPayload instanceof Value.PrimitiveTag && leftPayload == right.payload() ) {
+			final Value.PrimitiveTag tag = (Value.PrimitiveTag) leftPayload;
+			final long l = left.primitivePayload( tag );
+			final long r = right.primitivePayload( tag );
+			if ( tag == Value.PrimitiveTag.DOUBLE ) {
+				final double ld = Double.longBitsToDouble( l );
+				final double rd = Double.longBitsToDouble( r );
+				return ( ld < rd ) ? -1 : ( ( ld > rd ) ? 1 : ( ( ld == rd ) ? 0 : -2 ) );
+			}
+			return Long.compare( l, r );
+		}
+		return -2;
+	}
+
 	public final static BiPredicate< Value, Value > EQUAL =
-		( left, right ) -> left.equals( right );
+		( left, right ) -> {
+			final int c = comparePrimitives( left, right );
+			return ( c == -2 ) ? left.equals( right ) : c == 0;
+		};
 	public final static BiPredicate< Value, Value > NOT_EQUAL = EQUAL.negate();
 	public final static BiPredicate< Value, Value > MINOR =
 		( left, right ) -> {
-			if ( left.isDouble() ) {
+			final int c = comparePrimitives( left, right );
+			if ( c != -2 ) {
+				return c < 0;
+			} else if ( left.isDouble() ) {
 				return ( left.doubleValue() < right.doubleValue() );
 			} if ( left.isLong() ) {
 				return ( left.longValue() < right.longValue() );
@@ -44,7 +74,10 @@ public final class CompareOperators
 		};
 	public final static BiPredicate< Value, Value > MAJOR =
 		( left, right ) -> {
-			if ( left.isDouble() ) {
+			final int c = comparePrimitives( left, right );
+			if ( c != -2 ) {
+				return c > 0;
+			} else if ( left.isDouble() ) {
 				return ( left.doubleValue() > right.doubleValue() );
 			} if ( left.isLong() ) {
 				return ( left.longValue() > right.longValue() );
@@ -54,7 +87,10 @@ public final class CompareOperators
 		};
 	public final static BiPredicate< Value, Value > MINOR_OR_EQUAL =
 		( left, right ) -> {
-			if ( left.isDouble() ) {
+			final int c = comparePrimitives( left, right );
+			if ( c != -2 ) {
+				return c <= 0;
+			} else if ( left.isDouble() ) {
 				return ( left.doubleValue() <= right.doubleValue() );
 			} if ( left.isLong() ) {
 				return ( left.longValue() <= right.longValue() );
@@ -64,7 +100,10 @@ public final class CompareOperators
 		};
 	public final static BiPredicate< Value, Value > MAJOR_OR_EQUAL =
 		( left, right ) -> {
-			if ( left.isDouble() ) {
+			final int c = comparePrimitives( left, right );
+			if ( c != -2 ) {
+				return c >= 0;
+			} else if ( left.isDouble() ) {
 				return ( left.doubleValue() >= right.doubleValue() );
 			} if ( left.isLong() ) {
 				return ( left.longValue() >= right.longValue() );
@@ -37,6 +37,11 @@ public class GlobalVariablePath extends VariablePath
 		super( path );
 	}
 
+	private GlobalVariablePath( VariablePath other )
+	{
+		super( other );
+	}
+
 	@Override
 	public boolean isGlobal()
 	{
@@ -49,6 +54,12 @@ public class GlobalVariablePath extends VariablePath
 		return new GlobalVariablePath( path );
 	}
 
+	@Override
+	protected VariablePath _createVariablePath( VariablePath segments )
+	{
+		return new GlobalVariablePath( segments );
+	}
+
 	@Override
 	public Expression cloneExpression( TransformationReason reason )
 	{
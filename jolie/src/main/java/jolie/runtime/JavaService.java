@@ -23,12 +23,17 @@
 package jolie.runtime;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ExecutionException;
 import jolie.Interpreter;
 import jolie.lang.Constants;
@@ -39,7 +44,12 @@ import jolie.runtime.embedding.JavaServiceHelpers;
 import jolie.runtime.embedding.RequestResponse;
 
 /**
+ * The base class of the services implemented in Java.
  *
+ * The public methods of a service are its operations. When a service class is used for the first time,
+ * each operation is compiled to a {@link MethodHandle} that converts the request value to the parameter of
+ * the method, invokes the method and converts its return value to the response value, so that
+ * calling an operation does not go through reflection. The handles are shared by all the instances of the class.
  * @author Fabrizio Montesi
  */
 public abstract class JavaService
@@ -53,24 +63,26 @@ public abstract class JavaService
 	public interface ValueConverter {}
 
 	private static class JavaOperation {
-		private final Method method;
-		private final Method parameterConstructor;
-		private final Method returnValueConstructor;
+		// ( JavaService, Value )Value, returns null for empty responses
+		private final MethodHandle handle;
 		private final JavaOperationCallable callable;
 
-		private JavaOperation(
-				Method method,
-				Method parameterConstructor,
-				Method returnValueConstructor,
-				JavaOperationCallable callable
-		) {
-			this.method = method;
-			this.parameterConstructor = parameterConstructor;
-			this.returnValueConstructor = returnValueConstructor;
+		private JavaOperation( MethodHandle handle, JavaOperationCallable callable )
+		{
+			this.handle = handle;
 			this.callable = callable;
 		}
 	}
 
+	/*
+	 * The operations of a service class, and the warnings about the public methods
+	 * that look like operations but could not be compiled to a method handle.
+	 */
+	private static class ServiceOperations {
+		private final Map< String, JavaOperation > operations = new HashMap<>();
+		private final List< String > warnings = new ArrayList<>();
+	}
+
 	protected static class Embedder
 	{
 		private final Interpreter interpreter;
@@ -108,25 +120,58 @@ public abstract class JavaService
 		}
 	}
 
+	private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+	private static final MethodType operationType = MethodType.methodType( Value.class, JavaService.class, Value.class );
+	private static final MethodHandle isNull;
+
+	static {
+		try {
+			isNull = lookup.findStatic( Objects.class, "isNull", MethodType.methodType( boolean.class, Object.class ) );
+		} catch( NoSuchMethodException | IllegalAccessException e ) {
+			throw new ExceptionInInitializerError( e );
+		}
+	}
+
+	private static final ClassValue< ServiceOperations > classOperations =
+		new ClassValue< ServiceOperations >() {
+			@Override
+			protected ServiceOperations computeValue( Class< ? > serviceClass )
+			{
+				return createOperations( serviceClass );
+			}
+		};
+
 	private Interpreter interpreter;
+	private final ServiceOperations serviceOperations;
 	private final Map< String, JavaOperation > operations;
 
 	public JavaService()
 	{
-		Map< String, JavaOperation > ops  = new HashMap<>();
+		this.serviceOperations = classOperations.get( this.getClass() );
+		this.operations = Collections.unmodifiableMap( serviceOperations.operations );
+	}
+
+	private static ServiceOperations createOperations( Class< ? > serviceClass )
+	{
+		final ServiceOperations ops = new ServiceOperations();
 		
 		Class<?>[] params;
-		for( Method method : this.getClass().getDeclaredMethods() ) {
+		Method parameterConstructor;
+		for( Method method : serviceClass.getDeclaredMethods() ) {
 			if ( Modifier.isPublic( method.getModifiers() ) ) {
 				params = method.getParameterTypes();
 				if ( params.length == 1 ) {
-					checkMethod( ops, method, getFromValueConverter( params[0] ) );
+					// A parameter type without a converter can not be received: the method is not an operation
+					parameterConstructor = getFromValueConverter( params[0] );
+					if ( parameterConstructor != null ) {
+						checkMethod( ops, method, parameterConstructor );
+					}
 				} else if ( params.length == 0 ) {
 					checkMethod( ops, method, null );
 				}
 			}
 		}
-		this.operations = Collections.unmodifiableMap( ops );
+		return ops;
 	}
 
 	private static String getMethodName( Method method )
@@ -222,45 +267,96 @@ public abstract class JavaService
 		return null;
 	}
 	
+	private static Value invoke( JavaOperation javaOperation, JavaService javaService, Value request )
+		throws Throwable
+	{
+		return (Value) javaOperation.handle.invokeExact( javaService, request );
+	}
+
 	private static CommMessage oneWayCallable( JavaService javaService, JavaOperation javaOperation, CommMessage message )
-		throws IllegalAccessException
 	{
-		final Object[] args = getArguments( javaOperation, message );
 		javaService.interpreter.execute( () -> {
 			try {
-				javaOperation.method.invoke( javaService, args );
-			} catch( InvocationTargetException | IllegalAccessException e ) {
-				// This should never happen, as we filtered this out in the constructor.
-				javaService.interpreter.logSevere( e );
+				invoke( javaOperation, javaService, message.value() );
+			} catch( Throwable t ) {
+				javaService.interpreter.logSevere( t );
 			}
 		} );
 		return CommMessage.createEmptyResponse( message );
 	}
 	
 	private static CommMessage requestResponseCallable( JavaService javaService, JavaOperation javaOperation, CommMessage message )
-		throws IllegalAccessException
 	{
-		final Object[] args = getArguments( javaOperation, message );
 		try {
-			final Object retObject = javaOperation.method.invoke( javaService, args );
-			if ( retObject == null ) {
+			final Value response = invoke( javaOperation, javaService, message.value() );
+			if ( response == null ) {
 				return CommMessage.createEmptyResponse( message );
 			} else {
-				return CommMessage.createResponse( message, (Value)javaOperation.returnValueConstructor.invoke( null, retObject ) );
+				return CommMessage.createResponse( message, response );
 			}
-		} catch( InvocationTargetException e ) {
-			final FaultException fault =
-				( e.getCause() instanceof FaultException )
-				? (FaultException)e.getCause()
-				: new FaultException( e.getCause() );
-			return CommMessage.createFaultResponse(
-				message,
-				fault
-			);
+		} catch( FaultException e ) {
+			return CommMessage.createFaultResponse( message, e );
+		} catch( Throwable t ) {
+			return CommMessage.createFaultResponse( message, new FaultException( t ) );
 		}
 	}
 
-	private void checkMethod( Map< String, JavaOperation > ops, Method method, Method parameterConstructor )
+	private static MethodHandle unreflect( Method method )
+		throws IllegalAccessException
+	{
+		try {
+			return lookup.unreflect( method );
+		} catch( IllegalAccessException e ) {
+			// e.g., a public method declared by a class that is not public
+			method.setAccessible( true );
+			return lookup.unreflect( method );
+		}
+	}
+
+	/*
+	 * Adapts a method to the type ( JavaService, Value )Value: the request value is
+	 * converted to the parameter of the method (if any), and the return value of the method
+	 * (if any, and unless it is null) is converted to the response value.
+	 */
+	private static MethodHandle createHandle( Method method, Method parameterConstructor, Method returnValueConstructor )
+		throws IllegalAccessException
+	{
+		MethodHandle handle = unreflect( method );
+		if ( Modifier.isStatic( method.getModifiers() ) ) {
+			handle = MethodHandles.dropArguments( handle, 0, JavaService.class );
+		}
+		if ( parameterConstructor == null ) {
+			handle = MethodHandles.dropArguments( handle, 1, Value.class );
+		} else {
+			final MethodHandle converter = unreflect( parameterConstructor )
+				.asType( MethodType.methodType( method.getParameterTypes()[ 0 ], Value.class ) );
+			handle = MethodHandles.filterArguments( handle, 1, converter );
+		}
+		if ( returnValueConstructor != null ) {
+			final Class< ? > returnType = method.getReturnType();
+			final MethodHandle converter = unreflect( returnValueConstructor )
+				.asType( MethodType.methodType( Value.class, returnType ) );
+			handle = MethodHandles.filterReturnValue( handle, MethodHandles.guardWithTest(
+				isNull.asType( MethodType.methodType( boolean.class, returnType ) ),
+				MethodHandles.dropArguments( MethodHandles.constant( Value.class, null ), 0, returnType ),
+				converter
+			) );
+		}
+		return handle.asType( operationType );
+	}
+
+	private static void putOperation( ServiceOperations ops, String name, Method method, Method parameterConstructor, Method returnValueConstructor, JavaOperationCallable callable )
+	{
+		try {
+			ops.operations.put( name, new JavaOperation( createHandle( method, parameterConstructor, returnValueConstructor ), callable ) );
+		} catch( IllegalAccessException | RuntimeException e ) {
+			// The interpreter is not known yet, the warning is logged by setInterpreter
+			ops.warnings.add( "Method " + method.getName() + " of Java service " + method.getDeclaringClass().getName()
+				+ " can not be used as operation " + name + ": " + e );
+		}
+	}
+
+	private static void checkMethod( ServiceOperations ops, Method method, Method parameterConstructor )
 	{
 		final Class<?> returnType;
 		final Class<?>[] exceptions;
@@ -271,25 +367,9 @@ public abstract class JavaService
 			final boolean isRequestResponse = method.getAnnotation( RequestResponse.class ) != null;
 			exceptions = method.getExceptionTypes();
 			if ( isRequestResponse ) { // && ( exceptions.length == 0 || (exceptions.length == 1 && FaultException.class.isAssignableFrom( exceptions[0]) ) ) ) {
-				ops.put(
-					method.getName(),
-					new JavaOperation(
-						method,
-						parameterConstructor,
-						null,
-						JavaService::requestResponseCallable
-					)
-				);
+				putOperation( ops, method.getName(), method, parameterConstructor, null, JavaService::requestResponseCallable );
 			} else if ( exceptions.length == 0 ) {
-				ops.put(
-					method.getName(),
-					new JavaOperation(
-						method,
-						parameterConstructor,
-						null,
-						JavaService::oneWayCallable
-					)
-				);
+				putOperation( ops, method.getName(), method, parameterConstructor, null, JavaService::oneWayCallable );
 			}
 		} else {
 			returnValueConstructor = getToValueConverter( returnType );
@@ -299,34 +379,12 @@ public abstract class JavaService
 					( exceptions.length == 1 && FaultException.class.isAssignableFrom( exceptions[0] ) )
 					)
 				{
-					ops.put(
-						getMethodName( method ),
-						new JavaOperation(
-							method,
-							parameterConstructor,
-							returnValueConstructor,
-							JavaService::requestResponseCallable
-						)
-					);
+					putOperation( ops, getMethodName( method ), method, parameterConstructor, returnValueConstructor, JavaService::requestResponseCallable );
 				}
 			}
 		}
 	}
 
-	private static Object[] getArguments( final JavaOperation javaOperation, final CommMessage message )
-		throws IllegalAccessException
-	{
-		if ( javaOperation.parameterConstructor == null ) {
-			return new Object[0];
-		} else {
-			try {
-				return new Object[] { javaOperation.parameterConstructor.invoke( null, message.value() ) };
-			} catch( InvocationTargetException e ) {
-				throw new IllegalAccessException( e.getMessage() );
-			}
-		}
-	}
-	
 	public CommMessage callOperation( CommMessage message )
 		throws InvalidIdException, IllegalAccessException
 	{
@@ -341,6 +399,9 @@ public abstract class JavaService
 	public final void setInterpreter( Interpreter interpreter )
 	{
 		this.interpreter = interpreter;
+		for( String warning : serviceOperations.warnings ) {
+			interpreter.logWarning( warning );
+		}
 	}
 	
 	protected Interpreter interpreter()
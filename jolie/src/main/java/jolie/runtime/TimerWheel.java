@@ -0,0 +1,206 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.runtime;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed timer wheel, for scheduling many short-lived timeouts cheaply.
+ *
+ * Scheduling and cancelling a timeout cost a queue insertion and a flag write respectively,
+ * independently of the number of pending timeouts. A single thread advances the wheel
+ * every {@link #TICK} milliseconds and runs the expired tasks, so tasks must be short
+ * and must not block. Timeouts are accurate up to one tick.
+ * The thread parks when there are no pending timeouts.
+ */
+public class TimerWheel
+{
+	/**
+	 * A task scheduled on a {@link TimerWheel}.
+	 */
+	public static class Timeout
+	{
+		private final Runnable task;
+		private final long deadline;
+		private volatile boolean cancelled = false;
+		// Accessed only by the thread of the wheel
+		private long rounds;
+
+		private Timeout( Runnable task, long deadline )
+		{
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * Cancels this timeout. Has no effect if its task has already been run.
+		 */
+		public void cancel()
+		{
+			cancelled = true;
+		}
+	}
+
+	public static final long TICK = 10; // msecs
+	private static final int WHEEL_SIZE = 512;
+
+	private final ThreadFactory threadFactory;
+	private final Queue< Timeout > scheduled = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pendingCount = new AtomicInteger( 0 );
+	// Accessed only by the thread of the wheel
+	private final ArrayDeque< Timeout >[] wheel;
+	private final long startTime = System.nanoTime();
+	private volatile Thread thread = null;
+	private volatile boolean stopped = false;
+
+	@SuppressWarnings( "unchecked" )
+	public TimerWheel( ThreadFactory threadFactory )
+	{
+		this.threadFactory = threadFactory;
+		this.wheel = new ArrayDeque[ WHEEL_SIZE ];
+		for( int i = 0; i < WHEEL_SIZE; i++ ) {
+			wheel[ i ] = new ArrayDeque<>();
+		}
+	}
+
+	/**
+	 * Schedules a task to be run after the specified delay.
+	 * @param task the task to run
+	 * @param delay the delay in milliseconds
+	 * @return the scheduled timeout, which can be used to cancel the task
+	 */
+	public Timeout schedule( Runnable task, long delay )
+	{
+		final Timeout timeout = new Timeout( task, elapsed() + Math.max( 0L, delay ) );
+		if ( stopped ) {
+			timeout.cancel();
+			return timeout;
+		}
+		scheduled.add( timeout );
+		if ( pendingCount.getAndIncrement() == 0 ) {
+			wakeUp();
+		}
+		return timeout;
+	}
+
+	/**
+	 * Stops this wheel. Pending timeouts are discarded.
+	 */
+	public void stop()
+	{
+		stopped = true;
+		final Thread t = thread;
+		if ( t != null ) {
+			LockSupport.unpark( t );
+		}
+	}
+
+	private long elapsed()
+	{
+		return TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - startTime );
+	}
+
+	private void wakeUp()
+	{
+		Thread t = thread;
+		if ( t == null ) {
+			synchronized( this ) {
+				t = thread;
+				if ( t == null && !stopped ) {
+					t = threadFactory.newThread( this::run );
+					t.setDaemon( true );
+					thread = t;
+					t.start();
+					return;
+				}
+			}
+		}
+		if ( t != null ) {
+			LockSupport.unpark( t );
+		}
+	}
+
+	private void run()
+	{
+		long tick = elapsed() / TICK;
+		while( !stopped ) {
+			if ( pendingCount.get() == 0 ) {
+				LockSupport.park( this );
+				tick = elapsed() / TICK;
+				continue;
+			}
+			final long sleep = (tick + 1) * TICK - elapsed();
+			if ( sleep > 0 ) {
+				LockSupport.parkNanos( this, TimeUnit.MILLISECONDS.toNanos( sleep ) );
+				continue;
+			}
+			tick++;
+			transferScheduled( tick );
+			expire( wheel[ (int) (tick % WHEEL_SIZE) ] );
+		}
+		scheduled.clear();
+	}
+
+	private void transferScheduled( long currentTick )
+	{
+		Timeout timeout;
+		while( (timeout=scheduled.poll()) != null ) {
+			if ( timeout.cancelled ) {
+				pendingCount.decrementAndGet();
+				continue;
+			}
+			final long targetTick = Math.max( currentTick, (timeout.deadline + TICK - 1) / TICK );
+			timeout.rounds = (targetTick - currentTick) / WHEEL_SIZE;
+			wheel[ (int) (targetTick % WHEEL_SIZE) ].add( timeout );
+		}
+	}
+
+	private void expire( ArrayDeque< Timeout > bucket )
+	{
+		final Iterator< Timeout > it = bucket.iterator();
+		while( it.hasNext() ) {
+			final Timeout timeout = it.next();
+			if ( timeout.cancelled ) {
+				it.remove();
+				pendingCount.decrementAndGet();
+			} else if ( timeout.rounds > 0 ) {
+				timeout.rounds--;
+			} else {
+				it.remove();
+				pendingCount.decrementAndGet();
+				timeout.cancelled = true;
+				try {
+					timeout.task.run();
+				} catch( RuntimeException e ) {
+					Thread.currentThread().getUncaughtExceptionHandler().uncaughtException( Thread.currentThread(), e );
+				}
+			}
+		}
+	}
+}
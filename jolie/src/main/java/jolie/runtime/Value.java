@@ -31,7 +31,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.function.Function;
 
 import jolie.lang.Constants;
@@ -119,7 +119,25 @@ class ValueLink extends Value implements Cloneable
 	public Object valueObject()
 	{
 		return getLinkedValue().valueObject();
-	}	
+	}
+
+	@Override
+	Object payload()
+	{
+		return getLinkedValue().payload();
+	}
+
+	@Override
+	long primitivePayload( PrimitiveTag tag )
+	{
+		return getLinkedValue().primitivePayload( tag );
+	}
+
+	@Override
+	void setPrimitivePayload( PrimitiveTag tag, long bits )
+	{
+		getLinkedValue().setPrimitivePayload( tag, bits );
+	}
 	
 	public ValueLink( VariablePath path )
 	{
@@ -138,8 +156,22 @@ class ValueImpl extends Value implements Cloneable, Serializable
 {
 	private static final long serialVersionUID = 1L;
 	
+	@SuppressWarnings( "rawtypes" )
+	private static final AtomicReferenceFieldUpdater< ValueImpl, Map > CHILDREN =
+		AtomicReferenceFieldUpdater.newUpdater( ValueImpl.class, Map.class, "children" );
+
+	/*
+	 * Either the value object or a PrimitiveTag telling which slot holds the number.
+	 * Each tag has its own slot, which is written before the tag: a reader that
+	 * observes a tag therefore always finds in its slot a number that was assigned
+	 * with that tag, even if another thread is assigning a number of a different type.
+	 * The long slots are volatile so that their writes are atomic (JLS 17.7).
+	 */
 	private volatile Object valueObject = null;
-	private final AtomicReference< Map< String, ValueVector > > children = new AtomicReference<>();
+	private int intSlot = 0;
+	private volatile long longSlot = 0L;
+	private volatile long doubleSlot = 0L;
+	private volatile Map< String, ValueVector > children = null;
 	
 	@Override
 	public void setValueObject( Object object )
@@ -147,6 +179,47 @@ class ValueImpl extends Value implements Cloneable, Serializable
 		valueObject = object;
 	}
 
+	@Override
+	void setPrimitivePayload( PrimitiveTag tag, long bits )
+	{
+		setSlot( tag, bits );
+		valueObject = tag;
+	}
+
+	private void setSlot( PrimitiveTag tag, long bits )
+	{
+		switch( tag ) {
+		case INT:
+			intSlot = (int) bits;
+			break;
+		case LONG:
+			longSlot = bits;
+			break;
+		default:
+			doubleSlot = bits;
+			break;
+		}
+	}
+
+	@Override
+	Object payload()
+	{
+		return valueObject;
+	}
+
+	@Override
+	long primitivePayload( PrimitiveTag tag )
+	{
+		switch( tag ) {
+		case INT:
+			return intSlot;
+		case LONG:
+			return longSlot;
+		default:
+			return doubleSlot;
+		}
+	}
+
 	@Override
 	public ValueVector getChildren( String childId )
 	{
@@ -164,8 +237,8 @@ class ValueImpl extends Value implements Cloneable, Serializable
 	@Override
 	protected void _refCopy( Value value )
 	{
-		setValueObject( value.valueObject() );
-		this.children.set( value.children() );
+		assignValue( value );
+		this.children = value.children();
 	}
 
 	@Override
@@ -178,7 +251,7 @@ class ValueImpl extends Value implements Cloneable, Serializable
 	public void erase()
 	{
 		valueObject = null;
-		children.set( null );
+		children = null;
 	}
 	
 	protected ValueImpl() {}
@@ -192,14 +265,14 @@ class ValueImpl extends Value implements Cloneable, Serializable
 	@Override
 	public boolean hasChildren()
 	{
-		Map< String, ValueVector > c = children.get();
+		Map< String, ValueVector > c = children;
 		return ( c != null && !c.isEmpty() );
 	}
 
 	@Override
 	public boolean hasChildren( String childId )
 	{
-		Map< String, ValueVector > c = children.get();
+		Map< String, ValueVector > c = children;
 		return ( c != null && c.containsKey( childId ) );
 	}
 	
@@ -242,21 +315,23 @@ class ValueImpl extends Value implements Cloneable, Serializable
 		return children.computeIfAbsent( childId, k -> ValueVector.create() );
 	}
 
-	private final static int INITIAL_CAPACITY = 8;
-	private final static float LOAD_FACTOR = 0.75f;
-	
 	@Override
 	public Map< String, ValueVector > children()
 	{
-		// Create the map if not present
-		children.getAndUpdate( v -> v == null ? new ConcurrentHashMap<> ( INITIAL_CAPACITY, LOAD_FACTOR ) : v );
-		return children.get();
+		Map< String, ValueVector > c = children;
+		while( c == null ) {
+			// Create the map if not present
+			CHILDREN.compareAndSet( this, null, new ValueChildrenMap() );
+			c = children;
+		}
+		return c;
 	}
 	
 	@Override
 	public Object valueObject()
 	{
-		return valueObject;
+		final Object o = valueObject;
+		return ( o instanceof PrimitiveTag ) ? box( (PrimitiveTag) o, primitivePayload( (PrimitiveTag) o ) ) : o;
 	}
 
 	protected ValueImpl( Object object )
@@ -264,10 +339,21 @@ class ValueImpl extends Value implements Cloneable, Serializable
 		valueObject = object;
 	}
 
+	ValueImpl( PrimitiveTag tag, long bits )
+	{
+		setSlot( tag, bits );
+		valueObject = tag;
+	}
+
 	public ValueImpl( Value val )
 	{
-		valueObject = val.valueObject();
-	} 
+		final Value source = val.evaluate();
+		final Object payload = source.payload();
+		if ( payload instanceof PrimitiveTag ) {
+			setSlot( (PrimitiveTag) payload, source.primitivePayload( (PrimitiveTag) payload ) );
+		}
+		valueObject = payload;
+	}
 }
 
 /** TODO: remove code duplication from ValueImpl */
@@ -298,7 +384,9 @@ class RootValueImpl extends Value implements Cloneable
 	@Override
 	public ValueVector getChildren( String childId )
 	{
-		return children.computeIfAbsent( childId, k -> ValueVector.create() );
+		// Most lookups find the child, which is cheaper to check without computeIfAbsent
+		final ValueVector vector = children.get( childId );
+		return ( vector == null ) ? children.computeIfAbsent( childId, k -> ValueVector.create() ) : vector;
 	}
 
 	@Override
@@ -381,15 +469,44 @@ class CSetValue extends ValueImpl
 {
 	private static final long serialVersionUID = Constants.serialVersionUID();
 
+	private final transient Runnable changeListener;
+
+	CSetValue()
+	{
+		this.changeListener = null;
+	}
+
+	CSetValue( Runnable changeListener )
+	{
+		this.changeListener = changeListener;
+	}
+
 	@Override
 	public void setValueObject( Object object )
 	{
-		//CommCore commCore = Interpreter.getInstance().commCore();
-		//synchronized( commCore.correlationLock() )
-			//removeFromRadixTree();
-			super.setValueObject( object );
-			//addToRadixTree();
-		//}
+		super.setValueObject( object );
+		notifyChange();
+	}
+
+	@Override
+	void setPrimitivePayload( PrimitiveTag tag, long bits )
+	{
+		super.setPrimitivePayload( tag, bits );
+		notifyChange();
+	}
+
+	@Override
+	public void erase()
+	{
+		super.erase();
+		notifyChange();
+	}
+
+	private void notifyChange()
+	{
+		if ( changeListener != null ) {
+			changeListener.run();
+		}
 	}
 
 	@Override
@@ -415,6 +532,20 @@ class CSetValue extends ValueImpl
  */
 public abstract class Value implements Expression, Cloneable
 {
+	/*
+	 * Values of type int, long and double are stored without boxing them:
+	 * the payload of the value is then one of these tags, and the number
+	 * is kept in the slot of that tag (doubles are stored as their raw bits).
+	 * Boxed numbers (e.g., set through setValue( Object )) are still supported.
+	 * The tag and the number must be read from the same value: readers resolve
+	 * links once, through evaluate(), and then read both from the resolved value,
+	 * so that a concurrent change of what a link points to can not mix them up.
+	 */
+	enum PrimitiveTag
+	{
+		INT, LONG, DOUBLE
+	}
+
 	public abstract boolean isLink();
 	
 	public static final Value UNDEFINED_VALUE = Value.create();
@@ -443,6 +574,17 @@ public abstract class Value implements Expression, Cloneable
 	{
 		return new CSetValue();
 	}
+
+	/**
+	 * Creates a correlation value that invokes the passed listener every time
+	 * its content is changed, e.g., by an assignment.
+	 * @param changeListener the listener to invoke on changes
+	 * @return a new correlation value
+	 */
+	public final static Value createCSetValue( Runnable changeListener )
+	{
+		return new CSetValue( changeListener );
+	}
 	
 	public final static Value create( Boolean bool )
 	{
@@ -469,6 +611,21 @@ public abstract class Value implements Expression, Cloneable
 		return new ValueImpl( d );
 	}
 
+	public final static Value create( int i )
+	{
+		return new ValueImpl( PrimitiveTag.INT, i );
+	}
+
+	public final static Value create( long l )
+	{
+		return new ValueImpl( PrimitiveTag.LONG, l );
+	}
+
+	public final static Value create( double d )
+	{
+		return new ValueImpl( PrimitiveTag.DOUBLE, Double.doubleToRawLongBits( d ) );
+	}
+
 	public final static Value create( ByteArray b )
 	{
 		return new ValueImpl( b );
@@ -517,6 +674,41 @@ public abstract class Value implements Expression, Cloneable
 	public abstract Map< String, ValueVector > children();
 	public abstract Object valueObject();
 	protected abstract void setValueObject( Object object );
+
+	/**
+	 * Returns the value object, or a {@link PrimitiveTag} if this value stores
+	 * a primitive number (see {@link #primitivePayload(PrimitiveTag)}).
+	 */
+	Object payload()
+	{
+		return valueObject();
+	}
+
+	/**
+	 * Returns the number stored with the passed tag, as returned by {@link #payload()}.
+	 * Doubles are returned as their raw bits.
+	 */
+	long primitivePayload( PrimitiveTag tag )
+	{
+		return 0L;
+	}
+
+	void setPrimitivePayload( PrimitiveTag tag, long bits )
+	{
+		setValueObject( box( tag, bits ) );
+	}
+
+	static Object box( PrimitiveTag tag, long bits )
+	{
+		switch( tag ) {
+		case INT:
+			return (int) bits;
+		case LONG:
+			return bits;
+		default:
+			return Double.longBitsToDouble( bits );
+		}
+	}
 	public abstract boolean hasChildren();
 	public abstract boolean hasChildren( String childId );
 	public abstract ValueVector getChildren( String childId );
@@ -584,6 +776,21 @@ public abstract class Value implements Expression, Cloneable
 	{
 		setValueObject( object );
 	}
+
+	public final void setValue( int value )
+	{
+		setPrimitivePayload( PrimitiveTag.INT, value );
+	}
+
+	public final void setValue( long value )
+	{
+		setPrimitivePayload( PrimitiveTag.LONG, value );
+	}
+
+	public final void setValue( double value )
+	{
+		setPrimitivePayload( PrimitiveTag.DOUBLE, Double.doubleToRawLongBits( value ) );
+	}
 		
 	public final synchronized boolean equals( Value val )
 	{
@@ -613,42 +820,45 @@ public abstract class Value implements Expression, Cloneable
 	
 	public final boolean isInt()
 	{
-		return ( valueObject() instanceof Integer );
+		final Object o = payload();
+		return ( o == PrimitiveTag.INT || o instanceof Integer );
 	}
 	
 	public final boolean isLong()
 	{
-		return ( valueObject() instanceof Long );
+		final Object o = payload();
+		return ( o == PrimitiveTag.LONG || o instanceof Long );
 	}
 	
 	public final boolean isBool()
 	{
-		return ( valueObject() instanceof Boolean );
+		return ( payload() instanceof Boolean );
 	}
 	
 	public final boolean isByteArray()
 	{
-		return ( valueObject() instanceof ByteArray );
+		return ( payload() instanceof ByteArray );
 	}
 	
 	public final boolean isDouble()
 	{
-		return ( valueObject() instanceof Double );
+		final Object o = payload();
+		return ( o == PrimitiveTag.DOUBLE || o instanceof Double );
 	}
 	
 	public final boolean isString()
 	{
-		return ( valueObject() instanceof String );
+		return ( payload() instanceof String );
 	}
 	
 	public final boolean isChannel()
 	{
-		return ( valueObject() instanceof CommChannel );
+		return ( payload() instanceof CommChannel );
 	}
 	
 	public final boolean isDefined()
 	{
-		return ( valueObject() != null );
+		return ( payload() != null );
 	}
 	
 	public void setValue( CommChannel value )
@@ -658,7 +868,7 @@ public abstract class Value implements Expression, Cloneable
 	
 	public CommChannel channelValue()
 	{
-		Object o = valueObject();
+		Object o = payload();
 		if ( o instanceof CommChannel == false ) {
 			return null;
 		}
@@ -677,11 +887,22 @@ public abstract class Value implements Expression, Cloneable
 	public final String strValueStrict()
 		throws TypeCastingException
 	{
-		Object o = valueObject();
+		final Value resolved = evaluate();
+		Object o = resolved.payload();
 		if ( o == null ) {
 			throw new TypeCastingException();
 		} else if ( o instanceof String ) {
 			return (String)o;
+		} else if ( o instanceof PrimitiveTag ) {
+			final long bits = resolved.primitivePayload( (PrimitiveTag) o );
+			switch( (PrimitiveTag) o ) {
+			case INT:
+				return Integer.toString( (int) bits );
+			case LONG:
+				return Long.toString( bits );
+			default:
+				return Double.toString( Double.longBitsToDouble( bits ) );
+			}
 		}
 		return o.toString();
 	}
@@ -759,9 +980,13 @@ public abstract class Value implements Expression, Cloneable
 		throws TypeCastingException
 	{
 		int r = 0;
-		Object o = valueObject();
+		final Value resolved = evaluate();
+		Object o = resolved.payload();
 		if ( o == null ) {
 			throw new TypeCastingException();
+		} else if ( o instanceof PrimitiveTag ) {
+			final long bits = resolved.primitivePayload( (PrimitiveTag) o );
+			r = ( o == PrimitiveTag.DOUBLE ) ? (int) Double.longBitsToDouble( bits ) : (int) bits;
 		} else if ( o instanceof Integer ) {
 			r = ((Integer)o).intValue();
 		} else if ( o instanceof Double ) {
@@ -799,9 +1024,13 @@ public abstract class Value implements Expression, Cloneable
 		throws TypeCastingException
 	{
 		boolean r = false;
-		Object o = valueObject();
+		final Value resolved = evaluate();
+		Object o = resolved.payload();
 		if ( o == null ) {
 			throw new TypeCastingException();
+		} else if ( o instanceof PrimitiveTag ) {
+			final long bits = resolved.primitivePayload( (PrimitiveTag) o );
+			r = ( ( o == PrimitiveTag.DOUBLE ) ? (long) Double.longBitsToDouble( bits ) : bits ) > 0;
 		} else if ( o instanceof Boolean ) {
 			r = ((Boolean) o).booleanValue();
 		} else if ( o instanceof Number ) {
@@ -834,9 +1063,13 @@ public abstract class Value implements Expression, Cloneable
 		throws TypeCastingException
 	{
 		long r = 0L;
-		Object o = valueObject();
+		final Value resolved = evaluate();
+		Object o = resolved.payload();
 		if ( o == null ) {
 			throw new TypeCastingException();
+		} else if ( o instanceof PrimitiveTag ) {
+			final long bits = resolved.primitivePayload( (PrimitiveTag) o );
+			r = ( o == PrimitiveTag.DOUBLE ) ? (long) Double.longBitsToDouble( bits ) : bits;
 		} else if ( o instanceof Long ) {
 			r = ((Long)o).longValue();
 		} else if ( o instanceof Integer ) {
@@ -874,9 +1107,13 @@ public abstract class Value implements Expression, Cloneable
 		throws TypeCastingException
 	{
 		double r = 0.0;
-		Object o = valueObject();
+		final Value resolved = evaluate();
+		Object o = resolved.payload();
 		if ( o == null ) {
 			throw new TypeCastingException();
+		} else if ( o instanceof PrimitiveTag ) {
+			final long bits = resolved.primitivePayload( (PrimitiveTag) o );
+			r = ( o == PrimitiveTag.DOUBLE ) ? Double.longBitsToDouble( bits ) : (double) bits;
 		} else if ( o instanceof Integer ) {
 			r = ((Integer)o).doubleValue();
 		} else if ( o instanceof Double ) {
@@ -990,7 +1227,13 @@ public abstract class Value implements Expression, Cloneable
 	
 	public final void assignValue( Value val )
 	{
-		setValueObject( val.valueObject() );
+		final Value source = val.evaluate();
+		final Object payload = source.payload();
+		if ( payload instanceof PrimitiveTag ) {
+			setPrimitivePayload( (PrimitiveTag) payload, source.primitivePayload( (PrimitiveTag) payload ) );
+		} else {
+			setValueObject( payload );
+		}
 	}
 	
 	@Override
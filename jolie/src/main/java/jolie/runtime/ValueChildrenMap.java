@@ -0,0 +1,443 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.runtime;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import jolie.lang.Constants;
+
+/**
+ * A compact, thread-safe map for the children of a {@link Value}.
+ *
+ * Most values have only a handful of children, so the map starts as a
+ * copy-on-write array of alternating keys and vectors: reads and iterations
+ * work on an immutable snapshot without locking, and updates replace the snapshot
+ * while holding the monitor of the map.
+ * When the number of children grows beyond {@link #MAX_INLINE_CHILDREN}, the content
+ * is moved to a {@link ConcurrentHashMap}, which is then used for all operations.
+ *
+ * Like {@link ConcurrentHashMap}, this map does not accept {@code null} keys or vectors,
+ * and its iterators are weakly consistent.
+ */
+final class ValueChildrenMap extends AbstractMap< String, ValueVector >
+	implements ConcurrentMap< String, ValueVector >, Serializable
+{
+	private static final long serialVersionUID = Constants.serialVersionUID();
+
+	private static final int MAX_INLINE_CHILDREN = 8;
+	private static final Object[] EMPTY = new Object[ 0 ];
+	// Marks that the content has been moved to the large map
+	private static final Object[] MOVED = new Object[ 0 ];
+
+	// Alternating keys and vectors
+	private transient volatile Object[] entries = EMPTY;
+	private transient ConcurrentHashMap< String, ValueVector > large = null;
+
+	private static int indexOf( Object[] snapshot, Object key )
+	{
+		for( int i = 0; i < snapshot.length; i += 2 ) {
+			if ( snapshot[ i ].equals( key ) ) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public ValueVector get( Object key )
+	{
+		final Object[] snapshot = entries;
+		if ( snapshot == MOVED ) {
+			return large.get( key );
+		}
+		final int i = indexOf( snapshot, key );
+		return ( i < 0 ) ? null : (ValueVector) snapshot[ i + 1 ];
+	}
+
+	/**
+	 * Returns the vector of the passed key like {@link #get(java.lang.Object)},
+	 * using {@code hints[ slot ]} as an inline cache of the position of the key.
+	 * The hint is checked by reference against the key, so it needs no invalidation:
+	 * a stale hint (e.g., after a child has been removed) only costs a normal lookup,
+	 * after which the hint is updated.
+	 * Hints may be shared among threads, since they are only positions to check.
+	 */
+	ValueVector get( String key, int[] hints, int slot )
+	{
+		final Object[] snapshot = entries;
+		if ( snapshot == MOVED ) {
+			return large.get( key );
+		}
+		final int hint = hints[ slot ];
+		if ( hint < snapshot.length && snapshot[ hint ] == key ) {
+			return (ValueVector) snapshot[ hint + 1 ];
+		}
+		final int i = indexOf( snapshot, key );
+		if ( i < 0 ) {
+			return null;
+		}
+		hints[ slot ] = i;
+		return (ValueVector) snapshot[ i + 1 ];
+	}
+
+	@Override
+	public boolean containsKey( Object key )
+	{
+		return get( key ) != null;
+	}
+
+	@Override
+	public int size()
+	{
+		final Object[] snapshot = entries;
+		return ( snapshot == MOVED ) ? large.size() : snapshot.length / 2;
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		final Object[] snapshot = entries;
+		return ( snapshot == MOVED ) ? large.isEmpty() : snapshot.length == 0;
+	}
+
+	@Override
+	public ValueVector put( String key, ValueVector value )
+	{
+		return put( key, value, false );
+	}
+
+	@Override
+	public ValueVector putIfAbsent( String key, ValueVector value )
+	{
+		return put( key, value, true );
+	}
+
+	private ValueVector put( String key, ValueVector value, boolean onlyIfAbsent )
+	{
+		if ( key == null || value == null ) {
+			throw new NullPointerException();
+		}
+		if ( entries != MOVED ) {
+			synchronized( this ) {
+				final Object[] snapshot = entries;
+				if ( snapshot != MOVED ) {
+					final int i = indexOf( snapshot, key );
+					if ( i >= 0 ) {
+						final ValueVector old = (ValueVector) snapshot[ i + 1 ];
+						if ( !onlyIfAbsent ) {
+							final Object[] updated = snapshot.clone();
+							updated[ i + 1 ] = value;
+							entries = updated;
+						}
+						return old;
+					}
+					append( snapshot, key, value );
+					return null;
+				}
+			}
+		}
+		return onlyIfAbsent ? large.putIfAbsent( key, value ) : large.put( key, value );
+	}
+
+	// Must be called while holding the monitor of this map
+	private void append( Object[] snapshot, String key, ValueVector value )
+	{
+		if ( snapshot.length / 2 < MAX_INLINE_CHILDREN ) {
+			final Object[] updated = new Object[ snapshot.length + 2 ];
+			System.arraycopy( snapshot, 0, updated, 0, snapshot.length );
+			updated[ snapshot.length ] = key;
+			updated[ snapshot.length + 1 ] = value;
+			entries = updated;
+		} else {
+			final ConcurrentHashMap< String, ValueVector > map = new ConcurrentHashMap<>( MAX_INLINE_CHILDREN * 4 );
+			for( int i = 0; i < snapshot.length; i += 2 ) {
+				map.put( (String) snapshot[ i ], (ValueVector) snapshot[ i + 1 ] );
+			}
+			map.put( key, value );
+			large = map;
+			entries = MOVED; // Publishes large
+		}
+	}
+
+	@Override
+	public ValueVector computeIfAbsent( String key, Function< ? super String, ? extends ValueVector > mappingFunction )
+	{
+		final Object[] snapshot = entries;
+		if ( snapshot == MOVED ) {
+			return large.computeIfAbsent( key, mappingFunction );
+		}
+		final int i = indexOf( snapshot, key );
+		if ( i >= 0 ) {
+			return (ValueVector) snapshot[ i + 1 ];
+		}
+		synchronized( this ) {
+			final Object[] current = entries;
+			if ( current != MOVED ) {
+				final int k = indexOf( current, key );
+				if ( k >= 0 ) {
+					return (ValueVector) current[ k + 1 ];
+				}
+				final ValueVector value = mappingFunction.apply( key );
+				if ( value != null ) {
+					append( current, key, value );
+				}
+				return value;
+			}
+		}
+		return large.computeIfAbsent( key, mappingFunction );
+	}
+
+	@Override
+	public ValueVector remove( Object key )
+	{
+		return remove( key, null, false );
+	}
+
+	@Override
+	public boolean remove( Object key, Object value )
+	{
+		return value != null && remove( key, value, true ) != null;
+	}
+
+	private ValueVector remove( Object key, Object expected, boolean conditional )
+	{
+		if ( entries != MOVED ) {
+			synchronized( this ) {
+				final Object[] snapshot = entries;
+				if ( snapshot != MOVED ) {
+					final int i = indexOf( snapshot, key );
+					if ( i < 0 || (conditional && !snapshot[ i + 1 ].equals( expected )) ) {
+						return null;
+					}
+					final Object[] updated = new Object[ snapshot.length - 2 ];
+					System.arraycopy( snapshot, 0, updated, 0, i );
+					System.arraycopy( snapshot, i + 2, updated, i, snapshot.length - i - 2 );
+					entries = updated;
+					return (ValueVector) snapshot[ i + 1 ];
+				}
+			}
+		}
+		if ( conditional ) {
+			return large.remove( key, expected ) ? (ValueVector) expected : null;
+		}
+		return large.remove( key );
+	}
+
+	@Override
+	public boolean replace( String key, ValueVector oldValue, ValueVector newValue )
+	{
+		if ( key == null || oldValue == null || newValue == null ) {
+			throw new NullPointerException();
+		}
+		if ( entries != MOVED ) {
+			synchronized( this ) {
+				final Object[] snapshot = entries;
+				if ( snapshot != MOVED ) {
+					final int i = indexOf( snapshot, key );
+					if ( i < 0 || !snapshot[ i + 1 ].equals( oldValue ) ) {
+						return false;
+					}
+					final Object[] updated = snapshot.clone();
+					updated[ i + 1 ] = newValue;
+					entries = updated;
+					return true;
+				}
+			}
+		}
+		return large.replace( key, oldValue, newValue );
+	}
+
+	@Override
+	public ValueVector replace( String key, ValueVector value )
+	{
+		if ( key == null || value == null ) {
+			throw new NullPointerException();
+		}
+		if ( entries != MOVED ) {
+			synchronized( this ) {
+				final Object[] snapshot = entries;
+				if ( snapshot != MOVED ) {
+					final int i = indexOf( snapshot, key );
+					if ( i < 0 ) {
+						return null;
+					}
+					final Object[] updated = snapshot.clone();
+					updated[ i + 1 ] = value;
+					entries = updated;
+					return (ValueVector) snapshot[ i + 1 ];
+				}
+			}
+		}
+		return large.replace( key, value );
+	}
+
+	@Override
+	public void clear()
+	{
+		if ( entries != MOVED ) {
+			synchronized( this ) {
+				if ( entries != MOVED ) {
+					entries = EMPTY;
+					return;
+				}
+			}
+		}
+		large.clear();
+	}
+
+	@Override
+	public Set< Map.Entry< String, ValueVector > > entrySet()
+	{
+		return new AbstractSet< Map.Entry< String, ValueVector > >() {
+			@Override
+			public Iterator< Map.Entry< String, ValueVector > > iterator()
+			{
+				final Object[] snapshot = entries;
+				if ( snapshot == MOVED ) {
+					return large.entrySet().iterator();
+				}
+				return new SnapshotIterator( snapshot );
+			}
+
+			@Override
+			public int size()
+			{
+				return ValueChildrenMap.this.size();
+			}
+
+			@Override
+			public boolean contains( Object o )
+			{
+				if ( !(o instanceof Map.Entry) ) {
+					return false;
+				}
+				final Map.Entry< ?, ? > e = (Map.Entry< ?, ? >) o;
+				final ValueVector v = get( e.getKey() );
+				return v != null && v.equals( e.getValue() );
+			}
+
+			@Override
+			public boolean remove( Object o )
+			{
+				if ( !(o instanceof Map.Entry) ) {
+					return false;
+				}
+				final Map.Entry< ?, ? > e = (Map.Entry< ?, ? >) o;
+				return ValueChildrenMap.this.remove( e.getKey(), e.getValue() );
+			}
+
+			@Override
+			public void clear()
+			{
+				ValueChildrenMap.this.clear();
+			}
+		};
+	}
+
+	private void writeObject( ObjectOutputStream out )
+		throws IOException
+	{
+		out.defaultWriteObject();
+		final Object[] snapshot = entries;
+		if ( snapshot == MOVED ) {
+			out.writeInt( large.size() );
+			for( Map.Entry< String, ValueVector > entry : large.entrySet() ) {
+				out.writeObject( entry.getKey() );
+				out.writeObject( entry.getValue() );
+			}
+		} else {
+			out.writeInt( snapshot.length / 2 );
+			for( Object o : snapshot ) {
+				out.writeObject( o );
+			}
+		}
+	}
+
+	private void readObject( ObjectInputStream in )
+		throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		entries = EMPTY;
+		final int size = in.readInt();
+		for( int i = 0; i < size; i++ ) {
+			put( (String) in.readObject(), (ValueVector) in.readObject() );
+		}
+	}
+
+	private class SnapshotIterator implements Iterator< Map.Entry< String, ValueVector > >
+	{
+		private final Object[] snapshot;
+		private int next = 0;
+		private String lastKey = null;
+
+		private SnapshotIterator( Object[] snapshot )
+		{
+			this.snapshot = snapshot;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return next < snapshot.length;
+		}
+
+		@Override
+		public Map.Entry< String, ValueVector > next()
+		{
+			if ( next >= snapshot.length ) {
+				throw new NoSuchElementException();
+			}
+			lastKey = (String) snapshot[ next ];
+			final ValueVector value = (ValueVector) snapshot[ next + 1 ];
+			next += 2;
+			return new AbstractMap.SimpleEntry< String, ValueVector >( lastKey, value ) {
+				@Override
+				public ValueVector setValue( ValueVector value )
+				{
+					super.setValue( value );
+					return put( getKey(), value );
+				}
+			};
+		}
+
+		@Override
+		public void remove()
+		{
+			if ( lastKey == null ) {
+				throw new IllegalStateException();
+			}
+			ValueChildrenMap.this.remove( lastKey );
+			lastKey = null;
+		}
+	}
+}
@@ -23,6 +23,7 @@ package jolie.runtime;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Stream;
@@ -46,6 +47,12 @@ class ValueVectorLink extends ValueVector implements Cloneable
 		return getLinkedValueVector().get( i );
 	}
 
+	@Override
+	public Value getOrNull( int i )
+	{
+		return getLinkedValueVector().getOrNull( i );
+	}
+
 	@Override
 	public void set( int i, Value value )
 	{
@@ -79,6 +86,30 @@ class ValueVectorLink extends ValueVector implements Cloneable
 	{
 		return getLinkedValueVector().valuesCopy();
 	}
+
+	@Override
+	public Value remove( int i )
+	{
+		return getLinkedValueVector().remove( i );
+	}
+
+	@Override
+	public void add( Value value )
+	{
+		getLinkedValueVector().add( value );
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return getLinkedValueVector().isEmpty();
+	}
+
+	@Override
+	public Iterator< Value > iterator()
+	{
+		return getLinkedValueVector().iterator();
+	}
 	
 	@Override
 	public int size()
@@ -91,39 +122,110 @@ class ValueVectorLink extends ValueVector implements Cloneable
 class ValueVectorImpl extends ValueVector implements Serializable
 {
 	private static final long serialVersionUID = Constants.serialVersionUID();
-	private final ArrayList<Value> values;
-	
+
+	/*
+	 * Most vectors hold a single value, which is stored in single.
+	 * The list is created only when a second value is stored, and it is used
+	 * from then on.
+	 */
+	private volatile Value single = null;
+	private volatile ArrayList< Value > values = null;
+
 	@Override
-	protected List< Value > values()
+	protected synchronized List< Value > values()
+	{
+		return list();
+	}
+
+	// Must be called while holding the monitor of this vector
+	private ArrayList< Value > list()
 	{
+		if ( values == null ) {
+			final ArrayList< Value > list = new ArrayList<>( 2 );
+			if ( single != null ) {
+				list.add( single );
+				single = null;
+			}
+			values = list;
+		}
 		return values;
 	}
-	
+
 	@Override
 	public synchronized int size()
 	{
-		return values().size();
+		final ArrayList< Value > list = values;
+		if ( list == null ) {
+			return ( single == null ) ? 0 : 1;
+		}
+		return list.size();
 	}
 
 	@Override
 	public Value get( int i )
 	{
-		if ( i >= values.size() ) {
-			synchronized( this ) {
-				if ( i >= values.size() ) {
-					values.ensureCapacity( i + 1 );
-					for( int k = values.size(); k <= i; k++ ) {
-						values.add( Value.create() );
+		final ArrayList< Value > list = values;
+		if ( list == null ) {
+			final Value v = single;
+			if ( i == 0 && v != null ) {
+				return v;
+			}
+		} else if ( i < list.size() ) {
+			return list.get( i );
+		}
+
+		synchronized( this ) {
+			if ( values == null ) {
+				if ( i == 0 ) {
+					if ( single == null ) {
+						single = Value.create();
 					}
+					return single;
+				}
+				list();
+			}
+			if ( i >= values.size() ) {
+				values.ensureCapacity( i + 1 );
+				for( int k = values.size(); k <= i; k++ ) {
+					values.add( Value.create() );
 				}
 			}
+			return values.get( i );
+		}
+	}
+
+	@Override
+	public Value getOrNull( int i )
+	{
+		final ArrayList< Value > list = values;
+		if ( list == null ) {
+			final Value v = single;
+			if ( v != null ) {
+				return ( i == 0 ) ? v : null;
+			}
+		} else if ( i < list.size() ) {
+			return list.get( i );
+		}
+
+		// The vector may be moving from single to values
+		synchronized( this ) {
+			if ( values == null ) {
+				return ( i == 0 ) ? single : null;
+			}
+			return ( i < values.size() ) ? values.get( i ) : null;
 		}
-		return values.get( i );
 	}
 
 	@Override
 	public synchronized void set( int i, Value value )
 	{
+		if ( values == null ) {
+			if ( i == 0 ) {
+				single = value;
+				return;
+			}
+			list();
+		}
 		if ( i >= values.size() ) {
 			values.ensureCapacity( i + 1 );
 			for( int k = values.size(); k < i; k++ ) {
@@ -134,23 +236,67 @@ class ValueVectorImpl extends ValueVector implements Serializable
 			values.set( i, value );
 		}
 	}
-	
+
+	@Override
+	public synchronized void add( Value value )
+	{
+		if ( values == null && single == null ) {
+			single = value;
+		} else {
+			list().add( value );
+		}
+	}
+
+	@Override
+	public synchronized Value remove( int i )
+	{
+		if ( values == null ) {
+			if ( i != 0 || single == null ) {
+				throw new IndexOutOfBoundsException( "Index: " + i + ", Size: " + size() );
+			}
+			final Value v = single;
+			single = null;
+			return v;
+		}
+		return values.remove( i );
+	}
+
+	@Override
+	public synchronized boolean isEmpty()
+	{
+		return size() == 0;
+	}
+
+	@Override
+	public synchronized Iterator< Value > iterator()
+	{
+		if ( values == null ) {
+			return ( single == null ) ? Collections.emptyIterator() : Collections.singletonList( single ).iterator();
+		}
+		return values.iterator();
+	}
+
 	@Override
 	public boolean isLink()
 	{
 		return false;
 	}
-	
+
 	@Override
 	public synchronized List< Value > valuesCopy()
 	{
+		if ( values == null ) {
+			final ArrayList< Value > copy = new ArrayList<>( 1 );
+			if ( single != null ) {
+				copy.add( single );
+			}
+			return copy;
+		}
 		return new ArrayList<>( values );
 	}
-	
+
 	public ValueVectorImpl()
-	{
-		values = new ArrayList<>( 1 );
-	}
+	{}
 }
 
 public abstract class ValueVector implements Iterable< Value >
@@ -203,6 +349,14 @@ public abstract class ValueVector implements Iterable< Value >
 	}
 	
 	public abstract Value get( int i );
+
+	/**
+	 * Returns the value at the passed index, or {@code null} if this vector is not
+	 * that long. Unlike {@link #get(int)}, this method never creates values.
+	 * @param i the index of the value
+	 * @return the value at index i, or {@code null}
+	 */
+	public abstract Value getOrNull( int i );
 	public abstract void set( int i, Value value );
 	public abstract int size();
 	public abstract List< Value > valuesCopy();
@@ -21,6 +21,7 @@
 
 package jolie.runtime;
 
+import java.util.Map;
 import jolie.ExecutionThread;
 import jolie.State;
 import jolie.process.TransformationReason;
@@ -43,6 +44,17 @@ public class VariablePath implements Expression
 
 	private final Pair< Expression, Expression >[] path; // Right Expression may be null
 
+	/*
+	 * Keys and indexes of the path that are constants, resolved once at construction:
+	 * keys[i] is null and indexes[i] is negative if they must be evaluated at each access.
+	 * A missing index is resolved to 0.
+	 * Constant keys are interned, so that they are usually found in maps by reference.
+	 */
+	private final String[] keys;
+	private final int[] indexes;
+	// Inline cache of the positions of the constant keys in the children of the values met on the path
+	private final int[] hints;
+
 	public final Pair< Expression, Expression >[] path()
 	{
 		return path;
@@ -68,7 +80,7 @@ public class VariablePath implements Expression
 
 	public VariablePath copy()
 	{
-		return new VariablePath( path );
+		return new VariablePath( this );
 	}
 	
 	@Override
@@ -88,22 +100,14 @@ public class VariablePath implements Expression
 			return null;
 
 		int i, myIndex, otherIndex;
-		Pair< Expression, Expression > pair, otherPair;
-		Expression expr, otherExpr;
 		for( i = 0; i < path.length; i++ ) {
-			pair = path[i];
-			otherPair = otherVarPath.path[i];
-			
 			// *.element_name is not a subpath of *.other_name
-			if ( !pair.key().evaluate().strValue().equals( otherPair.key().evaluate().strValue() ) )
+			if ( !key( i ).equals( otherVarPath.key( i ) ) )
 				return null;
 			
 			// If element name is equal, check for the same index
-			expr = pair.value();
-			otherExpr = otherPair.value();
-			
-			myIndex = ( expr == null ) ? 0 : expr.evaluate().intValue();
-			otherIndex = ( otherExpr == null ) ? 0 : otherExpr.evaluate().intValue();
+			myIndex = index( i );
+			otherIndex = otherVarPath.index( i );
 			if ( myIndex != otherIndex )
 				return null;
 		}
@@ -125,9 +129,118 @@ public class VariablePath implements Expression
 		return new VariablePath( path );
 	}
 
+	/**
+	 * Returns a path equal to this one, except for the index of its last node.
+	 * @param index the index of the last node of the returned path
+	 * @return a path equal to this one, except for the index of its last node
+	 */
+	public final VariablePath withLastIndex( int index )
+	{
+		return _createVariablePath( new VariablePath( this, index ) );
+	}
+
+	/**
+	 * Returns a path of the same class of this one, with the segments of the passed path.
+	 * @param segments a path created by this class, with the segments of the path to return
+	 * @return a path of the same class of this one, with the passed segments
+	 */
+	protected VariablePath _createVariablePath( VariablePath segments )
+	{
+		return segments;
+	}
+
 	public VariablePath( Pair< Expression, Expression >[] path )
 	{
 		this.path = path;
+		this.keys = new String[ path.length ];
+		this.indexes = new int[ path.length ];
+		this.hints = new int[ path.length ];
+		for( int i = 0; i < path.length; i++ ) {
+			final Expression key = path[ i ].key();
+			final Expression index = path[ i ].value();
+			if ( isConstant( key ) ) {
+				keys[ i ] = ((Value) key).strValue().intern();
+			}
+			if ( index == null ) {
+				indexes[ i ] = 0;
+			} else if ( isConstant( index ) && ((Value) index).intValue() >= 0 ) {
+				indexes[ i ] = ((Value) index).intValue();
+			} else {
+				indexes[ i ] = -1;
+			}
+		}
+	}
+
+	/**
+	 * Creates a path with the same segments of the passed one.
+	 * @param other the path to copy the segments from
+	 */
+	protected VariablePath( VariablePath other )
+	{
+		this.path = other.path;
+		this.keys = other.keys;
+		this.indexes = other.indexes;
+		this.hints = other.hints;
+	}
+
+	/*
+	 * Creates a path with the segments of the passed one, except for the index of its last segment.
+	 * The resolved keys and their inline caches are shared, as the keys are the same,
+	 * and only the last index is replaced.
+	 */
+	private VariablePath( VariablePath other, int lastIndex )
+	{
+		final int last = other.path.length - 1;
+		this.path = other.path.clone();
+		this.path[ last ] = new Pair<>( other.path[ last ].key(), Value.create( lastIndex ) );
+		this.keys = other.keys;
+		this.indexes = other.indexes.clone();
+		this.indexes[ last ] = lastIndex;
+		this.hints = other.hints;
+	}
+
+	/*
+	 * Values in expression position are the constants created by OOITBuilder and VariablePathBuilder.
+	 */
+	private static boolean isConstant( Expression expression )
+	{
+		return expression instanceof Value && !((Value) expression).isLink();
+	}
+
+	private String key( int i )
+	{
+		final String key = keys[ i ];
+		return ( key == null ) ? path[ i ].key().evaluate().strValue() : key;
+	}
+
+	private int index( int i )
+	{
+		final int index = indexes[ i ];
+		return ( index < 0 ) ? path[ i ].value().evaluate().intValue() : index;
+	}
+
+	/*
+	 * Returns the vector of the i-th key of this path in the children of the passed value,
+	 * or null if there is none.
+	 */
+	private ValueVector childrenOrNull( Value value, int i )
+	{
+		final Map< String, ValueVector > children = value.children();
+		final String key = keys[ i ];
+		if ( key != null && children instanceof ValueChildrenMap ) {
+			return ((ValueChildrenMap) children).get( key, hints, i );
+		}
+		return children.get( key( i ) );
+	}
+
+	/*
+	 * Returns the vector of the i-th key of this path in the children of the passed value,
+	 * creating it if necessary.
+	 */
+	private ValueVector children( Value value, int i )
+	{
+		final ValueVector vector = childrenOrNull( value, i );
+		return ( vector == null ) ? value.getChildren( key( i ) ) : vector;
 	}
 	
 	protected Value getRootValue()
@@ -145,7 +258,7 @@ public class VariablePath implements Expression
 
 		for( int i = 0; i < path.length; i++ ) {
 			pair = path[i];
-			keyStr = pair.key().evaluate().strValue();
+			keyStr = key( i );
 			currVector = currValue.children().get( keyStr );
 			if ( currVector == null ) {
 				return;
@@ -160,7 +273,7 @@ public class VariablePath implements Expression
 					currValue.children().remove( keyStr );
 				}
 			} else {
-				index = pair.value().evaluate().intValue();
+				index = index( i );
 				if ( (i+1) < path.length ) {
 					if ( currVector.size() <= index ) {
 						return;
@@ -197,12 +310,8 @@ public class VariablePath implements Expression
 
 	public final Value getValue( Value currValue )
 	{
-		for( Pair< Expression, Expression > pair : path ) {
-			final String keyStr = pair.key().evaluate().strValue();
-			currValue =
-				pair.value() == null
-				? currValue.getFirstChild( keyStr )
-				: currValue.getChildren( keyStr ).get( pair.value().evaluate().intValue() );
+		for( int i = 0; i < path.length; i++ ) {
+			currValue = children( currValue, i ).get( index( i ) );
 		}
 
 		return currValue;
@@ -221,7 +330,7 @@ public class VariablePath implements Expression
 		} else {
 			for( int i = 0; i < path.length; i++ ) {
 				pair = path[i];
-				keyStr = pair.key().evaluate().strValue();
+				keyStr = key( i );
 				currVector = currValue.getChildren( keyStr );
 				if ( pair.value() == null ) {
 					if ( (i+1) < path.length ) {
@@ -234,7 +343,7 @@ public class VariablePath implements Expression
 						}
 					}
 				} else {
-					index = pair.value().evaluate().intValue();
+					index = index( i );
 					if ( (i+1) < path.length ) {
 						currValue = currVector.get( index );
 					} else {
@@ -257,39 +366,64 @@ public class VariablePath implements Expression
 	public final Value getValueOrNull( Value currValue )
 	{
 		for( int i = 0; i < path.length; i++ ) {
-			final Pair< Expression, Expression > pair = path[i];
-			final ValueVector currVector = currValue.children().get( pair.key().evaluate().strValue() );
+			final ValueVector currVector = childrenOrNull( currValue, i );
 			if ( currVector == null ) {
 				return null;
 			}
-			if ( pair.value() == null ) {
-				if ( (i+1) < path.length ) {
-					if ( currVector.isEmpty() ) {
-						return null;
-					}
-					currValue = currVector.get( 0 );
-				} else { // We're finished
-					if ( currVector.isEmpty() ) {
-						return null;
-					} else {
-						return currVector.get( 0 );
-					}
-				}
-			} else {
-				final int index = pair.value().evaluate().intValue();
-				if ( currVector.size() <= index ) {
-					return null;
-				}
-				currValue = currVector.get( index );
-				if ( (i+1) >= path.length ) {
-					return currValue;
-				}
+			currValue = currVector.getOrNull( index( i ) );
+			if ( currValue == null ) {
+				return null;
 			}
 		}
 
 		return currValue;
 	}
 	
+	/**
+	 * Returns the value pointed by this path if it can be handed over to another owner
+	 * without copying it, that is, if it belongs to the state of the current thread
+	 * and neither this path nor the subtree of the value go through links or correlation variables.
+	 * @return the pointed value, or {@code null} if it is not defined or cannot be handed over
+	 */
+	public final Value getTransferableValueOrNull()
+	{
+		Value currValue = getRootValue();
+		if ( currValue != ExecutionThread.currentThread().state().root() ) {
+			return null;
+		}
+		for( int i = 0; i < path.length; i++ ) {
+			final ValueVector currVector = childrenOrNull( currValue, i );
+			if ( currVector == null || currVector.isLink() ) {
+				return null;
+			}
+			currValue = currVector.getOrNull( index( i ) );
+			if ( currValue == null ) {
+				return null;
+			}
+		}
+		return isSelfContained( currValue ) ? currValue : null;
+	}
+
+	private static boolean isSelfContained( Value value )
+	{
+		if ( value.isLink() || value.isUsedInCorrelation() ) {
+			return false;
+		}
+		if ( value.hasChildren() ) {
+			for( ValueVector vector : value.children().values() ) {
+				if ( vector.isLink() ) {
+					return false;
+				}
+				for( Value child : vector ) {
+					if ( !isSelfContained( child ) ) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
 	public final ValueVector getValueVector( ValueVectorLink l )
 	{
 		final State state = ExecutionThread.currentThread().state();
@@ -309,12 +443,12 @@ public class VariablePath implements Expression
 	private final FaultException buildAliasAccessException(){
 		String alias = "";
 		boolean isRoot = true;
-		for ( Pair< Expression, Expression > p : path ) {
+		for ( int i = 0; i < path.length; i++ ) {
 			if( isRoot ){
-				alias += p.key().evaluate().strValue();
+				alias += key( i );
 				isRoot = false;
 			} else {
-				alias += "." + p.key().evaluate().strValue();
+				alias += "." + key( i );
 			}
 		}
 		return new FaultException( "AliasAccessException", "Found a loop when accessing an alias pointing to path: " + alias );
@@ -326,13 +460,9 @@ public class VariablePath implements Expression
 		ValueVector currVector = null;
 		for( int i = 0; i < path.length; i++ ) {
 			final Pair< Expression, Expression > pair = path[i];
-			currVector = currValue.getChildren( pair.key().evaluate().strValue() );
+			currVector = children( currValue, i );
 			if ( (i+1) < path.length ) {
-				if ( pair.value() == null ) {
-					currValue = currVector.get( 0 );
-				} else {
-					currValue = currVector.get( pair.value().evaluate().intValue() );
-				}
+				currValue = currVector.get( index( i ) );
 			}
 		}
 		return currVector;
@@ -343,22 +473,14 @@ public class VariablePath implements Expression
 		ValueVector currVector = null;
 		for( int i = 0; i < path.length; i++ ) {
 			final Pair< Expression, Expression > pair = path[i];
-			currVector = currValue.children().get( pair.key().evaluate().strValue() );
+			currVector = childrenOrNull( currValue, i );
 			if ( currVector == null ) {
 				return null;
 			}
 			if ( (i+1) < path.length ) {
-				if ( pair.value() == null ) {
-					if ( currVector.isEmpty() ) {
-						return null;
-					}
-					currValue = currVector.get( 0 );
-				} else {
-					final int index = pair.value().evaluate().intValue();
-					if ( currVector.size() <= index ) {
-						return null;
-					}
-					currValue = currVector.get( index );
+				currValue = currVector.getOrNull( index( i ) );
+				if ( currValue == null ) {
+					return null;
 				}
 			}
 		}
@@ -389,7 +511,7 @@ public class VariablePath implements Expression
 
 		for( int i = 0; i < path.length; i++ ) {
 			pair = path[i];
-			keyStr = pair.key().evaluate().strValue();
+			keyStr = key( i );
 			currVector = currValue.getChildren( keyStr );
 			if ( pair.value() == null ) {
 				if ( (i+1) < path.length ) {
@@ -398,7 +520,7 @@ public class VariablePath implements Expression
 					currValue.children().put( keyStr, ValueVector.createLink( rightPath ) );
 				}
 			} else {
-				index = pair.value().evaluate().intValue();
+				index = index( i );
 				if ( (i+1) < path.length ) {
 					currValue = currVector.get( index );
 				} else {
@@ -417,7 +539,7 @@ public class VariablePath implements Expression
 
 		for( int i = 0; i < path.length; i++ ) {
 			pair = path[i];
-			currVector = currValue.getChildren( pair.key().evaluate().strValue() );
+			currVector = currValue.getChildren( key( i ) );
 			if ( pair.value() == null ) {
 				if ( (i+1) < path.length ) {
 					currValue = currVector.get( 0 );
@@ -425,7 +547,7 @@ public class VariablePath implements Expression
 					return currVector;
 				}
 			} else {
-				index = pair.value().evaluate().intValue();
+				index = index( i );
 				if ( (i+1) < path.length ) {
 					currValue = currVector.get( index );
 				} else {
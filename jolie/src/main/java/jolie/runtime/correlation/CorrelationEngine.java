@@ -21,13 +21,16 @@
 
 package jolie.runtime.correlation;
 
+import java.util.List;
 import jolie.Interpreter;
 import jolie.SessionListener;
 import jolie.SessionThread;
+import jolie.lang.Constants.ExecutionMode;
 import jolie.net.CommChannel;
 import jolie.net.CommMessage;
 import jolie.runtime.Value;
 import jolie.runtime.correlation.CorrelationSet.CorrelationPair;
+import jolie.runtime.correlation.impl.HashCorrelationEngine;
 import jolie.runtime.correlation.impl.SimpleCorrelationEngine;
 
 /**
@@ -46,8 +49,7 @@ public abstract class CorrelationEngine implements SessionListener
 		HASH {
 			@Override
 			public CorrelationEngine createInstance( Interpreter interpreter ) {
-				//return new HashCorrelationEngine( interpreter );
-				return null;
+				return new HashCorrelationEngine( interpreter );
 			}
 		};
 
@@ -98,16 +100,88 @@ public abstract class CorrelationEngine implements SessionListener
 		}
 	}
 	
-	public synchronized void onMessageReceive( final CommMessage message, final CommChannel channel )
+	/**
+	 * Checks whether a message correlates with a session, by comparing the
+	 * correlation values carried by the message with those stored in the session state.
+	 * @param session the candidate session
+	 * @param message the received message
+	 * @return {@code true} if the message correlates with the session, {@code false} otherwise
+	 */
+	protected boolean correlate( SessionThread session, CommMessage message )
+	{
+		if ( (interpreter.correlationSets().isEmpty()
+			&& interpreter.executionMode() == ExecutionMode.SINGLE)
+			||
+			session.isInitialisingThread()
+		) {
+			return true;
+		}
+
+		final CorrelationSet cset = interpreter.getCorrelationSetForOperation( message.operationName() );
+		if ( cset == null ) {
+			return interpreter.executionMode() == ExecutionMode.SINGLE; // It must be a session starter.
+		}
+		final List< CorrelationPair > pairs = cset.getOperationCorrelationPairs( message.operationName() );
+		for( CorrelationPair cpair : pairs ) {
+			final Value sessionValue = cpair.sessionPath().getValueOrNull( session.state().root() );
+			if ( sessionValue == null ) {
+				return false;
+			} else {
+				Value messageValue = cpair.messagePath().getValueOrNull( message.value() );
+				if ( messageValue == null ) {
+					return false;
+				} else {
+					// TODO: Value.equals is type insensitive, fix this with an additional check.
+					if ( !sessionValue.isDefined() || !messageValue.isDefined() || !sessionValue.equals( messageValue ) ) {
+						return false;
+					}
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the monitor that must be held while dispatching the passed message.
+	 * Messages dispatched under the same monitor are processed one at a time, so that
+	 * a message never both starts a new session and is delivered to an existing one.
+	 * By default, all messages are dispatched under the monitor of this engine.
+	 * @param message the message to dispatch
+	 * @return the monitor to hold while dispatching the message
+	 */
+	protected Object dispatchLock( CommMessage message )
+	{
+		return this;
+	}
+
+	public void onMessageReceive( final CommMessage message, final CommChannel channel )
+		throws CorrelationError
+	{
+		onMessageReceive( message, channel, null );
+	}
+
+	/**
+	 * Delivers a received message to the session it correlates with or, if there is none,
+	 * uses it to start a new session.
+	 * @param message the received message
+	 * @param channel the channel the message was received from
+	 * @param sessionListener if not {@code null}, a listener to add to the session started by the message
+	 * @return {@code true} if the message started a new session, {@code false} if it was delivered to an existing one
+	 * @throws CorrelationError if the message can neither be delivered nor start a new session
+	 */
+	public boolean onMessageReceive( final CommMessage message, final CommChannel channel, final SessionListener sessionListener )
 		throws CorrelationError
 	{
-		if ( !(
+		synchronized( dispatchLock( message ) ) {
 			// We try to find a correlating process.
-			routeMessage( message, channel )
-			||
+			if ( routeMessage( message, channel ) ) {
+				return false;
+			}
 			// If there is none, we must be able to start a new process with this message.
-			interpreter.startServiceSession( message, channel )
-		) ) {
+			if ( interpreter.startServiceSession( message, channel, sessionListener ) ) {
+				return true;
+			}
 			// Otherwise, exception.
 			throw new CorrelationError();
 		}
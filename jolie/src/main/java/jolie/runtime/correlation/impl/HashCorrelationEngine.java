@@ -21,16 +21,329 @@
 
 package jolie.runtime.correlation.impl;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import jolie.Interpreter;
+import jolie.SessionThread;
+import jolie.lang.Constants.ExecutionMode;
+import jolie.net.CommChannel;
+import jolie.net.CommMessage;
+import jolie.net.SessionMessage;
+import jolie.runtime.FaultException;
+import jolie.runtime.Value;
+import jolie.runtime.ValueVector;
+import jolie.runtime.VariablePath;
+import jolie.runtime.correlation.CorrelationEngine;
+import jolie.runtime.correlation.CorrelationSet;
+import jolie.runtime.correlation.CorrelationSet.CorrelationPair;
+import jolie.runtime.expression.Expression;
+import jolie.util.Pair;
 
 /**
- * A hash table based correlation algorithm (stub).
+ * A hash table based correlation algorithm.
+ *
+ * Sessions are indexed by the values of their correlation variables, so that
+ * routing a message costs a hash lookup instead of a scan of all running sessions.
+ * The index is updated when a session starts, when it terminates and every time
+ * one of its correlation variables is assigned: to this end, the correlation
+ * variables of each session are stored as correlation values that notify this engine
+ * of their changes (see {@link Value#createCSetValue(java.lang.Runnable)}).
+ *
+ * Index hits are always verified against the current session state before delivering a
+ * message, so stale entries can never cause a wrong delivery.
+ * Sessions that do not start from an input (the init session and the session
+ * of a single execution modality) are checked sequentially, as in {@link SimpleCorrelationEngine}.
+ *
+ * In the concurrent execution modality, messages are dispatched under lock striping:
+ * messages carrying the same correlation values (or, if they carry none, invoking the same operation)
+ * are dispatched under the same monitor, while the others are dispatched in parallel.
+ * Since a session is indexed under the correlation values of the message that started it,
+ * a message can never both start a new session and be delivered to an existing one.
  * @author Fabrizio Montesi
  */
-public class HashCorrelationEngine extends SimpleCorrelationEngine
+public class HashCorrelationEngine extends CorrelationEngine
 {
+	private static class CorrelationKey
+	{
+		private final CorrelationSet cset;
+		private final String[] values;
+		private final int hashCode;
+
+		private CorrelationKey( CorrelationSet cset, String[] values )
+		{
+			this.cset = cset;
+			this.values = values;
+			this.hashCode = 31 * cset.hashCode() + Arrays.hashCode( values );
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals( Object obj )
+		{
+			if ( this == obj ) {
+				return true;
+			}
+			if ( !(obj instanceof CorrelationKey) ) {
+				return false;
+			}
+			final CorrelationKey other = (CorrelationKey) obj;
+			return cset == other.cset && Arrays.equals( values, other.values );
+		}
+	}
+
+	private static final CorrelationKey[] NO_KEYS = new CorrelationKey[ 0 ];
+	private static final int DISPATCH_LOCKS = Integer.highestOneBit( Runtime.getRuntime().availableProcessors() * 8 - 1 ) << 1;
+
+	private final Set< SessionThread > unindexedSessions = Collections.newSetFromMap( new ConcurrentHashMap<>() );
+	private final Map< CorrelationKey, Set< SessionThread > > index = new ConcurrentHashMap<>();
+	private final Map< SessionThread, CorrelationKey[] > sessionKeys = new ConcurrentHashMap<>();
+
+	// Maps operation names to their message paths, ordered as the variables of their correlation set.
+	private final Map< String, VariablePath[] > operationMessagePaths = new ConcurrentHashMap<>();
+	private final Object[] dispatchLocks = new Object[ DISPATCH_LOCKS ];
+
 	public HashCorrelationEngine( Interpreter interpreter )
 	{
 		super( interpreter );
+		for( int i = 0; i < dispatchLocks.length; i++ ) {
+			dispatchLocks[ i ] = new Object();
+		}
+	}
+
+	@Override
+	protected Object dispatchLock( CommMessage message )
+	{
+		if ( interpreter().executionMode() != ExecutionMode.CONCURRENT ) {
+			return this;
+		}
+
+		final CorrelationKey key = messageKey( message );
+		int h = ( key == null ) ? message.operationName().hashCode() : key.hashCode();
+		h ^= ( h >>> 16 );
+		return dispatchLocks[ h & (dispatchLocks.length - 1) ];
+	}
+
+	@Override
+	protected boolean routeMessage( CommMessage message, CommChannel channel )
+	{
+		for( SessionThread session : unindexedSessions ) {
+			if ( correlate( session, message ) ) {
+				session.pushMessage( new SessionMessage( message, channel ) );
+				return true;
+			}
+		}
+
+		final CorrelationKey key = messageKey( message );
+		if ( key == null ) {
+			return false;
+		}
+
+		final Set< SessionThread > candidates = index.get( key );
+		if ( candidates != null ) {
+			for( SessionThread session : candidates ) {
+				if ( correlate( session, message ) ) {
+					session.pushMessage( new SessionMessage( message, channel ) );
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void onSessionStart( SessionThread session, Interpreter.SessionStarter starter, CommMessage message )
+	{
+		initCorrelationValues( session, starter, message );
+		installCorrelationValues( session );
+		sessionKeys.put( session, NO_KEYS );
+		reindex( session );
+	}
+
+	@Override
+	public void onSingleExecutionSessionStart( SessionThread session )
+	{
+		unindexedSessions.add( session );
+	}
+
+	@Override
+	public void onSessionExecuted( SessionThread session )
+	{
+		unindexedSessions.remove( session );
+		final CorrelationKey[] keys = sessionKeys.remove( session );
+		if ( keys != null ) {
+			for( CorrelationKey key : keys ) {
+				if ( key != null ) {
+					removeFromIndex( key, session );
+				}
+			}
+		}
+	}
+
+	@Override
+	public void onSessionError( SessionThread session, FaultException fault )
+	{
+		onSessionExecuted( session );
+	}
+
+	/**
+	 * Replaces the correlation variables in the state of the session with
+	 * correlation values that keep the index up to date.
+	 */
+	private void installCorrelationValues( final SessionThread session )
+	{
+		final Runnable listener = () -> reindex( session );
+		final Value root = session.state().root();
+		for( CorrelationSet cset : interpreter().correlationSets() ) {
+			for( VariablePath path : cset.correlationVariablePaths() ) {
+				final ValueVector vector = path.getValueVector( root );
+				final int index = lastIndex( path );
+				final Value current = vector.get( index );
+				if ( !current.isUsedInCorrelation() ) {
+					final Value csetValue = Value.createCSetValue( listener );
+					csetValue.deepCopy( current );
+					vector.set( index, csetValue );
+				}
+			}
+		}
+	}
+
+	private void reindex( SessionThread session )
+	{
+		sessionKeys.computeIfPresent( session, ( s, oldKeys ) -> {
+			final List< CorrelationSet > csets = interpreter().correlationSets();
+			final CorrelationKey[] newKeys = new CorrelationKey[ csets.size() ];
+			for( int i = 0; i < newKeys.length; i++ ) {
+				newKeys[ i ] = sessionKey( s, csets.get( i ) );
+			}
+			for( int i = 0; i < oldKeys.length; i++ ) {
+				if ( oldKeys[ i ] != null && !oldKeys[ i ].equals( newKeys[ i ] ) ) {
+					removeFromIndex( oldKeys[ i ], s );
+				}
+			}
+			for( int i = 0; i < newKeys.length; i++ ) {
+				if ( newKeys[ i ] != null && (i >= oldKeys.length || !newKeys[ i ].equals( oldKeys[ i ] )) ) {
+					addToIndex( newKeys[ i ], s );
+				}
+			}
+			return newKeys;
+		} );
+	}
+
+	private void addToIndex( CorrelationKey key, SessionThread session )
+	{
+		index.compute( key, ( k, sessions ) -> {
+			if ( sessions == null ) {
+				sessions = Collections.newSetFromMap( new ConcurrentHashMap<>() );
+			}
+			sessions.add( session );
+			return sessions;
+		} );
+	}
+
+	private void removeFromIndex( CorrelationKey key, SessionThread session )
+	{
+		index.computeIfPresent( key, ( k, sessions ) -> {
+			sessions.remove( session );
+			return sessions.isEmpty() ? null : sessions;
+		} );
+	}
+
+	private CorrelationKey sessionKey( SessionThread session, CorrelationSet cset )
+	{
+		final Value root = session.state().root();
+		final List< VariablePath > paths = cset.correlationVariablePaths();
+		final String[] values = new String[ paths.size() ];
+		for( int i = 0; i < values.length; i++ ) {
+			values[ i ] = keyString( paths.get( i ).getValueOrNull( root ) );
+			if ( values[ i ] == null ) {
+				return null;
+			}
+		}
+		return new CorrelationKey( cset, values );
+	}
+
+	private CorrelationKey messageKey( CommMessage message )
+	{
+		final CorrelationSet cset = interpreter().getCorrelationSetForOperation( message.operationName() );
+		if ( cset == null ) {
+			return null;
+		}
+		final VariablePath[] messagePaths = operationMessagePaths.computeIfAbsent(
+			message.operationName(),
+			operationName -> buildMessagePaths( cset, operationName )
+		);
+		final String[] values = new String[ messagePaths.length ];
+		for( int i = 0; i < values.length; i++ ) {
+			if ( messagePaths[ i ] == null ) {
+				return null;
+			}
+			values[ i ] = keyString( messagePaths[ i ].getValueOrNull( message.value() ) );
+			if ( values[ i ] == null ) {
+				return null;
+			}
+		}
+		return new CorrelationKey( cset, values );
+	}
+
+	private static VariablePath[] buildMessagePaths( CorrelationSet cset, String operationName )
+	{
+		final List< VariablePath > sessionPaths = cset.correlationVariablePaths();
+		final VariablePath[] messagePaths = new VariablePath[ sessionPaths.size() ];
+		for( CorrelationPair pair : cset.getOperationCorrelationPairs( operationName ) ) {
+			final String sessionPathString = pathString( pair.sessionPath() );
+			for( int i = 0; i < messagePaths.length; i++ ) {
+				if ( sessionPathString.equals( pathString( sessionPaths.get( i ) ) ) ) {
+					messagePaths[ i ] = pair.messagePath();
+				}
+			}
+		}
+		return messagePaths;
+	}
+
+	/*
+	 * Correlation paths are made of constant expressions, so we can safely
+	 * evaluate them outside of an execution thread.
+	 */
+	private static String pathString( VariablePath path )
+	{
+		final StringBuilder builder = new StringBuilder();
+		for( Pair< Expression, Expression > pair : path.path() ) {
+			builder.append( '.' ).append( pair.key().evaluate().strValue() )
+				.append( '[' ).append( pair.value() == null ? 0 : pair.value().evaluate().intValue() ).append( ']' );
+		}
+		return builder.toString();
+	}
+
+	private static int lastIndex( VariablePath path )
+	{
+		final Pair< Expression, Expression > last = path.path()[ path.path().length - 1 ];
+		return last.value() == null ? 0 : last.value().evaluate().intValue();
+	}
+
+	/*
+	 * Undefined values never correlate, so they are not indexed.
+	 * Integral doubles are normalised, since Value.equals compares numbers by value.
+	 */
+	private static String keyString( Value value )
+	{
+		if ( value == null || !value.isDefined() ) {
+			return null;
+		}
+		if ( value.isDouble() ) {
+			final double d = value.doubleValue();
+			if ( d == Math.rint( d ) && !Double.isInfinite( d ) ) {
+				return Long.toString( (long) d );
+			}
+		}
+		return value.strValue();
 	}
 }
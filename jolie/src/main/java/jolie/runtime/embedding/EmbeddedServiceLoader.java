@@ -108,6 +108,15 @@ public abstract class EmbeddedServiceLoader
 		}
 	}
 	
+	/**
+	 * Starts the work that can be done before loading the embedded service,
+	 * independently of the other embedded services. It is called on all the
+	 * embedded services of an interpreter before any of them is loaded.
+	 * The default implementation does nothing.
+	 */
+	public void prepare()
+	{}
+
 	public abstract void load()
 		throws EmbeddedServiceLoadingException;
 
@@ -55,6 +55,12 @@ public class JolieServiceLoader extends EmbeddedServiceLoader
 		);
 	}
 
+	@Override
+	public void prepare()
+	{
+		interpreter.prepare();
+	}
+
 	@Override
 	public void load()
 		throws EmbeddedServiceLoadingException
@@ -54,13 +54,19 @@ public class AndCondition implements Expression
 	 * @return true if every condition is satisfied, false otherwise.
 	 */
 	public Value evaluate()
+	{
+		return Value.create( evaluateCondition() );
+	}
+
+	@Override
+	public boolean evaluateCondition()
 	{
 		for( Expression condition : children ) {
-			if ( condition.evaluate().boolValue() == false ) {
-				return Value.create( false );
+			if ( condition.evaluateCondition() == false ) {
+				return false;
 			}
 		}
 
-		return Value.create( true );
+		return true;
 	}
 }
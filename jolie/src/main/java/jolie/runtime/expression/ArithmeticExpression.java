@@ -0,0 +1,43 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.runtime.expression;
+
+import jolie.runtime.Value;
+
+/**
+ * An expression that applies a sequence of operands to its first operand,
+ * like a sum or a product.
+ * The first operand can be supplied by the caller, so that assignments like
+ * <code>x = x + 1</code> can look up their variable only once.
+ */
+public interface ArithmeticExpression extends Expression
+{
+	public Expression firstOperand();
+
+	/**
+	 * Evaluates this expression using the passed value as its first operand.
+	 * The passed value is not modified.
+	 * @param first the value of the first operand
+	 * @return the result of this expression
+	 */
+	public Value evaluate( Value first );
+}
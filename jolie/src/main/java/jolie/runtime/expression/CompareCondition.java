@@ -44,6 +44,21 @@ public class CompareCondition implements Expression
 		this.compareOperator = compareOperator;
 	}
 	
+	public Expression leftExpression()
+	{
+		return leftExpression;
+	}
+
+	public Expression rightExpression()
+	{
+		return rightExpression;
+	}
+
+	public BiPredicate< Value, Value > compareOperator()
+	{
+		return compareOperator;
+	}
+
 	public Expression cloneExpression( TransformationReason reason )
 	{
 		return new CompareCondition(
@@ -55,6 +70,12 @@ public class CompareCondition implements Expression
 	
 	public Value evaluate()
 	{
-		return Value.create( compareOperator.test( leftExpression.evaluate(), rightExpression.evaluate() ) );
+		return Value.create( evaluateCondition() );
+	}
+
+	@Override
+	public boolean evaluateCondition()
+	{
+		return compareOperator.test( leftExpression.evaluate(), rightExpression.evaluate() );
 	}
 }
@@ -30,6 +30,16 @@ public interface Expression
 {
 	public Value evaluate();
 	public Expression cloneExpression( TransformationReason reason );
+
+	/**
+	 * Evaluates this expression as the condition of a statement, like if or while.
+	 * Conditions can override this method to avoid creating a value for the result.
+	 * @return the boolean value of this expression
+	 */
+	public default boolean evaluateCondition()
+	{
+		return evaluate().boolValue();
+	}
 	
 	public class Operand
 	{
@@ -41,6 +41,12 @@ public class NotExpression implements Expression
 	
 	public Value evaluate()
 	{
-		return Value.create( !( expression.evaluate().boolValue() ) );
+		return Value.create( evaluateCondition() );
+	}
+
+	@Override
+	public boolean evaluateCondition()
+	{
+		return !expression.evaluateCondition();
 	}
 }
@@ -41,13 +41,19 @@ public class OrCondition implements Expression
 	}
 	
 	public Value evaluate()
+	{
+		return Value.create( evaluateCondition() );
+	}
+
+	@Override
+	public boolean evaluateCondition()
 	{
 		for( Expression cond : children ) {
-			if ( cond.evaluate().boolValue() ) {
-				return Value.create( true );
+			if ( cond.evaluateCondition() ) {
+				return true;
 			}
 		}
 
-		return Value.create( false );
+		return false;
 	}
 }
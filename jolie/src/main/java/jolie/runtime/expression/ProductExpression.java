@@ -25,7 +25,7 @@ import jolie.process.TransformationReason;
 import jolie.runtime.FaultException;
 import jolie.runtime.Value;
 
-public class ProductExpression implements Expression
+public class ProductExpression implements ArithmeticExpression
 {
 	private final Operand[] children;
 	
@@ -45,10 +45,72 @@ public class ProductExpression implements Expression
 		return new ProductExpression( cc );
 	}
 	
+	public Operand[] operands()
+	{
+		return children;
+	}
+
+	@Override
+	public Expression firstOperand()
+	{
+		return children[0].expression();
+	}
+
 	@Override
 	public Value evaluate()
 	{
-		Value val = Value.create( children[0].expression().evaluate() );
+		return evaluate( children[0].expression().evaluate() );
+	}
+
+	@Override
+	public Value evaluate( Value first )
+	{
+		if ( first.isInt() ) {
+			// Integer products are computed without intermediate values
+			int result = first.intValue();
+			for( int i = 1; i < children.length; i++ ) {
+				final int operand = children[i].expression().evaluate().intValue();
+				switch( children[i].type() ) {
+				case MULTIPLY:
+					result *= operand;
+					break;
+				case DIVIDE:
+					try {
+						result /= operand;
+					} catch ( ArithmeticException ae ){
+						throw new FaultException( "ArithmeticException", ae.getLocalizedMessage() ).toRuntimeFaultException();
+					}
+					break;
+				case MODULUS:
+					result %= operand;
+					break;
+				default:
+					throw new IllegalStateException( "Invalid operator in product expression" );
+				}
+			}
+			return Value.create( result );
+		} else if ( first.isDouble() ) {
+			double result = first.doubleValue();
+			for( int i = 1; i < children.length; i++ ) {
+				final double operand = children[i].expression().evaluate().doubleValue();
+				switch( children[i].type() ) {
+				case MULTIPLY:
+					result *= operand;
+					break;
+				case DIVIDE:
+					result /= operand;
+					break;
+				case MODULUS:
+					result %= operand;
+					break;
+				default:
+					throw new IllegalStateException( "Invalid operator in product expression" );
+				}
+			}
+			return Value.create( result );
+		}
+
+		Value val = Value.create( first );
 		for( int i = 1; i < children.length; i++ ) {
 			switch( children[i].type() ) {
 			case MULTIPLY:
@@ -27,7 +27,7 @@ import jolie.lang.Constants;
 import jolie.process.TransformationReason;
 import jolie.runtime.Value;
 
-public final class SumExpression implements Expression
+public final class SumExpression implements ArithmeticExpression
 {
 	private final Operand[] children;
 	
@@ -48,15 +48,72 @@ public final class SumExpression implements Expression
 		return new SumExpression( cc );
 	}
 	
+	public Operand[] operands()
+	{
+		return children;
+	}
+
+	@Override
+	public Expression firstOperand()
+	{
+		return children[0].expression();
+	}
+
 	@Override
 	public Value evaluate()
 	{
-		final Value val = Value.create( children[0].expression().evaluate() );
-		for( int i = 1; i < children.length; i++ ) {
+		return evaluate( children[0].expression().evaluate() );
+	}
+
+	@Override
+	public Value evaluate( Value first )
+	{
+		if ( first.isInt() ) {
+			// Integer sums are computed without intermediate values, until a string is met
+			int sum = first.intValue();
+			for( int i = 1; i < children.length; i++ ) {
+				final Value operand = children[i].expression().evaluate();
+				if ( children[i].type() == Constants.OperandType.ADD ) {
+					if ( operand.isString() ) {
+						return evaluate( Value.create( sum ), operand, i );
+					}
+					sum += operand.intValue();
+				} else {
+					sum -= operand.intValue();
+				}
+			}
+			return Value.create( sum );
+		} else if ( first.isDouble() ) {
+			double sum = first.doubleValue();
+			for( int i = 1; i < children.length; i++ ) {
+				final Value operand = children[i].expression().evaluate();
+				if ( children[i].type() == Constants.OperandType.ADD ) {
+					if ( operand.isString() ) {
+						return evaluate( Value.create( sum ), operand, i );
+					}
+					sum += operand.doubleValue();
+				} else {
+					sum -= operand.doubleValue();
+				}
+			}
+			return Value.create( sum );
+		}
+
+		return evaluate( Value.create( first ), null, 1 );
+	}
+
+	/*
+	 * Applies the operands from the given index to val.
+	 * If operand is not null, it is the already evaluated operand at that index.
+	 */
+	private Value evaluate( Value val, Value operand, int from )
+	{
+		for( int i = from; i < children.length; i++ ) {
+			final Value v = ( i == from && operand != null ) ? operand : children[i].expression().evaluate();
 			if ( children[i].type() == Constants.OperandType.ADD ) {
-				val.add( children[i].expression().evaluate() );
+				val.add( v );
 			} else {
-				val.subtract( children[i].expression().evaluate() );
+				val.subtract( v );
 			}
 		}
 		
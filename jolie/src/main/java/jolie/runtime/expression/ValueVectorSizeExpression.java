@@ -34,6 +34,11 @@ public class ValueVectorSizeExpression implements Expression
 		this.path = path;
 	}
 	
+	public VariablePath path()
+	{
+		return path;
+	}
+
 	public Expression cloneExpression( TransformationReason reason )
 	{
 		return new ValueVectorSizeExpression( path );
@@ -79,6 +79,11 @@ public class CorrelationFunctionInfo
 		correlationPairs.put( operationName, pair );
 	}
 
+	public MultiMap< String, CorrelationPairInfo > correlationPairs()
+	{
+		return correlationPairs;
+	}
+
 	public Map< String, CorrelationSetInfo > operationCorrelationSetMap()
 	{
 		return operationCorrelationSetMap;
@@ -0,0 +1,302 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.lang.parse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * JVM-wide cache of the tokens of included files, shared by all
+ * {@link OLParser} instances.
+ *
+ * An entry is reused only if the modification time and the size of the
+ * included resource are unchanged. Resources that do not report a
+ * modification time, and files that contain lexical errors, are never cached.
+ */
+final class IncludeCache
+{
+	private static final Map< String, SoftReference< Entry > > entries = new ConcurrentHashMap<>();
+	private static final Map< String, ForkJoinTask< ? > > prefetches = new ConcurrentHashMap<>();
+	// Scanning includes in the background only pays off with more than one processor
+	static final boolean PREFETCH = Runtime.getRuntime().availableProcessors() > 1;
+
+	private IncludeCache()
+	{}
+
+	/**
+	 * Returns a scanner for the tokens of an included file.
+	 * @param url the location of the included file
+	 * @param source the source URI of the included file
+	 * @param charset the character encoding of the included file
+	 * @param includeDocumentation if true, the scanner returns documentation tokens
+	 * @return a scanner for the tokens of the included file
+	 * @throws IOException if the included file could not be read
+	 */
+	public static Scanner scanner( URL url, URI source, Charset charset, boolean includeDocumentation )
+		throws IOException
+	{
+		final String key = key( url, charset, includeDocumentation );
+		final ForkJoinTask< ? > prefetch = prefetches.remove( key );
+		if ( prefetch != null ) {
+			prefetch.quietlyJoin();
+		}
+
+		final Resource resource = new Resource( url );
+		Entry entry = cached( key, resource );
+		if ( entry != null ) {
+			return new ReplayScanner( entry, source, includeDocumentation );
+		}
+
+		final char[] text = resource.read( charset );
+		if ( resource.isCacheable() ) {
+			entry = Entry.create( text, charset, includeDocumentation, resource );
+			if ( entry != null ) {
+				entries.put( key, new SoftReference<>( entry ) );
+				return new ReplayScanner( entry, source, includeDocumentation );
+			}
+		}
+		return new Scanner( text, source, charset.name(), includeDocumentation );
+	}
+
+	/**
+	 * Starts scanning an included file in the common fork-join pool, so that
+	 * its tokens are ready when the parser reaches it.
+	 * @param url the location of the included file
+	 * @param charset the character encoding of the included file
+	 * @param includeDocumentation if true, documentation tokens are kept
+	 * @return the key of the scan, to be passed to {@link #endPrefetches(Collection)}
+	 * when parsing ends, or {@code null} if the file is already cached
+	 */
+	public static String prefetch( URL url, Charset charset, boolean includeDocumentation )
+	{
+		final String key = key( url, charset, includeDocumentation );
+		final SoftReference< Entry > ref = entries.get( key );
+		if ( ref != null && ref.get() != null ) {
+			return null;
+		} else {
+			prefetches.computeIfAbsent( key, k -> ForkJoinPool.commonPool().submit( () -> {
+				try {
+					final Resource resource = new Resource( url );
+					if ( resource.isCacheable() && cached( k, resource ) == null ) {
+						final Entry entry = Entry.create( resource.read( charset ), charset, includeDocumentation, resource );
+						if ( entry != null ) {
+							entries.put( k, new SoftReference<>( entry ) );
+						}
+					}
+				} catch( IOException e ) {
+					// Reported by the parser when it actually includes the file
+				}
+			} ) );
+			return key;
+		}
+	}
+
+	/**
+	 * Forgets the scans started for a parse that has ended, successfully or not,
+	 * including those of the files that the parser has not reached.
+	 * Scans that are still running complete in the background and are cached as usual;
+	 * a parser that reaches one of their files afterwards scans it by itself if it is not cached.
+	 * @param keys the keys returned by {@link #prefetch(URL, Charset, boolean)} during the parse
+	 */
+	public static void endPrefetches( Collection< String > keys )
+	{
+		for( String key : keys ) {
+			prefetches.remove( key );
+		}
+	}
+
+	private static String key( URL url, Charset charset, boolean includeDocumentation )
+	{
+		return charset.name() + ( includeDocumentation ? ":doc:" : ":" ) + url.toString();
+	}
+
+	private static Entry cached( String key, Resource resource )
+	{
+		if ( resource.isCacheable() ) {
+			final SoftReference< Entry > ref = entries.get( key );
+			final Entry entry = ( ref == null ) ? null : ref.get();
+			if ( entry != null && entry.lastModified == resource.lastModified && entry.size == resource.size ) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	private static class Resource
+	{
+		private final File file;
+		private final URLConnection connection;
+		private final long lastModified;
+		private final long size;
+
+		private Resource( URL url )
+			throws IOException
+		{
+			if ( "file".equals( url.getProtocol() ) ) {
+				// Avoids the content type lookup of file URL connections
+				file = toFile( url );
+				connection = null;
+				lastModified = file.lastModified();
+				size = file.length();
+			} else {
+				file = null;
+				connection = url.openConnection();
+				lastModified = connection.getLastModified();
+				size = connection.getContentLengthLong();
+			}
+		}
+
+		private boolean isCacheable()
+		{
+			return lastModified > 0;
+		}
+
+		private char[] read( Charset charset )
+			throws IOException
+		{
+			try( InputStream istream = ( file != null ) ? new FileInputStream( file ) : connection.getInputStream() ) {
+				return new String( readAll( istream ), charset ).toCharArray();
+			}
+		}
+	}
+
+	private static File toFile( URL url )
+		throws IOException
+	{
+		try {
+			return new File( url.toURI() );
+		} catch( URISyntaxException | IllegalArgumentException e ) {
+			throw new IOException( e );
+		}
+	}
+
+	private static byte[] readAll( InputStream istream )
+		throws IOException
+	{
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[ 8192 ];
+		int read;
+		while( (read = istream.read( buffer )) != -1 ) {
+			bytes.write( buffer, 0, read );
+		}
+		return bytes.toByteArray();
+	}
+
+	private static class Entry
+	{
+		private final Scanner.Token[] tokens;
+		private final int[] lines; // the line reached by the scanner after each token
+		private final int initialLine;
+		private final long lastModified;
+		private final long size;
+
+		private Entry( Scanner.Token[] tokens, int[] lines, int initialLine, long lastModified, long size )
+		{
+			this.tokens = tokens;
+			this.lines = lines;
+			this.initialLine = initialLine;
+			this.lastModified = lastModified;
+			this.size = size;
+		}
+
+		/*
+		 * Scans the whole text. Returns null if the text contains a lexical
+		 * error, since the parser would stop there anyway.
+		 */
+		private static Entry create( char[] text, Charset charset, boolean includeDocumentation, Resource resource )
+			throws IOException
+		{
+			final Scanner scanner = new Scanner( text, null, charset.name(), includeDocumentation );
+			final int initialLine = scanner.line();
+			final List< Scanner.Token > tokens = new ArrayList<>();
+			final List< Integer > lines = new ArrayList<>();
+			Scanner.Token token;
+			do {
+				token = scanner.getToken();
+				if ( token.is( Scanner.TokenType.ERROR ) ) {
+					return null;
+				}
+				tokens.add( token );
+				lines.add( scanner.line() );
+			} while( !token.isEOF() );
+
+			final int[] lineArray = new int[ lines.size() ];
+			for( int i = 0; i < lineArray.length; i++ ) {
+				lineArray[ i ] = lines.get( i );
+			}
+			return new Entry( tokens.toArray( new Scanner.Token[ tokens.size() ] ), lineArray, initialLine, resource.lastModified, resource.size );
+		}
+	}
+
+	private static class ReplayScanner extends Scanner
+	{
+		private final Entry entry;
+		private int next = 0;
+		private int line;
+
+		private ReplayScanner( Entry entry, URI source, boolean includeDocumentation )
+		{
+			super( source, includeDocumentation );
+			this.entry = entry;
+			this.line = entry.initialLine;
+		}
+
+		@Override
+		public Token getToken()
+		{
+			if ( next < entry.tokens.length ) {
+				line = entry.lines[ next ];
+				return entry.tokens[ next++ ];
+			}
+			// The last token is always EOF
+			return entry.tokens[ entry.tokens.length - 1 ];
+		}
+
+		@Override
+		public int line()
+		{
+			return line;
+		}
+
+		@Override
+		Scanner restart()
+		{
+			return new ReplayScanner( entry, source(), includeDocumentation() );
+		}
+	}
+}
@@ -19,14 +19,13 @@
 
 package jolie.lang.parse;
 
-import java.io.BufferedInputStream;
 import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystemNotFoundException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -158,6 +157,9 @@ public class OLParser extends AbstractParser
 	private final ClassLoader classLoader;
 
 	private InterfaceExtenderDefinition currInterfaceExtender = null;
+	private final List< URI > includedFiles = new ArrayList<>();
+	// Keys of the includes scanned in the background for this parse
+	private final List< String > prefetchedIncludes = new ArrayList<>();
 
 	public OLParser( Scanner scanner, String[] includePaths, ClassLoader classLoader )
 	{
@@ -174,6 +176,16 @@ public class OLParser extends AbstractParser
 		constantsMap.putAll( constantsToPut );
 	}
 
+	/**
+	 * Returns the sources of the files included by the parsed program,
+	 * in the order in which they have been included.
+	 * @return the sources of the files included by the parsed program
+	 */
+	public List< URI > includedFiles()
+	{
+		return includedFiles;
+	}
+
 	public static Map< String, TypeDefinition > createTypeDeclarationMap( ParsingContext context )
 	{
 		Map< String, TypeDefinition > definedTypes = new HashMap<>();
@@ -190,19 +202,26 @@ public class OLParser extends AbstractParser
 	public Program parse()
 		throws IOException, ParserException
 	{
-		getToken();
-		boolean explicitServiceBlock = token.isKeyword( "service" );
-		if ( token.isKeyword( "service" ) ) { // Top-level service definition
-			getToken();
-			assertToken( Scanner.TokenType.ID, "expected service name" );
-			serviceName = Optional.of( token.content() );
+		try {
+			prefetchIncludes();
 			getToken();
-			assertToken( Scanner.TokenType.LCURLY, "expected { after the opening clause of service " + serviceName.get() );
-		} else {
-			addToken( token );
+			boolean explicitServiceBlock = token.isKeyword( "service" );
+			if ( token.isKeyword( "service" ) ) { // Top-level service definition
+				getToken();
+				assertToken( Scanner.TokenType.ID, "expected service name" );
+				serviceName = Optional.of( token.content() );
+				getToken();
+				assertToken( Scanner.TokenType.LCURLY, "expected { after the opening clause of service " + serviceName.get() );
+			} else {
+				addToken( token );
+			}
+
+			_parse( explicitServiceBlock );
+		} finally {
+			// Includes that have not been reached, e.g., because of an error, are not needed anymore
+			IncludeCache.endPrefetches( prefetchedIncludes );
+			prefetchedIncludes.clear();
 		}
-		
-		_parse( explicitServiceBlock );
 
 		if ( initSequence != null ) {
 			programBuilder.addChild( new DefinitionNode( getContext(), "init", initSequence ) );
@@ -745,8 +764,8 @@ public class OLParser extends AbstractParser
 					}
 					uri = includeURL.toURI();
 				}
-				return new IncludeFile( new BufferedInputStream( includeURL.openStream() ), parent, uri );
-			} catch( IOException | URISyntaxException e ) {
+				return new IncludeFile( includeURL, parent, uri );
+			} catch( URISyntaxException e ) {
 				e.printStackTrace();
 			}
 		}
@@ -754,6 +773,41 @@ public class OLParser extends AbstractParser
 		return null;
 	}
 
+	private IncludeFile resolveIncludeFile( String includeStr )
+	{
+		IncludeFile includeFile = null;
+		for ( int i = 0; i < includePaths.length && includeFile == null; i++ ) {
+			includeFile = retrieveIncludeFile( includePaths[i], includeStr );
+		}
+		if ( includeFile == null ) {
+			includeFile = tryAccessIncludeFile( includeStr );
+		}
+		return includeFile;
+	}
+
+	/*
+	 * Includes are parsed in order, since each one can use the declarations
+	 * of the previous ones. Scanning does not depend on the parser state, so
+	 * the files included by the current one are scanned concurrently, in
+	 * the background, while the parser proceeds.
+	 */
+	private void prefetchIncludes()
+		throws IOException
+	{
+		if ( !IncludeCache.PREFETCH ) {
+			return;
+		}
+		for( String includeStr : scanner().includeTargets() ) {
+			final IncludeFile includeFile = resolveIncludeFile( includeStr );
+			if ( includeFile != null ) {
+				final String key = IncludeCache.prefetch( includeFile.getURL(), StandardCharsets.US_ASCII, scanner().includeDocumentation() );
+				if ( key != null ) {
+					prefetchedIncludes.add( key );
+				}
+			}
+		}
+	}
+
 	private void parseInclude()
 		throws IOException, ParserException
 	{
@@ -764,22 +818,15 @@ public class OLParser extends AbstractParser
 			Scanner oldScanner = scanner();
 			assertToken( Scanner.TokenType.STRING, "expected filename to include" );
 			String includeStr = token.content();
-			includeFile = null;
-
-			for ( int i = 0; i < includePaths.length && includeFile == null; i++ ) {
-				includeFile = retrieveIncludeFile( includePaths[i], includeStr );
-			}
-			
+			includeFile = resolveIncludeFile( includeStr );
 			if ( includeFile == null ) {
-				includeFile = tryAccessIncludeFile( includeStr );
-				if ( includeFile == null ) {
-					throwException( "File not found: " + includeStr );
-				}
+				throwException( "File not found: " + includeStr );
 			}
 
+			includedFiles.add( includeFile.getURI() );
 			origIncludePaths = includePaths;
 			// includes are explicitly parsed in ASCII to be independent of program's encoding
-			setScanner( new Scanner( includeFile.getInputStream(), includeFile.getURI(), "US-ASCII", oldScanner.includeDocumentation() ) );
+			setScanner( IncludeCache.scanner( includeFile.getURL(), includeFile.getURI(), StandardCharsets.US_ASCII, oldScanner.includeDocumentation() ) );
 			
 			if ( includeFile.getParentPath() == null ) {
 				includePaths = Arrays.copyOf( origIncludePaths, origIncludePaths.length );
@@ -787,9 +834,9 @@ public class OLParser extends AbstractParser
 				includePaths = Arrays.copyOf( origIncludePaths, origIncludePaths.length + 1 );
 				includePaths[ origIncludePaths.length ] = includeFile.getParentPath();
 			}
+			prefetchIncludes();
 			_parse( false );
 			includePaths = origIncludePaths;
-			includeFile.getInputStream().close();
 			setScanner( oldScanner );
 			getToken();
 		}
@@ -2872,19 +2919,19 @@ public class OLParser extends AbstractParser
 	}
 	
 	private static class IncludeFile {
-		private final InputStream inputStream;
+		private final URL url;
 		private final String parentPath;
 		private final URI uri;
-		private IncludeFile( InputStream inputStream, String parentPath, URI uri )
+		private IncludeFile( URL url, String parentPath, URI uri )
 		{
-			this.inputStream = inputStream;
+			this.url = url;
 			this.parentPath = parentPath;
 			this.uri = uri;
 		}
 
-		private InputStream getInputStream()
+		private URL getURL()
 		{
-			return inputStream;
+			return url;
 		}
 
 		private String getParentPath()
@@ -25,7 +25,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import jolie.lang.NativeType;
 
@@ -344,8 +347,14 @@ public class Scanner
 		}
 	}
 
+	private static final int BLOCK_SIZE = 8192;
+	private static final char[] EMPTY_SOURCE = new char[ 0 ];
+
 	private final InputStream stream;		// input stream
-	private final InputStreamReader reader;	// data input
+	private final String encoding;			// character encoding
+	private final char[] buffer;			// decoded source text
+	private final int length;				// number of characters in buffer
+	private int position;					// position of the next character in buffer
 	protected char ch;						// current character
 	protected int currInt;					// current stream int
 	private State state;					// current state
@@ -354,7 +363,8 @@ public class Scanner
 	private final boolean includeDocumentation;	// include documentation tokens
 
 	/**
-	 * Constructor
+	 * Constructor. The whole stream is decoded, block by block, when
+	 * the scanner is created.
 	 *
 	 * @param stream the <code>InputStream</code> to use for input reading
 	 * @param source the source URI of the stream
@@ -366,11 +376,54 @@ public class Scanner
 		throws IOException
 	{
 		this.stream = stream;
-		this.reader = charset != null ? new InputStreamReader( stream, charset ) : new InputStreamReader( stream );
+		final InputStreamReader reader = charset != null ? new InputStreamReader( stream, charset ) : new InputStreamReader( stream );
+		this.encoding = reader.getEncoding();
+		char[] chars = new char[ BLOCK_SIZE ];
+		int n = 0;
+		int read;
+		while( (read = reader.read( chars, n, chars.length - n )) != -1 ) {
+			n += read;
+			if ( n == chars.length ) {
+				chars = Arrays.copyOf( chars, n * 2 );
+			}
+		}
+		this.buffer = chars;
+		this.length = n;
 		this.source = source;
 		this.includeDocumentation = includeDocumentation;
 		line = 1;
-		readChar();
+		nextChar();
+	}
+
+	/**
+	 * Constructor for a scanner reading already decoded source text.
+	 *
+	 * @param text the source text
+	 * @param source the source URI of the text
+	 * @param encoding the character encoding the text was decoded from
+	 * @param includeDocumentation if true, emit documentation tokens
+	 */
+	Scanner( char[] text, URI source, String encoding, boolean includeDocumentation )
+	{
+		this.stream = null;
+		this.encoding = encoding;
+		this.buffer = text;
+		this.length = text.length;
+		this.source = source;
+		this.includeDocumentation = includeDocumentation;
+		line = 1;
+		nextChar();
+	}
+
+	/**
+	 * Constructor for subclasses that do not read source text.
+	 *
+	 * @param source the source URI of the tokens
+	 * @param includeDocumentation if true, documentation tokens are returned
+	 */
+	Scanner( URI source, boolean includeDocumentation )
+	{
+		this( EMPTY_SOURCE, source, null, includeDocumentation );
 	}
 
 	/**
@@ -415,6 +468,44 @@ public class Scanner
 		return stream;
 	}
 
+	/**
+	 * Returns a new scanner that reads the same source text from its beginning.
+	 *
+	 * @return a new scanner that reads the same source text from its beginning
+	 */
+	Scanner restart()
+	{
+		return new Scanner( Arrays.copyOf( buffer, length ), source, encoding, includeDocumentation );
+	}
+
+	/**
+	 * Returns the file names of the include directives in the source text,
+	 * without consuming any input of this scanner.
+	 *
+	 * @return the file names of the include directives in the source text
+	 * @throws IOException if the source cannot be read
+	 */
+	List< String > includeTargets()
+		throws IOException
+	{
+		final Scanner lookahead = restart();
+		final List< String > targets = new ArrayList<>();
+		Token token = lookahead.getToken();
+		while( !token.isEOF() && !token.is( TokenType.ERROR ) ) {
+			if ( token.is( TokenType.INCLUDE ) ) {
+				do {
+					token = lookahead.getToken();
+				} while( token.is( TokenType.NEWLINE ) );
+				if ( token.is( TokenType.STRING ) ) {
+					targets.add( token.content() );
+				}
+			} else {
+				token = lookahead.getToken();
+			}
+		}
+		return targets;
+	}
+
 	/**
 	 * Returns character encoding
 	 *
@@ -422,7 +513,7 @@ public class Scanner
 	 */
 	public String charset()
 	{
-		return reader.getEncoding();
+		return encoding;
 	}
 
 	/**
@@ -461,7 +552,7 @@ public class Scanner
 	public void eatSeparatorsUntilEOF()
 		throws IOException
 	{
-		while( isSeparator( ch ) && stream.available() > 0 ) {
+		while( isSeparator( ch ) && position < length ) {
 			readChar();
 		}
 	}
@@ -518,7 +609,12 @@ public class Scanner
 	public final void readChar()
 		throws IOException
 	{
-		currInt = reader.read();
+		nextChar();
+	}
+
+	private void nextChar()
+	{
+		currInt = position < length ? buffer[ position++ ] : -1;
 
 		ch = (char) currInt;
 
@@ -19,7 +19,9 @@
 
 package jolie.lang.parse;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -27,6 +29,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 import jolie.lang.Constants.ExecutionMode;
 import jolie.lang.Constants.OperandType;
@@ -166,6 +169,7 @@ public class SemanticVerifier implements OLVisitor
 	private boolean insideInputPort = false;
 	private boolean insideInit = false;
 	private boolean mainDefined = false;
+	private boolean spawnOrProvideUsed = false;
 	private CorrelationFunctionInfo correlationFunctionInfo = new CorrelationFunctionInfo();
 	private final MultiMap< String, String > inputTypeNameMap =
 		new ArrayListMultiMap<>(); // Maps type names to the input operations that use them
@@ -173,11 +177,17 @@ public class SemanticVerifier implements OLVisitor
 	private ExecutionMode executionMode = ExecutionMode.SINGLE;
 
 	private static final Logger logger = Logger.getLogger( "JOLIE" );
+
+	// Minimum number of independent checks that are worth running in parallel
+	private static final int PARALLEL_CHECKS = 64;
+	// The checks of each port, run with the other independent checks once the program has been visited
+	private final List< IndependentCheck > portChecks = new ArrayList<>();
 	
 	private final Map< String, TypeDefinition > definedTypes;
 	private final List< TypeDefinitionLink > definedTypeLinks = new LinkedList<>();
 	//private TypeDefinition rootType; // the type representing the whole session state
 	private final Map< String, Boolean > isConstantMap = new HashMap<>();
+	private final List< String > warnings = new ArrayList<>();
 	
 	private OperationType insideCourierOperationType = null;
 	private InputPortInfo courierInputPort = null;
@@ -210,6 +220,20 @@ public class SemanticVerifier implements OLVisitor
 		return executionMode;
 	}
 
+	/**
+	 * Returns {@code true} if the sessions of the verified program can be recycled
+	 * once they terminate, i.e., if the program runs in the concurrent execution modality,
+	 * has no correlation sets and uses neither spawn nor provide-until statements.
+	 * Such sessions are independent of each other and leave no activity behind them.
+	 * @return {@code true} if the sessions of the verified program can be recycled
+	 */
+	public boolean sessionsCanBeRecycled()
+	{
+		return executionMode == ExecutionMode.CONCURRENT
+			&& correlationSets.isEmpty()
+			&& !spawnOrProvideUsed;
+	}
+
 	private void encounteredAssignment( String varName )
 	{
 		if ( isConstantMap.containsKey( varName ) ) {
@@ -263,13 +287,22 @@ public class SemanticVerifier implements OLVisitor
 		return isConstantMap;
 	}
 
+	/**
+	 * Returns the warnings reported while validating the program.
+	 * @return the warnings reported while validating the program
+	 */
+	public List< String > warnings()
+	{
+		return Collections.unmodifiableList( warnings );
+	}
+
 	private void warning( OLSyntaxNode node, String message )
 	{
-		if ( node == null ) {
-			logger.warning( message );
-		} else {
-			logger.warning( node.context().sourceName() + ":" + node.context().line() + ": " + message );
+		if ( node != null ) {
+			message = node.context().sourceName() + ":" + node.context().line() + ": " + message;
 		}
+		warnings.add( message );
+		logger.warning( message );
 	}
 	
 	private void error( OLSyntaxNode node, String message )
@@ -288,25 +321,75 @@ public class SemanticVerifier implements OLVisitor
 		}
 	}
 
-	private void checkToBeEqualTypes()
+	/*
+	 * Some checks only read declarations, which do not change once the program has
+	 * been visited and its type links resolved, so they are independent of each other:
+	 * the checks of each port, and the equalness checks of the types and input operations
+	 * declared more than once, e.g., when the same interfaces are included by several ports.
+	 * When there are many of them, they are run in parallel.
+	 * Errors are reported in the same order as a sequential run.
+	 */
+	private void runIndependentChecks()
 	{
+		final List< IndependentCheck > checks = new ArrayList<>( portChecks );
 		for( Entry< TypeDefinition, List< TypeDefinition > > entry : typesToBeEqual.entrySet() ) {
 			for( TypeDefinition type : entry.getValue() ) {
-				if ( entry.getKey().isEquivalentTo( type ) == false ) {
-					error( type, "type " + type.id() + " has already been defined with a different structure" );
-				}
+				checks.add( new IndependentCheck( check -> check.errors( type, equalnessErrors( entry.getKey(), type ) ) ) );
 			}
 		}
 
 		for( Entry< OneWayOperationDeclaration, List< OneWayOperationDeclaration > > entry : owToBeEqual.entrySet() ) {
 			for( OneWayOperationDeclaration ow : entry.getValue() ) {
-				checkEqualness( entry.getKey(), ow );
+				checks.add( new IndependentCheck( check -> check.errors( entry.getKey(), equalnessErrors( entry.getKey(), ow ) ) ) );
 			}
 		}
 
 		for( Entry< RequestResponseOperationDeclaration, List< RequestResponseOperationDeclaration > > entry : rrToBeEqual.entrySet() ) {
 			for( RequestResponseOperationDeclaration rr : entry.getValue() ) {
-				checkEqualness( entry.getKey(), rr );
+				checks.add( new IndependentCheck( check -> check.errors( entry.getKey(), equalnessErrors( entry.getKey(), rr ) ) ) );
+			}
+		}
+
+		if ( checks.size() >= PARALLEL_CHECKS ) {
+			checks.parallelStream().forEach( IndependentCheck::run );
+		} else {
+			checks.forEach( IndependentCheck::run );
+		}
+
+		for( IndependentCheck check : checks ) {
+			for( Pair< OLSyntaxNode, String > error : check.errors ) {
+				error( error.key(), error.value() );
+			}
+		}
+	}
+
+	/*
+	 * A check that collects its errors, so that it can run on another thread.
+	 */
+	private static class IndependentCheck
+	{
+		private final Consumer< IndependentCheck > check;
+		private final List< Pair< OLSyntaxNode, String > > errors = new ArrayList<>( 0 );
+
+		private IndependentCheck( Consumer< IndependentCheck > check )
+		{
+			this.check = check;
+		}
+
+		private void run()
+		{
+			check.accept( this );
+		}
+
+		private void error( OLSyntaxNode node, String message )
+		{
+			errors.add( new Pair<>( node, message ) );
+		}
+
+		private void errors( OLSyntaxNode node, List< String > messages )
+		{
+			for( String message : messages ) {
+				error( node, message );
 			}
 		}
 	}
@@ -375,7 +458,7 @@ public class SemanticVerifier implements OLVisitor
 	{
 		program.accept( this );
 		resolveLazyLinks();
-		checkToBeEqualTypes();
+		runIndependentChecks();
 		checkCorrelationSets();
 		
 		if ( configuration.checkForMain && mainDefined == false ) {
@@ -473,6 +556,7 @@ public class SemanticVerifier implements OLVisitor
 	@Override
 	public void visit( SpawnStatement n )
 	{
+		spawnOrProvideUsed = true;
 		n.body().accept( this );
 	}
 
@@ -525,6 +609,7 @@ public class SemanticVerifier implements OLVisitor
 		insideInputPort = true;
 
 		Set< String > opSet = new HashSet<>();
+		final List< OperationDeclaration > operations = new ArrayList<>();
 
 		for( OperationDeclaration op : n.operations() ) {
 			if ( opSet.contains( op.id() ) ) {
@@ -532,35 +617,18 @@ public class SemanticVerifier implements OLVisitor
 			} else {
 				opSet.add( op.id() );
 				op.accept( this );
+				operations.add( op );
 			}
 		}
 
+		final List< OutputPortInfo > extendedPorts = new ArrayList<>();
 		for( InputPortInfo.AggregationItemInfo item : n.aggregationList() ) {
 			for( String portName : item.outputPortList() ) {
 				final OutputPortInfo outputPort = outputPorts.get( portName );
 				if ( outputPort == null ) {
 					error( n, "input port " + n.id() + " aggregates an undefined output port (" + portName + ")" );
-				} else {
-					if ( item.interfaceExtender() != null ) {
-						outputPort.operations().forEach( opDecl -> {
-							final TypeDefinition requestType =
-								opDecl instanceof OneWayOperationDeclaration
-								? ((OneWayOperationDeclaration)opDecl).requestType()
-								: ((RequestResponseOperationDeclaration)opDecl).requestType();
-							/*if ( requestType instanceof TypeInlineDefinition == false ) {
-								error( n, "input port " + n.id()
-									+ " is trying to extend the type of operation " + opDecl.id()
-									+ " in output port " + outputPort.id()
-									+ " but such operation has an unsupported type structure (type reference or type choice)" );
-							} */if ( requestType instanceof TypeInlineDefinition && ((TypeInlineDefinition)requestType).untypedSubTypes() ) {
-								error( n,
-									"input port " + n.id()
-									+ " is trying to extend the type of operation " + opDecl.id()
-									+ " in output port " + outputPort.id()
-									+ " but such operation has undefined subnode types ({ ? } or undefined)" );
-							}
-						} );
-					}
+				} else if ( item.interfaceExtender() != null ) {
+					extendedPorts.add( outputPort );
 				}
 				
 				/* else {
@@ -576,6 +644,11 @@ public class SemanticVerifier implements OLVisitor
 		}
 
 		insideInputPort = false;
+
+		portChecks.add( new IndependentCheck( check -> {
+			checkOperationTypes( check, operations );
+			checkExtendedOperations( check, n, extendedPorts );
+		} ) );
 	}
 	
 	@Override
@@ -590,14 +663,70 @@ public class SemanticVerifier implements OLVisitor
 		for( OperationDeclaration op : n.operations() ) {
 			op.accept( this );
 		}
+
+		final List< OperationDeclaration > operations = new ArrayList<>( n.operations() );
+		portChecks.add( new IndependentCheck( check -> checkOperationTypes( check, operations ) ) );
+	}
+
+	/*
+	 * Checks that the types used by the passed operations of a port are defined.
+	 */
+	private void checkOperationTypes( IndependentCheck check, List< OperationDeclaration > operations )
+	{
+		for( OperationDeclaration op : operations ) {
+			if ( op instanceof OneWayOperationDeclaration ) {
+				final OneWayOperationDeclaration n = (OneWayOperationDeclaration) op;
+				if ( definedTypes.get( n.requestType().id() ) == null ) {
+					check.error( n, "unknown type: " + n.requestType().id() + " for operation " + n.id() );
+				}
+			} else if ( op instanceof RequestResponseOperationDeclaration ) {
+				final RequestResponseOperationDeclaration n = (RequestResponseOperationDeclaration) op;
+				if ( definedTypes.get( n.requestType().id() ) == null ) {
+					check.error( n, "unknown type: " + n.requestType().id() + " for operation " + n.id() );
+				}
+				if ( definedTypes.get( n.responseType().id() ) == null ) {
+					check.error( n, "unknown type: " + n.responseType().id() + " for operation " + n.id() );
+				}
+				for( Entry< String, TypeDefinition > fault : n.faults().entrySet() ) {
+					if ( definedTypes.containsKey( fault.getValue().id() ) == false ) {
+						check.error( n, "unknown type for fault " + fault.getKey() );
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * Checks that the operations of the output ports that an input port aggregates
+	 * with an interface extender have request types that can be extended.
+	 */
+	private static void checkExtendedOperations( IndependentCheck check, InputPortInfo n, List< OutputPortInfo > extendedPorts )
+	{
+		for( OutputPortInfo outputPort : extendedPorts ) {
+			outputPort.operations().forEach( opDecl -> {
+				final TypeDefinition requestType =
+					opDecl instanceof OneWayOperationDeclaration
+					? ((OneWayOperationDeclaration)opDecl).requestType()
+					: ((RequestResponseOperationDeclaration)opDecl).requestType();
+				/*if ( requestType instanceof TypeInlineDefinition == false ) {
+					error( n, "input port " + n.id()
+						+ " is trying to extend the type of operation " + opDecl.id()
+						+ " in output port " + outputPort.id()
+						+ " but such operation has an unsupported type structure (type reference or type choice)" );
+				} */if ( requestType instanceof TypeInlineDefinition && ((TypeInlineDefinition)requestType).untypedSubTypes() ) {
+					check.error( n,
+						"input port " + n.id()
+						+ " is trying to extend the type of operation " + opDecl.id()
+						+ " in output port " + outputPort.id()
+						+ " but such operation has undefined subnode types ({ ? } or undefined)" );
+				}
+			} );
+		}
 	}
 		
 	@Override
 	public void visit( OneWayOperationDeclaration n )
 	{
-		if ( definedTypes.get( n.requestType().id() ) == null ) {
-			error( n, "unknown type: " + n.requestType().id() + " for operation " + n.id() );
-		}
 		if ( insideInputPort ) { // Input operation
 			if ( oneWayOperations.containsKey( n.id() ) ) {
 				OneWayOperationDeclaration other = oneWayOperations.get( n.id() );
@@ -612,18 +741,6 @@ public class SemanticVerifier implements OLVisitor
 	@Override
 	public void visit( RequestResponseOperationDeclaration n )
 	{
-		if ( definedTypes.get( n.requestType().id() ) == null ) {
-			error( n, "unknown type: " + n.requestType().id() + " for operation " + n.id() );
-		}
-		if ( definedTypes.get( n.responseType().id() ) == null ) {
-			error( n, "unknown type: " + n.responseType().id() + " for operation " + n.id() );
-		}
-		for( Entry< String, TypeDefinition > fault : n.faults().entrySet() ) {
-			if ( definedTypes.containsKey( fault.getValue().id() ) == false ) {
-				error( n, "unknown type for fault " + fault.getKey() );
-			}
-		}
-
 		if ( insideInputPort ) { // Input operation
 			if ( requestResponseOperations.containsKey( n.id() ) ) {
 				RequestResponseOperationDeclaration other = requestResponseOperations.get( n.id() );
@@ -635,34 +752,45 @@ public class SemanticVerifier implements OLVisitor
 		}
 	}
 
-	private void checkEqualness( OneWayOperationDeclaration n, OneWayOperationDeclaration other )
+	private static List< String > equalnessErrors( TypeDefinition type, TypeDefinition other )
+	{
+		if ( type.isEquivalentTo( other ) == false ) {
+			return Collections.singletonList( "type " + other.id() + " has already been defined with a different structure" );
+		}
+		return Collections.emptyList();
+	}
+
+	private static List< String > equalnessErrors( OneWayOperationDeclaration n, OneWayOperationDeclaration other )
 	{
 		if ( n.requestType().isEquivalentTo( other.requestType() ) == false ) {
-			error( n, "input operations sharing the same name cannot declare different request types (One-Way operation " + n.id() + ")" );
+			return Collections.singletonList( "input operations sharing the same name cannot declare different request types (One-Way operation " + n.id() + ")" );
 		}
+		return Collections.emptyList();
 	}
 	
-	private void checkEqualness( RequestResponseOperationDeclaration n, RequestResponseOperationDeclaration other )
+	private static List< String > equalnessErrors( RequestResponseOperationDeclaration n, RequestResponseOperationDeclaration other )
 	{
+		final List< String > errors = new ArrayList<>( 0 );
 		if ( n.requestType().isEquivalentTo( other.requestType() ) == false ) {
-			error( n, "input operations sharing the same name cannot declare different request types (Request-Response operation " + n.id() + ")" );
+			errors.add( "input operations sharing the same name cannot declare different request types (Request-Response operation " + n.id() + ")" );
 		}
 
 		if ( n.responseType().isEquivalentTo( other.responseType() ) == false ) {
-			error( n, "input operations sharing the same name cannot declare different response types (Request-Response operation " + n.id() + ")" );
+			errors.add( "input operations sharing the same name cannot declare different response types (Request-Response operation " + n.id() + ")" );
 		}
 
 		if ( n.faults().size() != other.faults().size() ) {
-			error( n, "input operations sharing the same name cannot declared different fault types (Request-Response operation " + n.id() );
+			errors.add( "input operations sharing the same name cannot declared different fault types (Request-Response operation " + n.id() );
 		}
 
 		for( Entry< String, TypeDefinition > fault : n.faults().entrySet() ) {
 			if ( fault.getValue() != null ) {
 				if ( !other.faults().containsKey( fault.getKey() ) || !other.faults().get( fault.getKey() ).isEquivalentTo( fault.getValue() ) ) {
-					error( n, "input operations sharing the same name cannot declared different fault types (Request-Response operation " + n.id() );
+					errors.add( "input operations sharing the same name cannot declared different fault types (Request-Response operation " + n.id() );
 				}
 			}
 		}
+		return errors;
 	}
 
 	@Override
@@ -1330,6 +1458,7 @@ public class SemanticVerifier implements OLVisitor
 	@Override
 	public void visit( ProvideUntilStatement n )
 	{	
+		spawnOrProvideUsed = true;
 		if ( !( n.provide() instanceof NDChoiceStatement ) ) {
 			error( n, "provide branch is not an input choice" );
 		} else if ( !( n.until() instanceof NDChoiceStatement ) ) {
@@ -0,0 +1,130 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.lang.parse.util;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import jolie.lang.parse.CorrelationFunctionInfo;
+import jolie.lang.parse.SemanticVerifier;
+import jolie.lang.parse.ast.Program;
+import jolie.lang.parse.util.impl.ProgramImageReader;
+import jolie.lang.parse.util.impl.ProgramImageWriter;
+
+/**
+ * A parsed, optimised and verified {@link Program}, together with the
+ * information computed by the {@link SemanticVerifier} that is needed to run it.
+ *
+ * A program image can be written in a compact binary form and read back
+ * without parsing or verifying the program again.
+ * The format is tied to the AST classes of the libjolie that wrote it:
+ * images must be discarded whenever libjolie changes.
+ */
+public class ProgramImage
+{
+	private final Program program;
+	private final Map< String, Boolean > isConstantMap;
+	private final CorrelationFunctionInfo correlationFunctionInfo;
+	private final boolean sessionsCanBeRecycled;
+	private final List< String > warnings;
+
+	public ProgramImage(
+		Program program,
+		Map< String, Boolean > isConstantMap,
+		CorrelationFunctionInfo correlationFunctionInfo,
+		boolean sessionsCanBeRecycled,
+		List< String > warnings
+	) {
+		this.program = program;
+		this.isConstantMap = isConstantMap;
+		this.correlationFunctionInfo = correlationFunctionInfo;
+		this.sessionsCanBeRecycled = sessionsCanBeRecycled;
+		this.warnings = warnings;
+	}
+
+	/**
+	 * Creates the image of a program that has been successfully validated by the passed verifier.
+	 * @param program the verified program
+	 * @param verifier the verifier that validated the program
+	 */
+	public ProgramImage( Program program, SemanticVerifier verifier )
+	{
+		this(
+			program,
+			verifier.isConstantMap(),
+			verifier.correlationFunctionInfo(),
+			verifier.sessionsCanBeRecycled(),
+			verifier.warnings()
+		);
+	}
+
+	public Program program()
+	{
+		return program;
+	}
+
+	public Map< String, Boolean > isConstantMap()
+	{
+		return isConstantMap;
+	}
+
+	public CorrelationFunctionInfo correlationFunctionInfo()
+	{
+		return correlationFunctionInfo;
+	}
+
+	public boolean sessionsCanBeRecycled()
+	{
+		return sessionsCanBeRecycled;
+	}
+
+	/**
+	 * Returns the warnings reported by the verifier, which must be reported
+	 * again whenever the image is used instead of verifying the program.
+	 * @return the warnings reported by the verifier
+	 */
+	public List< String > warnings()
+	{
+		return warnings;
+	}
+
+	/**
+	 * Encodes this image in its binary form.
+	 * @return the binary form of this image
+	 */
+	public byte[] toByteArray()
+	{
+		return new ProgramImageWriter().write( this );
+	}
+
+	/**
+	 * Decodes an image previously encoded with {@link #toByteArray()}.
+	 * @param bytes the binary form of the image
+	 * @return the program image
+	 * @throws IOException if the image is corrupted or has been encoded with a different format version
+	 */
+	public static ProgramImage read( byte[] bytes )
+		throws IOException
+	{
+		return new ProgramImageReader( bytes ).read();
+	}
+}
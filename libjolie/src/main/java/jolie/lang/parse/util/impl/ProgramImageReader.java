@@ -0,0 +1,843 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.lang.parse.util.impl;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import jolie.lang.Constants;
+import jolie.lang.NativeType;
+import jolie.lang.parse.CorrelationFunctionInfo;
+import jolie.lang.parse.CorrelationFunctionInfo.CorrelationPairInfo;
+import jolie.lang.parse.Scanner;
+import jolie.lang.parse.ast.*;
+import jolie.lang.parse.ast.courier.*;
+import jolie.lang.parse.ast.expression.*;
+import jolie.lang.parse.ast.types.TypeChoiceDefinition;
+import jolie.lang.parse.ast.types.TypeDefinition;
+import jolie.lang.parse.ast.types.TypeDefinitionLink;
+import jolie.lang.parse.ast.types.TypeDefinitionUndefined;
+import jolie.lang.parse.ast.types.TypeInlineDefinition;
+import jolie.lang.parse.context.ParsingContext;
+import jolie.lang.parse.context.URIParsingContext;
+import jolie.lang.parse.util.ProgramImage;
+import jolie.util.Pair;
+import jolie.util.Range;
+
+/**
+ * Decodes a {@link ProgramImage} encoded by {@link ProgramImageWriter}.
+ *
+ * A reader can be used to decode a single image.
+ */
+public class ProgramImageReader
+{
+	private static final ProgramImageTag[] TAGS = ProgramImageTag.values();
+	private static final Constants.ExecutionMode[] EXECUTION_MODES = Constants.ExecutionMode.values();
+	private static final Constants.EmbeddedServiceType[] EMBEDDED_SERVICE_TYPES = Constants.EmbeddedServiceType.values();
+	private static final Constants.OperandType[] OPERAND_TYPES = Constants.OperandType.values();
+	private static final Scanner.TokenType[] TOKEN_TYPES = Scanner.TokenType.values();
+	private static final NativeType[] NATIVE_TYPES = NativeType.values();
+	private static final VariablePathNode.Type[] PATH_TYPES = VariablePathNode.Type.values();
+	private static final IsTypeExpressionNode.CheckType[] CHECK_TYPES = IsTypeExpressionNode.CheckType.values();
+
+	private final byte[] bytes;
+	private int position = 0;
+	private final List< OLSyntaxNode > nodes = new ArrayList<>();
+	private final List< String > strings = new ArrayList<>();
+	private final Map< String, URI > uris = new HashMap<>();
+	// Links to types that were still being read when the link was met, e.g., in recursive choice types
+	private final List< Pair< TypeDefinitionLink, Integer > > pendingLinks = new ArrayList<>();
+
+	public ProgramImageReader( byte[] bytes )
+	{
+		this.bytes = bytes;
+	}
+
+	/**
+	 * Decodes the image.
+	 * @return the decoded image
+	 * @throws IOException if the image is corrupted or has been encoded with a different format version
+	 */
+	public ProgramImage read()
+		throws IOException
+	{
+		try {
+			if ( readInt() != ProgramImageWriter.MAGIC ) {
+				throw new IOException( "Not a program image" );
+			}
+			final int version = readVarInt();
+			if ( version != ProgramImageWriter.FORMAT_VERSION ) {
+				throw new IOException( "Unsupported program image format version: " + version );
+			}
+			final Program program = readNode( Program.class );
+			final CorrelationFunctionInfo correlationFunctionInfo = readCorrelationFunctionInfo();
+			final int size = readVarInt();
+			final Map< String, Boolean > isConstantMap = new HashMap<>();
+			for( int i = 0; i < size; i++ ) {
+				isConstantMap.put( readString(), readBoolean() );
+			}
+			final boolean sessionsCanBeRecycled = readBoolean();
+			final int warningCount = readCount();
+			final List< String > warnings = new ArrayList<>( warningCount );
+			for( int i = 0; i < warningCount; i++ ) {
+				warnings.add( readString() );
+			}
+			if ( position != bytes.length ) {
+				throw new IOException( "Unexpected data at the end of the program image" );
+			}
+			for( Pair< TypeDefinitionLink, Integer > link : pendingLinks ) {
+				link.key().setLinkedType( (TypeDefinition) nodes.get( link.value() ) );
+			}
+			return new ProgramImage( program, isConstantMap, correlationFunctionInfo, sessionsCanBeRecycled, warnings );
+		} catch( IndexOutOfBoundsException | NegativeArraySizeException | ClassCastException | IllegalArgumentException e ) {
+			throw new IOException( "Corrupted program image", e );
+		}
+	}
+
+	private CorrelationFunctionInfo readCorrelationFunctionInfo()
+		throws IOException
+	{
+		final CorrelationFunctionInfo info = new CorrelationFunctionInfo();
+		int size = readVarInt();
+		for( int i = 0; i < size; i++ ) {
+			info.correlationSets().add( readNode( CorrelationSetInfo.class ) );
+		}
+
+		size = readVarInt();
+		for( int i = 0; i < size; i++ ) {
+			info.operationCorrelationSetMap().put( readString(), readNode( CorrelationSetInfo.class ) );
+		}
+
+		size = readVarInt();
+		for( int i = 0; i < size; i++ ) {
+			final CorrelationSetInfo cset = readNode( CorrelationSetInfo.class );
+			final int operations = readVarInt();
+			for( int k = 0; k < operations; k++ ) {
+				info.correlationSetOperations().put( cset, readString() );
+			}
+		}
+
+		size = readVarInt();
+		for( int i = 0; i < size; i++ ) {
+			final String operation = readString();
+			final int pairs = readVarInt();
+			for( int k = 0; k < pairs; k++ ) {
+				final VariablePathNode sessionPath = readNode( VariablePathNode.class );
+				final VariablePathNode messagePath = readNode( VariablePathNode.class );
+				info.putCorrelationPair( operation, new CorrelationPairInfo( sessionPath, messagePath ) );
+			}
+		}
+		return info;
+	}
+
+	private int readByte()
+		throws IOException
+	{
+		if ( position >= bytes.length ) {
+			throw new EOFException( "Truncated program image" );
+		}
+		return bytes[ position++ ] & 0xFF;
+	}
+
+	private boolean readBoolean()
+		throws IOException
+	{
+		return readByte() != 0;
+	}
+
+	private int readInt()
+		throws IOException
+	{
+		return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+	}
+
+	private int readVarInt()
+		throws IOException
+	{
+		int result = 0;
+		for( int shift = 0; shift < 32; shift += 7 ) {
+			final int b = readByte();
+			result |= (b & 0x7F) << shift;
+			if ( (b & 0x80) == 0 ) {
+				return result;
+			}
+		}
+		throw new IOException( "Malformed integer in program image" );
+	}
+
+	/*
+	 * Reads the number of elements of an array or list. Every element takes
+	 * at least one byte, so a corrupted count can not make us allocate more
+	 * than the size of the image.
+	 */
+	private int readCount()
+		throws IOException
+	{
+		return checkCount( readVarInt() );
+	}
+
+	private int checkCount( int count )
+		throws IOException
+	{
+		if ( count < 0 || count > bytes.length - position ) {
+			throw new EOFException( "Truncated program image" );
+		}
+		return count;
+	}
+
+	private long readVarLong()
+		throws IOException
+	{
+		long result = 0;
+		for( int shift = 0; shift < 64; shift += 7 ) {
+			final int b = readByte();
+			result |= (long) (b & 0x7F) << shift;
+			if ( (b & 0x80) == 0 ) {
+				return (result >>> 1) ^ -(result & 1);
+			}
+		}
+		throw new IOException( "Malformed integer in program image" );
+	}
+
+	private double readDouble()
+		throws IOException
+	{
+		final long high = readInt() & 0xFFFFFFFFL;
+		final long low = readInt() & 0xFFFFFFFFL;
+		return Double.longBitsToDouble( (high << 32) | low );
+	}
+
+	private String readString()
+		throws IOException
+	{
+		final int id = readVarInt();
+		if ( id == 0 ) {
+			return null;
+		} else if ( id == 1 ) {
+			final int length = readVarInt();
+			if ( length < 0 || length > bytes.length - position ) {
+				throw new EOFException( "Truncated program image" );
+			}
+			final String s = new String( bytes, position, length, StandardCharsets.UTF_8 );
+			position += length;
+			strings.add( s );
+			return s;
+		} else {
+			return strings.get( id - 2 );
+		}
+	}
+
+	private String[] readStrings()
+		throws IOException
+	{
+		final int length = readVarInt();
+		if ( length == 0 ) {
+			return null;
+		}
+		final String[] result = new String[ checkCount( length - 1 ) ];
+		for( int i = 0; i < result.length; i++ ) {
+			result[ i ] = readString();
+		}
+		return result;
+	}
+
+	private URI readURI()
+		throws IOException
+	{
+		final String s = readString();
+		return s == null ? null : uris.computeIfAbsent( s, URI::create );
+	}
+
+	private < E extends Enum< E > > E readEnum( E[] values )
+		throws IOException
+	{
+		final int ordinal = readVarInt();
+		return ordinal == 0 ? null : values[ ordinal - 1 ];
+	}
+
+	private Range readRange()
+		throws IOException
+	{
+		final int min = readVarInt();
+		final int max = readVarInt();
+		return new Range( min, max );
+	}
+
+	private ParsingContext readContext()
+		throws IOException
+	{
+		final URI source = readURI();
+		return new URIParsingContext( source, (int) readVarLong() );
+	}
+
+	private < T extends OLSyntaxNode > T readNode( Class< T > type )
+		throws IOException
+	{
+		return type.cast( readNode() );
+	}
+
+	private OLSyntaxNode readNode()
+		throws IOException
+	{
+		final ProgramImageTag tag = TAGS[ readByte() ];
+		switch( tag ) {
+		case NULL:
+			return null;
+		case UNDEFINED_TYPE:
+			return TypeDefinitionUndefined.getInstance();
+		case REFERENCE:
+			final OLSyntaxNode node = nodes.get( readVarInt() );
+			if ( node == null ) {
+				throw new IOException( "Program image refers to a node that is still being read" );
+			}
+			return node;
+		default:
+			final int id = nodes.size();
+			nodes.add( null );
+			final OLSyntaxNode result = readNode( tag, readContext(), id );
+			nodes.set( id, result );
+			return result;
+		}
+	}
+
+	private < T extends OLSyntaxNode > T register( int id, T node )
+	{
+		nodes.set( id, node );
+		return node;
+	}
+
+	private List< OLSyntaxNode > readNodes()
+		throws IOException
+	{
+		final int size = readCount();
+		final List< OLSyntaxNode > result = new ArrayList<>( size );
+		for( int i = 0; i < size; i++ ) {
+			result.add( readNode() );
+		}
+		return result;
+	}
+
+	private void readNodePairs( List< Pair< OLSyntaxNode, OLSyntaxNode > > pairs )
+		throws IOException
+	{
+		final int size = readVarInt();
+		for( int i = 0; i < size; i++ ) {
+			final OLSyntaxNode key = readNode();
+			pairs.add( new Pair<>( key, readNode() ) );
+		}
+	}
+
+	private void readOperands( List< Pair< Constants.OperandType, OLSyntaxNode > > operands )
+		throws IOException
+	{
+		final int size = readVarInt();
+		for( int i = 0; i < size; i++ ) {
+			final Constants.OperandType type = readEnum( OPERAND_TYPES );
+			operands.add( new Pair<>( type, readNode() ) );
+		}
+	}
+
+	private void readOperations( OperationCollector collector )
+		throws IOException
+	{
+		final int size = readVarInt();
+		for( int i = 0; i < size; i++ ) {
+			final String name = readString();
+			collector.operationsMap().put( name, readNode( OperationDeclaration.class ) );
+		}
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private InstallFunctionNode readInstallFunction()
+		throws IOException
+	{
+		final int length = readVarInt();
+		if ( length == 0 ) {
+			return null;
+		}
+		final Pair< String, OLSyntaxNode >[] pairs = new Pair[ checkCount( length - 1 ) ];
+		for( int i = 0; i < pairs.length; i++ ) {
+			final String faultName = readString();
+			pairs[ i ] = new Pair<>( faultName, readNode() );
+		}
+		return new InstallFunctionNode( pairs );
+	}
+
+	private void readPortInfo( PortInfo port )
+		throws IOException
+	{
+		port.setDocumentation( readString() );
+		final int size = readVarInt();
+		for( int i = 0; i < size; i++ ) {
+			port.addInterface( readNode( InterfaceDefinition.class ) );
+		}
+		readOperations( port );
+	}
+
+	private void readInterfaceDefinition( InterfaceDefinition iface )
+		throws IOException
+	{
+		iface.setDocumentation( readString() );
+		readOperations( iface );
+	}
+
+	private OLSyntaxNode readNode( ProgramImageTag tag, ParsingContext context, int id )
+		throws IOException
+	{
+		switch( tag ) {
+		case PROGRAM:
+			return new Program( context, readNodes() );
+		case ONE_WAY_OPERATION_DECLARATION: {
+			final OneWayOperationDeclaration decl = register( id, new OneWayOperationDeclaration( context, readString() ) );
+			decl.setDocumentation( readString() );
+			decl.setRequestType( readNode( TypeDefinition.class ) );
+			return decl;
+		}
+		case REQUEST_RESPONSE_OPERATION_DECLARATION: {
+			final String name = readString();
+			final String documentation = readString();
+			final TypeDefinition requestType = readNode( TypeDefinition.class );
+			final TypeDefinition responseType = readNode( TypeDefinition.class );
+			final int size = readVarInt();
+			final Map< String, TypeDefinition > faults = new HashMap<>();
+			for( int i = 0; i < size; i++ ) {
+				faults.put( readString(), readNode( TypeDefinition.class ) );
+			}
+			final RequestResponseOperationDeclaration decl =
+				new RequestResponseOperationDeclaration( context, name, requestType, responseType, faults );
+			decl.setDocumentation( documentation );
+			return decl;
+		}
+		case DEFINITION: {
+			final String name = readString();
+			return new DefinitionNode( context, name, readNode() );
+		}
+		case PARALLEL: {
+			final ParallelStatement stm = new ParallelStatement( context );
+			stm.children().addAll( readNodes() );
+			return stm;
+		}
+		case SEQUENCE: {
+			final SequenceStatement stm = new SequenceStatement( context );
+			stm.children().addAll( readNodes() );
+			return stm;
+		}
+		case ND_CHOICE: {
+			final NDChoiceStatement stm = new NDChoiceStatement( context );
+			readNodePairs( stm.children() );
+			return stm;
+		}
+		case ONE_WAY_OPERATION: {
+			final String name = readString();
+			return new OneWayOperationStatement( context, name, readNode( VariablePathNode.class ) );
+		}
+		case REQUEST_RESPONSE_OPERATION: {
+			final String name = readString();
+			final VariablePathNode inputVarPath = readNode( VariablePathNode.class );
+			final OLSyntaxNode outputExpression = readNode();
+			return new RequestResponseOperationStatement( context, name, inputVarPath, outputExpression, readNode() );
+		}
+		case NOTIFICATION_OPERATION: {
+			final String name = readString();
+			final String outputPortId = readString();
+			return new NotificationOperationStatement( context, name, outputPortId, readNode() );
+		}
+		case SOLICIT_RESPONSE_OPERATION: {
+			final String name = readString();
+			final String outputPortId = readString();
+			final OLSyntaxNode outputExpression = readNode();
+			final VariablePathNode inputVarPath = readNode( VariablePathNode.class );
+			return new SolicitResponseOperationStatement( context, name, outputPortId, outputExpression, inputVarPath, readInstallFunction() );
+		}
+		case LINK_IN:
+			return new LinkInStatement( context, readString() );
+		case LINK_OUT:
+			return new LinkOutStatement( context, readString() );
+		case ASSIGN: {
+			final VariablePathNode path = readNode( VariablePathNode.class );
+			return new AssignStatement( context, path, readNode() );
+		}
+		case ADD_ASSIGN: {
+			final VariablePathNode path = readNode( VariablePathNode.class );
+			return new AddAssignStatement( context, path, readNode() );
+		}
+		case SUBTRACT_ASSIGN: {
+			final VariablePathNode path = readNode( VariablePathNode.class );
+			return new SubtractAssignStatement( context, path, readNode() );
+		}
+		case MULTIPLY_ASSIGN: {
+			final VariablePathNode path = readNode( VariablePathNode.class );
+			return new MultiplyAssignStatement( context, path, readNode() );
+		}
+		case DIVIDE_ASSIGN: {
+			final VariablePathNode path = readNode( VariablePathNode.class );
+			return new DivideAssignStatement( context, path, readNode() );
+		}
+		case IF: {
+			final IfStatement stm = new IfStatement( context );
+			readNodePairs( stm.children() );
+			stm.setElseProcess( readNode() );
+			return stm;
+		}
+		case DEFINITION_CALL:
+			return new DefinitionCallStatement( context, readString() );
+		case WHILE: {
+			final OLSyntaxNode condition = readNode();
+			return new WhileStatement( context, condition, readNode() );
+		}
+		case OR_CONDITION: {
+			final OrConditionNode n = new OrConditionNode( context );
+			n.children().addAll( readNodes() );
+			return n;
+		}
+		case AND_CONDITION: {
+			final AndConditionNode n = new AndConditionNode( context );
+			n.children().addAll( readNodes() );
+			return n;
+		}
+		case NOT_EXPRESSION:
+			return new NotExpressionNode( context, readNode() );
+		case COMPARE_CONDITION: {
+			final OLSyntaxNode left = readNode();
+			final OLSyntaxNode right = readNode();
+			return new CompareConditionNode( context, left, right, readEnum( TOKEN_TYPES ) );
+		}
+		case CONSTANT_INTEGER:
+			return new ConstantIntegerExpression( context, (int) readVarLong() );
+		case CONSTANT_DOUBLE:
+			return new ConstantDoubleExpression( context, readDouble() );
+		case CONSTANT_BOOL:
+			return new ConstantBoolExpression( context, readBoolean() );
+		case CONSTANT_LONG:
+			return new ConstantLongExpression( context, readVarLong() );
+		case CONSTANT_STRING:
+			return new ConstantStringExpression( context, readString() );
+		case PRODUCT_EXPRESSION: {
+			final ProductExpressionNode n = new ProductExpressionNode( context );
+			readOperands( n.operands() );
+			return n;
+		}
+		case SUM_EXPRESSION: {
+			final SumExpressionNode n = new SumExpressionNode( context );
+			readOperands( n.operands() );
+			return n;
+		}
+		case VARIABLE_EXPRESSION:
+			return new VariableExpressionNode( context, readNode( VariablePathNode.class ) );
+		case NULL_PROCESS:
+			return new NullProcessStatement( context );
+		case SCOPE: {
+			final String name = readString();
+			return new Scope( context, name, readNode() );
+		}
+		case INSTALL:
+			return new InstallStatement( context, readInstallFunction() );
+		case COMPENSATE:
+			return new CompensateStatement( context, readString() );
+		case THROW: {
+			final String name = readString();
+			return new ThrowStatement( context, name, readNode() );
+		}
+		case EXIT:
+			return new ExitStatement( context );
+		case EXECUTION_INFO:
+			return new ExecutionInfo( context, readEnum( EXECUTION_MODES ) );
+		case CORRELATION_SET_INFO: {
+			final int size = readCount();
+			final List< CorrelationSetInfo.CorrelationVariableInfo > variables = new ArrayList<>( size );
+			for( int i = 0; i < size; i++ ) {
+				final VariablePathNode path = readNode( VariablePathNode.class );
+				final int aliasCount = readCount();
+				final List< CorrelationSetInfo.CorrelationAliasInfo > aliases = new ArrayList<>( aliasCount );
+				for( int k = 0; k < aliasCount; k++ ) {
+					final String guardName = readString();
+					aliases.add( new CorrelationSetInfo.CorrelationAliasInfo( guardName, readNode( VariablePathNode.class ) ) );
+				}
+				variables.add( new CorrelationSetInfo.CorrelationVariableInfo( path, aliases ) );
+			}
+			return new CorrelationSetInfo( context, variables );
+		}
+		case INPUT_PORT_INFO: {
+			final String name = readString();
+			final URI location = readURI();
+			final String protocolId = readString();
+			final OLSyntaxNode protocolConfiguration = readNode();
+			final InputPortInfo.AggregationItemInfo[] aggregationList = new InputPortInfo.AggregationItemInfo[ readCount() ];
+			for( int i = 0; i < aggregationList.length; i++ ) {
+				final String[] outputPortList = readStrings();
+				aggregationList[ i ] = new InputPortInfo.AggregationItemInfo( outputPortList, readNode( InterfaceExtenderDefinition.class ) );
+			}
+			final int size = readVarInt();
+			final Map< String, String > redirectionMap = new HashMap<>();
+			for( int i = 0; i < size; i++ ) {
+				redirectionMap.put( readString(), readString() );
+			}
+			final InputPortInfo port = register( id, new InputPortInfo( context, name, location, protocolId, protocolConfiguration, aggregationList, redirectionMap ) );
+			readPortInfo( port );
+			return port;
+		}
+		case OUTPUT_PORT_INFO: {
+			final OutputPortInfo port = register( id, new OutputPortInfo( context, readString() ) );
+			port.setLocation( readURI() );
+			port.setProtocolId( readString() );
+			port.setProtocolConfiguration( readNode() );
+			readPortInfo( port );
+			return port;
+		}
+		case POINTER: {
+			final VariablePathNode leftPath = readNode( VariablePathNode.class );
+			return new PointerStatement( context, leftPath, readNode( VariablePathNode.class ) );
+		}
+		case DEEP_COPY: {
+			final VariablePathNode leftPath = readNode( VariablePathNode.class );
+			final OLSyntaxNode rightExpression = readNode();
+			return new DeepCopyStatement( context, leftPath, rightExpression, readBoolean() );
+		}
+		case RUN:
+			return new RunStatement( context, readNode() );
+		case UNDEF:
+			return new UndefStatement( context, readNode( VariablePathNode.class ) );
+		case VALUE_VECTOR_SIZE_EXPRESSION:
+			return new ValueVectorSizeExpressionNode( context, readNode( VariablePathNode.class ) );
+		case PRE_INCREMENT:
+			return new PreIncrementStatement( context, readNode( VariablePathNode.class ) );
+		case POST_INCREMENT:
+			return new PostIncrementStatement( context, readNode( VariablePathNode.class ) );
+		case PRE_DECREMENT:
+			return new PreDecrementStatement( context, readNode( VariablePathNode.class ) );
+		case POST_DECREMENT:
+			return new PostDecrementStatement( context, readNode( VariablePathNode.class ) );
+		case FOR: {
+			final OLSyntaxNode init = readNode();
+			final OLSyntaxNode condition = readNode();
+			final OLSyntaxNode post = readNode();
+			return new ForStatement( context, init, condition, post, readNode() );
+		}
+		case FOR_EACH_SUB_NODE: {
+			final VariablePathNode keyPath = readNode( VariablePathNode.class );
+			final VariablePathNode targetPath = readNode( VariablePathNode.class );
+			return new ForEachSubNodeStatement( context, keyPath, targetPath, readNode() );
+		}
+		case FOR_EACH_ARRAY_ITEM: {
+			final VariablePathNode keyPath = readNode( VariablePathNode.class );
+			final VariablePathNode targetPath = readNode( VariablePathNode.class );
+			return new ForEachArrayItemStatement( context, keyPath, targetPath, readNode() );
+		}
+		case SPAWN: {
+			final VariablePathNode indexVariablePath = readNode( VariablePathNode.class );
+			final OLSyntaxNode upperBoundExpression = readNode();
+			final VariablePathNode inVariablePath = readNode( VariablePathNode.class );
+			return new SpawnStatement( context, indexVariablePath, upperBoundExpression, inVariablePath, readNode() );
+		}
+		case IS_TYPE_EXPRESSION: {
+			final IsTypeExpressionNode.CheckType type = readEnum( CHECK_TYPES );
+			return new IsTypeExpressionNode( context, type, readNode( VariablePathNode.class ) );
+		}
+		case INSTANCE_OF_EXPRESSION: {
+			final OLSyntaxNode expression = readNode();
+			return new InstanceOfExpressionNode( context, expression, readNode( TypeDefinition.class ) );
+		}
+		case TYPE_CAST_EXPRESSION: {
+			final NativeType type = readEnum( NATIVE_TYPES );
+			return new TypeCastExpressionNode( context, type, readNode() );
+		}
+		case SYNCHRONIZED: {
+			final String name = readString();
+			return new SynchronizedStatement( context, name, readNode() );
+		}
+		case CURRENT_HANDLER:
+			return new CurrentHandlerStatement( context );
+		case EMBEDDED_SERVICE: {
+			final Constants.EmbeddedServiceType type = readEnum( EMBEDDED_SERVICE_TYPES );
+			final String servicePath = readString();
+			final EmbeddedServiceNode n = register( id, new EmbeddedServiceNode( context, type, servicePath, readString() ) );
+			n.setProgram( readNode( Program.class ) );
+			return n;
+		}
+		case INSTALL_FIXED_VARIABLE_EXPRESSION:
+			return new InstallFixedVariableExpressionNode( context, readNode( VariablePathNode.class ) );
+		case VARIABLE_PATH: {
+			final VariablePathNode.Type type = readEnum( PATH_TYPES );
+			final VariablePathNode path = register( id, new VariablePathNode( context, type ) );
+			readNodePairs( path.path() );
+			return path;
+		}
+		case TYPE_INLINE_DEFINITION: {
+			final String name = readString();
+			final Range cardinality = readRange();
+			final String documentation = readString();
+			final TypeInlineDefinition type = register( id, new TypeInlineDefinition( context, name, readEnum( NATIVE_TYPES ), cardinality ) );
+			type.setDocumentation( documentation );
+			type.setUntypedSubTypes( readBoolean() );
+			final int size = readVarInt();
+			for( int i = 0; i < size; i++ ) {
+				type.putSubType( readNode( TypeDefinition.class ) );
+			}
+			return type;
+		}
+		case TYPE_DEFINITION_LINK: {
+			final String name = readString();
+			final Range cardinality = readRange();
+			final String documentation = readString();
+			final TypeDefinitionLink link = register( id, new TypeDefinitionLink( context, name, cardinality, readString() ) );
+			link.setDocumentation( documentation );
+			readLinkedType( link );
+			return link;
+		}
+		case TYPE_CHOICE_DEFINITION: {
+			final String name = readString();
+			final Range cardinality = readRange();
+			final String documentation = readString();
+			final TypeDefinition left = readNode( TypeDefinition.class );
+			final TypeChoiceDefinition type = new TypeChoiceDefinition( context, name, cardinality, left, readNode( TypeDefinition.class ) );
+			type.setDocumentation( documentation );
+			return type;
+		}
+		case INTERFACE_DEFINITION: {
+			final InterfaceDefinition iface = register( id, new InterfaceDefinition( context, readString() ) );
+			readInterfaceDefinition( iface );
+			return iface;
+		}
+		case INTERFACE_EXTENDER_DEFINITION: {
+			final InterfaceExtenderDefinition extender = register( id, new InterfaceExtenderDefinition( context, readString() ) );
+			readInterfaceDefinition( extender );
+			extender.setDefaultOneWayOperation( readNode( OneWayOperationDeclaration.class ) );
+			extender.setDefaultRequestResponseOperation( readNode( RequestResponseOperationDeclaration.class ) );
+			return extender;
+		}
+		case DOCUMENTATION_COMMENT:
+			return new DocumentationComment( context, readString() );
+		case FRESH_VALUE_EXPRESSION:
+			return new FreshValueExpressionNode( context );
+		case VOID_EXPRESSION:
+			return new VoidExpressionNode( context );
+		case COURIER_DEFINITION: {
+			final String inputPortName = readString();
+			return new CourierDefinitionNode( context, inputPortName, readNode() );
+		}
+		case COURIER_CHOICE:
+			return readCourierChoice( register( id, new CourierChoiceStatement( context ) ) );
+		case NOTIFICATION_FORWARD: {
+			final String outputPortName = readString();
+			return new NotificationForwardStatement( context, outputPortName, readNode( VariablePathNode.class ) );
+		}
+		case SOLICIT_RESPONSE_FORWARD: {
+			final String outputPortName = readString();
+			final VariablePathNode outputVariablePath = readNode( VariablePathNode.class );
+			return new SolicitResponseForwardStatement( context, outputPortName, outputVariablePath, readNode( VariablePathNode.class ) );
+		}
+		case INLINE_TREE_EXPRESSION:
+			return readInlineTree( context );
+		case PROVIDE_UNTIL: {
+			final OLSyntaxNode provide = readNode();
+			return new ProvideUntilStatement( context, provide, readNode() );
+		}
+		default:
+			throw new IOException( "Unexpected node tag in program image: " + tag );
+		}
+	}
+
+	private void readLinkedType( TypeDefinitionLink link )
+		throws IOException
+	{
+		final int start = position;
+		if ( TAGS[ readByte() ] == ProgramImageTag.REFERENCE ) {
+			final int target = readVarInt();
+			if ( nodes.get( target ) == null ) {
+				pendingLinks.add( new Pair<>( link, target ) );
+				return;
+			}
+		}
+		position = start;
+		link.setLinkedType( readNode( TypeDefinition.class ) );
+	}
+
+	private CourierChoiceStatement readCourierChoice( CourierChoiceStatement n )
+		throws IOException
+	{
+		int size = readVarInt();
+		for( int i = 0; i < size; i++ ) {
+			final InterfaceDefinition iface = readNode( InterfaceDefinition.class );
+			final VariablePathNode inputVariablePath = readNode( VariablePathNode.class );
+			n.interfaceOneWayBranches().add(
+				new CourierChoiceStatement.InterfaceOneWayBranch( iface, inputVariablePath, readNode() )
+			);
+		}
+		size = readVarInt();
+		for( int i = 0; i < size; i++ ) {
+			final InterfaceDefinition iface = readNode( InterfaceDefinition.class );
+			final VariablePathNode inputVariablePath = readNode( VariablePathNode.class );
+			final VariablePathNode outputVariablePath = readNode( VariablePathNode.class );
+			n.interfaceRequestResponseBranches().add(
+				new CourierChoiceStatement.InterfaceRequestResponseBranch( iface, inputVariablePath, outputVariablePath, readNode() )
+			);
+		}
+		size = readVarInt();
+		for( int i = 0; i < size; i++ ) {
+			final String operation = readString();
+			final VariablePathNode inputVariablePath = readNode( VariablePathNode.class );
+			n.operationOneWayBranches().add(
+				new CourierChoiceStatement.OperationOneWayBranch( operation, inputVariablePath, readNode() )
+			);
+		}
+		size = readVarInt();
+		for( int i = 0; i < size; i++ ) {
+			final String operation = readString();
+			final VariablePathNode inputVariablePath = readNode( VariablePathNode.class );
+			final VariablePathNode outputVariablePath = readNode( VariablePathNode.class );
+			n.operationRequestResponseBranches().add(
+				new CourierChoiceStatement.OperationRequestResponseBranch( operation, inputVariablePath, outputVariablePath, readNode() )
+			);
+		}
+		return n;
+	}
+
+	private InlineTreeExpressionNode readInlineTree( ParsingContext context )
+		throws IOException
+	{
+		final OLSyntaxNode rootExpression = readNode();
+		final InlineTreeExpressionNode.Operation[] operations = new InlineTreeExpressionNode.Operation[ readCount() ];
+		for( int i = 0; i < operations.length; i++ ) {
+			final int kind = readByte();
+			final VariablePathNode path = readNode( VariablePathNode.class );
+			switch( kind ) {
+			case ProgramImageWriter.INLINE_TREE_ASSIGNMENT:
+				operations[ i ] = new InlineTreeExpressionNode.AssignmentOperation( path, readNode() );
+				break;
+			case ProgramImageWriter.INLINE_TREE_DEEP_COPY:
+				operations[ i ] = new InlineTreeExpressionNode.DeepCopyOperation( path, readNode() );
+				break;
+			case ProgramImageWriter.INLINE_TREE_POINTS_TO:
+				operations[ i ] = new InlineTreeExpressionNode.PointsToOperation( path, readNode( VariablePathNode.class ) );
+				break;
+			default:
+				throw new IOException( "Unexpected inline tree operation in program image: " + kind );
+			}
+		}
+		return new InlineTreeExpressionNode( context, rootExpression, operations );
+	}
+}
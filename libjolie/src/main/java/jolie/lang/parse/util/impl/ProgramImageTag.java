@@ -0,0 +1,112 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.lang.parse.util.impl;
+
+/**
+ * The tags identifying the kind of each node in a program image.
+ * Tags are encoded by ordinal, so adding, removing or reordering them
+ * requires increasing {@link ProgramImageWriter#FORMAT_VERSION}.
+ */
+enum ProgramImageTag
+{
+	NULL,
+	REFERENCE,
+	UNDEFINED_TYPE,
+	PROGRAM,
+	ONE_WAY_OPERATION_DECLARATION,
+	REQUEST_RESPONSE_OPERATION_DECLARATION,
+	DEFINITION,
+	PARALLEL,
+	SEQUENCE,
+	ND_CHOICE,
+	ONE_WAY_OPERATION,
+	REQUEST_RESPONSE_OPERATION,
+	NOTIFICATION_OPERATION,
+	SOLICIT_RESPONSE_OPERATION,
+	LINK_IN,
+	LINK_OUT,
+	ASSIGN,
+	ADD_ASSIGN,
+	SUBTRACT_ASSIGN,
+	MULTIPLY_ASSIGN,
+	DIVIDE_ASSIGN,
+	IF,
+	DEFINITION_CALL,
+	WHILE,
+	OR_CONDITION,
+	AND_CONDITION,
+	NOT_EXPRESSION,
+	COMPARE_CONDITION,
+	CONSTANT_INTEGER,
+	CONSTANT_DOUBLE,
+	CONSTANT_BOOL,
+	CONSTANT_LONG,
+	CONSTANT_STRING,
+	PRODUCT_EXPRESSION,
+	SUM_EXPRESSION,
+	VARIABLE_EXPRESSION,
+	NULL_PROCESS,
+	SCOPE,
+	INSTALL,
+	COMPENSATE,
+	THROW,
+	EXIT,
+	EXECUTION_INFO,
+	CORRELATION_SET_INFO,
+	INPUT_PORT_INFO,
+	OUTPUT_PORT_INFO,
+	POINTER,
+	DEEP_COPY,
+	RUN,
+	UNDEF,
+	VALUE_VECTOR_SIZE_EXPRESSION,
+	PRE_INCREMENT,
+	POST_INCREMENT,
+	PRE_DECREMENT,
+	POST_DECREMENT,
+	FOR,
+	FOR_EACH_SUB_NODE,
+	FOR_EACH_ARRAY_ITEM,
+	SPAWN,
+	IS_TYPE_EXPRESSION,
+	INSTANCE_OF_EXPRESSION,
+	TYPE_CAST_EXPRESSION,
+	SYNCHRONIZED,
+	CURRENT_HANDLER,
+	EMBEDDED_SERVICE,
+	INSTALL_FIXED_VARIABLE_EXPRESSION,
+	VARIABLE_PATH,
+	TYPE_INLINE_DEFINITION,
+	TYPE_DEFINITION_LINK,
+	TYPE_CHOICE_DEFINITION,
+	INTERFACE_DEFINITION,
+	INTERFACE_EXTENDER_DEFINITION,
+	DOCUMENTATION_COMMENT,
+	FRESH_VALUE_EXPRESSION,
+	VOID_EXPRESSION,
+	COURIER_DEFINITION,
+	COURIER_CHOICE,
+	NOTIFICATION_FORWARD,
+	SOLICIT_RESPONSE_FORWARD,
+	INLINE_TREE_EXPRESSION,
+	PROVIDE_UNTIL
+}
@@ -0,0 +1,1004 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package jolie.lang.parse.util.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import jolie.lang.Constants;
+import jolie.lang.parse.CorrelationFunctionInfo;
+import jolie.lang.parse.CorrelationFunctionInfo.CorrelationPairInfo;
+import jolie.lang.parse.OLVisitor;
+import jolie.lang.parse.ast.*;
+import jolie.lang.parse.ast.courier.*;
+import jolie.lang.parse.ast.expression.*;
+import jolie.lang.parse.ast.types.TypeChoiceDefinition;
+import jolie.lang.parse.ast.types.TypeDefinition;
+import jolie.lang.parse.ast.types.TypeDefinitionLink;
+import jolie.lang.parse.ast.types.TypeDefinitionUndefined;
+import jolie.lang.parse.ast.types.TypeInlineDefinition;
+import jolie.lang.parse.context.ParsingContext;
+import jolie.lang.parse.util.ProgramImage;
+import jolie.util.Pair;
+import jolie.util.Range;
+
+/**
+ * Encodes a {@link ProgramImage} in its binary form.
+ *
+ * Every node is encoded as its {@link ProgramImageTag}, its parsing context and
+ * then its fields, in the order in which {@link ProgramImageReader} reads them back.
+ * A node that is reachable from more than one place, e.g., a type definition
+ * referred to by many operations, is encoded only the first time it is met;
+ * later occurrences refer to it by the order in which it was met.
+ * Strings are interned in the same way.
+ *
+ * A writer can be used to encode a single image.
+ */
+public class ProgramImageWriter implements OLVisitor
+{
+	public static final int MAGIC = 0x4a4f4c49; // "JOLI"
+	public static final int FORMAT_VERSION = 2;
+
+	static final int INLINE_TREE_ASSIGNMENT = 0;
+	static final int INLINE_TREE_DEEP_COPY = 1;
+	static final int INLINE_TREE_POINTS_TO = 2;
+
+	private final ByteArrayOutputStream out = new ByteArrayOutputStream( 16 * 1024 );
+	private final Map< OLSyntaxNode, Integer > nodeIds = new IdentityHashMap<>();
+	private final Map< String, Integer > stringIds = new HashMap<>();
+
+	/**
+	 * Encodes the passed image.
+	 * @param image the image to encode
+	 * @return the binary form of the image
+	 */
+	public byte[] write( ProgramImage image )
+	{
+		writeInt( MAGIC );
+		writeVarInt( FORMAT_VERSION );
+		writeNode( image.program() );
+		writeCorrelationFunctionInfo( image.correlationFunctionInfo() );
+		writeVarInt( image.isConstantMap().size() );
+		for( Map.Entry< String, Boolean > entry : image.isConstantMap().entrySet() ) {
+			writeString( entry.getKey() );
+			writeBoolean( entry.getValue() );
+		}
+		writeBoolean( image.sessionsCanBeRecycled() );
+		writeVarInt( image.warnings().size() );
+		for( String warning : image.warnings() ) {
+			writeString( warning );
+		}
+		return out.toByteArray();
+	}
+
+	private void writeCorrelationFunctionInfo( CorrelationFunctionInfo info )
+	{
+		writeNodes( info.correlationSets() );
+
+		writeVarInt( info.operationCorrelationSetMap().size() );
+		for( Map.Entry< String, CorrelationSetInfo > entry : info.operationCorrelationSetMap().entrySet() ) {
+			writeString( entry.getKey() );
+			writeNode( entry.getValue() );
+		}
+
+		final Collection< CorrelationSetInfo > csets = info.correlationSetOperations().keySet();
+		writeVarInt( csets.size() );
+		for( CorrelationSetInfo cset : csets ) {
+			writeNode( cset );
+			final Collection< String > operations = info.correlationSetOperations().get( cset );
+			writeVarInt( operations.size() );
+			for( String operation : operations ) {
+				writeString( operation );
+			}
+		}
+
+		final Collection< String > correlatingOperations = info.correlationPairs().keySet();
+		writeVarInt( correlatingOperations.size() );
+		for( String operation : correlatingOperations ) {
+			writeString( operation );
+			final Collection< CorrelationPairInfo > pairs = info.getOperationCorrelationPairs( operation );
+			writeVarInt( pairs.size() );
+			for( CorrelationPairInfo pair : pairs ) {
+				writeNode( pair.sessionPath() );
+				writeNode( pair.messagePath() );
+			}
+		}
+	}
+
+	private void writeByte( int b )
+	{
+		out.write( b );
+	}
+
+	private void writeBoolean( boolean b )
+	{
+		out.write( b ? 1 : 0 );
+	}
+
+	private void writeInt( int i )
+	{
+		out.write( i >>> 24 );
+		out.write( i >>> 16 );
+		out.write( i >>> 8 );
+		out.write( i );
+	}
+
+	private void writeVarInt( int i )
+	{
+		while( (i & ~0x7F) != 0 ) {
+			out.write( (i & 0x7F) | 0x80 );
+			i >>>= 7;
+		}
+		out.write( i );
+	}
+
+	private void writeVarLong( long l )
+	{
+		l = (l << 1) ^ (l >> 63); // zig-zag, so that small negative numbers stay small
+		while( (l & ~0x7FL) != 0 ) {
+			out.write( (int) ((l & 0x7F) | 0x80) );
+			l >>>= 7;
+		}
+		out.write( (int) l );
+	}
+
+	private void writeDouble( double d )
+	{
+		final long bits = Double.doubleToRawLongBits( d );
+		writeInt( (int) (bits >>> 32) );
+		writeInt( (int) bits );
+	}
+
+	private void writeString( String s )
+	{
+		if ( s == null ) {
+			writeVarInt( 0 );
+			return;
+		}
+		final Integer id = stringIds.get( s );
+		if ( id == null ) {
+			stringIds.put( s, stringIds.size() );
+			final byte[] bytes = s.getBytes( StandardCharsets.UTF_8 );
+			writeVarInt( 1 );
+			writeVarInt( bytes.length );
+			out.write( bytes, 0, bytes.length );
+		} else {
+			writeVarInt( id + 2 );
+		}
+	}
+
+	private void writeStrings( String[] strings )
+	{
+		if ( strings == null ) {
+			writeVarInt( 0 );
+		} else {
+			writeVarInt( strings.length + 1 );
+			for( String s : strings ) {
+				writeString( s );
+			}
+		}
+	}
+
+	private void writeURI( URI uri )
+	{
+		writeString( uri == null ? null : uri.toString() );
+	}
+
+	private void writeEnum( Enum< ? > e )
+	{
+		writeVarInt( e == null ? 0 : e.ordinal() + 1 );
+	}
+
+	private void writeRange( Range range )
+	{
+		writeVarInt( range.min() );
+		writeVarInt( range.max() );
+	}
+
+	private void writeContext( ParsingContext context )
+	{
+		writeURI( context.source() );
+		writeVarLong( context.line() );
+	}
+
+	private void writeTag( ProgramImageTag tag )
+	{
+		writeByte( tag.ordinal() );
+	}
+
+	private void writeHeader( ProgramImageTag tag, OLSyntaxNode n )
+	{
+		writeTag( tag );
+		writeContext( n.context() );
+	}
+
+	private void writeNode( OLSyntaxNode node )
+	{
+		if ( node == null ) {
+			writeTag( ProgramImageTag.NULL );
+		} else if ( node == TypeDefinitionUndefined.getInstance() ) {
+			writeTag( ProgramImageTag.UNDEFINED_TYPE );
+		} else {
+			final Integer id = nodeIds.get( node );
+			if ( id == null ) {
+				nodeIds.put( node, nodeIds.size() );
+				node.accept( this );
+			} else {
+				writeTag( ProgramImageTag.REFERENCE );
+				writeVarInt( id );
+			}
+		}
+	}
+
+	private void writeNodes( List< ? extends OLSyntaxNode > nodes )
+	{
+		writeVarInt( nodes.size() );
+		for( OLSyntaxNode node : nodes ) {
+			writeNode( node );
+		}
+	}
+
+	private void writeNodePairs( List< Pair< OLSyntaxNode, OLSyntaxNode > > pairs )
+	{
+		writeVarInt( pairs.size() );
+		for( Pair< OLSyntaxNode, OLSyntaxNode > pair : pairs ) {
+			writeNode( pair.key() );
+			writeNode( pair.value() );
+		}
+	}
+
+	private void writeOperands( List< Pair< Constants.OperandType, OLSyntaxNode > > operands )
+	{
+		writeVarInt( operands.size() );
+		for( Pair< Constants.OperandType, OLSyntaxNode > operand : operands ) {
+			writeEnum( operand.key() );
+			writeNode( operand.value() );
+		}
+	}
+
+	private void writeOperations( Map< String, OperationDeclaration > operations )
+	{
+		writeVarInt( operations.size() );
+		for( Map.Entry< String, OperationDeclaration > entry : operations.entrySet() ) {
+			writeString( entry.getKey() );
+			writeNode( entry.getValue() );
+		}
+	}
+
+	private void writeInstallFunction( InstallFunctionNode function )
+	{
+		if ( function == null ) {
+			writeVarInt( 0 );
+		} else {
+			writeVarInt( function.pairs().length + 1 );
+			for( Pair< String, OLSyntaxNode > pair : function.pairs() ) {
+				writeString( pair.key() );
+				writeNode( pair.value() );
+			}
+		}
+	}
+
+	private void writePortInfo( PortInfo n )
+	{
+		writeString( n.getDocumentation() );
+		writeNodes( n.getInterfaceList() );
+		writeOperations( n.operationsMap() );
+	}
+
+	private void writeTypeDefinition( TypeDefinition n )
+	{
+		writeString( n.id() );
+		writeRange( n.cardinality() );
+		writeString( n.getDocumentation() );
+	}
+
+	private void writeVariablePathAssignment( ProgramImageTag tag, OLSyntaxNode n, VariablePathNode path, OLSyntaxNode expression )
+	{
+		writeHeader( tag, n );
+		writeNode( path );
+		writeNode( expression );
+	}
+
+	@Override
+	public void visit( Program n )
+	{
+		writeHeader( ProgramImageTag.PROGRAM, n );
+		writeNodes( n.children() );
+	}
+
+	@Override
+	public void visit( OneWayOperationDeclaration n )
+	{
+		writeHeader( ProgramImageTag.ONE_WAY_OPERATION_DECLARATION, n );
+		writeString( n.id() );
+		writeString( n.getDocumentation() );
+		writeNode( n.requestType() );
+	}
+
+	@Override
+	public void visit( RequestResponseOperationDeclaration n )
+	{
+		writeHeader( ProgramImageTag.REQUEST_RESPONSE_OPERATION_DECLARATION, n );
+		writeString( n.id() );
+		writeString( n.getDocumentation() );
+		writeNode( n.requestType() );
+		writeNode( n.responseType() );
+		writeVarInt( n.faults().size() );
+		for( Map.Entry< String, TypeDefinition > fault : n.faults().entrySet() ) {
+			writeString( fault.getKey() );
+			writeNode( fault.getValue() );
+		}
+	}
+
+	@Override
+	public void visit( DefinitionNode n )
+	{
+		writeHeader( ProgramImageTag.DEFINITION, n );
+		writeString( n.id() );
+		writeNode( n.body() );
+	}
+
+	@Override
+	public void visit( ParallelStatement n )
+	{
+		writeHeader( ProgramImageTag.PARALLEL, n );
+		writeNodes( n.children() );
+	}
+
+	@Override
+	public void visit( SequenceStatement n )
+	{
+		writeHeader( ProgramImageTag.SEQUENCE, n );
+		writeNodes( n.children() );
+	}
+
+	@Override
+	public void visit( NDChoiceStatement n )
+	{
+		writeHeader( ProgramImageTag.ND_CHOICE, n );
+		writeNodePairs( n.children() );
+	}
+
+	@Override
+	public void visit( OneWayOperationStatement n )
+	{
+		writeHeader( ProgramImageTag.ONE_WAY_OPERATION, n );
+		writeString( n.id() );
+		writeNode( n.inputVarPath() );
+	}
+
+	@Override
+	public void visit( RequestResponseOperationStatement n )
+	{
+		writeHeader( ProgramImageTag.REQUEST_RESPONSE_OPERATION, n );
+		writeString( n.id() );
+		writeNode( n.inputVarPath() );
+		writeNode( n.outputExpression() );
+		writeNode( n.process() );
+	}
+
+	@Override
+	public void visit( NotificationOperationStatement n )
+	{
+		writeHeader( ProgramImageTag.NOTIFICATION_OPERATION, n );
+		writeString( n.id() );
+		writeString( n.outputPortId() );
+		writeNode( n.outputExpression() );
+	}
+
+	@Override
+	public void visit( SolicitResponseOperationStatement n )
+	{
+		writeHeader( ProgramImageTag.SOLICIT_RESPONSE_OPERATION, n );
+		writeString( n.id() );
+		writeString( n.outputPortId() );
+		writeNode( n.outputExpression() );
+		writeNode( n.inputVarPath() );
+		writeInstallFunction( n.handlersFunction() );
+	}
+
+	@Override
+	public void visit( LinkInStatement n )
+	{
+		writeHeader( ProgramImageTag.LINK_IN, n );
+		writeString( n.id() );
+	}
+
+	@Override
+	public void visit( LinkOutStatement n )
+	{
+		writeHeader( ProgramImageTag.LINK_OUT, n );
+		writeString( n.id() );
+	}
+
+	@Override
+	public void visit( AssignStatement n )
+	{
+		writeVariablePathAssignment( ProgramImageTag.ASSIGN, n, n.variablePath(), n.expression() );
+	}
+
+	@Override
+	public void visit( AddAssignStatement n )
+	{
+		writeVariablePathAssignment( ProgramImageTag.ADD_ASSIGN, n, n.variablePath(), n.expression() );
+	}
+
+	@Override
+	public void visit( SubtractAssignStatement n )
+	{
+		writeVariablePathAssignment( ProgramImageTag.SUBTRACT_ASSIGN, n, n.variablePath(), n.expression() );
+	}
+
+	@Override
+	public void visit( MultiplyAssignStatement n )
+	{
+		writeVariablePathAssignment( ProgramImageTag.MULTIPLY_ASSIGN, n, n.variablePath(), n.expression() );
+	}
+
+	@Override
+	public void visit( DivideAssignStatement n )
+	{
+		writeVariablePathAssignment( ProgramImageTag.DIVIDE_ASSIGN, n, n.variablePath(), n.expression() );
+	}
+
+	@Override
+	public void visit( IfStatement n )
+	{
+		writeHeader( ProgramImageTag.IF, n );
+		writeNodePairs( n.children() );
+		writeNode( n.elseProcess() );
+	}
+
+	@Override
+	public void visit( DefinitionCallStatement n )
+	{
+		writeHeader( ProgramImageTag.DEFINITION_CALL, n );
+		writeString( n.id() );
+	}
+
+	@Override
+	public void visit( WhileStatement n )
+	{
+		writeHeader( ProgramImageTag.WHILE, n );
+		writeNode( n.condition() );
+		writeNode( n.body() );
+	}
+
+	@Override
+	public void visit( OrConditionNode n )
+	{
+		writeHeader( ProgramImageTag.OR_CONDITION, n );
+		writeNodes( n.children() );
+	}
+
+	@Override
+	public void visit( AndConditionNode n )
+	{
+		writeHeader( ProgramImageTag.AND_CONDITION, n );
+		writeNodes( n.children() );
+	}
+
+	@Override
+	public void visit( NotExpressionNode n )
+	{
+		writeHeader( ProgramImageTag.NOT_EXPRESSION, n );
+		writeNode( n.expression() );
+	}
+
+	@Override
+	public void visit( CompareConditionNode n )
+	{
+		writeHeader( ProgramImageTag.COMPARE_CONDITION, n );
+		writeNode( n.leftExpression() );
+		writeNode( n.rightExpression() );
+		writeEnum( n.opType() );
+	}
+
+	@Override
+	public void visit( ConstantIntegerExpression n )
+	{
+		writeHeader( ProgramImageTag.CONSTANT_INTEGER, n );
+		writeVarLong( n.value() );
+	}
+
+	@Override
+	public void visit( ConstantDoubleExpression n )
+	{
+		writeHeader( ProgramImageTag.CONSTANT_DOUBLE, n );
+		writeDouble( n.value() );
+	}
+
+	@Override
+	public void visit( ConstantBoolExpression n )
+	{
+		writeHeader( ProgramImageTag.CONSTANT_BOOL, n );
+		writeBoolean( n.value() );
+	}
+
+	@Override
+	public void visit( ConstantLongExpression n )
+	{
+		writeHeader( ProgramImageTag.CONSTANT_LONG, n );
+		writeVarLong( n.value() );
+	}
+
+	@Override
+	public void visit( ConstantStringExpression n )
+	{
+		writeHeader( ProgramImageTag.CONSTANT_STRING, n );
+		writeString( n.value() );
+	}
+
+	@Override
+	public void visit( ProductExpressionNode n )
+	{
+		writeHeader( ProgramImageTag.PRODUCT_EXPRESSION, n );
+		writeOperands( n.operands() );
+	}
+
+	@Override
+	public void visit( SumExpressionNode n )
+	{
+		writeHeader( ProgramImageTag.SUM_EXPRESSION, n );
+		writeOperands( n.operands() );
+	}
+
+	@Override
+	public void visit( VariableExpressionNode n )
+	{
+		writeHeader( ProgramImageTag.VARIABLE_EXPRESSION, n );
+		writeNode( n.variablePath() );
+	}
+
+	@Override
+	public void visit( NullProcessStatement n )
+	{
+		writeHeader( ProgramImageTag.NULL_PROCESS, n );
+	}
+
+	@Override
+	public void visit( Scope n )
+	{
+		writeHeader( ProgramImageTag.SCOPE, n );
+		writeString( n.id() );
+		writeNode( n.body() );
+	}
+
+	@Override
+	public void visit( InstallStatement n )
+	{
+		writeHeader( ProgramImageTag.INSTALL, n );
+		writeInstallFunction( n.handlersFunction() );
+	}
+
+	@Override
+	public void visit( CompensateStatement n )
+	{
+		writeHeader( ProgramImageTag.COMPENSATE, n );
+		writeString( n.id() );
+	}
+
+	@Override
+	public void visit( ThrowStatement n )
+	{
+		writeHeader( ProgramImageTag.THROW, n );
+		writeString( n.id() );
+		writeNode( n.expression() );
+	}
+
+	@Override
+	public void visit( ExitStatement n )
+	{
+		writeHeader( ProgramImageTag.EXIT, n );
+	}
+
+	@Override
+	public void visit( ExecutionInfo n )
+	{
+		writeHeader( ProgramImageTag.EXECUTION_INFO, n );
+		writeEnum( n.mode() );
+	}
+
+	@Override
+	public void visit( CorrelationSetInfo n )
+	{
+		writeHeader( ProgramImageTag.CORRELATION_SET_INFO, n );
+		writeVarInt( n.variables().size() );
+		for( CorrelationSetInfo.CorrelationVariableInfo variable : n.variables() ) {
+			writeNode( variable.correlationVariablePath() );
+			writeVarInt( variable.aliases().size() );
+			for( CorrelationSetInfo.CorrelationAliasInfo alias : variable.aliases() ) {
+				writeString( alias.guardName() );
+				writeNode( alias.variablePath() );
+			}
+		}
+	}
+
+	@Override
+	public void visit( InputPortInfo n )
+	{
+		writeHeader( ProgramImageTag.INPUT_PORT_INFO, n );
+		writeString( n.id() );
+		writeURI( n.location() );
+		writeString( n.protocolId() );
+		writeNode( n.protocolConfiguration() );
+		writeVarInt( n.aggregationList().length );
+		for( InputPortInfo.AggregationItemInfo item : n.aggregationList() ) {
+			writeStrings( item.outputPortList() );
+			writeNode( item.interfaceExtender() );
+		}
+		writeVarInt( n.redirectionMap().size() );
+		for( Map.Entry< String, String > entry : n.redirectionMap().entrySet() ) {
+			writeString( entry.getKey() );
+			writeString( entry.getValue() );
+		}
+		writePortInfo( n );
+	}
+
+	@Override
+	public void visit( OutputPortInfo n )
+	{
+		writeHeader( ProgramImageTag.OUTPUT_PORT_INFO, n );
+		writeString( n.id() );
+		writeURI( n.location() );
+		writeString( n.protocolId() );
+		writeNode( n.protocolConfiguration() );
+		writePortInfo( n );
+	}
+
+	@Override
+	public void visit( PointerStatement n )
+	{
+		writeHeader( ProgramImageTag.POINTER, n );
+		writeNode( n.leftPath() );
+		writeNode( n.rightPath() );
+	}
+
+	@Override
+	public void visit( DeepCopyStatement n )
+	{
+		writeHeader( ProgramImageTag.DEEP_COPY, n );
+		writeNode( n.leftPath() );
+		writeNode( n.rightExpression() );
+		writeBoolean( n.copyLinks() );
+	}
+
+	@Override
+	public void visit( RunStatement n )
+	{
+		writeHeader( ProgramImageTag.RUN, n );
+		writeNode( n.expression() );
+	}
+
+	@Override
+	public void visit( UndefStatement n )
+	{
+		writeHeader( ProgramImageTag.UNDEF, n );
+		writeNode( n.variablePath() );
+	}
+
+	@Override
+	public void visit( ValueVectorSizeExpressionNode n )
+	{
+		writeHeader( ProgramImageTag.VALUE_VECTOR_SIZE_EXPRESSION, n );
+		writeNode( n.variablePath() );
+	}
+
+	@Override
+	public void visit( PreIncrementStatement n )
+	{
+		writeHeader( ProgramImageTag.PRE_INCREMENT, n );
+		writeNode( n.variablePath() );
+	}
+
+	@Override
+	public void visit( PostIncrementStatement n )
+	{
+		writeHeader( ProgramImageTag.POST_INCREMENT, n );
+		writeNode( n.variablePath() );
+	}
+
+	@Override
+	public void visit( PreDecrementStatement n )
+	{
+		writeHeader( ProgramImageTag.PRE_DECREMENT, n );
+		writeNode( n.variablePath() );
+	}
+
+	@Override
+	public void visit( PostDecrementStatement n )
+	{
+		writeHeader( ProgramImageTag.POST_DECREMENT, n );
+		writeNode( n.variablePath() );
+	}
+
+	@Override
+	public void visit( ForStatement n )
+	{
+		writeHeader( ProgramImageTag.FOR, n );
+		writeNode( n.init() );
+		writeNode( n.condition() );
+		writeNode( n.post() );
+		writeNode( n.body() );
+	}
+
+	@Override
+	public void visit( ForEachSubNodeStatement n )
+	{
+		writeHeader( ProgramImageTag.FOR_EACH_SUB_NODE, n );
+		writeNode( n.keyPath() );
+		writeNode( n.targetPath() );
+		writeNode( n.body() );
+	}
+
+	@Override
+	public void visit( ForEachArrayItemStatement n )
+	{
+		writeHeader( ProgramImageTag.FOR_EACH_ARRAY_ITEM, n );
+		writeNode( n.keyPath() );
+		writeNode( n.targetPath() );
+		writeNode( n.body() );
+	}
+
+	@Override
+	public void visit( SpawnStatement n )
+	{
+		writeHeader( ProgramImageTag.SPAWN, n );
+		writeNode( n.indexVariablePath() );
+		writeNode( n.upperBoundExpression() );
+		writeNode( n.inVariablePath() );
+		writeNode( n.body() );
+	}
+
+	@Override
+	public void visit( IsTypeExpressionNode n )
+	{
+		writeHeader( ProgramImageTag.IS_TYPE_EXPRESSION, n );
+		writeEnum( n.type() );
+		writeNode( n.variablePath() );
+	}
+
+	@Override
+	public void visit( InstanceOfExpressionNode n )
+	{
+		writeHeader( ProgramImageTag.INSTANCE_OF_EXPRESSION, n );
+		writeNode( n.expression() );
+		writeNode( n.type() );
+	}
+
+	@Override
+	public void visit( TypeCastExpressionNode n )
+	{
+		writeHeader( ProgramImageTag.TYPE_CAST_EXPRESSION, n );
+		writeEnum( n.type() );
+		writeNode( n.expression() );
+	}
+
+	@Override
+	public void visit( SynchronizedStatement n )
+	{
+		writeHeader( ProgramImageTag.SYNCHRONIZED, n );
+		writeString( n.id() );
+		writeNode( n.body() );
+	}
+
+	@Override
+	public void visit( CurrentHandlerStatement n )
+	{
+		writeHeader( ProgramImageTag.CURRENT_HANDLER, n );
+	}
+
+	@Override
+	public void visit( EmbeddedServiceNode n )
+	{
+		writeHeader( ProgramImageTag.EMBEDDED_SERVICE, n );
+		writeEnum( n.type() );
+		writeString( n.servicePath() );
+		writeString( n.portId() );
+		writeNode( n.program() );
+	}
+
+	@Override
+	public void visit( InstallFixedVariableExpressionNode n )
+	{
+		writeHeader( ProgramImageTag.INSTALL_FIXED_VARIABLE_EXPRESSION, n );
+		writeNode( n.variablePath() );
+	}
+
+	@Override
+	public void visit( VariablePathNode n )
+	{
+		writeHeader( ProgramImageTag.VARIABLE_PATH, n );
+		writeEnum( n.type() );
+		writeNodePairs( n.path() );
+	}
+
+	@Override
+	public void visit( TypeInlineDefinition n )
+	{
+		writeHeader( ProgramImageTag.TYPE_INLINE_DEFINITION, n );
+		writeTypeDefinition( n );
+		writeEnum( n.nativeType() );
+		writeBoolean( n.untypedSubTypes() );
+		if ( n.hasSubTypes() ) {
+			writeVarInt( n.subTypes().size() );
+			for( Map.Entry< String, TypeDefinition > entry : n.subTypes() ) {
+				writeNode( entry.getValue() );
+			}
+		} else {
+			writeVarInt( 0 );
+		}
+	}
+
+	@Override
+	public void visit( TypeDefinitionLink n )
+	{
+		writeHeader( ProgramImageTag.TYPE_DEFINITION_LINK, n );
+		writeTypeDefinition( n );
+		writeString( n.linkedTypeName() );
+		writeNode( n.linkedType() );
+	}
+
+	@Override
+	public void visit( TypeChoiceDefinition n )
+	{
+		writeHeader( ProgramImageTag.TYPE_CHOICE_DEFINITION, n );
+		writeTypeDefinition( n );
+		writeNode( n.left() );
+		writeNode( n.right() );
+	}
+
+	@Override
+	public void visit( InterfaceDefinition n )
+	{
+		writeHeader( ProgramImageTag.INTERFACE_DEFINITION, n );
+		writeString( n.name() );
+		writeString( n.getDocumentation() );
+		writeOperations( n.operationsMap() );
+	}
+
+	@Override
+	public void visit( InterfaceExtenderDefinition n )
+	{
+		writeHeader( ProgramImageTag.INTERFACE_EXTENDER_DEFINITION, n );
+		writeString( n.name() );
+		writeString( n.getDocumentation() );
+		writeOperations( n.operationsMap() );
+		writeNode( n.defaultOneWayOperation() );
+		writeNode( n.defaultRequestResponseOperation() );
+	}
+
+	@Override
+	public void visit( DocumentationComment n )
+	{
+		writeHeader( ProgramImageTag.DOCUMENTATION_COMMENT, n );
+		writeString( n.comment() );
+	}
+
+	@Override
+	public void visit( FreshValueExpressionNode n )
+	{
+		writeHeader( ProgramImageTag.FRESH_VALUE_EXPRESSION, n );
+	}
+
+	@Override
+	public void visit( VoidExpressionNode n )
+	{
+		writeHeader( ProgramImageTag.VOID_EXPRESSION, n );
+	}
+
+	@Override
+	public void visit( CourierDefinitionNode n )
+	{
+		writeHeader( ProgramImageTag.COURIER_DEFINITION, n );
+		writeString( n.inputPortName() );
+		writeNode( n.body() );
+	}
+
+	@Override
+	public void visit( CourierChoiceStatement n )
+	{
+		writeHeader( ProgramImageTag.COURIER_CHOICE, n );
+		writeVarInt( n.interfaceOneWayBranches().size() );
+		for( CourierChoiceStatement.InterfaceOneWayBranch branch : n.interfaceOneWayBranches() ) {
+			writeNode( branch.interfaceDefinition );
+			writeNode( branch.inputVariablePath );
+			writeNode( branch.body );
+		}
+		writeVarInt( n.interfaceRequestResponseBranches().size() );
+		for( CourierChoiceStatement.InterfaceRequestResponseBranch branch : n.interfaceRequestResponseBranches() ) {
+			writeNode( branch.interfaceDefinition );
+			writeNode( branch.inputVariablePath );
+			writeNode( branch.outputVariablePath );
+			writeNode( branch.body );
+		}
+		writeVarInt( n.operationOneWayBranches().size() );
+		for( CourierChoiceStatement.OperationOneWayBranch branch : n.operationOneWayBranches() ) {
+			writeString( branch.operation );
+			writeNode( branch.inputVariablePath );
+			writeNode( branch.body );
+		}
+		writeVarInt( n.operationRequestResponseBranches().size() );
+		for( CourierChoiceStatement.OperationRequestResponseBranch branch : n.operationRequestResponseBranches() ) {
+			writeString( branch.operation );
+			writeNode( branch.inputVariablePath );
+			writeNode( branch.outputVariablePath );
+			writeNode( branch.body );
+		}
+	}
+
+	@Override
+	public void visit( NotificationForwardStatement n )
+	{
+		writeHeader( ProgramImageTag.NOTIFICATION_FORWARD, n );
+		writeString( n.outputPortName() );
+		writeNode( n.outputVariablePath() );
+	}
+
+	@Override
+	public void visit( SolicitResponseForwardStatement n )
+	{
+		writeHeader( ProgramImageTag.SOLICIT_RESPONSE_FORWARD, n );
+		writeString( n.outputPortName() );
+		writeNode( n.outputVariablePath() );
+		writeNode( n.inputVariablePath() );
+	}
+
+	@Override
+	public void visit( InlineTreeExpressionNode n )
+	{
+		writeHeader( ProgramImageTag.INLINE_TREE_EXPRESSION, n );
+		writeNode( n.rootExpression() );
+		writeVarInt( n.operations().length );
+		for( InlineTreeExpressionNode.Operation operation : n.operations() ) {
+			if ( operation instanceof InlineTreeExpressionNode.AssignmentOperation ) {
+				final InlineTreeExpressionNode.AssignmentOperation op = (InlineTreeExpressionNode.AssignmentOperation) operation;
+				writeByte( INLINE_TREE_ASSIGNMENT );
+				writeNode( op.path() );
+				writeNode( op.expression() );
+			} else if ( operation instanceof InlineTreeExpressionNode.DeepCopyOperation ) {
+				final InlineTreeExpressionNode.DeepCopyOperation op = (InlineTreeExpressionNode.DeepCopyOperation) operation;
+				writeByte( INLINE_TREE_DEEP_COPY );
+				writeNode( op.path() );
+				writeNode( op.expression() );
+			} else {
+				final InlineTreeExpressionNode.PointsToOperation op = (InlineTreeExpressionNode.PointsToOperation) operation;
+				writeByte( INLINE_TREE_POINTS_TO );
+				writeNode( op.path() );
+				writeNode( op.target() );
+			}
+		}
+	}
+
+	@Override
+	public void visit( ProvideUntilStatement n )
+	{
+		writeHeader( ProgramImageTag.PROVIDE_UNTIL, n );
+		writeNode( n.provide() );
+		writeNode( n.until() );
+	}
+}
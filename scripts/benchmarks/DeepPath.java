@@ -0,0 +1,147 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+import jolie.process.TransformationReason;
+import jolie.runtime.Value;
+import jolie.runtime.VariablePath;
+import jolie.runtime.expression.Expression;
+import jolie.util.Pair;
+
+/**
+ * Measures reading and writing the deep path request.order.items[3].price through a
+ * VariablePath with constant segments, which are resolved once and cached, and through
+ * a VariablePath whose segments are evaluated at each access, as they all were before.
+ * Also measures the paths that foreach creates for each item of request.order.items,
+ * with withLastIndex and by building a new path, as withLastIndex did before.
+ *
+ * Usage (JDK 11 or later, from the root of the repository, after building dist):
+ *   java -cp dist/jolie/jolie.jar:dist/jolie/lib/libjolie.jar scripts/benchmarks/DeepPath.java [accesses] [rounds]
+ * Prints the nanoseconds per access of each case in each round.
+ */
+public class DeepPath
+{
+	private static final int ITEMS = 10;
+
+	/*
+	 * A segment that VariablePath can not resolve in advance.
+	 */
+	private static class Evaluated implements Expression
+	{
+		private final Value value;
+
+		private Evaluated( Value value )
+		{
+			this.value = value;
+		}
+
+		public Value evaluate()
+		{
+			return value;
+		}
+
+		public Expression cloneExpression( TransformationReason reason )
+		{
+			return this;
+		}
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private static Pair< Expression, Expression >[] segments( boolean constant )
+	{
+		final String[] keys = { "request", "order", "items", "price" };
+		final Pair< Expression, Expression >[] path = new Pair[ keys.length ];
+		for( int i = 0; i < keys.length; i++ ) {
+			final Value key = Value.create( keys[ i ] );
+			final Value index = Value.create( i == 2 ? 3 : 0 );
+			path[ i ] = constant
+				? new Pair<>( key, index )
+				: new Pair<>( new Evaluated( key ), new Evaluated( index ) );
+		}
+		return path;
+	}
+
+	private static long sink = 0L;
+
+	private static double read( VariablePath path, Value root, int accesses )
+	{
+		final long start = System.nanoTime();
+		for( int i = 0; i < accesses; i++ ) {
+			sink += path.getValueOrNull( root ).intValue();
+		}
+		return (double) (System.nanoTime() - start) / accesses;
+	}
+
+	private static double write( VariablePath path, Value root, int accesses )
+	{
+		final long start = System.nanoTime();
+		for( int i = 0; i < accesses; i++ ) {
+			path.getValue( root ).setValue( i );
+		}
+		return (double) (System.nanoTime() - start) / accesses;
+	}
+
+	private static double foreach( VariablePath items, Value root, int accesses, boolean shared )
+	{
+		final long start = System.nanoTime();
+		for( int i = 0; i < accesses; i++ ) {
+			final VariablePath item = shared ? items.withLastIndex( i % ITEMS ) : rebuild( items, i % ITEMS );
+			sink += item.getValueOrNull( root ).children().size();
+		}
+		return (double) (System.nanoTime() - start) / accesses;
+	}
+
+	/*
+	 * The path that withLastIndex returned before it shared the resolved segments.
+	 */
+	private static VariablePath rebuild( VariablePath path, int index )
+	{
+		final Pair< Expression, Expression >[] newPath = path.path().clone();
+		newPath[ newPath.length - 1 ] = new Pair<>( newPath[ newPath.length - 1 ].key(), Value.create( index ) );
+		return new VariablePath( newPath );
+	}
+
+	public static void main( String[] args )
+	{
+		final int accesses = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 5000000;
+		final int rounds = args.length > 1 ? Integer.parseInt( args[ 1 ] ) : 5;
+		final Value root = Value.create();
+		for( int i = 0; i < ITEMS; i++ ) {
+			root.getFirstChild( "request" ).getFirstChild( "order" ).getChildren( "items" ).get( i )
+				.getFirstChild( "price" ).setValue( i );
+		}
+		final VariablePath constant = new VariablePath( segments( true ) );
+		final VariablePath evaluated = new VariablePath( segments( false ) );
+		final VariablePath items = new VariablePath( java.util.Arrays.copyOf( segments( true ), 3 ) );
+
+		for( int r = 0; r < rounds; r++ ) {
+			System.out.println( String.format(
+				"round %d:  read %.1f -> %.1f ns,  write %.1f -> %.1f ns,  foreach item %.1f -> %.1f ns",
+				r,
+				read( evaluated, root, accesses ), read( constant, root, accesses ),
+				write( evaluated, root, accesses ), write( constant, root, accesses ),
+				foreach( items, root, accesses, false ), foreach( items, root, accesses, true )
+			) );
+		}
+		if ( sink == 42L ) {
+			System.out.println();
+		}
+	}
+}
@@ -0,0 +1,155 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import jolie.net.CommMessage;
+import jolie.runtime.FaultException;
+import jolie.runtime.JavaService;
+import jolie.runtime.Value;
+import jolie.runtime.embedding.JavaServiceHelpers;
+
+/**
+ * Compares the cost of calling JavaService operations through the method handles that
+ * JavaService compiles for them with the reflective dispatch that it used before:
+ * Method.invoke on the operation and on the converters of its parameter and return value.
+ *
+ * Usage (JDK 11 or later, from the root of the repository, after building dist):
+ *   java -cp dist/jolie/jolie.jar:dist/jolie/lib/libjolie.jar scripts/benchmarks/JavaServiceDispatch.java [calls] [rounds]
+ * Prints the nanoseconds per call of each operation with both kinds of dispatch in each round.
+ * Both include looking up the operation and creating the response message.
+ */
+public class JavaServiceDispatch
+{
+	public static class BenchmarkService extends JavaService
+	{
+		public String echo( String request )
+		{
+			return request;
+		}
+
+		public Value id( Value request )
+		{
+			return request;
+		}
+
+		public Integer inc( Integer request )
+		{
+			return request + 1;
+		}
+	}
+
+	/**
+	 * The reflective dispatch of an operation, as JavaService did it before method handles.
+	 */
+	private static class ReflectiveOperation
+	{
+		private final Method method;
+		private final Method parameterConstructor;
+		private final Method returnValueConstructor;
+
+		private ReflectiveOperation( String name, Class< ? > type )
+			throws NoSuchMethodException
+		{
+			method = BenchmarkService.class.getMethod( name, type );
+			parameterConstructor = ( type == Value.class )
+				? JavaServiceHelpers.class.getMethod( "createValue", Value.class )
+				: JavaServiceHelpers.class.getMethod( "valueTo" + type.getSimpleName(), Value.class );
+			returnValueConstructor = ( type == Value.class )
+				? JavaServiceHelpers.class.getMethod( "createValue", Value.class )
+				: Value.class.getMethod( "create", type );
+		}
+
+		private CommMessage call( JavaService service, CommMessage message )
+			throws IllegalAccessException
+		{
+			try {
+				final Object[] args = new Object[] { parameterConstructor.invoke( null, message.value() ) };
+				final Object retObject = method.invoke( service, args );
+				if ( retObject == null ) {
+					return CommMessage.createEmptyResponse( message );
+				} else {
+					return CommMessage.createResponse( message, (Value) returnValueConstructor.invoke( null, retObject ) );
+				}
+			} catch( InvocationTargetException e ) {
+				final FaultException fault =
+					( e.getCause() instanceof FaultException )
+					? (FaultException) e.getCause()
+					: new FaultException( e.getCause() );
+				return CommMessage.createFaultResponse( message, fault );
+			}
+		}
+	}
+
+	private static long sink = 0L;
+
+	private static double handles( JavaService service, CommMessage message, int calls )
+		throws Exception
+	{
+		final long start = System.nanoTime();
+		for( int i = 0; i < calls; i++ ) {
+			sink += service.callOperation( message ).id();
+		}
+		return (double) (System.nanoTime() - start) / calls;
+	}
+
+	private static double reflection( JavaService service, ReflectiveOperation operation, CommMessage message, int calls )
+		throws Exception
+	{
+		final long start = System.nanoTime();
+		for( int i = 0; i < calls; i++ ) {
+			sink += operation.call( service, message ).id();
+		}
+		return (double) (System.nanoTime() - start) / calls;
+	}
+
+	public static void main( String[] args )
+		throws Exception
+	{
+		final int calls = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 3000000;
+		final int rounds = args.length > 1 ? Integer.parseInt( args[ 1 ] ) : 5;
+		final JavaService service = new BenchmarkService();
+		final String[] names = { "echo", "id", "inc" };
+		final Class< ? >[] types = { String.class, Value.class, Integer.class };
+		final CommMessage[] messages = {
+			CommMessage.createRequest( "echo", "/", Value.create( "hello" ) ),
+			CommMessage.createRequest( "id", "/", Value.create( "hello" ) ),
+			CommMessage.createRequest( "inc", "/", Value.create( 41 ) )
+		};
+		final ReflectiveOperation[] operations = new ReflectiveOperation[ names.length ];
+		for( int i = 0; i < names.length; i++ ) {
+			operations[ i ] = new ReflectiveOperation( names[ i ], types[ i ] );
+		}
+
+		for( int r = 0; r < rounds; r++ ) {
+			final StringBuilder line = new StringBuilder( "round " ).append( r ).append( ':' );
+			for( int i = 0; i < names.length; i++ ) {
+				final double reflective = reflection( service, operations[ i ], messages[ i ], calls );
+				final double handle = handles( service, messages[ i ], calls );
+				line.append( String.format( "  %s %.1f -> %.1f ns/call", names[ i ], reflective, handle ) );
+			}
+			System.out.println( line );
+		}
+		if ( sink == 42L ) {
+			System.out.println();
+		}
+	}
+}
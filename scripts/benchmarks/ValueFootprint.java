@@ -0,0 +1,99 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import jolie.runtime.Value;
+import jolie.runtime.ValueVector;
+
+/**
+ * Measures the heap taken by Value trees shaped like parsed JSON documents:
+ * records with a few scalar fields, a nested object and a short array of items.
+ *
+ * Usage (JDK 11 or later, from the root of the repository, after building dist):
+ *   java -cp dist/jolie/jolie.jar:dist/jolie/lib/libjolie.jar scripts/benchmarks/ValueFootprint.java [records] [rounds]
+ * Prints the number of nodes, the heap they retain and the bytes per node in each round.
+ */
+public class ValueFootprint
+{
+	private static final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+	private static Value buildTree( int records )
+	{
+		final Value root = Value.create();
+		for( int i = 0; i < records; i++ ) {
+			final Value order = root.getNewChild( "order" );
+			order.setFirstChild( "id", (long) i * 7919L );
+			order.setFirstChild( "status", (i % 3 == 0) ? "shipped" : "pending" );
+			final Value customer = order.getFirstChild( "customer" );
+			customer.setFirstChild( "name", "Customer " + i );
+			customer.setFirstChild( "email", "customer" + i + "@example.com" );
+			double total = 0.0;
+			for( int j = 0; j < 3; j++ ) {
+				final Value item = order.getNewChild( "items" );
+				item.setFirstChild( "sku", "SKU-" + ((i + j) % 1000) );
+				item.setFirstChild( "qty", j + 1 );
+				final double price = ((i * 31 + j) % 10000) / 100.0;
+				item.setFirstChild( "price", price );
+				total += price * (j + 1);
+			}
+			order.setFirstChild( "total", total );
+		}
+		return root;
+	}
+
+	private static long countNodes( Value value )
+	{
+		long count = 1;
+		for( ValueVector vector : value.children().values() ) {
+			for( Value child : vector ) {
+				count += countNodes( child );
+			}
+		}
+		return count;
+	}
+
+	private static long usedHeap()
+	{
+		for( int i = 0; i < 3; i++ ) {
+			System.gc();
+		}
+		return memory.getHeapMemoryUsage().getUsed();
+	}
+
+	public static void main( String[] args )
+	{
+		final int records = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 5000;
+		final int rounds = args.length > 1 ? Integer.parseInt( args[ 1 ] ) : 5;
+		for( int r = 0; r < rounds; r++ ) {
+			final long before = usedHeap();
+			final long start = System.nanoTime();
+			final Value tree = buildTree( records );
+			final long buildMillis = (System.nanoTime() - start) / 1000000L;
+			final long retained = usedHeap() - before;
+			final long nodes = countNodes( tree );
+			System.out.println(
+				"round " + r + ": " + nodes + " nodes, " + (retained / 1024) + " KB retained, "
+				+ (retained / nodes) + " bytes per node, built in " + buildMillis + " ms"
+			);
+		}
+	}
+}
@@ -0,0 +1,57 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package joliex.test;
+
+import java.net.URI;
+import jolie.net.ChannelPool;
+import jolie.runtime.JavaService;
+import jolie.runtime.Value;
+
+/**
+ * Exposes the counters of the channel pools of the embedding interpreter.
+ */
+public class ChannelPoolService extends JavaService
+{
+	/**
+	 * Returns the counters of the pool of request.location and request.protocol.
+	 * The response has no .exists child if there is no such pool, e.g., because
+	 * it has been retired after all its channels were closed.
+	 */
+	public Value stats( Value request )
+	{
+		final Value response = Value.create();
+		final ChannelPool pool = interpreter().commCore().getChannelPool(
+			URI.create( request.getFirstChild( "location" ).strValue() ),
+			request.getFirstChild( "protocol" ).strValue()
+		);
+		if ( pool != null ) {
+			response.setFirstChild( "exists", true );
+			response.setFirstChild( "leased", pool.leasedChannels() );
+			response.setFirstChild( "idle", pool.idleChannels() );
+			response.setFirstChild( "hits", pool.hits() );
+			response.setFirstChild( "misses", pool.misses() );
+			response.setFirstChild( "creations", pool.creations() );
+			response.setFirstChild( "evictions", pool.evictions() );
+		}
+		return response;
+	}
+}
@@ -0,0 +1,75 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package joliex.test;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.util.Collections;
+import jolie.monitoring.metrics.LatencyHistogram;
+import jolie.runtime.FaultException;
+import jolie.runtime.JavaService;
+import jolie.runtime.Value;
+
+/**
+ * Gives tests access to the pieces of the metrics that they can not observe
+ * through the Runtime service.
+ */
+public class MetricsService extends JavaService
+{
+	/**
+	 * Records the latencies in request.nanos in a new histogram, and returns
+	 * how many of them the histogram counts as at most request.micros microseconds.
+	 */
+	public Value countAtMost( Value request )
+	{
+		final LatencyHistogram histogram = new LatencyHistogram();
+		for( Value nanos : request.getChildren( "nanos" ) ) {
+			histogram.record( nanos.longValue() );
+		}
+		return Value.create( histogram.snapshot().countAtMost( request.getFirstChild( "micros" ).longValue() ) );
+	}
+
+	/**
+	 * Returns an IPv4 address of this machine that is not a loopback one,
+	 * or a value without content if there is none.
+	 */
+	public Value externalAddress()
+		throws FaultException
+	{
+		try {
+			for( NetworkInterface networkInterface : Collections.list( NetworkInterface.getNetworkInterfaces() ) ) {
+				if ( networkInterface.isUp() && !networkInterface.isLoopback() ) {
+					for( InetAddress address : Collections.list( networkInterface.getInetAddresses() ) ) {
+						if ( address instanceof Inet4Address ) {
+							return Value.create( address.getHostAddress() );
+						}
+					}
+				}
+			}
+		} catch( SocketException e ) {
+			throw new FaultException( "IOException", e );
+		}
+		return Value.create();
+	}
+}
@@ -0,0 +1,114 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package joliex.test;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeoutException;
+import jolie.net.CommChannel;
+import jolie.net.CommMessage;
+import jolie.runtime.FaultException;
+import jolie.runtime.JavaService;
+import jolie.runtime.Value;
+
+/**
+ * Waits for responses through a channel whose futures are not
+ * {@link java.util.concurrent.CompletableFuture}s, like those of remote channels,
+ * to test that {@link CommChannel#recvResponseFor(CommMessage, long)} times them out too.
+ */
+public class PlainFutureService extends JavaService
+{
+	private static class PlainFutureChannel extends CommChannel
+	{
+		private final long delay;
+
+		private PlainFutureChannel( long delay )
+		{
+			this.delay = delay;
+		}
+
+		@Override
+		public Future< CommMessage > recvResponseFor( CommMessage request )
+		{
+			final FutureTask< CommMessage > future = new FutureTask<>(
+				() -> CommMessage.createResponse( request, Value.create( "response" ) )
+			);
+			if ( delay >= 0 ) {
+				new Thread( () -> {
+					try {
+						Thread.sleep( delay );
+					} catch( InterruptedException e ) {
+						return;
+					}
+					future.run();
+				} ).start();
+			}
+			return future;
+		}
+
+		@Override
+		protected CommMessage recvImpl()
+			throws IOException
+		{
+			throw new IOException( "Unsupported operation" );
+		}
+
+		@Override
+		protected void sendImpl( CommMessage message )
+			throws IOException
+		{
+			throw new IOException( "Unsupported operation" );
+		}
+
+		@Override
+		protected void closeImpl()
+		{}
+	}
+
+	/**
+	 * Waits for a response that is ready after request.delay milliseconds
+	 * (never, if negative), with a timeout of request.timeout milliseconds.
+	 * The response has .timedOut set to true if the wait timed out,
+	 * or the value of the response otherwise.
+	 */
+	public Value call( Value request )
+		throws FaultException
+	{
+		final Value response = Value.create();
+		final CommChannel channel = new PlainFutureChannel( request.getFirstChild( "delay" ).longValue() );
+		final CommMessage message = CommMessage.createRequest( "call", "/", Value.create() );
+		try {
+			response.setValue( channel.recvResponseFor( message, request.getFirstChild( "timeout" ).longValue() ).get().value().strValue() );
+			response.setFirstChild( "timedOut", false );
+		} catch( ExecutionException e ) {
+			if ( !(e.getCause() instanceof TimeoutException) ) {
+				throw new FaultException( "UnexpectedException", e );
+			}
+			response.setFirstChild( "timedOut", true );
+		} catch( IOException | InterruptedException e ) {
+			throw new FaultException( "UnexpectedException", e );
+		}
+		return response;
+	}
+}
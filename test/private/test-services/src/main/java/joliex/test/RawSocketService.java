@@ -0,0 +1,82 @@
+/***************************************************************************
+ *   Copyright (C) by Fabrizio Montesi                                     *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU Library General Public License as       *
+ *   published by the Free Software Foundation; either version 2 of the    *
+ *   License, or (at your option) any later version.                       *
+ *                                                                         *
+ *   This program is distributed in the hope that it will be useful,       *
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the         *
+ *   GNU General Public License for more details.                          *
+ *                                                                         *
+ *   You should have received a copy of the GNU Library General Public     *
+ *   License along with this program; if not, write to the                 *
+ *   Free Software Foundation, Inc.,                                       *
+ *   59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.             *
+ *                                                                         *
+ *   For details about the authors of this software, see the AUTHORS file. *
+ ***************************************************************************/
+
+package joliex.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import jolie.runtime.ByteArray;
+import jolie.runtime.FaultException;
+import jolie.runtime.JavaService;
+import jolie.runtime.Value;
+
+/**
+ * Sends raw bytes over TCP, so that tests can feed malformed data to a protocol.
+ */
+public class RawSocketService extends JavaService
+{
+	/**
+	 * Connects to request.location (a socket:// location), sends request.data and shuts down the output.
+	 * It then reads until the peer closes the connection or request.timeout milliseconds
+	 * pass without data.
+	 * The response holds what has been read (.received) and whether the peer closed
+	 * the connection (.closed).
+	 */
+	public Value exchange( Value request )
+		throws FaultException
+	{
+		final Value response = Value.create();
+		final ByteArrayOutputStream received = new ByteArrayOutputStream();
+		boolean closed = false;
+		final URI location = URI.create( request.getFirstChild( "location" ).strValue() );
+		try( Socket socket = new Socket() ) {
+			socket.connect( new InetSocketAddress( location.getHost(), location.getPort() ) );
+			socket.setSoTimeout( request.getFirstChild( "timeout" ).intValue() );
+			socket.getOutputStream().write( request.getFirstChild( "data" ).byteArrayValue().getBytes() );
+			socket.shutdownOutput();
+			final InputStream istream = socket.getInputStream();
+			final byte[] buffer = new byte[ 4096 ];
+			int read;
+			try {
+				while( (read = istream.read( buffer )) >= 0 ) {
+					received.write( buffer, 0, read );
+				}
+				closed = true;
+			} catch( SocketTimeoutException e ) {
+				closed = false;
+			} catch( SocketException e ) {
+				// Reset by the peer
+				closed = true;
+			}
+		} catch( IOException e ) {
+			throw new FaultException( "IOException", e );
+		}
+		response.getFirstChild( "received" ).setValue( new ByteArray( received.toByteArray() ) );
+		response.getFirstChild( "closed" ).setValue( closed );
+		return response;
+	}
+}